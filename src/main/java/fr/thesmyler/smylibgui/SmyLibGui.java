@@ -10,6 +10,8 @@ import org.apache.logging.log4j.Logger;
 
 import fr.thesmyler.smylibgui.screen.HudScreen;
 import fr.thesmyler.smylibgui.util.Font;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.resources.IReloadableResourceManager;
 import net.minecraftforge.common.MinecraftForge;
 
 import static fr.thesmyler.smylibgui.SmyLibGuiContext.JUNIT;
@@ -56,6 +58,7 @@ public final class SmyLibGui {
         translator = new I18nTranslator();
         MinecraftForge.EVENT_BUS.register(HudScreen.class);
         MinecraftForge.EVENT_BUS.register(gameContext);
+        ((IReloadableResourceManager) Minecraft.getMinecraft().getResourceManager()).registerReloadListener(manager -> Font.clearGlyphRunCache());
     }
 
     private static void initLwjgl2TestScreen() {
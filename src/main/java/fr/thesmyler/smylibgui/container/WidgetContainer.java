@@ -3,13 +3,13 @@ package fr.thesmyler.smylibgui.container;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.TreeSet;
 
 import javax.annotation.Nullable;
 
 import fr.thesmyler.smylibgui.SmyLibGui;
 import fr.thesmyler.smylibgui.devices.Key;
 import fr.thesmyler.smylibgui.util.Font;
+import fr.thesmyler.smylibgui.util.RenderCache;
 import fr.thesmyler.smylibgui.util.Scissor;
 import fr.thesmyler.smylibgui.util.Util;
 import fr.thesmyler.smylibgui.widgets.IWidget;
@@ -33,16 +33,7 @@ import static fr.thesmyler.smylibgui.SmyLibGui.getMouse;
  */
 public abstract class WidgetContainer implements IWidget{
 
-    protected final TreeSet<IWidget> widgets = new TreeSet<>(
-            (w2, w1) -> {
-                if (w2 != null && w2.equals(w1)) return 0;
-                if (w1 == null && w2 == null) return 0;
-                if (w1 == null) return -1;
-                if (w2 == null) return 1;
-                int r = Integer.compare(w1.getZ(), w2.getZ());
-                return r == 0 ? w1.hashCode() - w2.hashCode() : r;
-            }
-    );
+    protected final WidgetStore widgets = new WidgetStore();
     
     private List<ScheduledTask> scheduledForUpdatePre = new ArrayList<>();
     private List<ScheduledTask> scheduledForUpdatePost = new ArrayList<>();
@@ -70,6 +61,13 @@ public abstract class WidgetContainer implements IWidget{
 
     private Font font = SmyLibGui.getDefaultFont();
 
+    private RenderCache renderCache = null;
+    private boolean renderCacheDirty = true;
+    private int renderedWidgetsState;
+    private float renderedX, renderedY, renderedWidth, renderedHeight, renderedMouseX, renderedMouseY;
+    private boolean renderedFocused;
+    private IWidget renderedHoveredWidget, renderedFocusedWidget;
+
     public WidgetContainer(int z) {
         Arrays.fill(this.lastClickTime, Long.MIN_VALUE);
         this.z = z;
@@ -78,21 +76,24 @@ public abstract class WidgetContainer implements IWidget{
     public void init() {}
 
     public WidgetContainer addWidget(IWidget widget) {
-        this.widgets.add(widget);
+        if(this.widgets.add(widget)) {
+            this.invalidateRenderCache();
+        }
         return this;
     }
 
     public WidgetContainer removeWidget(IWidget widget) {
-        if(this.widgets.contains(widget)) {
+        if(this.widgets.remove(widget)) {
             widget.onRemoved();
+            this.invalidateRenderCache();
         }
-        this.widgets.remove(widget);
         return this;
     }
 
     public WidgetContainer removeAllWidgets() {
         for(IWidget widget: this.widgets) widget.onRemoved();
         this.widgets.clear();
+        this.invalidateRenderCache();
         return this;
     }
 
@@ -102,6 +103,7 @@ public abstract class WidgetContainer implements IWidget{
         long ctime = System.currentTimeMillis();
         this.processTasks(ctime, this.scheduledForUpdatePre);
 
+        if(!this.delayedActions.isEmpty()) this.invalidateRenderCache();
         for(MouseAction event: this.delayedActions) {
             boolean processed = false;
             for(IWidget widget: this.widgets) {
@@ -160,6 +162,7 @@ public abstract class WidgetContainer implements IWidget{
         }
         for(int i=0; i < this.draggedWidget.length; i++) {
             if(this.draggedWidget[i] != null) {
+                this.invalidateRenderCache();
                 this.draggedWidget[i].onMouseDragged(this.lastClickX[i] - this.draggedWidget[i].getX(), this.lastClickY[i] - this.draggedWidget[i].getY(), this.dClickX[i], this.dClickY[i], i, this, this.dClickT[i]);
                 this.dClickX[i] = 0;
                 this.dClickY[i] = 0;
@@ -202,6 +205,7 @@ public abstract class WidgetContainer implements IWidget{
 
     @Override
     public void onKeyTyped(char typedChar, Key key, @Nullable WidgetContainer parent) {
+        this.invalidateRenderCache();
         if(this.focusedWidget != null) {
             this.focusedWidget.onKeyTyped(typedChar, key, this);
         }
@@ -343,15 +347,10 @@ public abstract class WidgetContainer implements IWidget{
 
     @Override
     public void draw(float x, float y, float mouseX, float mouseY, boolean screenHovered, boolean screenFocused, @Nullable WidgetContainer parent) {
-        if(this.doScissor) {
-            Scissor.push();
-            Scissor.setScissorState(true);
-            Scissor.scissorIntersecting(x, y, this.getWidth(), this.getHeight());
-        }
         IWidget wf = null;
         if(screenHovered) {
             for(IWidget widget: this.widgets) {
-                if(!widget.isVisible(this) || this.isOutsideScreen(widget) || !Util.doBoxesCollide(x + widget.getX(), y + widget.getY(), widget.getWidth(), widget.getHeight(), x, y, this.getWidth(), this.getHeight())) continue;
+                if(!this.isWorthDrawing(x, y, widget)) continue;
                 if(this.isOverWidget(mouseX - x, mouseY - y, widget)) {
                     wf = widget;
                     break;
@@ -359,20 +358,45 @@ public abstract class WidgetContainer implements IWidget{
             }
         }
         this.hoveredWidget = wf;
+        if(this.renderCache == null) {
+            this.drawWidgets(x, y, mouseX, mouseY, screenFocused);
+            return;
+        }
+        float width = this.getWidth();
+        float height = this.getHeight();
+        int widgetsState = this.getWidgetsState();
+        boolean changed =
+                this.renderCacheDirty
+                || x != this.renderedX || y != this.renderedY
+                || width != this.renderedWidth || height != this.renderedHeight
+                || screenFocused != this.renderedFocused
+                || this.hoveredWidget != this.renderedHoveredWidget
+                || this.focusedWidget != this.renderedFocusedWidget
+                || (screenHovered && (mouseX != this.renderedMouseX || mouseY != this.renderedMouseY))
+                || widgetsState != this.renderedWidgetsState
+                || this.doWidgetsNeedRedraw();
+        this.renderCache.draw(x, y, width, height, changed, () -> this.drawWidgets(x, y, mouseX, mouseY, screenFocused));
+        this.renderCacheDirty = false;
+        this.renderedX = x;
+        this.renderedY = y;
+        this.renderedWidth = width;
+        this.renderedHeight = height;
+        this.renderedMouseX = mouseX;
+        this.renderedMouseY = mouseY;
+        this.renderedFocused = screenFocused;
+        this.renderedHoveredWidget = this.hoveredWidget;
+        this.renderedFocusedWidget = this.focusedWidget;
+        this.renderedWidgetsState = widgetsState;
+    }
+
+    private void drawWidgets(float x, float y, float mouseX, float mouseY, boolean screenFocused) {
+        if(this.doScissor) {
+            Scissor.push();
+            Scissor.setScissorState(true);
+            Scissor.scissorIntersecting(x, y, this.getWidth(), this.getHeight());
+        }
         this.widgets.descendingIterator().forEachRemaining((widget) -> {
-            if(
-                    !widget.isVisible(this) ||
-                    this.isOutsideScreen(widget) ||
-                    !Util.doBoxesCollide(
-                            x + widget.getX(),
-                            y + widget.getY(),
-                            widget.getWidth(),
-                            widget.getHeight(),
-                            x,
-                            y,
-                            this.getWidth(),
-                            this.getHeight()))
-                return;
+            if(!this.isWorthDrawing(x, y, widget)) return;
             widget.draw(x + widget.getX(), y + widget.getY(), mouseX, mouseY, widget.equals(this.hoveredWidget), screenFocused && widget.equals(this.focusedWidget), this);
         });
         if(this.doScissor) {
@@ -380,6 +404,91 @@ public abstract class WidgetContainer implements IWidget{
         }
     }
 
+    private boolean isWorthDrawing(float x, float y, IWidget widget) {
+        return
+                widget.isVisible(this) &&
+                !this.isOutsideScreen(widget) &&
+                Util.doBoxesCollide(
+                        x + widget.getX(),
+                        y + widget.getY(),
+                        widget.getWidth(),
+                        widget.getHeight(),
+                        x,
+                        y,
+                        this.getWidth(),
+                        this.getHeight());
+    }
+
+    /**
+     * Enables or disables caching this container's rendering into a framebuffer.
+     * When enabled, the widgets are only drawn again when the container has changed,
+     * either because a widget was added, removed, moved, hovered, focused or interacted with,
+     * or because a widget reported it needed to be drawn again with {@link IWidget#needsRedraw()}.
+     * Otherwise, the previous frame is copied back to the screen.
+     * <br>
+     * This is worth it for containers which mostly stay the same between frames.
+     * Only what is inside of the container's bounds is cached.
+     *
+     * @param yesNo - whether to cache this container's rendering
+     */
+    public void setRenderCaching(boolean yesNo) {
+        if(yesNo && this.renderCache == null) {
+            this.renderCache = new RenderCache();
+            this.renderCacheDirty = true;
+        } else if(!yesNo && this.renderCache != null) {
+            this.renderCache.delete();
+            this.renderCache = null;
+        }
+    }
+
+    public boolean isRenderCaching() {
+        return this.renderCache != null;
+    }
+
+    /**
+     * Forces the widgets to be drawn again next frame if this container caches its rendering.
+     * This is only needed if a widget changes in a way it does not report with {@link IWidget#needsRedraw()}.
+     */
+    public void invalidateRenderCache() {
+        this.renderCacheDirty = true;
+    }
+
+    /**
+     * A container which does not cache its rendering always needs to be drawn again,
+     * as it has no way of knowing what the hovered widget or the mouse position were last time.
+     */
+    @Override
+    public boolean needsRedraw() {
+        return this.renderCache == null || this.renderCacheDirty || this.getWidgetsState() != this.renderedWidgetsState || this.doWidgetsNeedRedraw();
+    }
+
+    private boolean doWidgetsNeedRedraw() {
+        for(IWidget widget: this.widgets) {
+            if(widget.isVisible(this) && !this.isOutsideScreen(widget) && widget.needsRedraw()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return a hash of the visibility, position and size of the widgets
+     */
+    private int getWidgetsState() {
+        int state = 1;
+        for(IWidget widget: this.widgets) {
+            if(!widget.isVisible(this)) continue;
+            state = 31 * state + Float.floatToIntBits(widget.getX());
+            state = 31 * state + Float.floatToIntBits(widget.getY());
+            state = 31 * state + Float.floatToIntBits(widget.getWidth());
+            state = 31 * state + Float.floatToIntBits(widget.getHeight());
+        }
+        return state;
+    }
+
+    @Override
+    public void onRemoved() {
+        if(this.renderCache != null) this.renderCache.delete();
+    }
+
     /**
      * Indicates whether the widget is worth rendering
      * 
@@ -503,6 +612,7 @@ public abstract class WidgetContainer implements IWidget{
 
     public void setFont(Font font) {
         this.font = font;
+        this.invalidateRenderCache();
     }
 
     public boolean doesScissor() {
@@ -511,6 +621,7 @@ public abstract class WidgetContainer implements IWidget{
 
     public void setDoScissor(boolean yesNo) {
         this.doScissor = yesNo;
+        this.invalidateRenderCache();
     }
 
     @Nullable public IWidget getHoveredWidget() {
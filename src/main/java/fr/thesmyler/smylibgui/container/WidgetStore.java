@@ -0,0 +1,148 @@
+package fr.thesmyler.smylibgui.container;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+import fr.thesmyler.smylibgui.widgets.IWidget;
+
+/**
+ * Stores the widgets of a {@link WidgetContainer}, ordered by z.
+ * <br>
+ * Widgets are kept in one bucket per z value, so adding and removing them does not depend on how many widgets there are.
+ * Widgets with the same z value are kept in the order they were added in.
+ * The widgets are iterated from the highest z value to the lowest, which is the order hit-testing uses,
+ * and can be iterated the other way around with {@link #descendingIterator()}, which is the drawing order.
+ * <br>
+ * Iterating goes through a snapshot of the store which is only rebuilt after it has changed,
+ * so widgets can safely be added or removed while iterating.
+ * <br>
+ * The z value of a widget is read when it is added. If it changes, the widget has to be removed and added again.
+ *
+ * @author SmylerMC
+ *
+ */
+public class WidgetStore implements Iterable<IWidget> {
+
+    private static final IWidget[] EMPTY = new IWidget[0];
+
+    private final TreeMap<Integer, Set<IWidget>> buckets = new TreeMap<>(Collections.reverseOrder());
+    private final Map<IWidget, Integer> zValues = new HashMap<>();
+    private IWidget[] ordered = EMPTY;
+    private boolean dirty = false;
+
+    /**
+     * Adds a widget to this store.
+     *
+     * @param widget - the widget to add
+     * @return whether the widget was added, false if it was already in this store
+     */
+    public boolean add(IWidget widget) {
+        if(widget == null || this.zValues.containsKey(widget)) return false;
+        int z = widget.getZ();
+        this.zValues.put(widget, z);
+        this.buckets.computeIfAbsent(z, k -> new LinkedHashSet<>()).add(widget);
+        this.dirty = true;
+        return true;
+    }
+
+    /**
+     * Removes a widget from this store.
+     *
+     * @param widget - the widget to remove
+     * @return whether the widget was in this store
+     */
+    public boolean remove(IWidget widget) {
+        Integer z = this.zValues.remove(widget);
+        if(z == null) return false;
+        Set<IWidget> bucket = this.buckets.get(z);
+        bucket.remove(widget);
+        if(bucket.isEmpty()) this.buckets.remove(z);
+        this.dirty = true;
+        return true;
+    }
+
+    public boolean contains(IWidget widget) {
+        return this.zValues.containsKey(widget);
+    }
+
+    public int size() {
+        return this.zValues.size();
+    }
+
+    public boolean isEmpty() {
+        return this.zValues.isEmpty();
+    }
+
+    public void clear() {
+        this.buckets.clear();
+        this.zValues.clear();
+        this.ordered = EMPTY;
+        this.dirty = false;
+    }
+
+    /**
+     * @return an iterator going through the widgets from the highest z value to the lowest
+     */
+    @Override
+    public Iterator<IWidget> iterator() {
+        return new SnapshotIterator(this.getOrdered(), false);
+    }
+
+    /**
+     * @return an iterator going through the widgets from the lowest z value to the highest
+     */
+    public Iterator<IWidget> descendingIterator() {
+        return new SnapshotIterator(this.getOrdered(), true);
+    }
+
+    private IWidget[] getOrdered() {
+        if(this.dirty) {
+            IWidget[] ordered = new IWidget[this.zValues.size()];
+            int i = 0;
+            for(Set<IWidget> bucket: this.buckets.values()) {
+                for(IWidget widget: bucket) ordered[i++] = widget;
+            }
+            this.ordered = ordered;
+            this.dirty = false;
+        }
+        return this.ordered;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.getOrdered());
+    }
+
+    private static class SnapshotIterator implements Iterator<IWidget> {
+
+        private final IWidget[] widgets;
+        private final boolean descending;
+        private int index = 0;
+
+        SnapshotIterator(IWidget[] widgets, boolean descending) {
+            this.widgets = widgets;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < this.widgets.length;
+        }
+
+        @Override
+        public IWidget next() {
+            if(!this.hasNext()) throw new NoSuchElementException();
+            int i = this.index++;
+            return this.widgets[this.descending ? this.widgets.length - 1 - i: i];
+        }
+
+    }
+
+}
@@ -5,15 +5,21 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.FontRenderer;
 import net.minecraft.client.gui.GuiUtilRenderComponents;
 import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraftforge.fml.common.ObfuscationReflectionHelper;
 
 public class Font {
 
+    private static final int GLYPH_RUN_CACHE_CAPACITY = 512;
+    private static final GlyphRunCache GLYPH_RUNS = new GlyphRunCache(GLYPH_RUN_CACHE_CAPACITY);
+
     protected final float scale;
 
     public Font(float size) {
@@ -30,11 +36,16 @@ public class Font {
 
     /**
      * Draws the specified string.
+     * Strings the ASCII font page can render are laid out once and then drawn from a cache in a single batch.
      */
     public float drawString(float x, float y, String text, Color color, boolean shadow) {
         try {
             this.enableAlpha();
             GlStateManager.enableBlend();
+            GlyphRun run = this.getGlyphRun(text, color, shadow);
+            if(run != null) {
+                return run.draw(x, y, this.scale, this.getFontTexture());
+            }
             this.resetStyles();
             if (shadow) {
                 float endX = this.renderString(text, x + this.scale, y + this.scale, color, true);
@@ -62,6 +73,29 @@ public class Font {
         }
     }
 
+    /**
+     * @return the cached layout of the given string, or null if it has to be rendered by the font renderer
+     */
+    @Nullable
+    private GlyphRun getGlyphRun(@Nullable String text, Color color, boolean shadow) throws IllegalArgumentException, IllegalAccessException {
+        FontRenderer font = this.getFont();
+        if(text == null || text.length() > GlyphRun.MAX_LENGTH || font.getUnicodeFlag() || font.getBidiFlag()) return null;
+        GlyphRun run = GLYPH_RUNS.get(text, color.encoded(), shadow);
+        if(run == null) {
+            run = GlyphRun.layout(text, color.encoded(), shadow, this.getCharWidths(), this.getColorCode(), font.FONT_HEIGHT);
+            GLYPH_RUNS.put(text, color.encoded(), shadow, run);
+        }
+        return run != GlyphRun.UNSUPPORTED ? run: null;
+    }
+
+    /**
+     * Forgets all cached string layouts.
+     * This needs to be called when the font's glyph widths change, e.g. when resources are reloaded.
+     */
+    public static void clearGlyphRunCache() {
+        GLYPH_RUNS.clear();
+    }
+
     protected float renderString(String text, float x, float y, Color color, boolean shadow) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
         if (text == null) {
             return 0;
@@ -366,12 +400,22 @@ public class Font {
 
     protected int[] getColorCode() throws IllegalArgumentException, IllegalAccessException {
         if(colorCode == null) colorCode = ObfuscationReflectionHelper.findField(FontRenderer.class, SRG_colorCode);
-        return (int[]) boldStyle.get(this.getFont());
+        return (int[]) colorCode.get(this.getFont());
     }
 
     protected void setColorCode(int[] value) throws IllegalArgumentException, IllegalAccessException {
         if(colorCode == null) colorCode = ObfuscationReflectionHelper.findField(FontRenderer.class, SRG_colorCode);
-        boldStyle.set(this.getFont(), value);
+        colorCode.set(this.getFont(), value);
+    }
+
+    protected int[] getCharWidths() throws IllegalArgumentException, IllegalAccessException {
+        if(charWidth == null) charWidth = ObfuscationReflectionHelper.findField(FontRenderer.class, SRG_charWidth);
+        return (int[]) charWidth.get(this.getFont());
+    }
+
+    protected ResourceLocation getFontTexture() throws IllegalArgumentException, IllegalAccessException {
+        if(locationFontTexture == null) locationFontTexture = ObfuscationReflectionHelper.findField(FontRenderer.class, SRG_locationFontTexture);
+        return (ResourceLocation) locationFontTexture.get(this.getFont());
     }
 
     /* All there is from this point onwards is reflection stuff */
@@ -409,5 +453,9 @@ public class Font {
     private static Field italicStyle;
     private static final String SRG_colorCode = "field_78285_g";
     private static Field colorCode;
+    private static final String SRG_charWidth = "field_78286_d";
+    private static Field charWidth;
+    private static final String SRG_locationFontTexture = "field_111273_g";
+    private static Field locationFontTexture;
 
 }
@@ -0,0 +1,292 @@
+package fr.thesmyler.smylibgui.util;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.lwjgl.opengl.GL11;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * A string laid out into glyph quads, ready to be drawn in a single batch.
+ * <br>
+ * The layout is the same as what Minecraft's {@link net.minecraft.client.gui.FontRenderer} does,
+ * but only for what the ASCII font page can render: printable ASCII characters, colors, bold, italic, underline and strikethrough.
+ * Anything else gives {@link #UNSUPPORTED}, and should be rendered the usual way.
+ * <br>
+ * Quads are in font units, relative to the position the string is drawn at. The shadow, if any, is part of the run.
+ *
+ * @author SmylerMC
+ *
+ */
+final class GlyphRun {
+
+    /**
+     * Longest string worth laying out, longer strings are rarely drawn twice the same
+     */
+    static final int MAX_LENGTH = 256;
+
+    /**
+     * Laid out for strings which cannot be rendered from a run
+     */
+    static final GlyphRun UNSUPPORTED = new GlyphRun(new int[0], new int[0], 0f);
+
+    private static final String FORMATTING_CODES = "0123456789abcdefklmnor";
+    private static final int OBFUSCATED_CODE = 16;
+    private static final int BOLD_CODE = 17;
+    private static final int STRIKETHROUGH_CODE = 18;
+    private static final int UNDERLINE_CODE = 19;
+    private static final int ITALIC_CODE = 20;
+    private static final int RESET_CODE = 21;
+    private static final float SPACE_WIDTH = 4f;
+    private static final int TEXTURED_VERTEX_SIZE = 6; // 3 floats of position, 2 floats of texture coordinates and 4 color bytes
+    private static final int PLAIN_VERTEX_SIZE = 4; // 3 floats of position and 4 color bytes
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final int[] glyphs;
+    private final int[] lines;
+    private final float width;
+
+    private GlyphRun(int[] glyphs, int[] lines, float width) {
+        this.glyphs = glyphs;
+        this.lines = lines;
+        this.width = width;
+    }
+
+    /**
+     * Draws this run.
+     *
+     * @param x         - the x position to draw at
+     * @param y         - the y position to draw at
+     * @param scale     - the scale of the font
+     * @param texture   - the ASCII font page texture
+     *
+     * @return the x position at which this run ends
+     */
+    float draw(float x, float y, float scale, ResourceLocation texture) {
+        GlStateManager.pushMatrix();
+        GlStateManager.translate(x, y, 0);
+        GlStateManager.scale(scale, scale, 1);
+        Tessellator tessellator = Tessellator.getInstance();
+        BufferBuilder builder = tessellator.getBuffer();
+        if(this.glyphs.length > 0) {
+            GlStateManager.enableTexture2D();
+            Minecraft.getMinecraft().getTextureManager().bindTexture(texture);
+            builder.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR);
+            builder.addVertexData(this.glyphs);
+            tessellator.draw();
+        }
+        if(this.lines.length > 0) {
+            GlStateManager.disableTexture2D();
+            builder.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR);
+            builder.addVertexData(this.lines);
+            tessellator.draw();
+            GlStateManager.enableTexture2D();
+        }
+        GlStateManager.popMatrix();
+        return x + this.width * scale;
+    }
+
+    /**
+     * @return the width of this run, in font units
+     */
+    float getWidth() {
+        return this.width;
+    }
+
+    int getGlyphCount() {
+        return this.glyphs.length / TEXTURED_VERTEX_SIZE / 4;
+    }
+
+    int getLineCount() {
+        return this.lines.length / PLAIN_VERTEX_SIZE / 4;
+    }
+
+    /**
+     * Lays out a string.
+     *
+     * @param text          - the string to lay out
+     * @param color         - the base color of the text, as ARGB
+     * @param shadow        - whether to include a shadow
+     * @param charWidths    - the width of each character of the ASCII font page
+     * @param colorCodes    - the 32 colors of the formatting codes, the last 16 being their shadow variants
+     * @param fontHeight    - the height of the font
+     *
+     * @return the laid out run, or {@link #UNSUPPORTED} if the string cannot be rendered from a run
+     */
+    static GlyphRun layout(String text, int color, boolean shadow, int[] charWidths, int[] colorCodes, int fontHeight) {
+        if(text.length() > MAX_LENGTH) return UNSUPPORTED;
+        Builder builder = new Builder(text.length() * (shadow ? 2: 1));
+        float width = 0f;
+        if(shadow) {
+            int shadowColor = (color & 0xFCFCFC) >> 2 | color & 0xFF000000;
+            float end = builder.layout(text, shadowColor, true, 1f, charWidths, colorCodes, fontHeight);
+            if(Float.isNaN(end)) return UNSUPPORTED;
+            width = end;
+        }
+        float end = builder.layout(text, color, false, 0f, charWidths, colorCodes, fontHeight);
+        if(Float.isNaN(end)) return UNSUPPORTED;
+        width = Math.max(width, end);
+        return new GlyphRun(builder.getGlyphs(), builder.getLines(), width);
+    }
+
+    private static class Builder {
+
+        int[] glyphs;
+        int glyphsSize = 0;
+        int[] lines = new int[0];
+        int linesSize = 0;
+
+        Builder(int expectedGlyphs) {
+            this.glyphs = new int[expectedGlyphs * 4 * TEXTURED_VERTEX_SIZE];
+        }
+
+        /**
+         * Mirrors FontRenderer#renderStringAtPos.
+         *
+         * @return the position at which the text ends, or NaN if the text is not supported
+         */
+        float layout(String text, int color, boolean shadow, float offset, int[] charWidths, int[] colorCodes, int fontHeight) {
+            int alpha = color >>> 24;
+            int baseRed = color >> 16 & 0xFF;
+            int baseGreen = color >> 8 & 0xFF;
+            int baseBlue = color & 0xFF;
+            int rgb = color & 0xFFFFFF;
+            boolean bold = false, italic = false, underline = false, strikethrough = false;
+            float x = offset;
+            float y = offset;
+            for(int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if(c == '\u00a7' && i + 1 < text.length()) {
+                    int code = FORMATTING_CODES.indexOf(String.valueOf(text.charAt(++i)).toLowerCase(Locale.ROOT).charAt(0));
+                    if(code < OBFUSCATED_CODE) {
+                        bold = italic = underline = strikethrough = false;
+                        if(code < 0) code = 15;
+                        if(shadow) code += 16;
+                        rgb = colorCodes[code] & 0xFFFFFF;
+                    } else if(code == OBFUSCATED_CODE) {
+                        return Float.NaN; // Changes every frame
+                    } else if(code == BOLD_CODE) {
+                        bold = true;
+                    } else if(code == STRIKETHROUGH_CODE) {
+                        strikethrough = true;
+                    } else if(code == UNDERLINE_CODE) {
+                        underline = true;
+                    } else if(code == ITALIC_CODE) {
+                        italic = true;
+                    } else if(code == RESET_CODE) {
+                        bold = italic = underline = strikethrough = false;
+                        // Vanilla swaps green and blue when resetting
+                        rgb = baseRed << 16 | baseBlue << 8 | baseGreen;
+                    }
+                    continue;
+                }
+                int argb = alpha << 24 | rgb;
+                float advance;
+                if(c == ' ' || c == '\u00a0') {
+                    advance = SPACE_WIDTH;
+                } else if(c > ' ' && c < 127) {
+                    advance = charWidths[c];
+                    this.addGlyph(c, x, y, advance, italic, argb);
+                    if(bold) this.addGlyph(c, x + 1f, y, advance, italic, argb);
+                } else {
+                    return Float.NaN;
+                }
+                if(bold) advance++;
+                if(strikethrough) {
+                    float lineY = y + fontHeight / 2;
+                    this.addLine(x, lineY - 1f, x + advance, lineY, argb);
+                }
+                if(underline) {
+                    this.addLine(x - 1f, y + fontHeight - 1f, x + advance, y + fontHeight, argb);
+                }
+                x += (int) advance;
+            }
+            return x;
+        }
+
+        void addGlyph(char c, float x, float y, float charWidth, boolean italic, int argb) {
+            float skew = italic ? 1f: 0f;
+            float u = c % 16 * 8;
+            float v = c / 16 * 8;
+            float w = charWidth - 0.01f - 1f;
+            float h = 7.99f;
+            int color = toVertexColor(argb);
+            this.ensureGlyphCapacity();
+            this.addTexturedVertex(x + skew, y, u / 128f, v / 128f, color);
+            this.addTexturedVertex(x - skew, y + h, u / 128f, (v + h) / 128f, color);
+            this.addTexturedVertex(x + w - skew, y + h, (u + w) / 128f, (v + h) / 128f, color);
+            this.addTexturedVertex(x + w + skew, y, (u + w) / 128f, v / 128f, color);
+        }
+
+        void addLine(float left, float top, float right, float bottom, int argb) {
+            int color = toVertexColor(argb);
+            if(this.linesSize + 4 * PLAIN_VERTEX_SIZE > this.lines.length) {
+                this.lines = Arrays.copyOf(this.lines, Math.max(this.lines.length * 2, 4 * 4 * PLAIN_VERTEX_SIZE));
+            }
+            this.addPlainVertex(left, bottom, color);
+            this.addPlainVertex(right, bottom, color);
+            this.addPlainVertex(right, top, color);
+            this.addPlainVertex(left, top, color);
+        }
+
+        void ensureGlyphCapacity() {
+            if(this.glyphsSize + 4 * TEXTURED_VERTEX_SIZE > this.glyphs.length) {
+                this.glyphs = Arrays.copyOf(this.glyphs, Math.max(this.glyphs.length * 2, 4 * 4 * TEXTURED_VERTEX_SIZE));
+            }
+        }
+
+        void addTexturedVertex(float x, float y, float u, float v, int color) {
+            int[] data = this.glyphs;
+            int i = this.glyphsSize;
+            data[i] = Float.floatToRawIntBits(x);
+            data[i + 1] = Float.floatToRawIntBits(y);
+            data[i + 2] = Float.floatToRawIntBits(0f);
+            data[i + 3] = Float.floatToRawIntBits(u);
+            data[i + 4] = Float.floatToRawIntBits(v);
+            data[i + 5] = color;
+            this.glyphsSize += TEXTURED_VERTEX_SIZE;
+        }
+
+        void addPlainVertex(float x, float y, int color) {
+            int[] data = this.lines;
+            int i = this.linesSize;
+            data[i] = Float.floatToRawIntBits(x);
+            data[i + 1] = Float.floatToRawIntBits(y);
+            data[i + 2] = Float.floatToRawIntBits(0f);
+            data[i + 3] = color;
+            this.linesSize += PLAIN_VERTEX_SIZE;
+        }
+
+        int[] getGlyphs() {
+            return Arrays.copyOf(this.glyphs, this.glyphsSize);
+        }
+
+        int[] getLines() {
+            return Arrays.copyOf(this.lines, this.linesSize);
+        }
+
+        /**
+         * Converts an ARGB color to the RGBA byte order vertex buffers expect.
+         */
+        static int toVertexColor(int argb) {
+            int alpha = argb >>> 24;
+            int red = argb >> 16 & 0xFF;
+            int green = argb >> 8 & 0xFF;
+            int blue = argb & 0xFF;
+            if(LITTLE_ENDIAN) {
+                return alpha << 24 | blue << 16 | green << 8 | red;
+            } else {
+                return red << 24 | green << 16 | blue << 8 | alpha;
+            }
+        }
+
+    }
+
+}
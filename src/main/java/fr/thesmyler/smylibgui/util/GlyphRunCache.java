@@ -0,0 +1,92 @@
+package fr.thesmyler.smylibgui.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the most recently drawn {@link GlyphRun}s, keyed by text, color and shadow.
+ * The least recently used runs are discarded once the capacity is reached, so strings which change all the time do not make it grow.
+ * <br>
+ * Runs do not depend on the scale of the font, so fonts of different sizes share them.
+ * This is not thread safe, it is meant to be used from the render thread.
+ *
+ * @author SmylerMC
+ *
+ */
+final class GlyphRunCache {
+
+    private final Map<Key, GlyphRun> runs;
+    private final Key lookup = new Key(); // Reused so lookups do not allocate
+
+    GlyphRunCache(int capacity) {
+        this.runs = new LinkedHashMap<Key, GlyphRun>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, GlyphRun> eldest) {
+                return this.size() > capacity;
+            }
+
+        };
+    }
+
+    /**
+     * @param text      - the text of the run
+     * @param color     - the base color of the run, as ARGB
+     * @param shadow    - whether the run has a shadow
+     *
+     * @return the cached run, or null if there is none
+     */
+    @Nullable GlyphRun get(String text, int color, boolean shadow) {
+        this.lookup.set(text, color, shadow);
+        GlyphRun run = this.runs.get(this.lookup);
+        this.lookup.set(null, 0, false);
+        return run;
+    }
+
+    void put(String text, int color, boolean shadow, GlyphRun run) {
+        Key key = new Key();
+        key.set(text, color, shadow);
+        this.runs.put(key, run);
+    }
+
+    void clear() {
+        this.runs.clear();
+    }
+
+    int size() {
+        return this.runs.size();
+    }
+
+    private static final class Key {
+
+        String text;
+        int color;
+        boolean shadow;
+
+        void set(String text, int color, boolean shadow) {
+            this.text = text;
+            this.color = color;
+            this.shadow = shadow;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return this.color == other.color && this.shadow == other.shadow && Objects.equals(this.text, other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Objects.hashCode(this.text) * 31 + this.color) * 31 + (this.shadow ? 1: 0);
+        }
+
+    }
+
+}
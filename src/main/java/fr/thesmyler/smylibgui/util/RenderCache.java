@@ -0,0 +1,141 @@
+package fr.thesmyler.smylibgui.util;
+
+import org.lwjgl.opengl.GL11;
+
+import fr.thesmyler.smylibgui.SmyLibGui;
+import fr.thesmyler.smylibgui.devices.GameContext;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.OpenGlHelper;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.client.shader.Framebuffer;
+
+/**
+ * Caches what is rendered in a rectangle of the screen into a framebuffer,
+ * so it only has to be rendered again when it has changed.
+ * <br>
+ * The framebuffer has the size of the window and content is rendered into it at the same position it has on screen,
+ * so scissoring works the same when rendering into the cache. Only what is inside the cached rectangle is kept.
+ * <br>
+ * If the content keeps changing, caching would only add a copy to each frame,
+ * so the cache is bypassed until the content stays the same for a frame.
+ * <br>
+ * Content is assumed to be drawn with the usual source alpha blending, and is copied back to the screen as pre-multiplied alpha.
+ * Translucent content drawn on top of other translucent content will look slightly more transparent than when drawn directly.
+ *
+ * @author SmylerMC
+ *
+ */
+public class RenderCache {
+
+    /**
+     * How many frames in a row the content can change before the cache is bypassed
+     */
+    private static final int MAX_CONSECUTIVE_CHANGES = 4;
+
+    private Framebuffer framebuffer;
+    private boolean valid = false;
+    private int consecutiveChanges = 0;
+
+    /**
+     * Draws the given content, either from the cache or by rendering it again.
+     *
+     * @param x         - the x position of the cached rectangle on the screen
+     * @param y         - the y position of the cached rectangle on the screen
+     * @param width     - the width of the cached rectangle
+     * @param height    - the height of the cached rectangle
+     * @param changed   - whether the content has changed since it was last drawn
+     * @param renderer  - renders the content
+     */
+    public void draw(float x, float y, float width, float height, boolean changed, Runnable renderer) {
+        if(!OpenGlHelper.isFramebufferEnabled()) {
+            renderer.run();
+            return;
+        }
+        if(changed) {
+            this.valid = false;
+            this.consecutiveChanges++;
+        } else {
+            this.consecutiveChanges = 0;
+        }
+        GameContext context = SmyLibGui.getGameContext();
+        int nativeWidth = context.getNativeWindowWidth();
+        int nativeHeight = context.getNativeWindowHeight();
+        if(this.framebuffer != null && (this.framebuffer.framebufferWidth != nativeWidth || this.framebuffer.framebufferHeight != nativeHeight)) {
+            this.delete();
+        }
+        if(!this.valid) {
+            if(this.consecutiveChanges > MAX_CONSECUTIVE_CHANGES) {
+                renderer.run();
+                return;
+            }
+            this.render(x, y, width, height, nativeWidth, nativeHeight, renderer);
+        }
+        this.blit(x, y, width, height, context.getScaleFactor());
+    }
+
+    /**
+     * Marks the cached content as outdated, it will be rendered again the next time it is drawn.
+     */
+    public void invalidate() {
+        this.valid = false;
+    }
+
+    /**
+     * Frees the framebuffer. It will be created again if the cache is used again.
+     */
+    public void delete() {
+        if(this.framebuffer != null) {
+            this.framebuffer.deleteFramebuffer();
+            this.framebuffer = null;
+        }
+        this.valid = false;
+    }
+
+    private void render(float x, float y, float width, float height, int nativeWidth, int nativeHeight, Runnable renderer) {
+        if(this.framebuffer == null) {
+            this.framebuffer = new Framebuffer(nativeWidth, nativeHeight, true);
+            this.framebuffer.setFramebufferColor(0f, 0f, 0f, 0f);
+        }
+        // Ignore the parent scissor zone so the whole rectangle is cached, it still applies when copying back to the screen
+        Scissor.push();
+        Scissor.scissor(x, y, width, height);
+        Scissor.setScissorState(true);
+        this.framebuffer.framebufferClear();
+        this.framebuffer.bindFramebuffer(true);
+        renderer.run();
+        Minecraft.getMinecraft().getFramebuffer().bindFramebuffer(true);
+        Scissor.pop();
+        this.valid = true;
+    }
+
+    private void blit(float x, float y, float width, float height, double scale) {
+        Framebuffer framebuffer = this.framebuffer;
+        double textureWidth = framebuffer.framebufferTextureWidth;
+        double textureHeight = framebuffer.framebufferTextureHeight;
+        double minU = x * scale / textureWidth;
+        double maxU = (x + width) * scale / textureWidth;
+        double maxV = (framebuffer.framebufferHeight - y * scale) / textureHeight; // Textures are upside down
+        double minV = (framebuffer.framebufferHeight - (y + height) * scale) / textureHeight;
+        GlStateManager.enableTexture2D();
+        GlStateManager.disableAlpha();
+        GlStateManager.enableBlend();
+        GlStateManager.tryBlendFuncSeparate(GlStateManager.SourceFactor.ONE, GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA, GlStateManager.SourceFactor.ONE, GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA);
+        Color.WHITE.applyGL();
+        framebuffer.bindFramebufferTexture();
+        Tessellator tessellator = Tessellator.getInstance();
+        BufferBuilder builder = tessellator.getBuffer();
+        builder.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX);
+        builder.pos(x, y + height, 0d).tex(minU, minV).endVertex();
+        builder.pos(x + width, y + height, 0d).tex(maxU, minV).endVertex();
+        builder.pos(x + width, y, 0d).tex(maxU, maxV).endVertex();
+        builder.pos(x, y, 0d).tex(minU, maxV).endVertex();
+        tessellator.draw();
+        framebuffer.unbindFramebufferTexture();
+        GlStateManager.blendFunc(GlStateManager.SourceFactor.SRC_ALPHA, GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA);
+        GlStateManager.disableBlend();
+    }
+
+}
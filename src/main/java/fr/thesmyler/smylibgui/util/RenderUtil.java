@@ -164,4 +164,38 @@ public final class RenderUtil {
         drawClosedStrokeLine(0d, color, size, points);
     }
 
+    /**
+     * Draws independent line segments in a single draw call.
+     *
+     * @param z             the z level to draw at
+     * @param color         the color of the lines
+     * @param size          the width of the lines
+     * @param points        x and y coordinates of the segments' ends, two consecutive points make a segment
+     * @param pointCount    how many points to read from the array
+     */
+    public static void drawLines(double z, Color color, float size, double[] points, int pointCount) {
+        PValidation.checkArg(pointCount % 2 == 0, "An even number of points is required");
+        if(pointCount == 0) return;
+        GL11.glLineWidth(size * getGameContext().getScaleFactor());
+        GlStateManager.enableAlpha();
+        GlStateManager.enableBlend();
+        GlStateManager.disableTexture2D();
+        GlStateManager.tryBlendFuncSeparate(GlStateManager.SourceFactor.SRC_ALPHA, GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA, GlStateManager.SourceFactor.ONE, GlStateManager.DestFactor.ZERO);
+        color.applyGL();
+        Tessellator tessellator = Tessellator.getInstance();
+        BufferBuilder builder = tessellator.getBuffer();
+        builder.begin(GL11.GL_LINES, DefaultVertexFormats.POSITION);
+        for(int i=0; i<pointCount*2; i+=2) {
+            builder.pos(points[i], points[i+1], z).endVertex();
+        }
+        tessellator.draw();
+        GlStateManager.disableAlpha();
+        GlStateManager.disableBlend();
+        GlStateManager.enableTexture2D();
+    }
+
+    public static void drawLines(Color color, float size, double[] points, int pointCount) {
+        drawLines(0d, color, size, points, pointCount);
+    }
+
 }
@@ -55,6 +55,20 @@ public interface IWidget {
      */
     void draw(float x, float y, float mouseX, float mouseY, boolean hovered, boolean focused, @Nullable WidgetContainer parent);
 
+    /**
+     * Containers which cache their rendering only draw their widgets again when one of them needs it.
+     * Containers already know when a widget moves, is resized, gets hovered or focused, or when the user interacts with them,
+     * so this only has to account for changes the container cannot see, like a different text or an animation.
+     * Widgets which do not keep track of that should keep the default implementation, which always returns true.
+     *
+     * @see WidgetContainer#setRenderCaching(boolean)
+     *
+     * @return whether this widget would look any different if it were drawn again
+     */
+    default boolean needsRedraw() {
+        return true;
+    }
+
     /**
      * If this returns false, this widget will not be rendered and or notified of user actions
      * 
@@ -19,6 +19,11 @@ public class WarningWidget extends AbstractSolidWidget {
         RenderUtil.drawModalRectWithCustomSizedTexture(x, y, 15, 54, this.width, this.height, 256, 256);
     }
 
+    @Override
+    public boolean needsRedraw() {
+        return false;
+    }
+
     public WarningWidget setPosition(float x, float y) {
         this.x = x;
         this.y = y;
@@ -29,6 +29,7 @@ public class TextWidget implements IWidget {
     protected Font font;
     protected ITextComponent hovered;
     protected TextAlignment alignment;
+    protected boolean changed = true;
 
     public TextWidget(float x, float y, int z, float maxWidth, ITextComponent component, TextAlignment alignment, Color baseColor, boolean shadow, Font font) {
         this.anchorX = x;
@@ -73,6 +74,7 @@ public class TextWidget implements IWidget {
 
     @Override
     public void draw(float x, float y, float mouseX, float mouseY, boolean hovered, boolean focused, WidgetContainer parent) {
+        this.changed = false;
         GlStateManager.enableAlpha();
         GlStateManager.enableBlend();
         float w = this.getWidth();
@@ -100,6 +102,7 @@ public class TextWidget implements IWidget {
     }
 
     protected void updateCoords() {
+        this.changed = true;
         this.lines = this.font.splitText(this.component, this.maxWidth, true, false).toArray(new ITextComponent[] {});
         this.height = this.lines.length * (this.font.height() + this.padding) + this.padding ;
         float w = 0;
@@ -229,6 +232,7 @@ public class TextWidget implements IWidget {
 
     public TextWidget setBaseColor(Color color) {
         this.baseColor = color;
+        this.changed = true;
         return this;
     }
 
@@ -238,6 +242,7 @@ public class TextWidget implements IWidget {
 
     public TextWidget setShadow(boolean shadow) {
         this.shadow = shadow;
+        this.changed = true;
         return this;
     }
 
@@ -251,6 +256,11 @@ public class TextWidget implements IWidget {
         return this;
     }
 
+    @Override
+    public boolean needsRedraw() {
+        return this.changed;
+    }
+
     @Override
     public long getTooltipDelay() {
         return 0;
@@ -272,6 +282,7 @@ public class TextWidget implements IWidget {
 
     public TextWidget setBackgroundColor(Color color) {
         this.backgroundColor = color;
+        this.changed = true;
         return this;
     }
 
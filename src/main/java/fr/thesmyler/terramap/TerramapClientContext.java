@@ -1,6 +1,8 @@
 package fr.thesmyler.terramap;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -20,16 +22,28 @@ import fr.thesmyler.terramap.gui.screens.TerramapScreen;
 import fr.thesmyler.terramap.input.KeyBindings;
 import fr.thesmyler.terramap.maps.raster.RasterTiledMap;
 import fr.thesmyler.terramap.maps.raster.MapStylesLibrary;
+import fr.thesmyler.terramap.maps.raster.TileDiskCache;
 import fr.thesmyler.terramap.maps.raster.TiledMapProvider;
 import fr.thesmyler.terramap.maps.raster.imp.TerrainPreviewMap;
 import fr.thesmyler.terramap.maps.raster.imp.UrlTiledMap;
 import fr.thesmyler.terramap.network.TerramapNetworkManager;
 import fr.thesmyler.terramap.network.playersync.C2SPRegisterForUpdatesPacket;
+import fr.thesmyler.terramap.network.playersync.PlayerSyncDecoder;
 import fr.thesmyler.terramap.network.playersync.PlayerSyncStatus;
 import fr.thesmyler.terramap.network.playersync.TerramapLocalPlayer;
 import fr.thesmyler.terramap.network.playersync.TerramapPlayer;
 import fr.thesmyler.terramap.network.playersync.TerramapRemotePlayer;
+import fr.thesmyler.terramap.network.warps.AbstractWarpFilter;
+import fr.thesmyler.terramap.network.warps.BoundsWarpFilter;
+import fr.thesmyler.terramap.network.warps.C2SPRequestMultiWarpPacket;
+import fr.thesmyler.terramap.network.warps.C2SPRequestWarpChangesPacket;
+import fr.thesmyler.terramap.network.warps.SP2CMultiWarpPacket;
+import fr.thesmyler.terramap.network.warps.SP2CWarpChangesPacket;
+import fr.thesmyler.terramap.network.warps.WarpRequestStatus;
 import fr.thesmyler.terramap.util.TerramapUtil;
+import fr.thesmyler.terramap.util.collections.ChangeJournal;
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.warp.WarpCache;
 import net.buildtheearth.terraplusplus.EarthWorldType;
 import net.buildtheearth.terraplusplus.generator.EarthGeneratorSettings;
 import net.buildtheearth.terraplusplus.generator.TerrainPreview;
@@ -55,10 +69,21 @@ import javax.annotation.Nonnull;
 public class TerramapClientContext {
 
     private static TerramapClientContext instance;
-
+    private static TileDiskCache tileDiskCache;
+    private static final int WARP_CACHE_CAPACITY = 1024;
+    private static final WarpCache warpCache = new WarpCache(WARP_CACHE_CAPACITY);
+
+    private static final long VIEWPORT_UPDATE_INTERVAL = 1000;
+    private static final int CHANGE_JOURNAL_CAPACITY = 1024;
+    // Warps are only requested when the map shows at most this many warp cache tiles
+    private static final int MAX_WARP_TILE_REQUESTS = 64;
+    private static final long WARP_REQUEST_TIMEOUT = 10000;
     private static final GeographicProjection TERRAIN_PREVIEW_PROJECTION = new WebMercatorProjection(TerrainPreviewMap.BASE_ZOOM_LEVEL);
 
     private final Map<UUID, TerramapRemotePlayer> remotePlayers = new HashMap<>();
+    private final PlayerSyncDecoder playerSyncDecoder = new PlayerSyncDecoder();
+    private final ChangeJournal<Entity> entityChanges = new ChangeJournal<>(CHANGE_JOURNAL_CAPACITY);
+    private final ChangeJournal<UUID> playerChanges = new ChangeJournal<>(CHANGE_JOURNAL_CAPACITY);
     private PlayerSyncStatus serverSyncPlayers = PlayerSyncStatus.DISABLED;
     private PlayerSyncStatus serverSyncSpectators = PlayerSyncStatus.DISABLED;
     private PlayerSyncStatus proxySyncPlayers = PlayerSyncStatus.DISABLED;
@@ -68,6 +93,12 @@ public class TerramapClientContext {
     private GeographicProjection projection = null;
     private TerrainPreview terrainPreview = null;
     private boolean isRegisteredForUpdates = false;
+    private GeoBounds mapViewport = null;
+    private double mapViewportZoom = 0d;
+    private boolean mapTracking = false;
+    private boolean mapViewportSent = false;
+    private long lastViewportUpdate = 0;
+    private int outOfViewPlayerCount = 0;
     private String tpCommand = null;
     private final Map<String, RasterTiledMap> serverMaps = new HashMap<>();
     private final Map<String, RasterTiledMap> proxyMaps = new HashMap<>();
@@ -81,6 +112,10 @@ public class TerramapClientContext {
     private boolean proxyForceGlobalSettings = false;
     private UUID worldUUID = null;
     private UUID proxyUUID = null;
+    private final Map<Long, PendingWarpRequest> warpRequests = new HashMap<>();
+    private final Map<Long, PendingWarpRequest> warpRequestsByTile = new HashMap<>(); // Last request for each tile, see WarpCache#getTileKey
+    private long nextWarpRequestId = 1; // 0 is the id of the changes the server sends on its own
+    private boolean subscribedToWarpChanges = false;
 
     private SavedClientState state;
 
@@ -117,7 +152,17 @@ public class TerramapClientContext {
     }
 
     public boolean hasPlayer(UUID uuid) {
-        return this.remotePlayers.containsKey(uuid) || this.getLocalPlayersMap().containsKey(uuid);
+        return this.remotePlayers.containsKey(uuid) || this.getLocalPlayer(uuid) != null;
+    }
+
+    public TerramapLocalPlayer getLocalPlayer(UUID uuid) {
+        WorldClient world = Minecraft.getMinecraft().world;
+        EntityPlayer player = world != null ? world.getPlayerEntityByUUID(uuid): null;
+        return player != null ? new TerramapLocalPlayer(player): null;
+    }
+
+    public TerramapRemotePlayer getRemotePlayer(UUID uuid) {
+        return this.remotePlayers.get(uuid);
     }
 
     public Map<UUID, TerramapPlayer> getLocalPlayersMap() {
@@ -179,15 +224,56 @@ public class TerramapClientContext {
                 savedPlayer.setGamemode(player.getGamemode());
             } else toAdd.add(player);
         }
-        for(UUID uid: toRemove) this.remotePlayers.remove(uid);
-        for(TerramapRemotePlayer sp: toAdd) this.remotePlayers.put(sp.getUUID(), sp);
+        for(UUID uid: toRemove) {
+            this.remotePlayers.remove(uid);
+            this.playerChanges.removed(uid);
+        }
+        for(TerramapRemotePlayer sp: toAdd) {
+            this.remotePlayers.put(sp.getUUID(), sp);
+            this.playerChanges.added(sp.getUUID());
+        }
     }
 
+    public PlayerSyncDecoder getPlayerSyncDecoder() {
+        return this.playerSyncDecoder;
+    }
 
     public List<Entity> getEntities() {
         return Minecraft.getMinecraft().world.loadedEntityList;
     }
 
+    /**
+     * @return the entities that joined or left the client world recently
+     */
+    public ChangeJournal<Entity> getEntityChanges() {
+        return this.entityChanges;
+    }
+
+    /**
+     * @return the UUIDs of the players that were added to or removed from this context's players recently, local or remote
+     */
+    public ChangeJournal<UUID> getPlayerChanges() {
+        return this.playerChanges;
+    }
+
+    public void onEntityAdded(Entity entity) {
+        this.entityChanges.added(entity);
+        if(entity instanceof EntityPlayer) this.playerChanges.added(entity.getUniqueID());
+    }
+
+    public void onEntityRemoved(Entity entity) {
+        this.entityChanges.removed(entity);
+        if(entity instanceof EntityPlayer) this.playerChanges.removed(entity.getUniqueID());
+    }
+
+    /**
+     * Called when a new client world is loaded, the entities of the previous one are gone.
+     */
+    public void onWorldLoaded() {
+        this.entityChanges.clear();
+        this.playerChanges.clear();
+    }
+
     public void addServerMapStyle(UrlTiledMap map) {
         this.serverMaps.put(map.getId(), map);
         HudScreenHandler.updateMinimap();
@@ -201,6 +287,8 @@ public class TerramapClientContext {
     public void resetWorld() {
         this.setGeneratorSettings(null);
         this.serverVersion = null;
+        this.playerSyncDecoder.reset();
+        this.outOfViewPlayerCount = 0;
         this.serverMaps.clear();
         HudScreenHandler.updateMinimap();
     }
@@ -227,7 +315,138 @@ public class TerramapClientContext {
 
     public void registerForUpdates(boolean yesNo) {
         this.isRegisteredForUpdates = yesNo;
-        if(this.arePlayersSynchronized()) TerramapNetworkManager.CHANNEL_MAPSYNC.sendToServer(new C2SPRegisterForUpdatesPacket(this.isRegisteredForUpdates));
+        this.mapViewportSent = true;
+        if(this.arePlayersSynchronized()) TerramapNetworkManager.CHANNEL_MAPSYNC.sendToServer(new C2SPRegisterForUpdatesPacket(this.isRegisteredForUpdates, this.mapViewport, this.mapViewportZoom, this.mapTracking));
+    }
+
+    /**
+     * Lets the server know which area the map is showing, so it only synchronizes the players which are around there.
+     * The server is updated at most once every {@link #VIEWPORT_UPDATE_INTERVAL} milliseconds.
+     * 
+     * @param viewport - the area visible on the map
+     * @param zoom - the map's zoom level
+     * @param tracking - whether the map is following a remote marker, in which case the server will synchronize players more often
+     */
+    public void updateMapViewport(GeoBounds viewport, double zoom, boolean tracking) {
+        if(!viewport.equals(this.mapViewport) || zoom != this.mapViewportZoom || tracking != this.mapTracking) {
+            this.mapViewport = viewport;
+            this.mapViewportZoom = zoom;
+            this.mapTracking = tracking;
+            this.mapViewportSent = false;
+        }
+        long ctime = System.currentTimeMillis();
+        if(!this.mapViewportSent && this.isRegisteredForUpdates && ctime - this.lastViewportUpdate > VIEWPORT_UPDATE_INTERVAL) {
+            this.lastViewportUpdate = ctime;
+            this.registerForUpdates(true);
+        }
+    }
+
+    /**
+     * Requests the warps of the area which are not cached yet.
+     * Nothing is requested if the area covers more than {@link #MAX_WARP_TILE_REQUESTS} tiles of the warp cache.
+     *
+     * @param area  - the area to get the warps of
+     * @param keys  - the properties to request, the warps cached by the {@link #getWarpCache() warp cache} only have those
+     */
+    public void requestWarps(GeoBounds area, String... keys) {
+        if(!this.canCacheWarps()) return;
+        long ctime = System.currentTimeMillis();
+        this.warpRequests.values().removeIf(r -> ctime - r.time > WARP_REQUEST_TIMEOUT);
+        this.warpRequestsByTile.values().removeIf(r -> ctime - r.time > WARP_REQUEST_TIMEOUT);
+        WarpCache.forEachTile(area, MAX_WARP_TILE_REQUESTS, (x, y) -> {
+            if(!warpCache.isComplete(this.worldUUID, x, y) && !this.isWarpTileRequested(x, y)) this.requestWarpTile(x, y, "", keys);
+        });
+    }
+
+    /**
+     * Asks the server which warps changed since the revision the cache is up to date with,
+     * and subscribes to the changes the server will send as they happen.
+     */
+    public void revalidateWarps() {
+        if(!this.canCacheWarps()) return;
+        long revision = warpCache.getRevision(this.worldUUID);
+        if(revision == WarpCache.NO_REVISION) return;
+        this.subscribedToWarpChanges = true;
+        TerramapNetworkManager.CHANNEL_TERRAMAP.sendToServer(new C2SPRequestWarpChangesPacket(this.nextWarpRequestId++, revision));
+    }
+
+    public void onWarpsReceived(SP2CMultiWarpPacket pkt) {
+        PendingWarpRequest request = this.warpRequests.remove(pkt.getRequestId());
+        if(request == null) return;
+        this.warpRequestsByTile.remove(WarpCache.getTileKey(request.x, request.y), request);
+        if(!request.world.equals(this.worldUUID)) return;
+        if(pkt.getStatus().isError()) {
+            TerramapMod.logger.debug("Failed to get the warps of tile {} {}: {}", request.x, request.y, pkt.getStatus());
+            return;
+        }
+        boolean complete = pkt.getStatus() != WarpRequestStatus.MULTIPART;
+        boolean first = request.cursor.isEmpty();
+        if(!warpCache.addWarps(request.world, request.x, request.y, Arrays.asList(pkt.getWarps()), pkt.getRevision(), first, complete)) {
+            this.requestWarpTile(request.x, request.y, "", request.keys);
+        } else if(!complete) {
+            this.requestWarpTile(request.x, request.y, pkt.getCursor(), request.keys);
+        }
+        if(!this.subscribedToWarpChanges) this.revalidateWarps();
+    }
+
+    public void onWarpChanges(SP2CWarpChangesPacket pkt) {
+        if(pkt.getStatus().isError() || this.worldUUID == null) return;
+        long revision = warpCache.getRevision(this.worldUUID);
+        if(revision == WarpCache.NO_REVISION) return;
+        if(pkt.isReset()) {
+            TerramapMod.logger.debug("Too many warps changed, forgetting all cached warps");
+            warpCache.reset(this.worldUUID);
+            this.warpRequests.clear();
+            this.warpRequestsByTile.clear();
+        } else {
+            warpCache.applyChanges(this.worldUUID, pkt.getSince(), pkt.getRevision(), Arrays.asList(pkt.getChanged()), Arrays.asList(pkt.getRemoved()));
+            // We missed some changes
+            if(pkt.getSince() > revision) this.revalidateWarps();
+        }
+    }
+
+    private boolean canCacheWarps() {
+        return this.serverHasWarpSupport
+                && this.worldUUID != null
+                && this.serverVersion != null
+                && this.serverVersion.isNewerOrSame(TerramapMod.OLDEST_WARP_CACHE_SERVER);
+    }
+
+    private boolean isWarpTileRequested(int x, int y) {
+        PendingWarpRequest request = this.warpRequestsByTile.get(WarpCache.getTileKey(x, y));
+        return request != null && request.world.equals(this.worldUUID);
+    }
+
+    private void requestWarpTile(int x, int y, String cursor, String[] keys) {
+        long id = this.nextWarpRequestId++;
+        PendingWarpRequest request = new PendingWarpRequest(this.worldUUID, x, y, cursor, keys);
+        this.warpRequests.put(id, request);
+        this.warpRequestsByTile.put(WarpCache.getTileKey(x, y), request);
+        AbstractWarpFilter[] filters = { new BoundsWarpFilter(WarpCache.getTileBounds(x, y)) };
+        TerramapNetworkManager.CHANNEL_TERRAMAP.sendToServer(new C2SPRequestMultiWarpPacket(id, filters, cursor, keys));
+    }
+
+    public GeoBounds getMapViewport() {
+        return this.mapViewport;
+    }
+
+    public double getMapViewportZoom() {
+        return this.mapViewportZoom;
+    }
+
+    public boolean isMapTracking() {
+        return this.mapTracking;
+    }
+
+    /**
+     * @return the number of players synchronized by the server but not sent because they are outside the map's viewport
+     */
+    public int getOutOfViewPlayerCount() {
+        return this.outOfViewPlayerCount;
+    }
+
+    public void setOutOfViewPlayerCount(int count) {
+        this.outOfViewPlayerCount = count;
     }
 
     public String getTpCommand() {
@@ -516,6 +735,27 @@ public class TerramapClientContext {
         return TerramapClientContext.instance;
     }
 
+    /**
+     * @return the disk cache decoded map tiles are saved to, which is shared by all contexts
+     */
+    public static TileDiskCache getTileDiskCache() {
+        long maxSize = TerramapConfig.CLIENT.tileDiskCacheSize * 1024L * 1024L;
+        if(TerramapClientContext.tileDiskCache == null) {
+            Path directory = SmyLibGui.getGameContext().getGameDirectory().resolve("terramap").resolve("tilecache");
+            TerramapClientContext.tileDiskCache = new TileDiskCache(directory, maxSize);
+        } else if(TerramapClientContext.tileDiskCache.getMaxSize() != maxSize) {
+            TerramapClientContext.tileDiskCache.setMaxSize(maxSize);
+        }
+        return TerramapClientContext.tileDiskCache;
+    }
+
+    /**
+     * @return the warps received from servers, which is shared by all contexts
+     */
+    public static WarpCache getWarpCache() {
+        return TerramapClientContext.warpCache;
+    }
+
     public static void resetContext() {
         TerramapMod.logger.info("Reseting client context");
         TiledMapProvider.SERVER.setLastError(null);
@@ -523,4 +763,22 @@ public class TerramapClientContext {
         TerramapClientContext.instance = new TerramapClientContext();
     }
 
+    private static class PendingWarpRequest {
+
+        final UUID world;
+        final int x, y;
+        final String cursor;
+        final String[] keys;
+        final long time = System.currentTimeMillis();
+
+        PendingWarpRequest(UUID world, int x, int y, String cursor, String[] keys) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.cursor = cursor;
+            this.keys = keys;
+        }
+
+    }
+
 }
@@ -161,6 +161,12 @@ public class TerramapConfig {
         @Config.SlidingOption
         public int maxTileLoad = TILE_LOAD_DEFAULT;
 
+        @Config.Name("tile_disk_cache_size")
+        @Config.LangKey("terramap.config.tile_disk_cache_size")
+        @Config.Comment("Maximum size of the disk cache decoded map tiles are kept in between sessions, in megabytes. Set to 0 to disable the cache.")
+        @Config.RangeInt(min=0, max=16384)
+        public int tileDiskCacheSize = 512;
+
         @Config.Ignore public final int LOW_ZOOM_LEVEL_MIN = 0;
         @Config.Ignore public final int LOW_ZOOM_LEVEL_DEFAULT = 2;
         @Config.Ignore public final int LOW_ZOOM_LEVEL_MAX = 3;
@@ -234,7 +240,7 @@ public class TerramapConfig {
 
         @Config.Name("sync_interval")
         @Config.LangKey("terramap.config.sync_interval")
-        @Config.Comment("Synchronization time interval, int ticks, higher means better server perfomance but a map which lags behind a bit more")
+        @Config.Comment("Synchronization time interval, int ticks, higher means better server perfomance but a map which lags behind a bit more. Clients are synchronized up to twice as often when zoomed in or following a player, and less often when zoomed out or when nothing moves")
         @Config.RangeInt(min=1, max=100)
         @Config.SlidingOption
         public int syncInterval = 10;
@@ -34,6 +34,9 @@ public class TerramapMod {
     public static final TerramapVersion OLDEST_COMPATIBLE_CLIENT = new TerramapVersion(1, 0, 0, ReleaseType.BETA, 6, 0);
     public static final TerramapVersion OLDEST_COMPATIBLE_SERVER = new TerramapVersion(1, 0, 0, ReleaseType.BETA, 6, 0);
     public static final TerramapVersion OLDEST_TERRA121_TERRAMAP_VERSION = new TerramapVersion(1, 0, 0, ReleaseType.BETA, 6, 7);
+    public static final TerramapVersion OLDEST_DELTA_PLAYER_SYNC_CLIENT = new TerramapVersion(1, 0, 0, ReleaseType.BETA, 8, 9);
+    public static final TerramapVersion OLDEST_WARP_CACHE_SERVER = new TerramapVersion(1, 0, 0, ReleaseType.BETA, 8, 9);
+    public static final TerramapVersion OLDEST_WARP_KEY_TABLE_CLIENT = new TerramapVersion(1, 0, 0, ReleaseType.BETA, 8, 9);
 
     public static Logger logger;
 
@@ -7,6 +7,7 @@ import fr.thesmyler.terramap.gui.HudScreenHandler;
 import fr.thesmyler.terramap.gui.screens.LayerRenderingOffsetPopup;
 import fr.thesmyler.terramap.gui.widgets.map.MapLayer;
 import fr.thesmyler.terramap.input.KeyBindings;
+import fr.thesmyler.terramap.maps.raster.TileTextureUploader;
 import fr.thesmyler.terramap.util.geo.GeoServices;
 import net.buildtheearth.terraplusplus.projection.GeographicProjection;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
@@ -17,9 +18,11 @@ import net.minecraft.client.gui.GuiDownloadTerrain;
 import net.minecraftforge.client.event.GuiOpenEvent;
 import net.minecraftforge.client.event.GuiScreenEvent.InitGuiEvent;
 import net.minecraftforge.client.event.RenderGameOverlayEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.InputEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerChangedDimensionEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.common.network.FMLNetworkEvent.ClientConnectedToServerEvent;
 import net.minecraftforge.fml.common.network.FMLNetworkEvent.ClientDisconnectionFromServerEvent;
 import net.minecraftforge.fml.relauncher.Side;
@@ -60,6 +63,11 @@ public class ClientTerramapEventHandler {
         }
     }
 
+    @SubscribeEvent
+    public void onRenderTick(TickEvent.RenderTickEvent event) {
+        if(event.phase == TickEvent.Phase.START) TileTextureUploader.onFrameStart();
+    }
+
     @SubscribeEvent
     public void onKeyInput(InputEvent.KeyInputEvent event) {
         KeyBindings.checkBindings();
@@ -84,6 +92,13 @@ public class ClientTerramapEventHandler {
         }
     }
 
+    @SubscribeEvent
+    public void onWorldLoad(WorldEvent.Load event) {
+        if(!event.getWorld().isRemote) return;
+        TerramapClientContext.getContext().onWorldLoaded();
+        event.getWorld().addEventListener(new ClientWorldEventListener());
+    }
+
     @SubscribeEvent
     public void onHudInit(HudScreenInitEvent event) {
         HudScreenHandler.init(event.getHudScreen());
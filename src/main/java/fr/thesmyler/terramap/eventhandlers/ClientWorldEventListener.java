@@ -0,0 +1,67 @@
+package fr.thesmyler.terramap.eventhandlers;
+
+import javax.annotation.Nullable;
+
+import fr.thesmyler.terramap.TerramapClientContext;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.SoundCategory;
+import net.minecraft.util.SoundEvent;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorldEventListener;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Listens to entities joining and leaving the client world, so the maps do not have to look for changes in the whole entity list.
+ * Forge does not have an event for entities leaving the world in this version.
+ *
+ * @author SmylerMC
+ *
+ */
+@SideOnly(Side.CLIENT)
+public class ClientWorldEventListener implements IWorldEventListener {
+
+    @Override
+    public void onEntityAdded(Entity entity) {
+        TerramapClientContext.getContext().onEntityAdded(entity);
+    }
+
+    @Override
+    public void onEntityRemoved(Entity entity) {
+        TerramapClientContext.getContext().onEntityRemoved(entity);
+    }
+
+    @Override
+    public void notifyBlockUpdate(World world, BlockPos pos, IBlockState oldState, IBlockState newState, int flags) {}
+
+    @Override
+    public void notifyLightSet(BlockPos pos) {}
+
+    @Override
+    public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2) {}
+
+    @Override
+    public void playSoundToAllNearExcept(@Nullable EntityPlayer player, SoundEvent sound, SoundCategory category, double x, double y, double z, float volume, float pitch) {}
+
+    @Override
+    public void playRecord(SoundEvent sound, BlockPos pos) {}
+
+    @Override
+    public void spawnParticle(int particleID, boolean ignoreRange, double x, double y, double z, double xSpeed, double ySpeed, double zSpeed, int... parameters) {}
+
+    @Override
+    public void spawnParticle(int id, boolean ignoreRange, boolean minimiseParticleLevel, double x, double y, double z, double xSpeed, double ySpeed, double zSpeed, int... parameters) {}
+
+    @Override
+    public void broadcastSound(int soundID, BlockPos pos, int data) {}
+
+    @Override
+    public void playEvent(EntityPlayer player, int type, BlockPos pos, int data) {}
+
+    @Override
+    public void sendBlockBreakProgress(int breakerId, BlockPos pos, int progress) {}
+
+}
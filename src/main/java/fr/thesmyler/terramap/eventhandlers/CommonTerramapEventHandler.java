@@ -4,6 +4,7 @@ import fr.thesmyler.terramap.TerramapConfig;
 import fr.thesmyler.terramap.saving.server.TerramapServerPreferences;
 import fr.thesmyler.terramap.network.RemoteSynchronizer;
 import fr.thesmyler.terramap.util.TerramapUtil;
+import fr.thesmyler.terramap.warp.WarpStore;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.world.WorldServer;
 import net.minecraftforge.event.world.WorldEvent;
@@ -16,8 +17,6 @@ import net.minecraftforge.fml.common.gameevent.TickEvent.WorldTickEvent;
 
 public class CommonTerramapEventHandler {
 
-    private long tickCounter = 0;
-
     @SubscribeEvent
     public void onPlayerLoggedIn(PlayerLoggedInEvent event){
         if(!event.player.world.isRemote) {
@@ -29,13 +28,16 @@ public class CommonTerramapEventHandler {
 
     @SubscribeEvent
     public void onChangeDimension(PlayerChangedDimensionEvent event) {
-        if(!event.player.world.isRemote)
+        if(!event.player.world.isRemote) {
             RemoteSynchronizer.sendHelloToClient((EntityPlayerMP) event.player);
+            RemoteSynchronizer.resyncPlayersFor((EntityPlayerMP) event.player); // The client resets its world when it gets the hello
+        }
     }
 
     @SubscribeEvent
     public void onPlayerLoggedOut(PlayerLoggedOutEvent event) {
         RemoteSynchronizer.playersToUpdate.remove(event.player.getPersistentID());
+        if(event.player instanceof EntityPlayerMP) RemoteSynchronizer.forgetWarpsSentTo((EntityPlayerMP) event.player);
     }
 
 
@@ -43,10 +45,10 @@ public class CommonTerramapEventHandler {
     public void onWorldTick(WorldTickEvent event) {
         if(event.phase.equals(TickEvent.Phase.END) || event.world.isRemote) return;
         WorldServer world = event.world.getMinecraftServer().worlds[0]; //event.world has no entity or players
-        if(TerramapConfig.SERVER.synchronizePlayers && TerramapUtil.isServerEarthWorld(world) && this.tickCounter == 0) {
-            RemoteSynchronizer.syncPlayers(world);
+        if(TerramapConfig.SERVER.synchronizePlayers && TerramapUtil.isServerEarthWorld(world)) {
+            RemoteSynchronizer.syncPlayers(world); // Each client has its own synchronization interval
         }
-        this.tickCounter = (this.tickCounter+1) % TerramapConfig.SERVER.syncInterval;
+        RemoteSynchronizer.syncWarps(world);
     }
 
     @SubscribeEvent
@@ -54,6 +56,16 @@ public class CommonTerramapEventHandler {
         if(!event.getWorld().isRemote) {
             WorldServer world = ((WorldServer)event.getWorld());
             TerramapServerPreferences.loadWorldPreferences(world);
+            WarpStore.loadWorldStore(world);
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnloads(WorldEvent.Unload event) {
+        // Other dimensions share their preferences and warps with the overworld
+        if(!event.getWorld().isRemote && event.getWorld().provider.getDimension() == 0) {
+            TerramapServerPreferences.unloadWorldPreferences((WorldServer)event.getWorld());
+            WarpStore.unloadWorldStore((WorldServer)event.getWorld());
         }
     }
 
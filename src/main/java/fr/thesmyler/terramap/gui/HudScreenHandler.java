@@ -1,5 +1,6 @@
 package fr.thesmyler.terramap.gui;
 
+import fr.thesmyler.smylibgui.container.FlexibleWidgetContainer;
 import fr.thesmyler.smylibgui.container.WidgetContainer;
 import fr.thesmyler.smylibgui.screen.HudScreen;
 import fr.thesmyler.smylibgui.widgets.WarningWidget;
@@ -23,10 +24,23 @@ public abstract class HudScreenHandler {
     private static RibbonCompassWidget compass;
     private final static WarningWidget offsetWarning = new WarningWidget(0, 0, 50);
 
+    /*
+     * The minimap needs to be drawn again every frame, so the widgets which rarely change are kept in their own container,
+     * which caches its rendering. It is below the minimap so the minimap still gets the mouse,
+     * which is also why the offset warning, that is drawn over the minimap, is not in there.
+     */
+    private final static FlexibleWidgetContainer overlay = new FlexibleWidgetContainer(0, 0, 5, 0, 0);
+
+    static {
+        overlay.setRenderCaching(true);
+    }
+
     public static void init(WidgetContainer screen) {
 
         screen.removeAllWidgets();
         screen.cancelAllScheduled();
+        overlay.removeAllWidgets();
+        overlay.setSize(screen.getWidth(), screen.getHeight());
 
         if(TerramapClientContext.getContext().allowsMap(MapContext.MINIMAP) && !(Minecraft.getMinecraft().currentScreen instanceof HudConfigScreen)) {
             if (map == null) {
@@ -42,7 +56,8 @@ public abstract class HudScreenHandler {
             float compassWidth = TerramapConfig.CLIENT.compass.width * 0.01f * screen.getWidth();
 
             compass = new RibbonCompassWidget(compassX, compassY, 20, compassWidth);
-            screen.addWidget(compass);
+            overlay.addWidget(compass);
+            screen.addWidget(overlay);
             screen.scheduleBeforeEachUpdate(() -> {
                 GeographicProjection p = TerramapClientContext.getContext().getProjection();
                 if(p != null) {
@@ -58,7 +73,6 @@ public abstract class HudScreenHandler {
                 }
             });
             compass.setVisibility(TerramapConfig.CLIENT.compass.enable);
-            screen.addWidget(compass);
         }
     }
 
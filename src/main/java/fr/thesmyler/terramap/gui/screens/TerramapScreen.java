@@ -49,6 +49,7 @@ import fr.thesmyler.terramap.gui.widgets.markers.markers.entities.MainPlayerMark
 import fr.thesmyler.terramap.input.KeyBindings;
 import fr.thesmyler.terramap.maps.raster.RasterTiledMap;
 import fr.thesmyler.terramap.maps.raster.TiledMapProvider;
+import fr.thesmyler.terramap.maps.raster.TileAtlas;
 import net.buildtheearth.terraplusplus.projection.GeographicProjection;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.minecraft.client.Minecraft;
@@ -343,6 +344,8 @@ public class TerramapScreen extends Screen implements ITabCompleter {
         this.centerButton.setEnabled(!(controller.getTrackedMarker() instanceof MainPlayerMarker));
 
         this.compass.setAzimuth(controller.getRotation());
+        boolean tracksRemoteMarker = controller.isTracking() && !(controller.getTrackedMarker() instanceof MainPlayerMarker);
+        TerramapClientContext.getContext().updateMapViewport(this.map.getVisibleBounds(), controller.getZoom(), tracksRemoteMarker);
 
         GeoPointReadOnly mouseLocation = this.map.getMouseLocation();
         String formatScale = "-";
@@ -400,6 +403,7 @@ public class TerramapScreen extends Screen implements ITabCompleter {
             debugBuilder.append(String.format(locale, "\nServer: %s", srv.getServerVersion()));
             debugBuilder.append(String.format(locale, "\nSledgehammer: %s", srv.getSledgehammerVersion()));
             debugBuilder.append(String.format(locale, "\nProjection: %s", generationSettings != null ? generationSettings.projection() : null));
+            debugBuilder.append(String.format(locale, "\nPlayers outside view: %d", srv.getOutOfViewPlayerCount()));
             this.map.getRasterBackgroundLayer().ifPresent(layer -> {
                 RasterTiledMap backgroundStyle = layer.getTiledMap();
                 debugBuilder.append(String.format(locale, "\nMap id: %s", backgroundStyle.getId()));
@@ -407,6 +411,8 @@ public class TerramapScreen extends Screen implements ITabCompleter {
                 if (backgroundStyle instanceof CachingRasterTiledMap) {
                     CachingRasterTiledMap<?> cachingMap = (CachingRasterTiledMap<?>) backgroundStyle;
                     debugBuilder.append(String.format(locale, "\nLoaded tiles: %d/%d/%d", cachingMap.getBaseLoad(), cachingMap.getLoadedCount(), cachingMap.getMaxLoad()));
+                    debugBuilder.append(String.format(locale, "\nTile cache: %d hits/%d misses/%d evictions", cachingMap.getHitCount(), cachingMap.getMissCount(), cachingMap.getEvictionCount()));
+                    debugBuilder.append(String.format(locale, "\nAtlas: %d/%d slots in %d pages", cachingMap.getAtlasUsedSlotCount(), cachingMap.getAtlasPageCount() * TileAtlas.SLOTS_PER_PAGE, cachingMap.getAtlasPageCount()));
                     if (cachingMap instanceof UrlTiledMap) {
                         UrlTiledMap urlMap = (UrlTiledMap) cachingMap;
                         String[] urls = urlMap.getUrlPatterns();
@@ -25,6 +25,7 @@ public class RibbonCompassWidget implements IWidget {
     private final int z;
     private float width, height, textureWidth, indicatorWidth, indicatorHeight;
     private float azimuth = 0;
+    private float drawnAzimuth = Float.NaN;
     private boolean visibility = true;
 
     public RibbonCompassWidget(float x, float y, int z, float width) {
@@ -52,6 +53,7 @@ public class RibbonCompassWidget implements IWidget {
 
     @Override
     public void draw(float x, float y, float mouseX, float mouseY, boolean hovered, boolean focused, WidgetContainer parent) {
+        this.drawnAzimuth = this.azimuth;
         double blendBorder = 10; // How many pixels to fade to alpha=0 on the sides
         double leftU = (double)(this.azimuth - 180) / 360 + (double)(this.textureWidth - this.width) / this.textureWidth / 2;
         double leftCU = leftU + blendBorder/this.textureWidth;
@@ -99,6 +101,11 @@ public class RibbonCompassWidget implements IWidget {
 
     }
 
+    @Override
+    public boolean needsRedraw() {
+        return this.azimuth != this.drawnAzimuth;
+    }
+
     @Override
     public float getX() {
         return x;
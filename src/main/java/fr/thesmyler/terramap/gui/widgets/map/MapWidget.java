@@ -22,6 +22,7 @@ import fr.thesmyler.smylibgui.widgets.text.TextAlignment;
 import fr.thesmyler.smylibgui.widgets.text.TextWidget;
 import fr.thesmyler.terramap.MapContext;
 import fr.thesmyler.terramap.TerramapMod;
+import fr.thesmyler.terramap.gui.widgets.markers.MarkerClusterer;
 import fr.thesmyler.terramap.gui.widgets.markers.MarkerControllerManager;
 import fr.thesmyler.terramap.gui.widgets.markers.controllers.FeatureVisibilityController;
 import fr.thesmyler.terramap.gui.widgets.markers.controllers.MainPlayerMarkerController;
@@ -31,6 +32,7 @@ import fr.thesmyler.terramap.gui.widgets.markers.controllers.PlayerDirectionsVis
 import fr.thesmyler.terramap.gui.widgets.markers.controllers.PlayerNameVisibilityController;
 import fr.thesmyler.terramap.gui.widgets.markers.controllers.RightClickMarkerController;
 import fr.thesmyler.terramap.gui.widgets.markers.markers.Marker;
+import fr.thesmyler.terramap.gui.widgets.markers.markers.MarkerCluster;
 import fr.thesmyler.terramap.gui.widgets.markers.markers.entities.MainPlayerMarker;
 import fr.thesmyler.terramap.util.CopyrightHolder;
 import net.minecraft.profiler.Profiler;
@@ -69,7 +71,14 @@ public class MapWidget extends FlexibleWidgetContainer {
     private final MapController controller = new MapController(this);
     private final List<MapLayer> layers = new ArrayList<>();
     private final List<MapLayer> layersReadOnly = Collections.unmodifiableList(this.layers);
-    private final List<Marker> markers = new ArrayList<>();
+    private final Set<Marker> markers = new LinkedHashSet<>();
+    private final WebMercatorGridIndex<Marker> markerIndex = new WebMercatorGridIndex<>(MARKER_INDEX_ZOOM);
+    private final Set<Marker> shownMarkers = new HashSet<>();
+    private final Queue<Marker> markerRefreshQueue = new ArrayDeque<>();
+    private final MarkerClusterer markerClusterer = new MarkerClusterer(MARKER_CLUSTER_MIN_SIZE);
+    private final Set<MarkerCluster> shownClusters = new HashSet<>();
+    private final Vec2dMutable clusterPosition = new Vec2dMutable();
+    private boolean markerClustering = true;
     private final Map<String, MarkerController<?>> markerControllers = new LinkedHashMap<>();
     private RightClickMarkerController rcmMarkerController;
     private MainPlayerMarkerController mainPlayerMarkerController;
@@ -101,6 +110,13 @@ public class MapWidget extends FlexibleWidgetContainer {
 
     public static final double MIN_TILE_SCALING = 1e-3;
 
+    private static final int MARKER_INDEX_ZOOM = 18;
+    private static final float MARKER_CULLING_MARGIN = 64f;
+    private static final long MARKER_REFRESH_INTERVAL = 500;
+    private static final double MARKER_CLUSTERING_MAX_ZOOM = 16d;
+    private static final float MARKER_CLUSTER_CELL_SIZE = 24f;
+    private static final int MARKER_CLUSTER_MIN_SIZE = 3;
+
     /**
      * Constructs a new map widget.
      *
@@ -263,8 +279,10 @@ public class MapWidget extends FlexibleWidgetContainer {
      * @param marker a marker to add to this map
      */
     private void addMarker(Marker marker) {
-        this.markers.add(marker);
-        super.addWidget(marker);
+        if(!this.markers.add(marker)) return;
+        marker.getController().onMarkerAdded(marker);
+        this.markerIndex.put(marker, null);
+        this.markerRefreshQueue.offer(marker);
     }
 
     /**
@@ -274,8 +292,11 @@ public class MapWidget extends FlexibleWidgetContainer {
      * @param marker a marker to remove from this map
      */
     public void removeMarker(Marker marker) {
-        this.markers.remove(marker);
-        super.removeWidget(marker);
+        if(!this.markers.remove(marker)) return;
+        marker.getController().onMarkerRemoved(marker);
+        this.markerIndex.remove(marker);
+        this.markerClusterer.remove(marker);
+        if(this.shownMarkers.remove(marker)) super.removeWidget(marker);
     }
 
     @Override
@@ -295,7 +316,7 @@ public class MapWidget extends FlexibleWidgetContainer {
 
         if(this.controller.isTracking()) {
             Marker tracked = this.controller.getTrackedMarker();
-            if(this.widgets.contains(tracked)) {
+            if(this.markers.contains(tracked)) {
                 // Force update, so we don't lag behind, this one needs to be updated twice
                 tracked.onUpdate(mouseX - tracked.getX(), mouseY - tracked.getY(), this);
             } else {
@@ -318,7 +339,7 @@ public class MapWidget extends FlexibleWidgetContainer {
         }
 
         this.profiler.endStartSection("update-markers");
-        this.updateMarkers(mouseX, mouseY);
+        this.updateMarkers(mouseX, mouseY, dt);
 
         this.profiler.endStartSection("rest-of-screen");
 
@@ -347,28 +368,13 @@ public class MapWidget extends FlexibleWidgetContainer {
         throw new UnsupportedOperationException();
     }
 
-    private void updateMarkers(float mouseX, float mouseY) {
-        // Gather the existing classes
-        Map<Class<?>, List<Marker>> markers = new HashMap<>();
-        for(MarkerController<?> controller: this.markerControllers.values()) {
-            markers.put(controller.getMarkerType(), new ArrayList<>());
-        }
-
-        // Sort the markers by class
-        for(Marker marker: this.markers) {
-            for(Class<?> clazz: markers.keySet()) {
-                if(clazz.isInstance(marker)) {
-                    markers.get(clazz).add(marker);
-                }
-            }
-        }
-
-        // Update the markers
+    private void updateMarkers(float mouseX, float mouseY, long dt) {
+        Set<Marker> toUpdate = new LinkedHashSet<>();
         for(MarkerController<?> controller: this.markerControllers.values()) {
-            Marker[] existingMarkers = markers.get(controller.getMarkerType()).toArray(new Marker[] {});
-            Marker[] newMarkers = controller.getNewMarkers(existingMarkers, this);
+            Marker[] newMarkers = controller.getNewMarkers(this);
             for(Marker markerToAdd: newMarkers) {
                 this.addMarker(markerToAdd);
+                toUpdate.add(markerToAdd);
             }
             if(controller.getMarkerType().equals(MainPlayerMarker.class) && newMarkers.length > 0) {
                 this.mainPlayerMarker = (MainPlayerMarker) newMarkers[0];
@@ -388,8 +394,75 @@ public class MapWidget extends FlexibleWidgetContainer {
         // Update right click marker visibility
         if(this.rcmMarkerController != null) this.rcmMarkerController.setVisibility(this.rightClickMenu.isVisible(this));
 
-        for(Marker marker: this.markers) marker.onUpdate(mouseX, mouseY, this);
+        /*
+         * Only the markers around the viewport are updated and added as widgets.
+         * The others are refreshed a few at a time, so we notice when they move into view.
+         * Markers which are shown have already been updated along with the other widgets.
+         */
+        Set<Marker> candidates = this.markerIndex.query(this.getVisibleBounds(MARKER_CULLING_MARGIN), new HashSet<>());
+        int refreshCount = (int) Math.min(this.markerRefreshQueue.size(), Math.ceil((double) this.markerRefreshQueue.size() * dt / MARKER_REFRESH_INTERVAL));
+        for(int i = 0; i < refreshCount; i++) {
+            Marker marker = this.markerRefreshQueue.poll();
+            if(!this.markers.contains(marker)) continue;
+            this.markerRefreshQueue.offer(marker);
+            candidates.add(marker);
+        }
+        for(Marker marker: candidates) {
+            if(!this.shownMarkers.contains(marker)) toUpdate.add(marker);
+        }
+        for(Marker marker: toUpdate) marker.onUpdate(mouseX, mouseY, this);
+        toUpdate.addAll(this.shownMarkers);
+
+        /*
+         * Markers which are too close to each other are replaced with a cluster.
+         * Clusters are grouped by cells at the closest lower integer zoom level, so they do not change every time the map moves.
+         */
+        double zoom = this.controller.getZoom();
+        boolean clustering = this.markerClustering && zoom < MARKER_CLUSTERING_MAX_ZOOM;
+        double clusterZoom = Math.floor(zoom);
+        double clusterCellSize = MARKER_CLUSTER_CELL_SIZE * this.getTileScaling();
+        for(Marker marker: toUpdate) {
+            if(!this.markers.contains(marker)) continue;
+            GeoPoint<?> location = marker.getLocation();
+            this.markerIndex.put(marker, location);
+            boolean onScreen = location != null && this.isMarkerOnScreen(marker);
+            long cell = MarkerClusterer.NO_CELL;
+            if(onScreen && clustering && marker.getController().canBeClustered() && marker.isVisible(this)) {
+                WebMercatorUtil.fromGeo(this.clusterPosition, location, clusterZoom);
+                long x = (long) Math.floor(this.clusterPosition.x() / clusterCellSize);
+                long y = (long) Math.floor(this.clusterPosition.y() / clusterCellSize);
+                cell = x << 32 | y & 0xFFFFFFFFL;
+            }
+            this.markerClusterer.update(marker, cell);
+            this.setMarkerShown(marker, onScreen && !this.markerClusterer.isClustered(marker));
+        }
+
+        // Clustered markers are always on screen
+        for(MarkerCluster cluster: this.markerClusterer.pollChangedClusters()) {
+            boolean active = this.markerClusterer.isActive(cluster);
+            for(Marker marker: cluster.getMembers()) this.setMarkerShown(marker, !active);
+            if(active && this.shownClusters.add(cluster)) {
+                cluster.onUpdate(mouseX, mouseY, this);
+                super.addWidget(cluster);
+            } else if(!active && this.shownClusters.remove(cluster)) {
+                super.removeWidget(cluster);
+            }
+        }
+    }
+
+    private void setMarkerShown(Marker marker, boolean show) {
+        if(show && this.shownMarkers.add(marker)) {
+            super.addWidget(marker);
+        } else if(!show && this.shownMarkers.remove(marker)) {
+            super.removeWidget(marker);
+        }
+    }
 
+    private boolean isMarkerOnScreen(Marker marker) {
+        float x = marker.getX();
+        float y = marker.getY();
+        return x + marker.getWidth() >= -MARKER_CULLING_MARGIN && x <= this.getWidth() + MARKER_CULLING_MARGIN
+                && y + marker.getHeight() >= -MARKER_CULLING_MARGIN && y <= this.getHeight() + MARKER_CULLING_MARGIN;
     }
 
     public void updateCopyright() {
@@ -515,6 +588,51 @@ public class MapWidget extends FlexibleWidgetContainer {
         this.inputLayer.getLocationAtPositionOnWidget(destination, x, y);
     }
 
+    /**
+     * Computes the smallest {@link GeoBounds} containing everything visible on this map.
+     * If the map is zoomed out enough to show the entire width of the world, all longitudes are included.
+     *
+     * @return the area visible on this map
+     */
+    public GeoBounds getVisibleBounds() {
+        return this.getVisibleBounds(0f);
+    }
+
+    /**
+     * Computes the smallest {@link GeoBounds} containing everything visible on this map, and a margin around it.
+     * If the map is zoomed out enough to show the entire width of the world, all longitudes are included.
+     *
+     * @param margin a margin to add on each side of the map, in the map's coordinate system
+     *
+     * @return the area visible on this map, with its margin
+     */
+    public GeoBounds getVisibleBounds(float margin) {
+        double worldWidth = WebMercatorUtil.TILE_DIMENSIONS * Math.pow(2d, this.controller.getZoom()) / this.getTileScaling();
+        double width = this.getWidth() + 2d * margin;
+        double height = this.getHeight() + 2d * margin;
+        GeoPointMutable location = new GeoPointMutable();
+        this.getScreenLocation(location, width / 2d - margin, height / 2d - margin);
+        double centerLongitude = location.longitude();
+        double minDeltaLongitude = 0d, maxDeltaLongitude = 0d;
+        double minLatitude = location.latitude(), maxLatitude = location.latitude();
+        // The map may be rotated, but the extremes are always at the corners
+        for(int i = 0; i < 4; i++) {
+            this.getScreenLocation(location, (i & 1) * width - margin, (i >> 1) * height - margin);
+            double delta = GeoUtil.getLongitudeInRange(location.longitude() - centerLongitude);
+            minDeltaLongitude = Math.min(minDeltaLongitude, delta);
+            maxDeltaLongitude = Math.max(maxDeltaLongitude, delta);
+            minLatitude = Math.min(minLatitude, location.latitude());
+            maxLatitude = Math.max(maxLatitude, location.latitude());
+        }
+        double lowerLongitude = -180d, upperLongitude = 180d;
+        if(Math.sqrt(width*width + height*height) < worldWidth) {
+            // The corners are less than half a world away from the center, so the deltas are unambiguous
+            lowerLongitude = GeoUtil.getLongitudeInRange(centerLongitude + minDeltaLongitude);
+            upperLongitude = GeoUtil.getLongitudeInRange(centerLongitude + maxDeltaLongitude);
+        }
+        return new GeoBounds(new GeoPointImmutable(lowerLongitude, minLatitude), new GeoPointImmutable(upperLongitude, maxLatitude));
+    }
+
     /**
      * @return the X coordinate of this map's scale widget
      */
@@ -579,6 +697,22 @@ public class MapWidget extends FlexibleWidgetContainer {
         return this.context;
     }
 
+    /**
+     * @return whether markers which are too close to each other are grouped into clusters when the map is zoomed out
+     */
+    public boolean isMarkerClusteringEnabled() {
+        return this.markerClustering;
+    }
+
+    /**
+     * Sets whether markers which are too close to each other should be grouped into clusters when the map is zoomed out.
+     *
+     * @param yesNo whether to enable marker clustering
+     */
+    public void setMarkerClustering(boolean yesNo) {
+        this.markerClustering = yesNo;
+    }
+
     /**
      * @return the {@link MainPlayerMarker} marker for this client, or null if it does not exist
      */
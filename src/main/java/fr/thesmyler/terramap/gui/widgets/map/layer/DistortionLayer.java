@@ -1,71 +1,64 @@
 package fr.thesmyler.terramap.gui.widgets.map.layer;
 
+import java.util.Arrays;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
 import fr.thesmyler.smylibgui.SmyLibGui;
 import fr.thesmyler.smylibgui.container.FlexibleWidgetContainer;
 import fr.thesmyler.smylibgui.container.WidgetContainer;
-import fr.thesmyler.smylibgui.util.Color;
-import fr.thesmyler.smylibgui.util.RenderUtil;
+import fr.thesmyler.smylibgui.util.Font;
+import fr.thesmyler.smylibgui.widgets.sliders.OptionSliderWidget;
+import fr.thesmyler.smylibgui.widgets.text.TextWidget;
 import fr.thesmyler.terramap.TerramapClientContext;
-import fr.thesmyler.terramap.gui.widgets.map.MapLayer;
-import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
-import fr.thesmyler.terramap.util.geo.GeoPointMutable;
-import fr.thesmyler.terramap.util.geo.WebMercatorUtil;
-import fr.thesmyler.terramap.util.math.Vec2dMutable;
-import fr.thesmyler.terramap.util.math.Vec2dReadOnly;
+import fr.thesmyler.terramap.TerramapMod;
+import fr.thesmyler.terramap.maps.raster.RasterTiledMap;
+import fr.thesmyler.terramap.maps.raster.imp.DistortionMap;
 import net.buildtheearth.terraplusplus.projection.GeographicProjection;
-import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
-import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.util.text.TextComponentTranslation;
+
+import static fr.thesmyler.smylibgui.SmyLibGui.getDefaultFont;
 
 /**
  * Shows the area and angular distortion from the world's {@link GeographicProjection}.
  * <p>
  * A very interesting way to make a computer suffer.
- * 
+ * The distortion is rendered as a {@link DistortionMap}, so it is only computed once per tile, in the background.
+ *
  * @author SmylerMC
  *
  */
-public class DistortionLayer extends MapLayer {
+public class DistortionLayer extends RasterMapLayer {
+
+    private final DistortionMap map = new DistortionMap();
 
-    private final Vec2dMutable screenPositions = new Vec2dMutable();
-    private final GeoPointMutable renderedLocations = new GeoPointMutable();
-    private Vec2dReadOnly renderSpaceDimensions;
+    @Override
+    public void draw(float x, float y, float mouseX, float mouseY, boolean hovered, boolean focused, WidgetContainer parent) {
+        if(TerramapClientContext.getContext().getProjection() == null) return;
+        this.map.updateProjection();
+        super.draw(x, y, mouseX, mouseY, hovered, focused, parent);
+    }
 
-    protected void initialize() {
-        this.renderSpaceDimensions = this.getRenderSpaceDimensions();
+    @Override
+    public RasterTiledMap getTiledMap() {
+        return this.map;
     }
 
     @Override
-    public void draw(float x, float y, float mouseX, float mouseY, boolean hovered, boolean focused, WidgetContainer parent) {
-        MapWidget map = (MapWidget) parent;
-        GeographicProjection projection = TerramapClientContext.getContext().getProjection();
-        if(projection == null) return;
-        map.getProfiler().startSection("layer-distortion");
-        GlStateManager.pushMatrix();
-        this.applyRotationGl(x, y);
+    public JsonObject saveSettings() {
+        JsonObject json = new JsonObject();
+        json.add("cellSize", new JsonPrimitive(this.map.getCellSize()));
+        return json;
+    }
 
-        double maxX = this.renderSpaceDimensions.x();
-        double maxY = this.renderSpaceDimensions.y();
-        double res = 20d;
-        for(double dx = -1; dx < maxX; dx += res) {
-            for(double dy = -1; dy < maxY; dy += res) {
-                this.getLocationAtPositionInRenderSpace(this.renderedLocations, this.screenPositions.set(dx + res / 2, dy + res / 2));
-                if(!WebMercatorUtil.PROJECTION_BOUNDS.contains(this.renderedLocations)) continue;
-                Color color = Color.TRANSPARENT;
-                try {
-                    double[] distortion = projection.tissot(this.renderedLocations.longitude(), this.renderedLocations.latitude());
-                    float red = (float) Math.min(distortion[0] / 4f, 1f);
-                    float green = (float) Math.min(distortion[1] / 2/Math.PI, 1f);
-                    float alpha = Math.min(red + green, 1f);
-                    color = new Color(red, green, 0f, alpha);
-                } catch(OutOfProjectionBoundsException e) {
-                    color = color.withRed(0f).withGreen(0).withAlpha(.1f);
-                }
-                RenderUtil.drawRect(x + dx, y + dy, x + dx + res, y + dy + res, color);
-            }
+    @Override
+    public void loadSettings(JsonObject json) {
+        try {
+            this.map.setCellSize(json.get("cellSize").getAsInt());
+        } catch (NullPointerException | ClassCastException | IllegalStateException | IllegalArgumentException e) {
+            TerramapMod.logger.warn("Failed to load distortion layer settings: {}", json);
         }
-        
-        GlStateManager.popMatrix();
-        map.getProfiler().endSection();
     }
 
     @Override
@@ -80,12 +73,24 @@ public class DistortionLayer extends MapLayer {
 
     @Override
     public boolean isConfigurable() {
-        return false;
+        return true;
     }
 
     @Override
     public FlexibleWidgetContainer createConfigurationContainer() {
-        return null;
+        float width = 200f;
+        float interline = 9f;
+        Font font = getDefaultFont();
+        FlexibleWidgetContainer container = new FlexibleWidgetContainer(0, 0, 0, width, 0);
+        TextWidget text = new TextWidget(1f, 3f, 10, new TextComponentTranslation("terramap.mapwidget.layers.distortion.cell_size"), font);
+        container.addWidget(text);
+        Integer[] sizes = Arrays.stream(DistortionMap.CELL_SIZES).boxed().toArray(Integer[]::new);
+        int current = Math.max(0, Arrays.asList(sizes).indexOf(this.map.getCellSize()));
+        float y = text.getY() + text.getHeight() + interline;
+        OptionSliderWidget<Integer> slider = new OptionSliderWidget<>(1f, y, 0, width - 2f, 20f, sizes, current, this.map::setCellSize);
+        container.addWidget(slider);
+        container.setHeight(y + slider.getHeight() + interline);
+        return container;
     }
 
 }
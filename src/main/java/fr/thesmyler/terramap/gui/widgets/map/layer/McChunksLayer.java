@@ -1,9 +1,5 @@
 package fr.thesmyler.terramap.gui.widgets.map.layer;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 import java.util.function.Consumer;
 
 import com.google.gson.JsonObject;
@@ -21,11 +17,12 @@ import fr.thesmyler.terramap.TerramapClientContext;
 import fr.thesmyler.terramap.TerramapMod;
 import fr.thesmyler.terramap.gui.widgets.map.MapLayer;
 import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
-import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
 import fr.thesmyler.terramap.util.geo.GeoPointMutable;
 import fr.thesmyler.terramap.util.geo.GeoPointReadOnly;
+import fr.thesmyler.terramap.util.geo.ProjectionCache;
+import fr.thesmyler.terramap.util.geo.ProjectionWorker;
 import fr.thesmyler.terramap.util.geo.WebMercatorUtil;
-import fr.thesmyler.terramap.util.math.Vec2d;
+import fr.thesmyler.terramap.util.math.Mat2d;
 import fr.thesmyler.terramap.util.math.Vec2dMutable;
 import fr.thesmyler.terramap.util.math.Vec2dReadOnly;
 import net.buildtheearth.terraplusplus.projection.GeographicProjection;
@@ -48,7 +45,7 @@ public class McChunksLayer extends MapLayer {
     
     public static final String ID = "mcchunks";
     
-    private final ProjectionCache cache = new ProjectionCache(4);
+    private final ProjectionCache cache = new ProjectionCache(null, 16384);
     private final Vec2dMutable mcCenter = new Vec2dMutable();
     private Vec2dReadOnly extendedDimensions;
     private GeoPointReadOnly geoCenter;
@@ -65,19 +62,17 @@ public class McChunksLayer extends MapLayer {
     private Color colorBlocks = Color.DARK_GRAY;
 
     // Used for calculations. Those aren't local fields so we don't create hundreds of objects every time we render
-    private final Vec2dMutable[] corners = {
-            new Vec2dMutable(),
-            new Vec2dMutable(),
-            new Vec2dMutable(),
-            new Vec2dMutable()
-    };
-    private final Vec2dMutable[] projectedCorners = {
-            new Vec2dMutable(),
-            new Vec2dMutable(),
-            new Vec2dMutable(),
-            new Vec2dMutable()
-    };
-    private final Vec2dMutable centerTile = new Vec2dMutable();
+    private double[] geoEdges = new double[0];
+    private double[] renderEdges = new double[0];
+    private final GeoPointMutable edgeLocation = new GeoPointMutable();
+    private final Vec2dMutable edgePosition = new Vec2dMutable();
+    private final int[] quadCorners = new int[4];
+    private final Vec2dMutable estimatedCorner = new Vec2dMutable();
+    private Mat2d mcToRenderApproximation;
+    private final GridLines[] gridLines = { new GridLines(), new GridLines(), new GridLines(), new GridLines() };
+    private GeographicProjection linesProjection;
+    private double linesUpperLeftX, linesUpperLeftY, linesZoom, linesTileScaling, linesWidth, linesHeight;
+    private float linesX, linesY;
     private final Vec2dMutable deltaCalculator = new Vec2dMutable();
     private final GeoPointMutable nearCenterLocation = new GeoPointMutable();
 
@@ -85,6 +80,7 @@ public class McChunksLayer extends MapLayer {
     protected void initialize() {
         this.extendedDimensions = this.getRenderSpaceDimensions();
         this.geoCenter = this.getMap().getController().getCenterLocation();
+        this.cache.setWorker(new ProjectionWorker(ProjectionWorker.TO_GEO));
         this.setAlpha(0.25f);
     }
 
@@ -140,7 +136,7 @@ public class McChunksLayer extends MapLayer {
         if(projection == null) return;
         map.getProfiler().startSection("layer-" + ID);
         
-        this.cache.projection = projection;
+        this.cache.setProjection(projection);
 
         boolean render2dr = false;
         boolean render3dr = false;
@@ -159,48 +155,108 @@ public class McChunksLayer extends MapLayer {
             if(d < renderThreshold / 2) render3dr = this.render3dr;
             if(d < renderThreshold / 16) renderChunks = this.renderChunks;
             if(d < renderThreshold / 128) renderBlocks = this.renderBlocks;
+            this.cache.setPriorityCenter(this.mcCenter.x, this.mcCenter.y);
         } catch(OutOfProjectionBoundsException silenced) {
             // The center is out of bounds, let's not render anything
             return;
         }
 
+        // Local linear approximation of the projection around the center,
+        // used to guess where points that are still being projected in the background will end up on screen
+        try {
+            this.deltaCalculator.set(this.extendedDimensions).downscale(2d).add(10d, 0d);
+            this.getLocationAtPositionInRenderSpace(this.nearCenterLocation, this.deltaCalculator);
+            double[] mcRight = projection.fromGeo(this.nearCenterLocation.longitude(), this.nearCenterLocation.latitude());
+            this.deltaCalculator.set(this.extendedDimensions).downscale(2d).add(0d, 10d);
+            this.getLocationAtPositionInRenderSpace(this.nearCenterLocation, this.deltaCalculator);
+            double[] mcDown = projection.fromGeo(this.nearCenterLocation.longitude(), this.nearCenterLocation.latitude());
+            double xx = (mcRight[0] - this.mcCenter.x) / 10d, xy = (mcDown[0] - this.mcCenter.x) / 10d;
+            double yx = (mcRight[1] - this.mcCenter.y) / 10d, yy = (mcDown[1] - this.mcCenter.y) / 10d;
+            double determinant = xx*yy - xy*yx;
+            this.mcToRenderApproximation = determinant != 0d ? new Mat2d(yy / determinant, -xy / determinant, -yx / determinant, xx / determinant): null;
+        } catch(OutOfProjectionBoundsException silenced) {
+            this.mcToRenderApproximation = null;
+        }
+
         GlStateManager.pushMatrix();
         this.applyRotationGl(x, y);
-        
 
+        // Grid lines only need to be projected again if the view has changed
+        Vec2dReadOnly upperLeft = this.getUpperLeftRenderCornerPositionInMercatorSpace();
+        double zoom = map.getController().getZoom();
+        double tileScaling = map.getTileScaling();
+        if(projection != this.linesProjection
+                || upperLeft.x() != this.linesUpperLeftX || upperLeft.y() != this.linesUpperLeftY
+                || zoom != this.linesZoom || tileScaling != this.linesTileScaling
+                || this.extendedDimensions.x() != this.linesWidth || this.extendedDimensions.y() != this.linesHeight
+                || x != this.linesX || y != this.linesY) {
+            for(GridLines lines: this.gridLines) lines.upToDate = false;
+            this.linesProjection = projection;
+            this.linesUpperLeftX = upperLeft.x();
+            this.linesUpperLeftY = upperLeft.y();
+            this.linesZoom = zoom;
+            this.linesTileScaling = tileScaling;
+            this.linesWidth = this.extendedDimensions.x();
+            this.linesHeight = this.extendedDimensions.y();
+            this.linesX = x;
+            this.linesY = y;
+        }
+
+        // Projections are computed in the background, lines have to be projected again when new ones are ready
+        if(this.cache.update() > 0) {
+            for(GridLines lines: this.gridLines) lines.upToDate = false;
+        }
+
+        ProjectionWorker worker = this.cache.getWorker();
+        worker.beginFrame();
+        boolean projected = false;
         float size = 1f;
         if(renderBlocks) {
-            this.renderGrid(x, y, 0, 1, this.colorBlocks.withAlpha(this.getAlpha()), size);
+            projected |= this.renderGrid(x, y, 0, 1, this.colorBlocks.withAlpha(this.getAlpha()), size);
             size += 1f;
         }
         if(renderChunks) {
-            this.renderGrid(x, y, 1, 16, this.colorChunks.withAlpha(this.getAlpha()), size);
+            projected |= this.renderGrid(x, y, 1, 16, this.colorChunks.withAlpha(this.getAlpha()), size);
             size += 1f;
         }
         if(render3dr) {
-            this.renderGrid(x, y, 2, 256, this.color3dr.withAlpha(this.getAlpha()), size);
+            projected |= this.renderGrid(x, y, 2, 256, this.color3dr.withAlpha(this.getAlpha()), size);
             size += 1f;
         }
         if(render2dr) {
-            this.renderGrid(x, y, 3, 512, this.color2dr.withAlpha(this.getAlpha()), size);
+            projected |= this.renderGrid(x, y, 3, 512, this.color2dr.withAlpha(this.getAlpha()), size);
         }
+        if(projected) worker.cancelStale(); // Forget about points that are not on screen anymore
 
-        this.cache.cycle();
         GlStateManager.popMatrix();
         map.getProfiler().endSection();
     }
-    
-    private void renderGrid(float x, float y, int discriminator, long tileSize, Color color, float lineWidth) {
+
+    /**
+     * Renders a grid level, projecting its lines again if they are not up-to-date.
+     *
+     * @return whether the lines had to be projected again
+     */
+    private boolean renderGrid(float x, float y, int discriminator, long tileSize, Color color, float lineWidth) {
+        GridLines lines = this.gridLines[discriminator];
+        boolean project = !lines.upToDate;
+        if(project) {
+            lines.pointCount = 0;
+            this.projectGrid(x, y, tileSize, lines);
+            lines.upToDate = true;
+        }
+        RenderUtil.drawLines(color, lineWidth, lines.points, lines.pointCount);
+        return project;
+    }
+
+    private void projectGrid(float x, float y, long tileSize, GridLines lines) {
         
         final int maxTiles = 100; // Maximum drawing iterations, for safety
 
-        this.centerTile.set(floorDiv((long) floor(this.mcCenter.x), tileSize), floorDiv((long)floor(this.mcCenter.y), tileSize));
+        long tileX = floorDiv((long) floor(this.mcCenter.x), tileSize) * tileSize;
+        long tileZ = floorDiv((long) floor(this.mcCenter.y), tileSize) * tileSize;
         int dX = 0;
         int dY = 0;
-        this.corners[0].set(this.centerTile).scale(tileSize);
-        this.corners[1].set(this.centerTile).add(0, 1).scale(tileSize);
-        this.corners[2].set(this.centerTile).add(1, 1).scale(tileSize);
-        this.corners[3].set(this.centerTile).add(1, 0).scale(tileSize);
         int direction = 1;
         int size = 1;
         int safety = 0;
@@ -211,13 +267,12 @@ public class McChunksLayer extends MapLayer {
         while((inTop || inBottom || inRight || inLeft) && safety++ < maxTiles) {
             
             boolean[] linesInlineIn = new boolean[4];
-            while(2*dX*direction < size) {
-                if((direction < 0 && inBottom) || (direction > 0 && inTop))
-                    this.renderTile(x, y, discriminator, color, lineWidth, linesInlineIn);
-                dX += direction;
-                long step = tileSize*direction;
-                for (Vec2dMutable corner : this.corners) corner.add(step, 0);
-            }
+            int count = 0;
+            while(2*(dX + count*direction)*direction < size) count++;
+            if((direction < 0 && inBottom) || (direction > 0 && inTop))
+                this.projectTiles(x, y, lines, linesInlineIn, tileX, tileZ, tileSize*direction, 0, count);
+            dX += count*direction;
+            tileX += count*direction*tileSize;
             
             if(!linesInlineIn[0]) inLeft = false;
             if(!linesInlineIn[1]) inRight = false;
@@ -225,13 +280,12 @@ public class McChunksLayer extends MapLayer {
             if(!linesInlineIn[3]) inBottom = false;
             linesInlineIn = new boolean[4];
 
-            while(2*dY*direction < size) {
-                if((direction < 0 && inLeft) || (direction > 0 && inRight))
-                    this.renderTile(x, y, discriminator, color, lineWidth, linesInlineIn);
-                dY += direction;
-                long step = tileSize*direction;
-                for (Vec2dMutable corner : this.corners) corner.add(0, step);
-            }
+            count = 0;
+            while(2*(dY + count*direction)*direction < size) count++;
+            if((direction < 0 && inLeft) || (direction > 0 && inRight))
+                this.projectTiles(x, y, lines, linesInlineIn, tileX, tileZ, 0, tileSize*direction, count);
+            dY += count*direction;
+            tileZ += count*direction*tileSize;
             
             if(!linesInlineIn[0]) inLeft = false;
             if(!linesInlineIn[1]) inRight = false;
@@ -243,79 +297,116 @@ public class McChunksLayer extends MapLayer {
         }
     }
 
-    private void renderTile(float x, float y, int discriminator, Color color, float lineWidth, boolean[] loopingConditions) {
-        try {
-            for(int i=0; i<this.projectedCorners.length; i++) {
-                this.cache.getRenderPos(this.projectedCorners[i], this.corners[i], discriminator);
-            }
-        } catch(OutOfProjectionBoundsException silenced) {
-            return; // Skip the tile
+    /**
+     * Projects a straight row or column of tiles, with a single bulk projection for each of its two edges.
+     * Tile k of the row has its origin corner at (originX + k*stepX, originZ + k*stepZ).
+     */
+    private void projectTiles(float x, float y, GridLines lines, boolean[] loopingConditions, long originX, long originZ, long stepX, long stepZ, int count) {
+        if(count <= 0) return;
+        long tileSize = Math.abs(stepX + stepZ);
+        int points = count + 1;
+        if(this.geoEdges.length < points * 4) {
+            this.geoEdges = new double[points * 4];
+            this.renderEdges = new double[points * 4];
         }
-        for(Vec2dMutable corner: this.projectedCorners) {
-            loopingConditions[0] = loopingConditions[0] || corner.x >= 0;
-            loopingConditions[1] = loopingConditions[1] || corner.x <= this.extendedDimensions.x();
-            loopingConditions[2] = loopingConditions[2] || corner.y >= 0;
-            loopingConditions[3] = loopingConditions[3] || corner.y <= this.extendedDimensions.y();
-        }
-        RenderUtil.drawClosedStrokeLine(color, lineWidth,
-                x + this.projectedCorners[0].x, y + this.projectedCorners[0].y,
-                x + this.projectedCorners[1].x, y + this.projectedCorners[1].y,
-                x + this.projectedCorners[2].x, y + this.projectedCorners[2].y,
-                x + this.projectedCorners[3].x, y + this.projectedCorners[3].y
-        );
-    }
-    
-    private class ProjectionCache {
-        
-        GeographicProjection projection;
-        
-        final Map<Vec2d<?>, GeoPointImmutable> mcToGeo = new HashMap<>();
-        final Set<Vec2d<?>> accessedInCycle = new HashSet<>();
-        
-        final int maxProjectionsPerCycle = 50;
-        int[] projectionsThisCycle;
-        
-        ProjectionCache(int diffCount) {
-            this.projectionsThisCycle = new int[diffCount];
-        }
-        
-        void getRenderPos(Vec2dMutable destination, Vec2d<?> mcPos, int discriminator) throws OutOfProjectionBoundsException {
-            if (!this.accessedInCycle.contains(mcPos)) this.accessedInCycle.add(mcPos.getImmutable());
-            
-            // Not really out of bounds, but we don't need to differentiate the two
-            if(this.projectionsThisCycle[discriminator] >= this.maxProjectionsPerCycle) throw OutOfProjectionBoundsException.get();
-            
-            GeoPointImmutable location;
-            
-            // Try getting a cached value
-            if(this.mcToGeo.containsKey(mcPos)) {
-                location = this.mcToGeo.get(mcPos);
-                if(location == null) throw OutOfProjectionBoundsException.get();
-            } else {
-                // Fallback to computing it
-                try {
-                    this.projectionsThisCycle[discriminator]++;
-                    location = new GeoPointImmutable(this.projection.toGeo(mcPos.x(), mcPos.y()));
-                    this.mcToGeo.put(mcPos.getImmutable(), location);
-                } catch(OutOfProjectionBoundsException e) {
-                    this.mcToGeo.put(mcPos.getImmutable(), null);
-                    throw e;
+
+        // Start from the leading edge of the first tile so that tile k is always between points k and k+1
+        long startX = originX + (stepX < 0 ? tileSize: 0);
+        long startZ = originZ + (stepZ < 0 ? tileSize: 0);
+        long otherX = stepX != 0 ? startX : startX + tileSize;
+        long otherZ = stepZ != 0 ? startZ : startZ + tileSize;
+        this.cache.toGeo(this.geoEdges, startX, startZ, stepX, stepZ, points);
+        System.arraycopy(this.geoEdges, 0, this.renderEdges, 0, points * 2);
+        this.cache.toGeo(this.geoEdges, otherX, otherZ, stepX, stepZ, points);
+        System.arraycopy(this.geoEdges, 0, this.renderEdges, points * 2, points * 2);
+        for(int i = 0; i < points * 2; i++) this.toRenderSpace(this.renderEdges, i * 2);
+
+        for(int k = 0; k < count; k++) {
+            int a0 = 2*k, a1 = 2*(k + 1), b0 = 2*(points + k), b1 = 2*(points + k + 1);
+            if(Double.isNaN(this.renderEdges[a0]) || Double.isNaN(this.renderEdges[a1])
+                    || Double.isNaN(this.renderEdges[b0]) || Double.isNaN(this.renderEdges[b1])) {
+                // Skip the tile, but keep spiraling out if it is only missing because it is still being projected
+                long cornerX = startX + k*stepX;
+                long cornerZ = startZ + k*stepZ;
+                if(this.cache.isPending(cornerX, cornerZ) || this.cache.isPending(cornerX + stepX, cornerZ + stepZ)
+                        || this.cache.isPending(otherX + k*stepX, otherZ + k*stepZ) || this.cache.isPending(otherX + (k + 1)*stepX, otherZ + (k + 1)*stepZ)) {
+                    this.estimateLoopingConditions(loopingConditions, cornerX, cornerZ);
                 }
+                continue;
+            }
+            int[] corners = this.quadCorners;
+            corners[0] = a0;
+            corners[1] = b0;
+            corners[2] = b1;
+            corners[3] = a1;
+            for(int corner: corners) {
+                double cornerX = this.renderEdges[corner];
+                double cornerY = this.renderEdges[corner + 1];
+                loopingConditions[0] = loopingConditions[0] || cornerX >= 0;
+                loopingConditions[1] = loopingConditions[1] || cornerX <= this.extendedDimensions.x();
+                loopingConditions[2] = loopingConditions[2] || cornerY >= 0;
+                loopingConditions[3] = loopingConditions[3] || cornerY <= this.extendedDimensions.y();
+            }
+            for(int i = 0; i < corners.length; i++) {
+                int start = corners[i];
+                int end = corners[(i + 1) % corners.length];
+                lines.add(x + this.renderEdges[start], y + this.renderEdges[start + 1]);
+                lines.add(x + this.renderEdges[end], y + this.renderEdges[end + 1]);
             }
-            
-            if(! WebMercatorUtil.PROJECTION_BOUNDS.contains(location)) throw OutOfProjectionBoundsException.get();
-            McChunksLayer.this.getLocationPositionInRenderSpace(destination, location);
         }
-        
-        void cycle() {
-            this.mcToGeo.keySet().retainAll(this.accessedInCycle);
-            this.accessedInCycle.clear();
-            this.projectionsThisCycle = new int[this.projectionsThisCycle.length];
+    }
+
+    private void estimateLoopingConditions(boolean[] loopingConditions, double blockX, double blockZ) {
+        if(this.mcToRenderApproximation == null) return;
+        this.estimatedCorner.set(blockX - this.mcCenter.x, blockZ - this.mcCenter.y)
+                .apply(this.mcToRenderApproximation)
+                .add(this.extendedDimensions.x() / 2, this.extendedDimensions.y() / 2);
+        loopingConditions[0] = loopingConditions[0] || this.estimatedCorner.x >= 0;
+        loopingConditions[1] = loopingConditions[1] || this.estimatedCorner.x <= this.extendedDimensions.x();
+        loopingConditions[2] = loopingConditions[2] || this.estimatedCorner.y >= 0;
+        loopingConditions[3] = loopingConditions[3] || this.estimatedCorner.y <= this.extendedDimensions.y();
+    }
+
+    /**
+     * Converts the geographic coordinates at the given index of an array to render space, in place.
+     * Locations outside of the map's bounds are replaced with NaN.
+     */
+    private void toRenderSpace(double[] coordinates, int index) {
+        double longitude = coordinates[index];
+        double latitude = coordinates[index + 1];
+        if(Double.isNaN(longitude)) return;
+        this.edgeLocation.set(longitude, latitude);
+        if(!WebMercatorUtil.PROJECTION_BOUNDS.contains(this.edgeLocation)) {
+            coordinates[index] = coordinates[index + 1] = Double.NaN;
+            return;
         }
-        
-        
+        this.getLocationPositionInRenderSpace(this.edgePosition, this.edgeLocation);
+        coordinates[index] = this.edgePosition.x;
+        coordinates[index + 1] = this.edgePosition.y;
     }
 
+    /**
+     * The projected segments of a grid level, kept from one frame to the next.
+     */
+    private static class GridLines {
+
+        double[] points = new double[512];
+        int pointCount = 0;
+        boolean upToDate = false;
+
+        void add(double x, double y) {
+            if(this.pointCount * 2 + 2 > this.points.length) {
+                double[] newPoints = new double[this.points.length * 2];
+                System.arraycopy(this.points, 0, newPoints, 0, this.points.length);
+                this.points = newPoints;
+            }
+            this.points[this.pointCount * 2] = x;
+            this.points[this.pointCount * 2 + 1] = y;
+            this.pointCount++;
+        }
+
+    }
+    
     @Deprecated
     public Color getColor() {
         return color;
@@ -1,14 +1,20 @@
 package fr.thesmyler.terramap.gui.widgets.map.layer;
 
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
+import org.lwjgl.opengl.GL11;
+
 import fr.thesmyler.smylibgui.container.WidgetContainer;
 import fr.thesmyler.smylibgui.util.*;
 import fr.thesmyler.terramap.gui.widgets.map.MapLayer;
 import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
 import fr.thesmyler.terramap.maps.raster.RasterTile;
 import fr.thesmyler.terramap.maps.raster.RasterTiledMap;
+import fr.thesmyler.terramap.maps.raster.TileAtlas;
 import fr.thesmyler.terramap.util.geo.*;
 import fr.thesmyler.terramap.util.geo.TilePos.InvalidTilePositionException;
 import fr.thesmyler.terramap.util.math.Mat2d;
@@ -16,7 +22,10 @@ import fr.thesmyler.terramap.util.math.Vec2dImmutable;
 import fr.thesmyler.terramap.util.math.Vec2dMutable;
 import fr.thesmyler.terramap.util.math.Vec2dReadOnly;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.BufferBuilder;
 import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
 import net.minecraft.client.renderer.texture.TextureManager;
 import net.minecraft.profiler.Profiler;
 import net.minecraft.util.ResourceLocation;
@@ -24,6 +33,7 @@ import net.minecraft.util.ResourceLocation;
 abstract public class RasterMapLayer extends MapLayer {
 
     protected Set<RasterTile> lastNeededTiles = new HashSet<>();
+    private final Map<TileAtlas.Page, AtlasBatch> atlasBatches = new LinkedHashMap<>();
 
     // Used for calculations
     private final Vec2dMutable top = new Vec2dMutable();
@@ -208,14 +218,39 @@ abstract public class RasterMapLayer extends MapLayer {
 
                 whiteWithAlpha.applyGL();
                 ResourceLocation texture = defaultTexture;
+                TileAtlas.Slot slot = null;
                 try {
-                    if(tile.isTextureAvailable()) texture = tile.getTexture();
+                    if(tile.isTextureAvailable()) {
+                        texture = tile.getTexture();
+                        slot = tile.getAtlasSlot();
+                    }
                     else perfectDraw = false;
                 } catch (Throwable e) {
                     perfectDraw = false;
                     parentMap.reportError(this, e.toString());
                 }
-                if (texture != null) {
+                if (slot != null && !debug) {
+                    // Tiles from the same atlas page are drawn all at once when we are done with the other tiles
+                    this.atlasBatches.computeIfAbsent(slot.getPage(), p -> new AtlasBatch()).add(
+                            dispX, dispY,
+                            displayWidth, displayHeight,
+                            (slot.getX() * renderSizedSize + dX) / (renderSizedSize * TileAtlas.SLOTS_PER_SIDE),
+                            (slot.getY() * renderSizedSize + dY) / (renderSizedSize * TileAtlas.SLOTS_PER_SIDE),
+                            displayWidth / (renderSizedSize * TileAtlas.SLOTS_PER_SIDE),
+                            displayHeight / (renderSizedSize * TileAtlas.SLOTS_PER_SIDE)
+                    );
+                } else if (slot != null) {
+                    textureManager.bindTexture(texture);
+                    RenderUtil.drawModalRectWithCustomSizedTexture(
+                            dispX,
+                            dispY,
+                            slot.getX() * renderSizedSize + dX, slot.getY() * renderSizedSize + dY,
+                            displayWidth,
+                            displayHeight,
+                            renderSizedSize * TileAtlas.SLOTS_PER_SIDE,
+                            renderSizedSize * TileAtlas.SLOTS_PER_SIDE
+                    );
+                } else if (texture != null) {
                     textureManager.bindTexture(texture);
                     RenderUtil.drawModalRectWithCustomSizedTexture(
                             dispX,
@@ -243,6 +278,21 @@ abstract public class RasterMapLayer extends MapLayer {
             }
         }
 
+        profiler.startSection("atlas-batches");
+        whiteWithAlpha.applyGL();
+        Iterator<Map.Entry<TileAtlas.Page, AtlasBatch>> batches = this.atlasBatches.entrySet().iterator();
+        while(batches.hasNext()) {
+            Map.Entry<TileAtlas.Page, AtlasBatch> batch = batches.next();
+            if(batch.getValue().isEmpty()) {
+                batches.remove(); // That page was not used this frame, it may not even exist anymore
+                continue;
+            }
+            textureManager.bindTexture(batch.getKey().getLocation());
+            batch.getValue().draw();
+        }
+        Color.WHITE.applyGL();
+        profiler.endSection();
+
 
         WebMercatorUtil.fromGeo(this.minusCenterPos, this.focusedPoint, 0d).scale(- 1 / 256d);
         // Filter out tiles that are not needed and order the needed ones for loading.
@@ -280,4 +330,57 @@ abstract public class RasterMapLayer extends MapLayer {
 
     }
 
+    /**
+     * Quads waiting to be drawn with the texture of a single atlas page.
+     */
+    private static class AtlasBatch {
+
+        private static final int QUAD_SIZE = 8;
+
+        private double[] quads = new double[QUAD_SIZE * 16];
+        private int count = 0;
+
+        void add(double x, double y, double width, double height, double minU, double minV, double sizeU, double sizeV) {
+            if((this.count + 1) * QUAD_SIZE > this.quads.length) {
+                double[] newQuads = new double[this.quads.length * 2];
+                System.arraycopy(this.quads, 0, newQuads, 0, this.quads.length);
+                this.quads = newQuads;
+            }
+            int i = this.count++ * QUAD_SIZE;
+            this.quads[i] = x;
+            this.quads[i + 1] = y;
+            this.quads[i + 2] = x + width;
+            this.quads[i + 3] = y + height;
+            this.quads[i + 4] = minU;
+            this.quads[i + 5] = minV;
+            this.quads[i + 6] = minU + sizeU;
+            this.quads[i + 7] = minV + sizeV;
+        }
+
+        boolean isEmpty() {
+            return this.count == 0;
+        }
+
+        void draw() {
+            GlStateManager.enableAlpha();
+            GlStateManager.enableBlend();
+            Tessellator tessellator = Tessellator.getInstance();
+            BufferBuilder builder = tessellator.getBuffer();
+            builder.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX);
+            for(int i = 0; i < this.count * QUAD_SIZE; i += QUAD_SIZE) {
+                double x1 = this.quads[i], y1 = this.quads[i + 1], x2 = this.quads[i + 2], y2 = this.quads[i + 3];
+                double u1 = this.quads[i + 4], v1 = this.quads[i + 5], u2 = this.quads[i + 6], v2 = this.quads[i + 7];
+                builder.pos(x1, y2, 0d).tex(u1, v2).endVertex();
+                builder.pos(x2, y2, 0d).tex(u2, v2).endVertex();
+                builder.pos(x2, y1, 0d).tex(u2, v1).endVertex();
+                builder.pos(x1, y1, 0d).tex(u1, v1).endVertex();
+            }
+            tessellator.draw();
+            GlStateManager.disableAlpha();
+            GlStateManager.disableBlend();
+            this.count = 0;
+        }
+
+    }
+
 }
@@ -0,0 +1,113 @@
+package fr.thesmyler.terramap.gui.widgets.markers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import fr.thesmyler.terramap.gui.widgets.markers.controllers.MarkerController;
+import fr.thesmyler.terramap.gui.widgets.markers.markers.Marker;
+import fr.thesmyler.terramap.gui.widgets.markers.markers.MarkerCluster;
+
+/**
+ * Groups the markers of each controller by screen-space cell, so the map can show a single {@link MarkerCluster}
+ * instead of markers that would be drawn on top of each other.
+ * <br>
+ * Markers are moved from one cluster to another as they are updated,
+ * and the clusters that changed are remembered until the map has dealt with them.
+ *
+ * @author SmylerMC
+ *
+ */
+public class MarkerClusterer {
+
+    /**
+     * Cell value for markers which should not be part of any cluster
+     */
+    public static final long NO_CELL = Long.MIN_VALUE;
+
+    private final int minimumSize;
+    private final Map<MarkerController<?>, Map<Long, MarkerCluster>> clusters = new HashMap<>();
+    private final Map<MarkerCluster, Long> clusterCells = new HashMap<>();
+    private final Map<Marker, MarkerCluster> markerClusters = new HashMap<>();
+    private final Set<MarkerCluster> changed = new HashSet<>();
+
+    /**
+     * @param minimumSize - how many markers there have to be in a cell for them to be replaced with a cluster
+     */
+    public MarkerClusterer(int minimumSize) {
+        this.minimumSize = minimumSize;
+    }
+
+    /**
+     * Moves a marker to the cluster of the given cell.
+     *
+     * @param marker    - the marker to move
+     * @param cell      - the cell the marker is in, or {@link #NO_CELL} if it should not be clustered
+     */
+    public void update(Marker marker, long cell) {
+        MarkerCluster current = this.markerClusters.get(marker);
+        if(current != null && this.clusterCells.get(current) == cell) return;
+        if(current != null) this.remove(marker);
+        if(cell == NO_CELL) return;
+        MarkerController<?> controller = marker.getController();
+        MarkerCluster cluster = this.clusters.computeIfAbsent(controller, c -> new HashMap<>()).computeIfAbsent(cell, c -> {
+            MarkerCluster newCluster = new MarkerCluster(controller);
+            this.clusterCells.put(newCluster, c);
+            return newCluster;
+        });
+        cluster.addMember(marker);
+        this.markerClusters.put(marker, cluster);
+        this.changed.add(cluster);
+    }
+
+    /**
+     * Removes a marker from its cluster, if it has one.
+     *
+     * @param marker - the marker to remove
+     */
+    public void remove(Marker marker) {
+        MarkerCluster cluster = this.markerClusters.remove(marker);
+        if(cluster == null) return;
+        cluster.removeMember(marker);
+        this.changed.add(cluster);
+        if(cluster.size() == 0) {
+            Long cell = this.clusterCells.remove(cluster);
+            Map<Long, MarkerCluster> controllerClusters = this.clusters.get(cluster.getController());
+            controllerClusters.remove(cell);
+            if(controllerClusters.isEmpty()) this.clusters.remove(cluster.getController());
+        }
+    }
+
+    /**
+     * @param cluster - a cluster
+     * @return whether the given cluster has enough members to be shown instead of them
+     */
+    public boolean isActive(MarkerCluster cluster) {
+        return cluster.size() >= this.minimumSize;
+    }
+
+    /**
+     * @param marker - a marker
+     * @return whether the given marker is hidden behind an active cluster
+     */
+    public boolean isClustered(Marker marker) {
+        MarkerCluster cluster = this.markerClusters.get(marker);
+        return cluster != null && this.isActive(cluster);
+    }
+
+    /**
+     * Returns the clusters whose members changed since the last call to this method.
+     * Empty clusters are included, they have been discarded and should not be shown anymore.
+     *
+     * @return the clusters that changed
+     */
+    public Set<MarkerCluster> pollChangedClusters() {
+        if(this.changed.isEmpty()) return Collections.emptySet();
+        Set<MarkerCluster> changed = new HashSet<>(this.changed);
+        this.changed.clear();
+        return changed;
+    }
+
+}
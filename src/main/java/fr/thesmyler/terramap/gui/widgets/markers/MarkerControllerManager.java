@@ -13,6 +13,7 @@ import fr.thesmyler.terramap.gui.widgets.markers.controllers.MarkerController;
 import fr.thesmyler.terramap.gui.widgets.markers.controllers.MobMarkerController;
 import fr.thesmyler.terramap.gui.widgets.markers.controllers.OtherPlayerMarkerController;
 import fr.thesmyler.terramap.gui.widgets.markers.controllers.RightClickMarkerController;
+import fr.thesmyler.terramap.gui.widgets.markers.controllers.WarpMarkerController;
 
 public abstract class MarkerControllerManager {
 
@@ -62,6 +63,7 @@ public abstract class MarkerControllerManager {
         MarkerControllerManager.registerController(AnimalMarkerController.class, MapContext.MINIMAP);
         MarkerControllerManager.registerController(MobMarkerController.class, MapContext.FULLSCREEN);
         MarkerControllerManager.registerController(MobMarkerController.class, MapContext.MINIMAP);
+        MarkerControllerManager.registerController(WarpMarkerController.class, MapContext.FULLSCREEN);
     }
 
 }
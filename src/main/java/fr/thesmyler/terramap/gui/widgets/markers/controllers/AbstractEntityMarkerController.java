@@ -0,0 +1,108 @@
+package fr.thesmyler.terramap.gui.widgets.markers.controllers;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import fr.thesmyler.terramap.TerramapClientContext;
+import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
+import fr.thesmyler.terramap.gui.widgets.markers.markers.entities.AbstractLivingMarker;
+import fr.thesmyler.terramap.util.collections.ChangeJournal;
+import net.minecraft.entity.Entity;
+
+/**
+ * A marker controller which shows some of the entities of the client world.
+ * <br>
+ * Markers are indexed by entity UUID and kept up to date with the entities joining and leaving the world,
+ * the whole entity list is only looked at when these changes are not available.
+ *
+ * @param <T> the type of markers this controller creates
+ *
+ * @author SmylerMC
+ *
+ */
+public abstract class AbstractEntityMarkerController<T extends AbstractLivingMarker> extends MarkerController<T> {
+
+    private final Map<UUID, T> markersByEntity = new HashMap<>();
+    private final ChangeJournal.Cursor<Entity> cursor = new ChangeJournal.Cursor<>();
+    private final T[] noMarkers;
+
+    @SuppressWarnings("unchecked")
+    public AbstractEntityMarkerController(String id, int zLayer, Class<T> clazz) {
+        super(id, zLayer, clazz);
+        this.noMarkers = (T[]) Array.newInstance(clazz, 0);
+    }
+
+    /**
+     * @param entity - an entity of the client world
+     * @return whether this controller should show a marker for the given entity
+     */
+    protected abstract boolean accepts(Entity entity);
+
+    protected abstract T createMarker(Entity entity);
+
+    @Override
+    public T[] getNewMarkers(MapWidget map) {
+        TerramapClientContext context = TerramapClientContext.getContext();
+        if(context.getProjection() == null) {
+            this.cursor.invalidate();
+            return this.noMarkers;
+        }
+
+        // The entity to show for each UUID that changed, or null if there should be none
+        Map<UUID, Entity> changes = new LinkedHashMap<>();
+        boolean upToDate = context.getEntityChanges().read(this.cursor, (entity, added) -> {
+            if(!this.accepts(entity)) return;
+            UUID uuid = entity.getUniqueID();
+            if(added) {
+                changes.put(uuid, entity);
+            } else if(entity == (changes.containsKey(uuid) ? changes.get(uuid): this.getMarkedEntity(uuid))) {
+                changes.put(uuid, null);
+            }
+        });
+        if(!upToDate) {
+            for(UUID uuid: this.markersByEntity.keySet()) changes.put(uuid, null);
+            for(Entity entity: context.getEntities()) {
+                if(this.accepts(entity)) changes.put(entity.getUniqueID(), entity);
+            }
+        }
+
+        if(changes.isEmpty()) return this.noMarkers;
+        List<T> newMarkers = new ArrayList<>();
+        for(Map.Entry<UUID, Entity> change: changes.entrySet()) {
+            Entity entity = change.getValue();
+            T marker = this.markersByEntity.get(change.getKey());
+            if(marker != null && marker.getEntity() != entity) {
+                map.removeMarker(marker);
+                marker = null;
+            }
+            if(marker == null && entity != null) newMarkers.add(this.createMarker(entity));
+        }
+        return newMarkers.toArray(this.noMarkers);
+    }
+
+    @Override
+    public boolean canBeClustered() {
+        return true;
+    }
+
+    @Override
+    protected void markerAdded(T marker) {
+        this.markersByEntity.put(marker.getEntity().getUniqueID(), marker);
+    }
+
+    @Override
+    protected void markerRemoved(T marker) {
+        this.markersByEntity.remove(marker.getEntity().getUniqueID(), marker);
+    }
+
+    private Entity getMarkedEntity(UUID uuid) {
+        T marker = this.markersByEntity.get(uuid);
+        return marker != null ? marker.getEntity(): null;
+    }
+
+}
@@ -1,20 +1,14 @@
 package fr.thesmyler.terramap.gui.widgets.markers.controllers;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
-
 import fr.thesmyler.smylibgui.SmyLibGui;
 import fr.thesmyler.smylibgui.widgets.buttons.ToggleButtonWidget;
 import fr.thesmyler.terramap.TerramapClientContext;
-import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
-import fr.thesmyler.terramap.gui.widgets.markers.markers.Marker;
 import fr.thesmyler.terramap.gui.widgets.markers.markers.entities.AnimalMarker;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.monster.IMob;
 import net.minecraft.entity.passive.IAnimals;
 
-public class AnimalMarkerController extends MarkerController<AnimalMarker> {
+public class AnimalMarkerController extends AbstractEntityMarkerController<AnimalMarker> {
 
     public static final String ID = "creatures";
 
@@ -31,24 +25,13 @@ public class AnimalMarkerController extends MarkerController<AnimalMarker> {
     }
 
     @Override
-    public AnimalMarker[] getNewMarkers(Marker[] existingMarkers, MapWidget map) {
-        if(TerramapClientContext.getContext().getProjection() == null) return new AnimalMarker[0];
-        Map<UUID, Entity> entities = new HashMap<>();
-        for(Entity entity: TerramapClientContext.getContext().getEntities()) {
-            if(entity instanceof IAnimals && !(entity instanceof IMob)) {
-                entities.put(entity.getPersistentID(), entity);
-            }
-        }
-        for(Marker rawMarker: existingMarkers) {
-            AnimalMarker marker = (AnimalMarker) rawMarker;
-            entities.remove(marker.getEntity().getUniqueID());
-        }
-        AnimalMarker[] newMarkers = new AnimalMarker[entities.size()];
-        int i = 0;
-        for(Entity entity: entities.values()) {
-            newMarkers[i++] = new AnimalMarker(this, entity);
-        }
-        return newMarkers;
+    protected boolean accepts(Entity entity) {
+        return entity instanceof IAnimals && !(entity instanceof IMob);
+    }
+
+    @Override
+    protected AnimalMarker createMarker(Entity entity) {
+        return new AnimalMarker(this, entity);
     }
 
     @Override
@@ -5,7 +5,6 @@ import fr.thesmyler.smylibgui.widgets.buttons.ToggleButtonWidget;
 import fr.thesmyler.terramap.MapContext;
 import fr.thesmyler.terramap.TerramapClientContext;
 import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
-import fr.thesmyler.terramap.gui.widgets.markers.markers.Marker;
 import fr.thesmyler.terramap.gui.widgets.markers.markers.entities.MainPlayerMarker;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.entity.EntityPlayerSP;
@@ -24,10 +23,10 @@ public class MainPlayerMarkerController extends AbstractPlayerMarkerController<M
     }
 
     @Override
-    public MainPlayerMarker[] getNewMarkers(Marker[] existingMarkers, MapWidget map) {
+    public MainPlayerMarker[] getNewMarkers(MapWidget map) {
         int factor = map.getContext().equals(MapContext.MINIMAP)? 2: 1;
         EntityPlayerSP self = Minecraft.getMinecraft().player;
-        if(existingMarkers.length < 1 && self != null && TerramapClientContext.getContext().getProjection() != null) {
+        if(this.getMarkers().isEmpty() && self != null && TerramapClientContext.getContext().getProjection() != null) {
             return new MainPlayerMarker[] { new MainPlayerMarker(this, factor) };
         }
         return new MainPlayerMarker[0];
@@ -1,5 +1,9 @@
 package fr.thesmyler.terramap.gui.widgets.markers.controllers;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import fr.thesmyler.smylibgui.widgets.buttons.ToggleButtonWidget;
 import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
 import fr.thesmyler.terramap.gui.widgets.markers.markers.Marker;
@@ -10,6 +14,8 @@ public abstract class MarkerController<T extends Marker> implements FeatureVisib
     private final int zLayer;
     private final String id;
     private final Class<T> clazz;
+    private final Set<T> markers = new HashSet<>();
+    private final Set<T> markersView = Collections.unmodifiableSet(this.markers);
 
     public MarkerController(String id, int zLayer, Class<T> clazz) {
         this.zLayer = zLayer;
@@ -17,7 +23,54 @@ public abstract class MarkerController<T extends Marker> implements FeatureVisib
         this.clazz = clazz;
     }
 
-    public abstract T[] getNewMarkers(Marker[] existingMarkers, MapWidget map);
+    /**
+     * Called by the map every time it updates, to know which markers it should add.
+     * This is called every frame, implementations should only look at what changed since the last call.
+     * They may also remove their obsolete markers from the map with {@link MapWidget#removeMarker(Marker)}.
+     *
+     * @param map - the map to create markers for
+     * @return the markers to add to the map
+     */
+    public abstract T[] getNewMarkers(MapWidget map);
+
+    /**
+     * @return the markers of this controller which are currently on the map
+     */
+    public Set<T> getMarkers() {
+        return this.markersView;
+    }
+
+    /**
+     * Called by the map when one of this controller's markers is added to it.
+     *
+     * @param marker - the marker which was added
+     */
+    public final void onMarkerAdded(Marker marker) {
+        T m = this.clazz.cast(marker);
+        this.markers.add(m);
+        this.markerAdded(m);
+    }
+
+    /**
+     * Called by the map when one of this controller's markers is removed from it.
+     *
+     * @param marker - the marker which was removed
+     */
+    public final void onMarkerRemoved(Marker marker) {
+        T m = this.clazz.cast(marker);
+        if(this.markers.remove(m)) this.markerRemoved(m);
+    }
+
+    /**
+     * @return whether this controller's markers may be grouped into clusters when they are too close to each other on the map
+     */
+    public boolean canBeClustered() {
+        return false;
+    }
+
+    protected void markerAdded(T marker) {}
+
+    protected void markerRemoved(T marker) {}
 
     public int getZLayer() {
         return this.zLayer;
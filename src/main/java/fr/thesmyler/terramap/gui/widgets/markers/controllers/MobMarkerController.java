@@ -1,19 +1,13 @@
 package fr.thesmyler.terramap.gui.widgets.markers.controllers;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
-
 import fr.thesmyler.smylibgui.widgets.buttons.ToggleButtonWidget;
 import fr.thesmyler.terramap.TerramapClientContext;
-import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
-import fr.thesmyler.terramap.gui.widgets.markers.markers.Marker;
 import fr.thesmyler.terramap.gui.widgets.markers.markers.entities.MobMarker;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.monster.IMob;
 
-public class MobMarkerController extends MarkerController<MobMarker> {
+public class MobMarkerController extends AbstractEntityMarkerController<MobMarker> {
 
     public static final String ID = "mobs";
 
@@ -30,24 +24,13 @@ public class MobMarkerController extends MarkerController<MobMarker> {
     }
 
     @Override
-    public MobMarker[] getNewMarkers(Marker[] existingMarkers, MapWidget map) {
-        if(TerramapClientContext.getContext().getProjection() == null) return new MobMarker[0];
-        Map<UUID, Entity> entities = new HashMap<>();
-        for(Entity entity: TerramapClientContext.getContext().getEntities()) {
-            if(entity instanceof IMob) {
-                entities.put(entity.getPersistentID(), entity);
-            }
-        }
-        for(Marker rawMarker: existingMarkers) {
-            MobMarker marker = (MobMarker) rawMarker;
-            entities.remove(marker.getEntity().getUniqueID());
-        }
-        MobMarker[] newMarkers = new MobMarker[entities.size()];
-        int i = 0;
-        for(Entity entity: entities.values()) {
-            newMarkers[i++] = new MobMarker(this, entity);
-        }
-        return newMarkers;
+    protected boolean accepts(Entity entity) {
+        return entity instanceof IMob;
+    }
+
+    @Override
+    protected MobMarker createMarker(Entity entity) {
+        return new MobMarker(this, entity);
     }
 
     @Override
@@ -1,6 +1,11 @@
 package fr.thesmyler.terramap.gui.widgets.markers.controllers;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import fr.thesmyler.smylibgui.SmyLibGui;
@@ -8,9 +13,10 @@ import fr.thesmyler.smylibgui.widgets.buttons.ToggleButtonWidget;
 import fr.thesmyler.terramap.MapContext;
 import fr.thesmyler.terramap.TerramapClientContext;
 import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
-import fr.thesmyler.terramap.gui.widgets.markers.markers.Marker;
 import fr.thesmyler.terramap.gui.widgets.markers.markers.entities.OtherPlayerMarker;
+import fr.thesmyler.terramap.network.playersync.TerramapLocalPlayer;
 import fr.thesmyler.terramap.network.playersync.TerramapPlayer;
+import fr.thesmyler.terramap.util.collections.ChangeJournal;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.entity.EntityPlayerSP;
 
@@ -18,6 +24,13 @@ public class OtherPlayerMarkerController extends AbstractPlayerMarkerController<
 
     public static final String ID = "other_players";
 
+    private static final OtherPlayerMarker[] NO_MARKERS = new OtherPlayerMarker[0];
+
+    private final Map<UUID, OtherPlayerMarker> markersByPlayer = new HashMap<>();
+    private final ChangeJournal.Cursor<UUID> cursor = new ChangeJournal.Cursor<>();
+    private boolean playersSynchronized = false;
+    private boolean hasProjection = false;
+
     public OtherPlayerMarkerController() {
         super(ID, 800, OtherPlayerMarker.class, new ToggleButtonWidget(10, 14, 14,
                 88, 108, 88, 122,
@@ -28,29 +41,68 @@ public class OtherPlayerMarkerController extends AbstractPlayerMarkerController<
     }
 
     @Override
-    public OtherPlayerMarker[] getNewMarkers(Marker[] existingMarkers, MapWidget map) {
-
+    public OtherPlayerMarker[] getNewMarkers(MapWidget map) {
+        TerramapClientContext context = TerramapClientContext.getContext();
         boolean minimap = map.getContext() == MapContext.MINIMAP;
 
-        int factor = minimap? 2: 1;
+        // These change which players are available without any player being added or removed
+        boolean synchronize = context.arePlayersSynchronized();
+        boolean projection = context.getProjection() != null;
+        if(synchronize != this.playersSynchronized || projection != this.hasProjection) {
+            this.playersSynchronized = synchronize;
+            this.hasProjection = projection;
+            this.cursor.invalidate();
+        }
 
-        Map<UUID, TerramapPlayer> players = minimap ? TerramapClientContext.getContext().getLocalPlayersMap(): TerramapClientContext.getContext().getPlayerMap();
-        for(Marker marker: existingMarkers) {
-            TerramapPlayer player = ((OtherPlayerMarker) marker).getPlayer();
-            players.remove(player.getUUID());
+        Set<UUID> changes = new LinkedHashSet<>();
+        if(!context.getPlayerChanges().read(this.cursor, (uuid, added) -> changes.add(uuid))) {
+            changes.addAll(this.markersByPlayer.keySet());
+            changes.addAll((minimap ? context.getLocalPlayersMap(): context.getPlayerMap()).keySet());
         }
+        if(changes.isEmpty()) return NO_MARKERS;
 
         // The main player has its own controller
         EntityPlayerSP self = Minecraft.getMinecraft().player;
-        if(self != null) players.remove(self.getUniqueID());
+        if(self != null) changes.remove(self.getUniqueID());
 
-        OtherPlayerMarker[] newMarkers = new OtherPlayerMarker[players.size()];
-        int i = 0;
-        for(TerramapPlayer player: players.values()) {
-            newMarkers[i++] = new OtherPlayerMarker(this, player, factor);
+        int factor = minimap? 2: 1;
+        List<OtherPlayerMarker> newMarkers = new ArrayList<>();
+        for(UUID uuid: changes) {
+            TerramapPlayer player = this.findPlayer(context, uuid, minimap);
+            OtherPlayerMarker marker = this.markersByPlayer.get(uuid);
+            if(marker != null && (player == null || isStale(marker))) {
+                map.removeMarker(marker);
+                marker = null;
+            }
+            if(marker == null && player != null) newMarkers.add(new OtherPlayerMarker(this, player, factor));
         }
+        return newMarkers.toArray(NO_MARKERS);
+    }
+
+    @Override
+    public boolean canBeClustered() {
+        return true;
+    }
+
+    @Override
+    protected void markerAdded(OtherPlayerMarker marker) {
+        this.markersByPlayer.put(marker.getPlayer().getUUID(), marker);
+    }
+
+    @Override
+    protected void markerRemoved(OtherPlayerMarker marker) {
+        this.markersByPlayer.remove(marker.getPlayer().getUUID(), marker);
+    }
+
+    private TerramapPlayer findPlayer(TerramapClientContext context, UUID uuid, boolean minimap) {
+        TerramapPlayer player = minimap || this.hasProjection ? context.getLocalPlayer(uuid): null;
+        if(player == null && !minimap && this.playersSynchronized) player = context.getRemotePlayer(uuid);
+        return player;
+    }
 
-        return newMarkers;
+    private static boolean isStale(OtherPlayerMarker marker) {
+        TerramapPlayer player = marker.getPlayer();
+        return player instanceof TerramapLocalPlayer && ((TerramapLocalPlayer) player).getPlayer().isDead;
     }
 
     @Override
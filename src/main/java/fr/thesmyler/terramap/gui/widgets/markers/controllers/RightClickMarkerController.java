@@ -2,7 +2,6 @@ package fr.thesmyler.terramap.gui.widgets.markers.controllers;
 
 import fr.thesmyler.smylibgui.widgets.buttons.ToggleButtonWidget;
 import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
-import fr.thesmyler.terramap.gui.widgets.markers.markers.Marker;
 import fr.thesmyler.terramap.gui.widgets.markers.markers.RightClickMarker;
 
 public class RightClickMarkerController extends MarkerController<RightClickMarker> {
@@ -14,8 +13,8 @@ public class RightClickMarkerController extends MarkerController<RightClickMarke
     }
 
     @Override
-    public RightClickMarker[] getNewMarkers(Marker[] existingMarkers, MapWidget map) {
-        if(existingMarkers.length > 0) return new RightClickMarker[] {};
+    public RightClickMarker[] getNewMarkers(MapWidget map) {
+        if(!this.getMarkers().isEmpty()) return new RightClickMarker[] {};
         return new RightClickMarker[] { new RightClickMarker(this)};
     }
 
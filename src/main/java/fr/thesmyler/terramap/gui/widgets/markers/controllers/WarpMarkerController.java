@@ -0,0 +1,145 @@
+package fr.thesmyler.terramap.gui.widgets.markers.controllers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import fr.thesmyler.smylibgui.widgets.buttons.ToggleButtonWidget;
+import fr.thesmyler.terramap.TerramapClientContext;
+import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
+import fr.thesmyler.terramap.gui.widgets.markers.markers.WarpMarker;
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpCache;
+
+/**
+ * Shows the server's warps, from the client's {@link WarpCache}.
+ * The warps of the visible area which are not cached are requested as the map moves,
+ * with only the properties the markers need.
+ * Markers are only updated when the map starts showing other warp cache tiles or when the cache changes,
+ * not every time the map moves.
+ *
+ * @author SmylerMC
+ *
+ */
+public class WarpMarkerController extends MarkerController<WarpMarker> {
+
+    public static final String ID = "warps";
+
+    /**
+     * The properties warp markers need
+     */
+    public static final String[] WARP_KEYS = { Warp.LONGITUDE_KEY, Warp.LATITUDE_KEY, Warp.MIN_ZOOM_KEY, Warp.NAME_KEY };
+
+    // Warps are only shown when the map shows at most this many warp cache tiles
+    private static final int MAX_TILES = 64;
+
+    private static final WarpMarker[] NO_MARKERS = new WarpMarker[0];
+
+    private final Map<String, WarpMarker> markersByWarp = new HashMap<>();
+    private final int[] lastTiles = new int[4]; // West, east, north and south tiles of the last area
+    private long lastModificationCount = -1;
+    private boolean revalidated = false;
+
+    public WarpMarkerController() {
+        super(ID, 600, WarpMarker.class);
+    }
+
+    @Override
+    public WarpMarker[] getNewMarkers(MapWidget map) {
+        TerramapClientContext context = TerramapClientContext.getContext();
+        UUID world = context.getWorldUUID();
+        if(!this.isVisible() || world == null) return NO_MARKERS;
+        if(!this.revalidated) {
+            context.revalidateWarps(); // The cache may be outdated since the last time a map was open
+            this.revalidated = true;
+        }
+        WarpCache cache = TerramapClientContext.getWarpCache();
+        GeoBounds area = map.getVisibleBounds();
+        boolean sameTiles = this.updateTiles(area);
+        if(sameTiles && cache.getModificationCount() == this.lastModificationCount) return NO_MARKERS;
+        context.requestWarps(area, WARP_KEYS);
+        this.lastModificationCount = cache.getModificationCount();
+
+        Map<String, Warp> warps = new HashMap<>();
+        List<Warp> cached = new ArrayList<>();
+        cache.getWarps(world, area, MAX_TILES, cached);
+        for(Warp warp: cached) {
+            if(warp.getLocation() != null) warps.put(warp.getId(), warp);
+        }
+        for(WarpMarker marker: new ArrayList<>(this.markersByWarp.values())) {
+            String id = marker.getWarp().getId();
+            if(isSameMarker(marker.getWarp(), warps.get(id))) warps.remove(id);
+            else map.removeMarker(marker); // Gone, out of view or changed
+        }
+        List<WarpMarker> markers = new ArrayList<>();
+        for(Warp warp: warps.values()) markers.add(new WarpMarker(this, warp));
+        return markers.toArray(NO_MARKERS);
+    }
+
+    @Override
+    public boolean canBeClustered() {
+        return true;
+    }
+
+    @Override
+    protected void markerAdded(WarpMarker marker) {
+        this.markersByWarp.put(marker.getWarp().getId(), marker);
+    }
+
+    @Override
+    protected void markerRemoved(WarpMarker marker) {
+        this.markersByWarp.remove(marker.getWarp().getId(), marker);
+    }
+
+    @Override
+    public boolean isVisible() {
+        return super.isVisible() && TerramapClientContext.getContext().doesServerHaveWarpSupport();
+    }
+
+    @Override
+    public boolean showButton() {
+        return false;
+    }
+
+    @Override
+    public ToggleButtonWidget getButton() {
+        return null;
+    }
+
+    @Override
+    public String getSaveName() {
+        return ID;
+    }
+
+    /**
+     * Remembers which tiles of the warp cache the given area covers.
+     *
+     * @param area - the visible area
+     * @return whether the area covers the same tiles as last time
+     */
+    private boolean updateTiles(GeoBounds area) {
+        int west = WarpCache.getTileX(area.lowerCorner.longitude());
+        int east = WarpCache.getTileX(area.upperCorner.longitude());
+        int north = WarpCache.getTileY(area.upperCorner.latitude());
+        int south = WarpCache.getTileY(area.lowerCorner.latitude());
+        boolean same = west == this.lastTiles[0] && east == this.lastTiles[1] && north == this.lastTiles[2] && south == this.lastTiles[3];
+        this.lastTiles[0] = west;
+        this.lastTiles[1] = east;
+        this.lastTiles[2] = north;
+        this.lastTiles[3] = south;
+        return same;
+    }
+
+    private static boolean isSameMarker(Warp shown, Warp warp) {
+        if(warp == null) return false;
+        for(String key: WARP_KEYS) {
+            if(!Objects.equals(shown.getProperty(key), warp.getProperty(key))) return false;
+        }
+        return true;
+    }
+
+}
@@ -27,7 +27,6 @@ public abstract class AbstractMovingMarker extends Marker {
 
     @Override
     public void update(MapWidget map) {
-        //TODO Animate for smoother movements
         try {
             this.location.set(this.getActualLocation());
             float realAzimuth = this.getActualAzimuth();
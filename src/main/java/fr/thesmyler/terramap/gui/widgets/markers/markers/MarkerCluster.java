@@ -0,0 +1,118 @@
+package fr.thesmyler.terramap.gui.widgets.markers.markers;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import fr.thesmyler.smylibgui.container.WidgetContainer;
+import fr.thesmyler.smylibgui.util.Color;
+import fr.thesmyler.smylibgui.util.Font;
+import fr.thesmyler.smylibgui.util.RenderUtil;
+import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
+import fr.thesmyler.terramap.gui.widgets.markers.controllers.MarkerController;
+import fr.thesmyler.terramap.util.geo.GeoPoint;
+import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
+import fr.thesmyler.terramap.util.geo.GeoUtil;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TextComponentTranslation;
+
+/**
+ * A badge standing in for several markers of the same controller which are too close to each other on screen to be told apart.
+ * It shows how many markers it stands for, and zooms in on them when double-clicked.
+ * <br>
+ * Clusters are managed by the map, not by the controller.
+ *
+ * @author SmylerMC
+ *
+ */
+public class MarkerCluster extends AbstractFixedMarker {
+
+    private static final float HEIGHT = 12f;
+    private static final double ZOOM_IN = 2d;
+
+    private final Set<Marker> members = new HashSet<>();
+    private final Set<Marker> membersView = Collections.unmodifiableSet(this.members);
+    private String text = "";
+
+    public MarkerCluster(MarkerController<?> controller) {
+        super(controller, HEIGHT, HEIGHT, GeoPointImmutable.ORIGIN);
+    }
+
+    public void addMember(Marker marker) {
+        this.members.add(marker);
+    }
+
+    public void removeMember(Marker marker) {
+        this.members.remove(marker);
+    }
+
+    public Set<Marker> getMembers() {
+        return this.membersView;
+    }
+
+    public int size() {
+        return this.members.size();
+    }
+
+    @Override
+    public void update(MapWidget map) {
+        // Average location, unwrapped around the first member's so clusters on the antimeridian are not sent to the other side of the world
+        double longitude = 0d, latitude = 0d;
+        double reference = Double.NaN;
+        int count = 0;
+        for(Marker marker: this.members) {
+            GeoPoint<?> location = marker.getLocation();
+            if(location == null) continue;
+            if(Double.isNaN(reference)) reference = location.longitude();
+            longitude += reference + GeoUtil.getLongitudeInRange(location.longitude() - reference);
+            latitude += location.latitude();
+            count++;
+        }
+        if(count > 0) this.setLocation(new GeoPointImmutable(longitude / count, latitude / count));
+        this.text = String.valueOf(this.members.size());
+        this.width = Math.max(HEIGHT, map.getFont().getStringWidth(this.text) + 6f);
+    }
+
+    @Override
+    public void draw(float x, float y, float mouseX, float mouseY, boolean hovered, boolean focused, WidgetContainer parent) {
+        Font font = parent.getFont();
+        RenderUtil.drawRectWithContour(x, y, x + this.width, y + this.height, hovered ? Color.BLACK: Color.DARK_OVERLAY, 1f, Color.WHITE);
+        font.drawCenteredString(x + this.width / 2, y + (this.height - font.height()) / 2 + 1, this.text, Color.WHITE, false);
+    }
+
+    @Override
+    public boolean onDoubleClick(float mouseX, float mouseY, int mouseButton, WidgetContainer parent) {
+        if(parent instanceof MapWidget) {
+            MapWidget map = (MapWidget) parent;
+            map.getController().moveLocationToCenter(this.getLocation(), true);
+            map.getController().zoom(ZOOM_IN, true);
+        }
+        return false;
+    }
+
+    @Override
+    public float getDeltaX() {
+        return -this.width / 2;
+    }
+
+    @Override
+    public float getDeltaY() {
+        return -this.height / 2;
+    }
+
+    @Override
+    public boolean canBeTracked() {
+        return false;
+    }
+
+    @Override
+    public ITextComponent getDisplayName() {
+        return new TextComponentTranslation("terramap.mapwidget.markers.cluster", this.members.size());
+    }
+
+    @Override
+    public String getIdentifier() {
+        return null;
+    }
+
+}
@@ -0,0 +1,83 @@
+package fr.thesmyler.terramap.gui.widgets.markers.markers;
+
+import fr.thesmyler.smylibgui.container.WidgetContainer;
+import fr.thesmyler.smylibgui.util.Color;
+import fr.thesmyler.smylibgui.util.RenderUtil;
+import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
+import fr.thesmyler.terramap.gui.widgets.markers.controllers.MarkerController;
+import fr.thesmyler.terramap.warp.Warp;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TextComponentString;
+
+/**
+ * A marker for a server warp.
+ * It only appears once the map is zoomed in further than the warp's {@link Warp#MIN_ZOOM_KEY} property, if it has one.
+ *
+ * @author SmylerMC
+ *
+ */
+public class WarpMarker extends AbstractFixedMarker {
+
+    private static final Color COLOR = new Color(0xFF2E8FE6);
+
+    private final Warp warp;
+    private final double warpMinZoom; // Warps can have fractional zoom levels, unlike markers
+
+    public WarpMarker(MarkerController<?> controller, Warp warp) {
+        super(controller, 7, 7, warp.getLocation());
+        this.warp = warp;
+        this.warpMinZoom = warp.getMinZoom();
+    }
+
+    @Override
+    public boolean isVisible(WidgetContainer parent) {
+        if(!super.isVisible(parent)) return false;
+        return !(parent instanceof MapWidget) || this.warpMinZoom <= ((MapWidget) parent).getController().getZoom();
+    }
+
+    @Override
+    public void draw(float x, float y, float mouseX, float mouseY, boolean hovered, boolean focused, WidgetContainer parent) {
+        GlStateManager.enableAlpha();
+        GlStateManager.enableBlend();
+        RenderUtil.drawRectWithContour(x, y, x + this.width, y + this.height, hovered ? COLOR.withAlpha(.75f): COLOR, 1f, Color.WHITE);
+        if(hovered) {
+            String name = this.getDisplayName().getFormattedText();
+            float strWidth = parent.getFont().getStringWidth(name);
+            float nameY = y - parent.getFont().height() - 2;
+            RenderUtil.drawRect(x + this.width / 2 - strWidth / 2 - 2, y - parent.getFont().height() - 4, x + strWidth / 2 + this.width / 2 + 2, y - 1, Color.DARK_OVERLAY);
+            parent.getFont().drawCenteredString(x + this.width / 2, nameY, name, Color.WHITE, false);
+        }
+    }
+
+    @Override
+    public float getDeltaX() {
+        return -this.width / 2;
+    }
+
+    @Override
+    public float getDeltaY() {
+        return -this.height / 2;
+    }
+
+    @Override
+    public boolean canBeTracked() {
+        return false;
+    }
+
+    @Override
+    public ITextComponent getDisplayName() {
+        String name = this.warp.getProperty(Warp.NAME_KEY);
+        return new TextComponentString(name.isEmpty() ? this.warp.getId(): name);
+    }
+
+    @Override
+    public String getIdentifier() {
+        return this.getControllerId() + ":" + this.warp.getId();
+    }
+
+    public Warp getWarp() {
+        return this.warp;
+    }
+
+}
@@ -1,10 +1,9 @@
 package fr.thesmyler.terramap.gui.widgets.markers.markers.entities;
 
-import fr.thesmyler.terramap.TerramapClientContext;
 import fr.thesmyler.terramap.gui.widgets.map.MapWidget;
 import fr.thesmyler.terramap.gui.widgets.markers.controllers.MarkerController;
-import fr.thesmyler.terramap.network.playersync.TerramapLocalPlayer;
 import fr.thesmyler.terramap.network.playersync.TerramapPlayer;
+import fr.thesmyler.terramap.network.playersync.TerramapRemotePlayer;
 import fr.thesmyler.terramap.util.geo.GeoPoint;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.minecraft.util.ResourceLocation;
@@ -21,12 +20,10 @@ public class OtherPlayerMarker extends AbstractPlayerMarker {
 
     @Override
     public void update(MapWidget map) {
-        super.update(map);
-        if(
-                !TerramapClientContext.getContext().hasPlayer(this.player.getUUID())
-                || (this.player instanceof TerramapLocalPlayer && ((TerramapLocalPlayer) this.player).getPlayer().isDead)) {
-            map.scheduleBeforeNextUpdate(() -> map.removeMarker(this));
+        if(this.player instanceof TerramapRemotePlayer) {
+            ((TerramapRemotePlayer) this.player).getMotion().update(System.currentTimeMillis());
         }
+        super.update(map);
     }
 
     public TerramapPlayer getPlayer() {
@@ -60,11 +57,19 @@ public class OtherPlayerMarker extends AbstractPlayerMarker {
 
     @Override
     protected GeoPoint<?> getActualLocation() throws OutOfProjectionBoundsException {
+        if(this.player instanceof TerramapRemotePlayer) {
+            TerramapRemotePlayer player = (TerramapRemotePlayer) this.player;
+            if(player.isOutOfProjection() || !player.getMotion().hasSamples()) throw OutOfProjectionBoundsException.get();
+            return player.getMotion().getLocation();
+        }
         return this.player.getLocation();
     }
 
     @Override
     protected float getActualAzimuth() {
+        if(this.player instanceof TerramapRemotePlayer && ((TerramapRemotePlayer) this.player).getMotion().hasSamples()) {
+            return ((TerramapRemotePlayer) this.player).getMotion().getAzimuth();
+        }
         return this.player.getAzimuth();
     }
 
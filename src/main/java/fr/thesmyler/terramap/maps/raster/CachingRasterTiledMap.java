@@ -1,7 +1,8 @@
 package fr.thesmyler.terramap.maps.raster;
 
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import fr.thesmyler.terramap.TerramapMod;
@@ -17,6 +18,9 @@ import fr.thesmyler.terramap.util.geo.TilePos.InvalidTilePositionException;
  * When tiles need to be unloaded, priority is given to keep those that were used recently loaded.
  * Tiles with zoom levels lower than a certain value will also never be unloaded, so that backup textures are always kept.
  * It also holds the metadata defined in the map config.
+ * <br>
+ * Recently used tiles are tracked with an access ordered {@link LinkedHashMap},
+ * so retrieving a tile and updating its position in the unloading order are constant time operations.
  * 
  * @author SmylerMC
  *
@@ -24,16 +28,20 @@ import fr.thesmyler.terramap.util.geo.TilePos.InvalidTilePositionException;
  */
 public abstract class CachingRasterTiledMap<T extends RasterTile> implements RasterTiledMap {
 
-    private final LinkedList<T> tileList; // Uses for ordered access when unloading
-    private final Map<TilePosImmutable, T> tileMap; // Used for unordered access
+    private final Map<TilePosImmutable, T> recentTiles; // Access ordered, least recently used first
+    private final Map<TilePosImmutable, T> baseTiles; // Low zoom tiles, never unloaded by the cache
     private int lowZoom = 0;
     private boolean useLowZoom = true;
     private int maxLoaded;
     private int baseLoad = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    private TileAtlas atlas;
 
     public CachingRasterTiledMap() {
-        this.tileList = new LinkedList<>();
-        this.tileMap = new HashMap<>();
+        this.recentTiles = new LinkedHashMap<>(16, 0.75f, true);
+        this.baseTiles = new HashMap<>();
         this.maxLoaded = TerramapConfig.CLIENT.maxTileLoad;
     }
 
@@ -42,11 +50,13 @@ public abstract class CachingRasterTiledMap<T extends RasterTile> implements Ras
         TilePosImmutable pos = position.getImmutable();
         WebMercatorBounds b = this.getBounds(pos.getZoom());
         if(b != null && !b.contains(pos)) throw new InvalidTilePositionException();
-        T tile = this.tileMap.get(pos);
+        T tile = this.baseTiles.get(pos);
+        if(tile == null) tile = this.recentTiles.get(pos); // Marks the tile as the most recently used one
         if(tile != null) {
-            this.needTile(tile);
+            this.hitCount++;
             return tile;
         }
+        this.missCount++;
         tile = this.createNewTile(pos);
         this.loadTile(tile);
         return tile;
@@ -54,14 +64,41 @@ public abstract class CachingRasterTiledMap<T extends RasterTile> implements Ras
 
     protected abstract T createNewTile(TilePosImmutable pos);
 
+    /**
+     * @return the atlas tiles of this map should store their textures in.
+     *         Tiles free their slots when their texture is unloaded.
+     */
+    protected TileAtlas getAtlas() {
+        if(this.atlas == null) this.atlas = new TileAtlas(this.getId());
+        return this.atlas;
+    }
+
+    /**
+     * @return the number of texture atlas pages this map is currently using
+     */
+    public int getAtlasPageCount() {
+        return this.atlas != null ? this.atlas.getPageCount(): 0;
+    }
+
+    /**
+     * @return the number of texture atlas slots this map's tiles are currently using
+     */
+    public int getAtlasUsedSlotCount() {
+        return this.atlas != null ? this.atlas.getUsedSlotCount(): 0;
+    }
+
     /**
      * Loads a tile and registers it as last used. Doesn't load its texture.
      * 
      * @param tile - the tile to load
      */
     protected void loadTile(T tile) {
-        this.tileList.add(Math.min(this.baseLoad, this.tileList.size()), tile);
-        this.tileMap.put(tile.getPosition(), tile);
+        TilePosImmutable pos = tile.getPosition();
+        if(this.isBaseTile(pos)) {
+            this.baseTiles.put(pos, tile);
+        } else {
+            this.recentTiles.put(pos, tile);
+        }
         this.unloadToMaxLoad();
     }
 
@@ -73,29 +110,21 @@ public abstract class CachingRasterTiledMap<T extends RasterTile> implements Ras
      */
     public void unloadTile(T tile) {
         tile.unloadTexture();
-        tile = this.tileMap.remove(tile.getPosition());
-        if(tile != null) {
-            tile.unloadTexture();
-            this.tileList.remove(tile);
-        }
+        TilePosImmutable pos = tile.getPosition();
+        T removed = this.recentTiles.remove(pos);
+        if(removed == null) removed = this.baseTiles.remove(pos);
+        if(removed != null) removed.unloadTexture();
     }
 
     /**
      * @return The number of tiles currently loaded
      */
     public int getLoadedCount() {
-        return this.tileList.size();
+        return this.baseTiles.size() + this.recentTiles.size();
     }
 
-    private void needTile(T tile) {
-        if(tile.getPosition().getZoom() <= this.lowZoom) return; // Those should stay where they are
-        this.tileList.remove(tile);
-        if(this.tileList.size() >= this.baseLoad) {
-            this.tileList.add(this.baseLoad, tile);
-        } else {
-            this.tileList.add(tile);
-        }
-        this.tileMap.put(tile.getPosition(), tile);
+    private boolean isBaseTile(TilePos pos) {
+        return this.useLowZoom && pos.getZoom() <= this.lowZoom;
     }
 
     private void prepareLowTiles() {
@@ -114,7 +143,7 @@ public abstract class CachingRasterTiledMap<T extends RasterTile> implements Ras
                 }
             }
         }
-        this.baseLoad = this.tileList.size();
+        this.baseLoad = this.baseTiles.size();
     }
 
     @Override
@@ -147,10 +176,10 @@ public abstract class CachingRasterTiledMap<T extends RasterTile> implements Ras
      * Unloads all tiles, after this operation, this map will be as it it was just instantiated.
      */
     public void unloadAll() {
-        int i = this.maxLoaded;
-        this.maxLoaded = 0;
-        this.unloadToMaxLoad();
-        this.maxLoaded = i;
+        this.recentTiles.values().forEach(RasterTile::unloadTexture);
+        this.baseTiles.values().forEach(RasterTile::unloadTexture);
+        this.recentTiles.clear();
+        this.baseTiles.clear();
         this.baseLoad = 0;
     }
 
@@ -165,13 +194,44 @@ public abstract class CachingRasterTiledMap<T extends RasterTile> implements Ras
      * Unloads tiles until we are at the max number of loaded tiles
      */
     public void unloadToMaxLoad() {
-        while(this.tileList.size() > this.maxLoaded) {
-            T toUnload = this.tileList.removeLast();
-            this.tileMap.remove(toUnload.getPosition());
-            this.unloadTile(toUnload);
+        Iterator<T> recent = this.recentTiles.values().iterator();
+        while(this.getLoadedCount() > this.maxLoaded && recent.hasNext()) {
+            T toUnload = recent.next();
+            recent.remove();
+            toUnload.unloadTexture();
+            this.evictionCount++;
+        }
+        // Only reached when the base tiles alone do not fit, e.g. when unloading everything
+        Iterator<T> base = this.baseTiles.values().iterator();
+        while(this.getLoadedCount() > this.maxLoaded && base.hasNext()) {
+            T toUnload = base.next();
+            base.remove();
+            toUnload.unloadTexture();
+            this.evictionCount++;
         }
     }
 
+    /**
+     * @return how many times {@link #getTile(TilePos)} was called for a tile that was already loaded
+     */
+    public long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * @return how many times {@link #getTile(TilePos)} had to create a new tile
+     */
+    public long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * @return how many tiles have been unloaded to respect the maximum number of loaded tiles
+     */
+    public long getEvictionCount() {
+        return this.evictionCount;
+    }
+
     public boolean getUsesLowZoom() {
         return this.useLowZoom;
     }
@@ -0,0 +1,57 @@
+package fr.thesmyler.terramap.maps.raster;
+
+import java.awt.image.BufferedImage;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Pixel data of an image that has been decoded and is ready to be uploaded to the GPU.
+ * Pixels are stored as ARGB integers, row by row, which is the format expected by {@link net.minecraft.client.renderer.texture.DynamicTexture}.
+ *
+ * @author SmylerMC
+ *
+ */
+public class DecodedImage {
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    public DecodedImage(int width, int height, int[] pixels) {
+        Preconditions.checkArgument(width > 0 && height > 0, "Image dimensions must be positive");
+        Preconditions.checkArgument(pixels.length == width * height, "Pixel array does not match image dimensions");
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Extracts the pixels of a {@link BufferedImage}.
+     * This is expensive and should not be called from the render thread.
+     *
+     * @param image - the image to read the pixels from
+     * @return a new {@link DecodedImage} with the same pixels as the given image
+     */
+    public static DecodedImage fromImage(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        return new DecodedImage(width, height, pixels);
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * @return the ARGB pixels of this image. The returned array is not a copy and should not be modified.
+     */
+    public int[] getPixels() {
+        return this.pixels;
+    }
+
+}
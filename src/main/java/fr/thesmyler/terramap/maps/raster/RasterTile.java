@@ -15,4 +15,12 @@ public interface RasterTile {
 
     TilePosImmutable getPosition();
 
+    /**
+     * @return the slot this tile's texture is stored in, if {@link #getTexture()} returns the page of a {@link TileAtlas},
+     *         or null if {@link #getTexture()} returns a texture dedicated to this tile
+     */
+    default TileAtlas.Slot getAtlasSlot() {
+        return null;
+    }
+
 }
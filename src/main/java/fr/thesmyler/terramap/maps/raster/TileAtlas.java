@@ -0,0 +1,181 @@
+package fr.thesmyler.terramap.maps.raster;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.texture.AbstractTexture;
+import net.minecraft.client.renderer.texture.TextureManager;
+import net.minecraft.client.renderer.texture.TextureUtil;
+import net.minecraft.client.resources.IResourceManager;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * Packs tile textures into a few large GL textures (pages) made of fixed size slots,
+ * so that many tiles can be rendered with a single texture bind and a single draw call.
+ * <br>
+ * Only images which have the exact dimensions of a slot can be stored in an atlas,
+ * others have to be uploaded as their own texture.
+ * All methods have to be called from the render thread.
+ *
+ * @author SmylerMC
+ *
+ */
+public class TileAtlas {
+
+    public static final int SLOT_SIZE = 256;
+    public static final int SLOTS_PER_SIDE = 8;
+    public static final int SLOTS_PER_PAGE = SLOTS_PER_SIDE * SLOTS_PER_SIDE;
+    public static final int PAGE_SIZE = SLOT_SIZE * SLOTS_PER_SIDE;
+
+    private static int atlasCounter = 0;
+
+    private final String name;
+    private final List<Page> pages = new ArrayList<>();
+    private int pageCounter = 0;
+
+    /**
+     * @param name - a name for this atlas, used to register its pages in the {@link TextureManager}
+     */
+    public TileAtlas(String name) {
+        this.name = name.toLowerCase().replaceAll("[^a-z0-9_\\-.]", "_") + "_" + atlasCounter++;
+    }
+
+    /**
+     * @param image - an image
+     * @return whether the given image fits in a slot of this atlas
+     */
+    public boolean accepts(DecodedImage image) {
+        return image.getWidth() == SLOT_SIZE && image.getHeight() == SLOT_SIZE;
+    }
+
+    /**
+     * Finds a free slot in this atlas, creating a new page if needed, and uploads the given image to it.
+     *
+     * @param image - the image to upload
+     * @return the slot the image was uploaded to
+     *
+     * @throws IllegalArgumentException if the image does not fit in a slot
+     */
+    public Slot allocate(DecodedImage image) {
+        if(!this.accepts(image)) throw new IllegalArgumentException("Image does not fit in a " + SLOT_SIZE + "x" + SLOT_SIZE + " atlas slot");
+        Page page = null;
+        for(Page candidate: this.pages) {
+            if(candidate.usedCount < SLOTS_PER_PAGE) {
+                page = candidate;
+                break;
+            }
+        }
+        if(page == null) {
+            page = new Page(new ResourceLocation("terramap", "textures/gui/maps/atlas/" + this.name + "/" + this.pageCounter++));
+            this.pages.add(page);
+        }
+        int index = page.used.nextClearBit(0);
+        page.used.set(index);
+        page.usedCount++;
+        Slot slot = new Slot(page, index);
+        GlStateManager.bindTexture(page.texture.getGlTextureId());
+        TextureUtil.uploadTextureMipmap(new int[][] { image.getPixels() }, SLOT_SIZE, SLOT_SIZE, slot.getX() * SLOT_SIZE, slot.getY() * SLOT_SIZE, false, false);
+        return slot;
+    }
+
+    /**
+     * Marks a slot as free. Pages which do not have any slot in use anymore are deleted.
+     *
+     * @param slot - the slot to free
+     */
+    public void free(Slot slot) {
+        Page page = slot.page;
+        if(!page.used.get(slot.index)) return;
+        page.used.clear(slot.index);
+        page.usedCount--;
+        if(page.usedCount <= 0) {
+            this.pages.remove(page);
+            Minecraft.getMinecraft().getTextureManager().deleteTexture(page.location);
+        }
+    }
+
+    /**
+     * @return the number of pages this atlas currently has
+     */
+    public int getPageCount() {
+        return this.pages.size();
+    }
+
+    /**
+     * @return the number of slots in use across all pages
+     */
+    public int getUsedSlotCount() {
+        return this.pages.stream().mapToInt(p -> p.usedCount).sum();
+    }
+
+    /**
+     * A single GL texture holding {@link TileAtlas#SLOTS_PER_PAGE} slots.
+     */
+    public static class Page {
+
+        private final ResourceLocation location;
+        private final PageTexture texture;
+        private final BitSet used = new BitSet(SLOTS_PER_PAGE);
+        private int usedCount = 0;
+
+        private Page(ResourceLocation location) {
+            this.location = location;
+            this.texture = new PageTexture();
+            Minecraft.getMinecraft().getTextureManager().loadTexture(location, this.texture);
+        }
+
+        /**
+         * @return the location this page's texture is registered at in the {@link TextureManager}
+         */
+        public ResourceLocation getLocation() {
+            return this.location;
+        }
+
+    }
+
+    /**
+     * A region of a {@link Page} holding the texture of a single tile.
+     */
+    public static class Slot {
+
+        private final Page page;
+        private final int index;
+
+        private Slot(Page page, int index) {
+            this.page = page;
+            this.index = index;
+        }
+
+        public Page getPage() {
+            return this.page;
+        }
+
+        /**
+         * @return the horizontal position of this slot in its page, in slots
+         */
+        public int getX() {
+            return this.index % SLOTS_PER_SIDE;
+        }
+
+        /**
+         * @return the vertical position of this slot in its page, in slots
+         */
+        public int getY() {
+            return this.index / SLOTS_PER_SIDE;
+        }
+
+    }
+
+    private static class PageTexture extends AbstractTexture {
+
+        @Override
+        public void loadTexture(IResourceManager resourceManager) {
+            TextureUtil.allocateTexture(this.getGlTextureId(), PAGE_SIZE, PAGE_SIZE);
+        }
+
+    }
+
+}
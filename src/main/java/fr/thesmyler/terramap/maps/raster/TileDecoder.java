@@ -0,0 +1,83 @@
+package fr.thesmyler.terramap.maps.raster;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+
+/**
+ * Decodes tile images on a pool of worker threads,
+ * so that the render thread only ever has to upload pixels that are ready to use.
+ *
+ * @author SmylerMC
+ *
+ */
+public final class TileDecoder {
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            new ThreadFactoryBuilder().setNameFormat("Terramap tile decoder #%d").setDaemon(true).build()
+    );
+
+    private TileDecoder() {}
+
+    /**
+     * Decodes an encoded image (PNG, JPEG, WebP...) once the given download completes.
+     * The returned future completes exceptionally with an {@link IOException} if the data could not be decoded.
+     * Cancelling the returned future does not cancel the download.
+     *
+     * @param download - a future that completes with the encoded image data, or with null if there is no data
+     * @param description - supplies a description of the image source to use in error messages
+     *
+     * @return a future that completes with the decoded image
+     */
+    public static CompletableFuture<DecodedImage> decode(CompletableFuture<ByteBuf> download, Supplier<String> description) {
+        return download.thenApplyAsync(buf -> decode(buf, description), EXECUTOR);
+    }
+
+    /**
+     * Extracts the pixels of the image a future completes with, on the decoding pool.
+     *
+     * @param image - a future that completes with the image to extract pixels from
+     *
+     * @return a future that completes with the decoded image
+     */
+    public static CompletableFuture<DecodedImage> decodeImage(CompletableFuture<BufferedImage> image) {
+        return image.thenApplyAsync(DecodedImage::fromImage, EXECUTOR);
+    }
+
+    /**
+     * Computes an image on the decoding pool, for tiles which are generated locally instead of being downloaded.
+     *
+     * @param generator - computes the image
+     *
+     * @return a future that completes with the generated image
+     */
+    public static CompletableFuture<DecodedImage> generate(Supplier<DecodedImage> generator) {
+        return CompletableFuture.supplyAsync(generator, EXECUTOR);
+    }
+
+    private static DecodedImage decode(ByteBuf buf, Supplier<String> description) {
+        try {
+            if(buf == null) throw new IOException("404 response");
+            try (ByteBufInputStream is = new ByteBufInputStream(buf)) {
+                BufferedImage image = ImageIO.read(is);
+                if(image == null) throw new IOException("Failed to read image! " + description.get());
+                return DecodedImage.fromImage(image);
+            }
+        } catch(IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+}
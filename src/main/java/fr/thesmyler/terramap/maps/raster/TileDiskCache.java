@@ -0,0 +1,286 @@
+package fr.thesmyler.terramap.maps.raster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import fr.thesmyler.terramap.TerramapMod;
+import fr.thesmyler.terramap.util.geo.TilePos;
+
+/**
+ * A persistent cache of decoded tile images, so tiles that were already seen do not need to be downloaded and decoded again.
+ * Tiles are stored as raw ARGB pixels, one file per tile, in a directory per map id and provider version.
+ * Files are read back in a single read, which completely skips image decoding.
+ * They are not memory mapped, as mapped files cannot be deleted on Windows, which would keep the cache from evicting them.
+ * <br>
+ * All disk operations happen on a dedicated thread.
+ * The cache keeps an in-memory index of the files it holds so misses can be detected without touching the disk,
+ * and evicts the least recently used tiles once its size goes over a configurable limit.
+ *
+ * @author SmylerMC
+ *
+ */
+public class TileDiskCache {
+
+    private static final int MAGIC = 0x544D5449; // "TMTI"
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    private static final String EXTENSION = ".tile";
+
+    private final Path directory;
+    private final Map<Path, Long> entries = new LinkedHashMap<>(16, 0.75f, true); // File => size, least recently used first. Guarded by this.
+    private final Map<String, Long> validatedVersions = new HashMap<>(); // Guarded by this
+    private final ExecutorService executor;
+    private volatile long maxSize;
+    private long size = 0;  // Guarded by this
+
+    /**
+     * Creates a new cache in the given directory and starts indexing the files it already contains.
+     *
+     * @param directory - a directory to store tiles in
+     * @param maxSize   - the maximum size of the cache, in bytes
+     */
+    public TileDiskCache(Path directory, long maxSize) {
+        this.directory = directory.toAbsolutePath();
+        this.maxSize = maxSize;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Terramap tile disk cache").setDaemon(true).build());
+        this.executor.execute(this::loadIndex);
+    }
+
+    /**
+     * Starts reading a tile from the cache.
+     * This does not touch the disk if the tile is not in the cache.
+     *
+     * @param mapId     - the id of the map the tile is from
+     * @param version   - the version of the map's provider
+     * @param position  - the position of the tile
+     *
+     * @return a future that completes with the cached image, or null if the tile is not in the cache
+     */
+    public CompletableFuture<DecodedImage> read(String mapId, long version, TilePos position) {
+        Path file = this.fileFor(mapId, version, position);
+        synchronized(this) {
+            if(this.entries.get(file) == null) return null; // Also marks the entry as recently used
+        }
+        return CompletableFuture.supplyAsync(() -> this.readFile(file), this.executor);
+    }
+
+    /**
+     * Writes a tile to the cache once its image has been decoded.
+     *
+     * @param mapId     - the id of the map the tile is from
+     * @param version   - the version of the map's provider
+     * @param position  - the position of the tile
+     * @param image     - a future that completes with the image to store
+     *
+     * @return a future that completes once the tile has been written
+     */
+    public CompletableFuture<Void> write(String mapId, long version, TilePos position, CompletableFuture<DecodedImage> image) {
+        Path file = this.fileFor(mapId, version, position);
+        return image.thenAcceptAsync(img -> this.writeFile(file, img), this.executor);
+    }
+
+    /**
+     * Deletes all tiles cached for the given map with a provider version other than the given one.
+     * This only touches the disk the first time it is called for a given map and version.
+     *
+     * @param mapId     - the id of the map
+     * @param version   - the current version of the map's provider
+     */
+    public void invalidateOtherVersions(String mapId, long version) {
+        synchronized(this) {
+            Long validated = this.validatedVersions.put(mapId, version);
+            if(validated != null && validated == version) return;
+        }
+        Path mapDirectory = this.directory.resolve(sanitize(mapId));
+        Path versionDirectory = mapDirectory.resolve(String.valueOf(version));
+        this.executor.execute(() -> {
+            synchronized(this) {
+                Iterator<Map.Entry<Path, Long>> iterator = this.entries.entrySet().iterator();
+                while(iterator.hasNext()) {
+                    Map.Entry<Path, Long> entry = iterator.next();
+                    if(entry.getKey().startsWith(mapDirectory) && !entry.getKey().startsWith(versionDirectory)) {
+                        this.size -= entry.getValue();
+                        iterator.remove();
+                    }
+                }
+            }
+            if(!Files.isDirectory(mapDirectory)) return;
+            try(Stream<Path> versions = Files.list(mapDirectory)) {
+                versions.filter(p -> !p.equals(versionDirectory)).forEach(TileDiskCache::deleteRecursively);
+            } catch(IOException e) {
+                TerramapMod.logger.warn("Failed to invalidate outdated cached tiles for map " + mapId);
+                TerramapMod.logger.catching(e);
+            }
+        });
+    }
+
+    /**
+     * Sets the maximum size of this cache, and evicts tiles if it is now over that size.
+     *
+     * @param maxSize - the maximum size of the cache, in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        this.executor.execute(this::evictToMaxSize);
+    }
+
+    public long getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the current size of the tiles in this cache, in bytes
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of tiles in this cache
+     */
+    public synchronized int getTileCount() {
+        return this.entries.size();
+    }
+
+    private DecodedImage readFile(Path file) {
+        try {
+            IntBuffer ints = ByteBuffer.wrap(Files.readAllBytes(file)).asIntBuffer();
+            if(ints.remaining() < 3 || ints.get() != MAGIC) throw new IOException("Invalid cached tile header: " + file);
+            int width = ints.get();
+            int height = ints.get();
+            if(width <= 0 || height <= 0 || ints.remaining() != width * height) throw new IOException("Invalid cached tile dimensions: " + file);
+            int[] pixels = new int[width * height];
+            ints.get(pixels);
+            return new DecodedImage(width, height, pixels);
+        } catch(IOException e) {
+            this.forget(file);
+            deleteRecursively(file);
+            throw new CompletionException(e);
+        }
+    }
+
+    private void writeFile(Path file, DecodedImage image) {
+        if(this.maxSize <= 0) return;
+        int[] pixels = image.getPixels();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + pixels.length * Integer.BYTES);
+        buffer.putInt(MAGIC).putInt(image.getWidth()).putInt(image.getHeight());
+        buffer.asIntBuffer().put(pixels);
+        buffer.rewind();
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while(buffer.hasRemaining()) channel.write(buffer);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(IOException e) {
+            TerramapMod.logger.warn("Failed to write tile to disk cache: " + file);
+            TerramapMod.logger.catching(e);
+            return;
+        }
+        synchronized(this) {
+            Long previous = this.entries.put(file, (long) buffer.capacity());
+            if(previous != null) this.size -= previous;
+            this.size += buffer.capacity();
+        }
+        this.evictToMaxSize();
+    }
+
+    private void evictToMaxSize() {
+        List<Path> toDelete = new ArrayList<>();
+        synchronized(this) {
+            Iterator<Map.Entry<Path, Long>> iterator = this.entries.entrySet().iterator();
+            while(this.size > this.maxSize && iterator.hasNext()) {
+                Map.Entry<Path, Long> entry = iterator.next();
+                this.size -= entry.getValue();
+                toDelete.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+        toDelete.forEach(TileDiskCache::deleteRecursively);
+    }
+
+    private void loadIndex() {
+        if(!Files.isDirectory(this.directory)) return;
+        List<Path> files = new ArrayList<>();
+        try(Stream<Path> stream = Files.walk(this.directory)) {
+            stream.filter(p -> p.toString().endsWith(EXTENSION)).forEach(files::add);
+        } catch(IOException e) {
+            TerramapMod.logger.warn("Failed to index tile disk cache");
+            TerramapMod.logger.catching(e);
+            return;
+        }
+        Map<Path, Long> modified = new HashMap<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        for(Path file: files) {
+            try {
+                modified.put(file, Files.getLastModifiedTime(file).toMillis());
+                sizes.put(file, Files.size(file));
+            } catch(IOException silenced) {
+                // The file was probably deleted in the meantime
+            }
+        }
+        files.removeIf(f -> !sizes.containsKey(f));
+        files.sort(Comparator.comparing(modified::get));
+        synchronized(this) {
+            for(Path file: files) {
+                long fileSize = sizes.get(file);
+                this.entries.putIfAbsent(file, fileSize);
+                this.size += fileSize;
+            }
+        }
+        this.evictToMaxSize();
+    }
+
+    private synchronized void forget(Path file) {
+        Long fileSize = this.entries.remove(file);
+        if(fileSize != null) this.size -= fileSize;
+    }
+
+    private Path fileFor(String mapId, long version, TilePos position) {
+        return this.directory
+                .resolve(sanitize(mapId))
+                .resolve(String.valueOf(version))
+                .resolve(String.valueOf(position.getZoom()))
+                .resolve(String.valueOf(position.getX()))
+                .resolve(position.getY() + EXTENSION);
+    }
+
+    private static String sanitize(String mapId) {
+        return mapId.replaceAll("[^a-zA-Z0-9_\\-.]", "_");
+    }
+
+    private static void deleteRecursively(Path path) {
+        try(Stream<Path> stream = Files.walk(path)) {
+            stream.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch(IOException e) {
+                    TerramapMod.logger.warn("Failed to delete cached tile file: " + p);
+                }
+            });
+        } catch(IOException silenced) {
+            // Nothing to delete
+        }
+    }
+
+}
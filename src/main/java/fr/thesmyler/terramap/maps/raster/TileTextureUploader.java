@@ -0,0 +1,86 @@
+package fr.thesmyler.terramap.maps.raster;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.texture.DynamicTexture;
+import net.minecraft.client.renderer.texture.TextureManager;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * Uploads decoded tile images to the GPU from the render thread,
+ * while making sure tile arrival does not take more than a fixed slice of each frame.
+ * Tiles that cannot be uploaded because the budget for the current frame is spent should try again on the next frame.
+ *
+ * @author SmylerMC
+ *
+ */
+public final class TileTextureUploader {
+
+    public static final int MAX_UPLOADS_PER_FRAME = 8;
+    public static final long MAX_UPLOAD_NANOS_PER_FRAME = 2_000_000L;
+
+    private static int uploadsThisFrame = 0;
+    private static long nanosThisFrame = 0;
+
+    private TileTextureUploader() {}
+
+    /**
+     * Resets the upload budget. Called at the start of every frame.
+     */
+    public static void onFrameStart() {
+        uploadsThisFrame = 0;
+        nanosThisFrame = 0;
+    }
+
+    /**
+     * @return whether there is budget left to upload a texture in this frame.
+     *         At least one upload is always allowed per frame so loading never stalls.
+     */
+    public static boolean canUpload() {
+        return uploadsThisFrame == 0 || (uploadsThisFrame < MAX_UPLOADS_PER_FRAME && nanosThisFrame < MAX_UPLOAD_NANOS_PER_FRAME);
+    }
+
+    /**
+     * Uploads a decoded image as a new dynamic texture, if the frame budget allows it.
+     * Has to be called from the render thread.
+     *
+     * @param name - the name to register the texture with in the {@link TextureManager}
+     * @param image - the image to upload
+     *
+     * @return the location of the new texture, or null if the budget for this frame has already been spent
+     */
+    public static ResourceLocation upload(String name, DecodedImage image) {
+        if(!canUpload()) return null;
+        long start = System.nanoTime();
+        TextureManager textureManager = Minecraft.getMinecraft().getTextureManager();
+        DynamicTexture texture = new DynamicTexture(image.getWidth(), image.getHeight());
+        int[] pixels = image.getPixels();
+        System.arraycopy(pixels, 0, texture.getTextureData(), 0, pixels.length);
+        texture.updateDynamicTexture();
+        ResourceLocation location = textureManager.getDynamicTextureLocation(name, texture);
+        countUpload(start);
+        return location;
+    }
+
+    /**
+     * Uploads a decoded image to a free slot of a {@link TileAtlas}, if the frame budget allows it.
+     * Has to be called from the render thread.
+     *
+     * @param atlas - the atlas to upload the image to
+     * @param image - the image to upload, it has to be accepted by the atlas
+     *
+     * @return the slot the image was uploaded to, or null if the budget for this frame has already been spent
+     */
+    public static TileAtlas.Slot uploadToAtlas(TileAtlas atlas, DecodedImage image) {
+        if(!canUpload()) return null;
+        long start = System.nanoTime();
+        TileAtlas.Slot slot = atlas.allocate(image);
+        countUpload(start);
+        return slot;
+    }
+
+    private static void countUpload(long start) {
+        uploadsThisFrame++;
+        nanosThisFrame += System.nanoTime() - start;
+    }
+
+}
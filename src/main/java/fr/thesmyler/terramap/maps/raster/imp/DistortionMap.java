@@ -0,0 +1,119 @@
+package fr.thesmyler.terramap.maps.raster.imp;
+
+import com.google.common.base.Preconditions;
+
+import fr.thesmyler.smylibgui.SmyLibGui;
+import fr.thesmyler.terramap.TerramapClientContext;
+import fr.thesmyler.terramap.maps.raster.CachingRasterTiledMap;
+import fr.thesmyler.terramap.maps.raster.TiledMapProvider;
+import fr.thesmyler.terramap.util.geo.TilePosImmutable;
+import fr.thesmyler.terramap.util.geo.WebMercatorUtil;
+import net.buildtheearth.terraplusplus.projection.GeographicProjection;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * Shows the area and angular distortion of the world's {@link GeographicProjection}.
+ * Tiles are computed in the background and cached like any other raster tile,
+ * and are all unloaded when the projection or the cell size changes.
+ *
+ * @author SmylerMC
+ *
+ */
+public class DistortionMap extends CachingRasterTiledMap<DistortionTile> {
+
+    public static final int[] CELL_SIZES = { 4, 8, 16, 32, 64 };
+    public static final int DEFAULT_CELL_SIZE = 16;
+
+    private GeographicProjection projection;
+    private int cellSize = DEFAULT_CELL_SIZE;
+
+    /**
+     * Unloads all tiles if the world's projection has changed since they were computed.
+     */
+    public void updateProjection() {
+        GeographicProjection projection = TerramapClientContext.getContext().getProjection();
+        if(projection != this.projection) {
+            this.projection = projection;
+            this.unloadAll();
+        }
+    }
+
+    @Override
+    protected DistortionTile createNewTile(TilePosImmutable position) {
+        return new DistortionTile(position, this.projection, this.cellSize, this.getAtlas());
+    }
+
+    public int getCellSize() {
+        return this.cellSize;
+    }
+
+    /**
+     * Sets the size of the cells the distortion is computed for. All tiles are computed again.
+     *
+     * @param cellSize - a cell size, in pixels, that divides {@link WebMercatorUtil#TILE_DIMENSIONS}
+     *
+     * @throws IllegalArgumentException if the cell size does not divide {@link WebMercatorUtil#TILE_DIMENSIONS}
+     */
+    public void setCellSize(int cellSize) {
+        Preconditions.checkArgument(cellSize > 0 && WebMercatorUtil.TILE_DIMENSIONS % cellSize == 0, "Invalid distortion cell size: " + cellSize);
+        if(cellSize == this.cellSize) return;
+        this.cellSize = cellSize;
+        this.unloadAll();
+    }
+
+    @Override
+    public String getId() {
+        return "distortion_debug";
+    }
+
+    @Override
+    public String getLocalizedName(String localeKey) {
+        return SmyLibGui.getTranslator().format("terramap.mapwidget.layers.distortion.name"); // This is always local
+    }
+
+    @Override
+    public String getComment() {
+        return "Projection distortion debug map";
+    }
+
+    @Override
+    public TiledMapProvider getProvider() {
+        return TiledMapProvider.INTERNAL;
+    }
+
+    @Override
+    public long getProviderVersion() {
+        return 0;
+    }
+
+    @Override
+    public int getDisplayPriority() {
+        return 0;
+    }
+
+    @Override
+    public boolean isAllowedOnMinimap() {
+        return true;
+    }
+
+    @Override
+    public boolean isDebug() {
+        return true;
+    }
+
+    @Override
+    public ResourceLocation getDefaultTileTexture() {
+        return null;
+    }
+
+    @Override
+    public int getMinZoom() {
+        return 0;
+    }
+
+    @Override
+    public int getMaxZoom() {
+        return 25;
+    }
+
+}
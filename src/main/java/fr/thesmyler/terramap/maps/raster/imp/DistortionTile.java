@@ -0,0 +1,165 @@
+package fr.thesmyler.terramap.maps.raster.imp;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import fr.thesmyler.terramap.maps.raster.DecodedImage;
+import fr.thesmyler.terramap.maps.raster.RasterTile;
+import fr.thesmyler.terramap.maps.raster.TileAtlas;
+import fr.thesmyler.terramap.maps.raster.TileDecoder;
+import fr.thesmyler.terramap.maps.raster.TileTextureUploader;
+import fr.thesmyler.terramap.util.geo.GeoPointMutable;
+import fr.thesmyler.terramap.util.geo.TilePosImmutable;
+import fr.thesmyler.terramap.util.geo.WebMercatorUtil;
+import fr.thesmyler.terramap.util.math.Vec2dMutable;
+import net.buildtheearth.terraplusplus.projection.GeographicProjection;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import net.minecraft.client.Minecraft;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * A tile of a {@link DistortionMap}.
+ * Its texture is computed on the tile decoding threads the first time it is requested.
+ *
+ * @author SmylerMC
+ *
+ */
+public class DistortionTile implements RasterTile {
+
+    private static final int OUT_OF_BOUNDS_COLOR = 0x1A000000;
+
+    private final TilePosImmutable position;
+    private final GeographicProjection projection;
+    private final int cellSize;
+    private final TileAtlas atlas;
+    private ResourceLocation texture;
+    private TileAtlas.Slot atlasSlot;
+    private CompletableFuture<DecodedImage> textureTask;
+
+    /**
+     * @param position      - the position of this tile
+     * @param projection    - the projection to show the distortion of
+     * @param cellSize      - the size of the cells the distortion is computed for, in pixels. Should divide {@link WebMercatorUtil#TILE_DIMENSIONS}.
+     * @param atlas         - an atlas to store the texture in, or null
+     */
+    public DistortionTile(TilePosImmutable position, GeographicProjection projection, int cellSize, TileAtlas atlas) {
+        this.position = position;
+        this.projection = projection;
+        this.cellSize = cellSize;
+        this.atlas = atlas;
+    }
+
+    @Override
+    public boolean isTextureAvailable() {
+        try {
+            this.tryLoadingTexture();
+        } catch (Throwable e) {
+            return false;
+        }
+        return this.texture != null;
+    }
+
+    @Override
+    public ResourceLocation getTexture() throws Throwable {
+        if(this.texture == null) {
+            if(this.textureTask == null) {
+                this.textureTask = TileDecoder.generate(this::computeImage);
+            } else this.tryLoadingTexture();
+        }
+        return this.texture;
+    }
+
+    @Override
+    public void cancelTextureLoading() {
+        if(this.textureTask != null) {
+            this.textureTask.cancel(true);
+            this.textureTask = null;
+        }
+    }
+
+    @Override
+    public void unloadTexture() {
+        this.cancelTextureLoading();
+        if(this.atlasSlot != null) {
+            this.atlas.free(this.atlasSlot);
+            this.atlasSlot = null;
+            this.texture = null;
+        } else if(this.texture != null) {
+            Minecraft.getMinecraft().getTextureManager().deleteTexture(this.texture);
+            this.texture = null;
+        }
+    }
+
+    @Override
+    public TileAtlas.Slot getAtlasSlot() {
+        return this.atlasSlot;
+    }
+
+    @Override
+    public TilePosImmutable getPosition() {
+        return this.position;
+    }
+
+    private void tryLoadingTexture() throws Throwable {
+        if(this.textureTask != null && this.textureTask.isDone()){
+            if(this.textureTask.isCompletedExceptionally()) {
+                if(!this.textureTask.isCancelled()) {
+                    try {
+                        this.textureTask.get(); // That will throw an exception
+                    } catch(ExecutionException e) {
+                        this.textureTask = null;
+                        throw e.getCause();
+                    }
+                }
+                this.textureTask = null;
+                return;
+            }
+            DecodedImage image = this.textureTask.get();
+            if(this.atlas != null && this.atlas.accepts(image)) {
+                this.atlasSlot = TileTextureUploader.uploadToAtlas(this.atlas, image);
+                if(this.atlasSlot != null) this.texture = this.atlasSlot.getPage().getLocation();
+            } else {
+                this.texture = TileTextureUploader.upload("textures/gui/maps/distortion/" + this.position.getZoom() + "/" + this.position.getX() + "/" + this.position.getY(), image);
+            }
+            if(this.texture != null) this.textureTask = null;
+        }
+    }
+
+    private DecodedImage computeImage() {
+        int size = WebMercatorUtil.TILE_DIMENSIONS;
+        int[] pixels = new int[size * size];
+        Vec2dMutable cellCenter = new Vec2dMutable();
+        GeoPointMutable location = new GeoPointMutable();
+        for(int cellY = 0; cellY < size; cellY += this.cellSize) {
+            for(int cellX = 0; cellX < size; cellX += this.cellSize) {
+                cellCenter.set(
+                        (double) this.position.getX() * size + cellX + this.cellSize / 2d,
+                        (double) this.position.getY() * size + cellY + this.cellSize / 2d);
+                WebMercatorUtil.toGeo(location, cellCenter, this.position.getZoom());
+                int color = this.distortionColor(location);
+                int maxX = Math.min(cellX + this.cellSize, size);
+                int maxY = Math.min(cellY + this.cellSize, size);
+                for(int y = cellY; y < maxY; y++) {
+                    for(int x = cellX; x < maxX; x++) {
+                        pixels[y * size + x] = color;
+                    }
+                }
+            }
+        }
+        return new DecodedImage(size, size, pixels);
+    }
+
+    private int distortionColor(GeoPointMutable location) {
+        if(!WebMercatorUtil.PROJECTION_BOUNDS.contains(location)) return 0;
+        try {
+            double[] distortion = this.projection.tissot(location.longitude(), location.latitude());
+            float red = (float) Math.min(distortion[0] / 4f, 1f);
+            float green = (float) Math.min(distortion[1] / 2/Math.PI, 1f);
+            float alpha = Math.min(red + green, 1f);
+            return Math.round(alpha * 255) << 24 | Math.round(red * 255) << 16 | Math.round(green * 255) << 8;
+        } catch(OutOfProjectionBoundsException e) {
+            return OUT_OF_BOUNDS_COLOR;
+        }
+    }
+
+}
@@ -16,7 +16,7 @@ public class TerrainPreviewMap extends CachingRasterTiledMap<TerrainPreviewTile>
     }
     @Override
     protected TerrainPreviewTile createNewTile(TilePosImmutable position) {
-        return new TerrainPreviewTile(position);
+        return new TerrainPreviewTile(position, this.getAtlas());
     }
 
     @Override
@@ -1,26 +1,35 @@
 package fr.thesmyler.terramap.maps.raster.imp;
 
-import java.awt.image.BufferedImage;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import fr.thesmyler.terramap.TerramapClientContext;
+import fr.thesmyler.terramap.maps.raster.DecodedImage;
 import fr.thesmyler.terramap.maps.raster.RasterTile;
+import fr.thesmyler.terramap.maps.raster.TileAtlas;
+import fr.thesmyler.terramap.maps.raster.TileDecoder;
+import fr.thesmyler.terramap.maps.raster.TileTextureUploader;
 import fr.thesmyler.terramap.util.geo.TilePosImmutable;
 import net.buildtheearth.terraplusplus.generator.TerrainPreview;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.client.renderer.texture.TextureManager;
 import net.minecraft.util.ResourceLocation;
 
 public class TerrainPreviewTile implements RasterTile {
 
     private final TilePosImmutable position;
+    private final TileAtlas atlas;
     private ResourceLocation texture;
-    private CompletableFuture<BufferedImage> textureTask;
+    private TileAtlas.Slot atlasSlot;
+    private CompletableFuture<DecodedImage> textureTask;
 
-    public TerrainPreviewTile(TilePosImmutable position) {
+    public TerrainPreviewTile(TilePosImmutable position, TileAtlas atlas) {
         this.position = position;
+        this.atlas = atlas;
+    }
+
+    public TerrainPreviewTile(TilePosImmutable position) {
+        this(position, null);
     }
 
     @Override
@@ -45,7 +54,7 @@ public class TerrainPreviewTile implements RasterTile {
             if(this.textureTask == null) {
                 TerrainPreview preview = TerramapClientContext.getContext().getTerrainPreview();
                 if(preview != null) {
-                    this.textureTask = preview.tile(this.position.getX(), this.position.getY(), TerrainPreviewMap.BASE_ZOOM_LEVEL - this.position.getZoom());
+                    this.textureTask = TileDecoder.decodeImage(preview.tile(this.position.getX(), this.position.getY(), TerrainPreviewMap.BASE_ZOOM_LEVEL - this.position.getZoom()));
                 }
             } else this.tryLoadingTexture();
         }
@@ -59,7 +68,11 @@ public class TerrainPreviewTile implements RasterTile {
     @Override
     public void unloadTexture() {
         this.cancelTextureLoading();
-        if(this.texture != null) {
+        if(this.atlasSlot != null) {
+            this.atlas.free(this.atlasSlot);
+            this.atlasSlot = null;
+            this.texture = null;
+        } else if(this.texture != null) {
             Minecraft mc = Minecraft.getMinecraft();
             TextureManager textureManager = mc.getTextureManager();
             textureManager.deleteTexture(this.texture);
@@ -67,6 +80,11 @@ public class TerrainPreviewTile implements RasterTile {
         }
     }
 
+    @Override
+    public TileAtlas.Slot getAtlasSlot() {
+        return this.atlasSlot;
+    }
+
     @Override
     public TilePosImmutable getPosition() {
         return this.position;
@@ -86,11 +104,14 @@ public class TerrainPreviewTile implements RasterTile {
                 this.textureTask = null;
                 return;
             }
-            Minecraft mc = Minecraft.getMinecraft();
-            TextureManager textureManager = mc.getTextureManager();
-            BufferedImage image = this.textureTask.get();
-            this.texture = textureManager.getDynamicTextureLocation("textures/gui/maps/debugterrainpreviewmap/" + this.position.getZoom() + "/" + this.position.getX() + "/" + this.position.getY(), new DynamicTexture(image));
-            this.textureTask = null;
+            DecodedImage image = this.textureTask.get();
+            if(this.atlas != null && this.atlas.accepts(image)) {
+                this.atlasSlot = TileTextureUploader.uploadToAtlas(this.atlas, image);
+                if(this.atlasSlot != null) this.texture = this.atlasSlot.getPage().getLocation();
+            } else {
+                this.texture = TileTextureUploader.upload("textures/gui/maps/debugterrainpreviewmap/" + this.position.getZoom() + "/" + this.position.getX() + "/" + this.position.getY(), image);
+            }
+            if(this.texture != null) this.textureTask = null;
         }
     }
 
@@ -1,23 +1,21 @@
 package fr.thesmyler.terramap.maps.raster.imp;
 
-import java.awt.image.BufferedImage;
-import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
-import javax.imageio.ImageIO;
-
-import fr.thesmyler.terramap.TerramapMod;
+import fr.thesmyler.terramap.maps.raster.DecodedImage;
 import fr.thesmyler.terramap.maps.raster.RasterTile;
-import fr.thesmyler.terramap.util.ImageUtil;
+import fr.thesmyler.terramap.maps.raster.TileAtlas;
+import fr.thesmyler.terramap.maps.raster.TileDecoder;
+import fr.thesmyler.terramap.maps.raster.TileDiskCache;
+import fr.thesmyler.terramap.maps.raster.TileTextureUploader;
 import fr.thesmyler.terramap.util.geo.TilePosImmutable;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufInputStream;
 import net.buildtheearth.terraplusplus.util.http.Disk;
 import net.buildtheearth.terraplusplus.util.http.Http;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.client.renderer.texture.TextureManager;
 import net.minecraft.util.ResourceLocation;
 
@@ -29,16 +27,42 @@ public class UrlRasterTile implements RasterTile {
 
     private final TilePosImmutable pos;
     private final String url;
+    private final String mapId;
+    private final long mapVersion;
+    private final TileDiskCache diskCache;
+    private final TileAtlas atlas;
     private ResourceLocation texture = null;
+    private TileAtlas.Slot atlasSlot = null;
     private CompletableFuture<ByteBuf> textureTask;
-
-
-    public UrlRasterTile(String urlPattern, TilePosImmutable pos) {
+    private CompletableFuture<DecodedImage> decodeTask;
+    private boolean readingFromDiskCache = false;
+
+
+    /**
+     * Creates a new tile which decoded image is saved to and read from a {@link TileDiskCache},
+     * and which texture is stored in a {@link TileAtlas} when it has the right dimensions.
+     *
+     * @param urlPattern    - the url pattern of the map
+     * @param pos           - the position of this tile
+     * @param mapId         - the id of the map, used as a key in the disk cache
+     * @param mapVersion    - the provider version of the map, used as a key in the disk cache
+     * @param diskCache     - the disk cache to use, may be null to always download and decode the tile
+     * @param atlas         - the atlas to store the texture in, may be null to always use a dedicated texture
+     */
+    public UrlRasterTile(String urlPattern, TilePosImmutable pos, String mapId, long mapVersion, TileDiskCache diskCache, TileAtlas atlas) {
         this.pos = pos;
         this.url = urlPattern
                 .replace("{x}", String.valueOf(this.getPosition().getX()))
                 .replace("{y}", String.valueOf(this.getPosition().getY()))
                 .replace("{z}", String.valueOf(this.getPosition().getZoom()));
+        this.mapId = mapId;
+        this.mapVersion = mapVersion;
+        this.diskCache = diskCache;
+        this.atlas = atlas;
+    }
+
+    public UrlRasterTile(String urlPattern, TilePosImmutable pos) {
+        this(urlPattern, pos, null, 0, null, null);
     }
 
     public UrlRasterTile(String urlPattern, int zoom, int x, int y) {
@@ -63,37 +87,55 @@ public class UrlRasterTile implements RasterTile {
     @Override
     public ResourceLocation getTexture() throws Throwable {
         if(this.texture == null) {
-            if(this.textureTask == null) {
-                this.textureTask = Http.get(this.getURL());
+            if(this.decodeTask == null) {
+                if(this.diskCache != null) this.decodeTask = this.diskCache.read(this.mapId, this.mapVersion, this.pos);
+                this.readingFromDiskCache = this.decodeTask != null;
+                if(!this.readingFromDiskCache) {
+                    this.textureTask = Http.get(this.getURL());
+                    this.decodeTask = TileDecoder.decode(this.textureTask, this::describeSource);
+                    if(this.diskCache != null) this.diskCache.write(this.mapId, this.mapVersion, this.pos, this.decodeTask);
+                }
             } else this.tryLoadingTexture();
         }
         return this.texture;
     }
 
     private void tryLoadingTexture() throws Throwable {
-        //TODO Do that fully async, DynamicTexture::new is expensive
-        if(this.textureTask != null && this.textureTask.isDone()){
-            if(this.textureTask.isCompletedExceptionally()) {
-                if(this.textureTask.isCancelled()) {
+        if(this.decodeTask != null && this.decodeTask.isDone()){
+            if(this.decodeTask.isCompletedExceptionally()) {
+                if(this.readingFromDiskCache || this.decodeTask.isCancelled() || this.textureTask.isCancelled()) {
+                    // Also covers failed disk cache reads, the failing entry is dropped and the tile will be downloaded again
                     this.textureTask = null;
+                    this.decodeTask = null;
                 } else {
                     try {
-                        this.textureTask.get(); // That will throw an exception
+                        this.decodeTask.get(); // That will throw an exception
                     } catch(ExecutionException e) {
                         throw e.getCause();
                     }
                 }
                 return;
             }
-            Minecraft mc = Minecraft.getMinecraft();
-            TextureManager textureManager = mc.getTextureManager();
-            ByteBuf buf = this.textureTask.get();
-            if(buf == null) throw new IOException("404 response");
-            try (ByteBufInputStream is = new ByteBufInputStream(buf)) {
-                BufferedImage image = ImageIO.read(is);
-                if(image == null) throw new IOException("Failed to read image! url: " + this.getURL() + " file: " + Disk.cacheFileFor(new URL(this.getURL()).getFile()).toString());
-                this.texture = textureManager.getDynamicTextureLocation("textures/gui/maps/" + this.getURL(), new DynamicTexture(image));
+            // The image has been decoded on a worker thread, we only need to upload it if this frame's budget allows it
+            DecodedImage image = this.decodeTask.get();
+            if(this.atlas != null && this.atlas.accepts(image)) {
+                this.atlasSlot = TileTextureUploader.uploadToAtlas(this.atlas, image);
+                if(this.atlasSlot != null) this.texture = this.atlasSlot.getPage().getLocation();
+            } else {
+                this.texture = TileTextureUploader.upload("textures/gui/maps/" + this.getURL(), image);
             }
+            if(this.texture != null) {
+                this.textureTask = null;
+                this.decodeTask = null;
+            }
+        }
+    }
+
+    private String describeSource() {
+        try {
+            return "url: " + this.getURL() + " file: " + Disk.cacheFileFor(new URL(this.getURL()).getFile());
+        } catch(MalformedURLException e) {
+            return "url: " + this.getURL();
         }
     }
 
@@ -103,12 +145,20 @@ public class UrlRasterTile implements RasterTile {
             this.textureTask.cancel(true);
             this.textureTask = null;
         }
+        if(this.decodeTask != null) {
+            this.decodeTask.cancel(true);
+            this.decodeTask = null;
+        }
     }
 
     @Override
     public void unloadTexture() {
         this.cancelTextureLoading();
-        if(this.texture != null) {
+        if(this.atlasSlot != null) {
+            this.atlas.free(this.atlasSlot);
+            this.atlasSlot = null;
+            this.texture = null;
+        } else if(this.texture != null) {
             Minecraft mc = Minecraft.getMinecraft();
             TextureManager textureManager = mc.getTextureManager();
             textureManager.deleteTexture(this.texture);
@@ -116,6 +166,11 @@ public class UrlRasterTile implements RasterTile {
         }
     }
 
+    @Override
+    public TileAtlas.Slot getAtlasSlot() {
+        return this.atlasSlot;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if(obj == this) return true;
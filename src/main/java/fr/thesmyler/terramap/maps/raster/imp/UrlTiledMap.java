@@ -7,6 +7,7 @@ import java.util.Map;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 
+import fr.thesmyler.terramap.TerramapClientContext;
 import fr.thesmyler.terramap.TerramapMod;
 import fr.thesmyler.terramap.TerramapConfig;
 import fr.thesmyler.terramap.maps.raster.CachingRasterTiledMap;
@@ -102,7 +103,7 @@ public class UrlTiledMap extends CachingRasterTiledMap<UrlRasterTile> implements
 
     /**
      * Initializes this map by loading all tiles bellow a certain zoom level specified in {@link TerramapConfig}, and starts loading their textures, if it hasn't been done yet.
-     * Also makes sure the cache follows the mod's config
+     * Also makes sure the cache follows the mod's config, and drops tiles cached on disk for other versions of this map
      */
     @Override
     public void setup() {
@@ -119,13 +120,14 @@ public class UrlTiledMap extends CachingRasterTiledMap<UrlRasterTile> implements
                 TerramapMod.logger.catching(e);
             }
         }
+        TerramapClientContext.getTileDiskCache().invalidateOtherVersions(this.id, this.version);
         super.setup();
     }
 
     @Override
     protected UrlRasterTile createNewTile(TilePosImmutable pos) {
         String pat = this.urlPatterns[(pos.getZoom() + pos.getX() + pos.getY()) % this.urlPatterns.length];
-        return new UrlRasterTile(pat, pos);
+        return new UrlRasterTile(pat, pos, this.id, this.version, TerramapClientContext.getTileDiskCache(), this.getAtlas());
     }
 
     @Override
@@ -61,6 +61,45 @@ public final class NetworkUtil {
         return map;
     }
 
+    /**
+     * Writes an int using between 1 and 5 bytes, small positive values taking less space.
+     * 
+     * @param value - the value to write
+     * @param buf - the buffer to write to
+     */
+    public static void encodeVarInt(int value, ByteBuf buf) {
+        while((value & ~0x7F) != 0) {
+            buf.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    public static int decodeVarInt(ByteBuf buf) {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            byte b = buf.readByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("VarInt is too big");
+    }
+
+    /**
+     * Writes an int using between 1 and 5 bytes, values close to 0 taking less space, whether they are positive or negative.
+     * 
+     * @param value - the value to write
+     * @param buf - the buffer to write to
+     */
+    public static void encodeZigZagVarInt(int value, ByteBuf buf) {
+        encodeVarInt(value << 1 ^ value >> 31, buf);
+    }
+
+    public static int decodeZigZagVarInt(ByteBuf buf) {
+        int value = decodeVarInt(buf);
+        return value >>> 1 ^ -(value & 1);
+    }
+
     private static PacketBuffer getPacketBuffer(ByteBuf buf) {
         int readerIndex = buf.readerIndex();
         int writerIndex = buf.writerIndex();
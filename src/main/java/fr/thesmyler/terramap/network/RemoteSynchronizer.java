@@ -1,6 +1,12 @@
 package fr.thesmyler.terramap.network;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import fr.thesmyler.terramap.TerramapClientContext;
 import fr.thesmyler.terramap.TerramapMod;
@@ -11,16 +17,28 @@ import fr.thesmyler.terramap.TerramapConfig;
 import fr.thesmyler.terramap.saving.server.TerramapServerPreferences;
 import fr.thesmyler.terramap.maps.raster.MapStylesLibrary;
 import fr.thesmyler.terramap.maps.raster.imp.UrlTiledMap;
+import fr.thesmyler.terramap.network.playersync.PlayerLocationIndex;
+import fr.thesmyler.terramap.network.playersync.PlayerSyncEncoder;
+import fr.thesmyler.terramap.network.playersync.PlayerSyncSnapshot;
 import fr.thesmyler.terramap.network.playersync.PlayerSyncStatus;
+import fr.thesmyler.terramap.network.playersync.SP2CPlayerDeltaSyncPacket;
 import fr.thesmyler.terramap.network.playersync.SP2CPlayerSyncPacket;
 import fr.thesmyler.terramap.network.playersync.SP2CRegistrationExpiresPacket;
-import fr.thesmyler.terramap.network.playersync.TerramapLocalPlayer;
+import fr.thesmyler.terramap.network.playersync.TerramapPlayer;
+import fr.thesmyler.terramap.network.warps.SP2CWarpChangesPacket;
+import fr.thesmyler.terramap.network.warps.SP2CWarpKeysPacket;
 import fr.thesmyler.terramap.permissions.Permission;
 import fr.thesmyler.terramap.permissions.PermissionManager;
 import fr.thesmyler.terramap.util.TerramapUtil;
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
+import fr.thesmyler.terramap.util.geo.GeoUtil;
+import fr.thesmyler.terramap.warp.WarpSchema;
+import fr.thesmyler.terramap.warp.WarpStore;
 import net.buildtheearth.terraplusplus.generator.EarthGeneratorSettings;
-import net.minecraft.entity.player.EntityPlayer;
+import net.buildtheearth.terraplusplus.projection.GeographicProjection;
 import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.profiler.Profiler;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
@@ -29,20 +47,126 @@ public abstract class RemoteSynchronizer {
 
     public static final Map<UUID, RegisteredForUpdatePlayer> playersToUpdate = new HashMap<>();
 
+    // Players are synchronized if they are within a client's viewport, extended by this fraction of its size on each side
+    private static final double AREA_OF_INTEREST_MARGIN = 0.5d;
+    private static final double AREA_OF_INTEREST_MIN_MARGIN = 0.01d;
+    private static final double AREA_OF_INTEREST_CELL_SIZE = 1d;
+
+    // Clients with their map zoomed in closer than this, or following a marker, are synchronized twice as often
+    private static final double CLOSE_SYNC_ZOOM = 15d;
+    // Clients with their map zoomed out further than this are synchronized four times less often
+    private static final double FAR_SYNC_ZOOM = 6d;
+    // Clients which had nothing to update are synchronized up to 2^MAX_IDLE_BACKOFF times less often
+    private static final int MAX_IDLE_BACKOFF = 2;
+
+    // Player locations are projected and packets are encoded on this thread, the server thread only captures a snapshot
+    private static final ExecutorService SYNC_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Terramap player sync").setDaemon(true).build());
+    private static final PlayerSyncSnapshot snapshot = new PlayerSyncSnapshot();
+    private static final AtomicBoolean syncInProgress = new AtomicBoolean(false);
+
+    // Clients which asked for warp changes once are then sent them as they happen, this is checked every second
+    private static final int WARP_SYNC_INTERVAL = 20;
+    private static final Set<UUID> warpChangesSubscribers = ConcurrentHashMap.newKeySet(); // Players are looked up when sending, respawning replaces them
+    private static final Map<WarpStore, Long> sentWarpRevisions = new WeakHashMap<>();
+    // How many keys of the warp schema each client has been sent, by player uuid as respawning creates a new player on the same connection
+    private static final Map<UUID, Integer> sentWarpKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Synchronizes players with the clients which are due for an update.
+     * This is called every tick, and each client is updated at its own rate, depending on what its map is showing.
+     * 
+     * @param world - the world to synchronize the players of
+     */
     public static void syncPlayers(WorldServer world) {
         if(playersToUpdate.isEmpty()) return;
-        long ctime = System.currentTimeMillis();
-        List<TerramapLocalPlayer> players = new ArrayList<>();
-        for(EntityPlayer player: world.playerEntities) {
-            if(!TerramapServerPreferences.shouldDisplayPlayer(world, player.getPersistentID())) continue;
-            TerramapLocalPlayer terraPlayer = new TerramapLocalPlayer(player);
-            if(terraPlayer.isSpectator() && !TerramapConfig.SERVER.synchronizeSpectators) continue;
-            players.add(terraPlayer);
-        }
-        IMessage pkt = new SP2CPlayerSyncPacket(players.toArray(new TerramapLocalPlayer[0]));
-        for(RegisteredForUpdatePlayer player: RemoteSynchronizer.playersToUpdate.values()) {
-            TerramapNetworkManager.CHANNEL_MAPSYNC.sendTo(pkt, player.player);
+        checkRegistrations();
+        long tick = world.getTotalWorldTime();
+        List<RegisteredForUpdatePlayer> recipients = new ArrayList<>();
+        for(RegisteredForUpdatePlayer player: playersToUpdate.values()) {
+            if(player.schedule.nextSyncTick <= tick) recipients.add(player);
+        }
+        if(recipients.isEmpty()) return;
+        if(!syncInProgress.compareAndSet(false, true)) return; // The previous synchronization is still being processed, try again next tick
+        for(RegisteredForUpdatePlayer player: recipients) player.schedule.nextSyncTick = tick + player.getSyncInterval();
+        Profiler profiler = world.profiler;
+        profiler.startSection("terramap_player_sync_snapshot");
+        snapshot.capture(world.playerEntities);
+        GeographicProjection projection = TerramapUtil.getEarthGeneratorSettingsFromWorld(world).projection();
+        boolean synchronizeSpectators = TerramapConfig.SERVER.synchronizeSpectators;
+        profiler.endSection();
+        SYNC_EXECUTOR.execute(() -> {
+            try {
+                TerramapPlayer[] players = snapshot.process(projection, p ->
+                        (synchronizeSpectators || !p.isSpectator()) && TerramapServerPreferences.shouldDisplayPlayer(world, p.getUUID()));
+                Map<RegisteredForUpdatePlayer, IMessage> packets = encodePlayers(players, recipients);
+                world.addScheduledTask(() -> sendPlayerPackets(world, packets));
+            } catch(Exception e) {
+                TerramapMod.logger.error("Failed to synchronize players");
+                TerramapMod.logger.catching(e);
+            } finally {
+                syncInProgress.set(false);
+            }
+        });
+    }
+
+    /**
+     * Creates the packets to send to each client. Runs on the synchronization thread.
+     * Packets are serialized right away, as the players they are created from are reused for the next snapshot.
+     */
+    private static Map<RegisteredForUpdatePlayer, IMessage> encodePlayers(TerramapPlayer[] players, List<RegisteredForUpdatePlayer> recipients) {
+        // Everything that is common to all clients is serialized once here, not once per client
+        IMessage legacyPkt = null;
+        String[] displayNames = null;
+        PlayerLocationIndex index = null;
+        Map<RegisteredForUpdatePlayer, IMessage> packets = new HashMap<>();
+        for(RegisteredForUpdatePlayer player: recipients) {
+            if(player.encoder != null) {
+                if(displayNames == null) displayNames = PlayerSyncEncoder.serializeDisplayNames(players);
+                SP2CPlayerDeltaSyncPacket pkt;
+                if(player.viewport != null) {
+                    if(index == null) {
+                        index = new PlayerLocationIndex(AREA_OF_INTEREST_CELL_SIZE);
+                        index.index(players);
+                    }
+                    int[] visible = index.query(getAreaOfInterest(player.viewport));
+                    TerramapPlayer[] visiblePlayers = new TerramapPlayer[visible.length];
+                    String[] visibleNames = new String[visible.length];
+                    for(int i = 0; i < visible.length; i++) {
+                        visiblePlayers[i] = players[visible[i]];
+                        visibleNames[i] = displayNames[visible[i]];
+                    }
+                    pkt = player.encoder.encode(visiblePlayers, visibleNames, players.length - visible.length);
+                } else {
+                    pkt = player.encoder.encode(players, displayNames, 0);
+                }
+                if(pkt != null) {
+                    packets.put(player, pkt.encode());
+                    player.schedule.idleSyncs = 0;
+                } else {
+                    player.schedule.idleSyncs++;
+                }
+            } else {
+                if(legacyPkt == null) legacyPkt = new SP2CPlayerSyncPacket(players).encode();
+                packets.put(player, legacyPkt);
+            }
+        }
+        return packets;
+    }
+
+    private static void sendPlayerPackets(WorldServer world, Map<RegisteredForUpdatePlayer, IMessage> packets) {
+        world.profiler.startSection("terramap_player_sync_send");
+        for(Map.Entry<RegisteredForUpdatePlayer, IMessage> entry: packets.entrySet()) {
+            EntityPlayerMP player = entry.getKey().player;
+            RegisteredForUpdatePlayer registration = playersToUpdate.get(player.getPersistentID());
+            if(registration == null || registration.player != player) continue; // Unregistered or disconnected in the meantime
+            TerramapNetworkManager.CHANNEL_MAPSYNC.sendTo(entry.getValue(), player);
         }
+        world.profiler.endSection();
+    }
+
+    private static void checkRegistrations() {
+        long ctime = System.currentTimeMillis();
         for(RegisteredForUpdatePlayer player: RemoteSynchronizer.playersToUpdate.values()) {
             if(ctime - player.lastRegisterTime > TerramapConfig.SERVER.syncHeartbeatTimeout - 10000 && !player.noticeSent) {
                 TerramapMod.logger.debug("Sending registration expires notice to " + player.player.getName());
@@ -61,11 +185,138 @@ public abstract class RemoteSynchronizer {
         }
     }
 
-    public static void registerPlayerForUpdates(EntityPlayerMP player) {
+    /**
+     * Computes the area around a client's viewport in which players are synchronized.
+     * It is larger than the viewport so players do not pop in as soon as the map is moved a little.
+     * 
+     * @param viewport - the area visible on the client's map
+     * @return the area to synchronize players in
+     */
+    private static GeoBounds getAreaOfInterest(GeoBounds viewport) {
+        double lowerLongitude = viewport.lowerCorner.longitude();
+        double upperLongitude = viewport.upperCorner.longitude();
+        double lowerLatitude = viewport.lowerCorner.latitude();
+        double upperLatitude = viewport.upperCorner.latitude();
+        double longitudeSpan = upperLongitude - lowerLongitude;
+        if(viewport.crossesAntimeridian()) longitudeSpan += 360d;
+        double longitudeMargin = Math.max(longitudeSpan * AREA_OF_INTEREST_MARGIN, AREA_OF_INTEREST_MIN_MARGIN);
+        double latitudeMargin = Math.max((upperLatitude - lowerLatitude) * AREA_OF_INTEREST_MARGIN, AREA_OF_INTEREST_MIN_MARGIN);
+        lowerLatitude = Math.max(lowerLatitude - latitudeMargin, -90d);
+        upperLatitude = Math.min(upperLatitude + latitudeMargin, 90d);
+        if(longitudeSpan + 2*longitudeMargin >= 360d) {
+            lowerLongitude = -180d;
+            upperLongitude = 180d;
+        } else {
+            lowerLongitude = GeoUtil.getLongitudeInRange(lowerLongitude - longitudeMargin);
+            upperLongitude = GeoUtil.getLongitudeInRange(upperLongitude + longitudeMargin);
+        }
+        return new GeoBounds(new GeoPointImmutable(lowerLongitude, lowerLatitude), new GeoPointImmutable(upperLongitude, upperLatitude));
+    }
+
+    /**
+     * Registers a player for map updates, or renews its registration.
+     * 
+     * @param player - the player to register
+     * @param viewport - the area shown by the player's map, or null if unknown
+     * @param zoom - the zoom level of the player's map
+     * @param tracking - whether the player's map is following a marker
+     */
+    public static void registerPlayerForUpdates(EntityPlayerMP player, GeoBounds viewport, double zoom, boolean tracking) {
         if(PermissionManager.hasPermission(player, Permission.RADAR_PLAYERS)) {
             TerramapMod.logger.debug("Registering player for map updates: " + player.getDisplayNameString());
-            RemoteSynchronizer.playersToUpdate.put(player.getPersistentID(), new RegisteredForUpdatePlayer(player, System.currentTimeMillis()));
+            RegisteredForUpdatePlayer previous = RemoteSynchronizer.playersToUpdate.get(player.getPersistentID());
+            PlayerSyncEncoder encoder;
+            SyncSchedule schedule;
+            if(previous != null && previous.player == player) {
+                // This is a renewal, the client is still up to date
+                encoder = previous.encoder;
+                schedule = previous.schedule;
+                if(!Objects.equals(viewport, previous.viewport) || tracking != previous.tracking) schedule.reset();
+            } else {
+                TerramapVersion clientVersion = TerramapVersion.getClientVersion(player);
+                boolean supportsDelta = clientVersion != null && clientVersion.isNewerOrSame(TerramapMod.OLDEST_DELTA_PLAYER_SYNC_CLIENT);
+                encoder = supportsDelta ? new PlayerSyncEncoder(): null;
+                schedule = new SyncSchedule();
+            }
+            RemoteSynchronizer.playersToUpdate.put(player.getPersistentID(), new RegisteredForUpdatePlayer(player, System.currentTimeMillis(), encoder, schedule, viewport, zoom, tracking));
+        }
+    }
+
+    /**
+     * Sends the warps which changed since the last time this was called to the clients which subscribed to warp changes,
+     * so they can forget the tiles those warps are in.
+     * This is called every tick, but only does something every {@value #WARP_SYNC_INTERVAL} ticks.
+     *
+     * @param world - the world to send the warp changes of
+     */
+    public static void syncWarps(WorldServer world) {
+        if(world.getTotalWorldTime() % WARP_SYNC_INTERVAL != 0) return;
+        WarpStore store = WarpStore.getWorldStore(world);
+        if(store == null) return;
+        long revision = store.getRevision();
+        Long since = sentWarpRevisions.put(store, revision);
+        if(since == null || since == revision || warpChangesSubscribers.isEmpty()) return;
+        List<EntityPlayerMP> recipients = new ArrayList<>();
+        int knownKeys = Integer.MAX_VALUE;
+        for(UUID uuid: warpChangesSubscribers) {
+            EntityPlayerMP player = world.getMinecraftServer().getPlayerList().getPlayerByUUID(uuid);
+            if(player == null || WarpStore.getWorldStore(player.getServerWorld()) != store) continue;
+            recipients.add(player);
+            knownKeys = Math.min(knownKeys, sendWarpKeys(player));
         }
+        if(recipients.isEmpty()) return;
+        SP2CWarpChangesPacket packet = SP2CWarpChangesPacket.describeChanges(0, store, since, knownKeys);
+        for(EntityPlayerMP player: recipients) TerramapNetworkManager.CHANNEL_TERRAMAP.sendTo(packet, player);
+    }
+
+    /**
+     * Sends a client the keys of the {@link WarpSchema} it has not been sent yet, so warps can be sent to it with key indexes.
+     * This may be called from the network thread.
+     *
+     * @param player - the player to send the keys to
+     * @return the number of keys the client knows, or -1 if it does not support key indexes and warps have to be sent with their keys
+     */
+    public static int sendWarpKeys(EntityPlayerMP player) {
+        TerramapVersion clientVersion = TerramapVersion.getClientVersion(player);
+        if(clientVersion == null || clientVersion.isOlder(TerramapMod.OLDEST_WARP_KEY_TABLE_CLIENT)) return -1;
+        // Sent while holding the entry, so the keys are always sent before a warp which uses them
+        return sentWarpKeys.compute(player.getPersistentID(), (uuid, sent) -> {
+            int from = sent != null ? sent: 0;
+            String[] keys = WarpSchema.getKeys(from);
+            if(keys.length > 0) TerramapNetworkManager.CHANNEL_TERRAMAP.sendTo(new SP2CWarpKeysPacket(from, keys), player);
+            return from + keys.length;
+        });
+    }
+
+    /**
+     * Subscribes a player to the warp changes sent by {@link #syncWarps(WorldServer)}, until it logs out.
+     * This may be called from the network thread.
+     *
+     * @param player - the player to subscribe
+     */
+    public static void subscribeToWarpChanges(EntityPlayerMP player) {
+        warpChangesSubscribers.add(player.getPersistentID());
+    }
+
+    /**
+     * Forgets what was sent to a player about warps, this has to be called when it logs out.
+     *
+     * @param player - the player who logged out
+     */
+    public static void forgetWarpsSentTo(EntityPlayerMP player) {
+        warpChangesSubscribers.remove(player.getPersistentID());
+        sentWarpKeys.remove(player.getPersistentID());
+    }
+
+    /**
+     * Makes the next player synchronization sent to a client a full one.
+     * This has to be called when the client forgets the players it was sent, e.g. when it changes dimension.
+     *
+     * @param player - the player whose client has to be sent all players again
+     */
+    public static void resyncPlayersFor(EntityPlayerMP player) {
+        RegisteredForUpdatePlayer registered = RemoteSynchronizer.playersToUpdate.get(player.getPersistentID());
+        if(registered != null && registered.encoder != null) registered.encoder.requestKeyframe();
     }
 
     public static void unregisterPlayerForUpdates(EntityPlayerMP player) {
@@ -92,8 +343,7 @@ public abstract class RemoteSynchronizer {
                 PermissionManager.hasPermission(player, Permission.RADAR_ANIMALS),
                 PermissionManager.hasPermission(player, Permission.RADAR_MOBS),
                 true,
-                //TODO Implement warps
-                false);
+                WarpStore.getWorldStore(player.getServerWorld()) != null);
         if(clientVersion.getTerraDependency() != TerraDependency.TERRAPLUSPLUS) {
             data.isLegacyTerraClient = true;
             data.serverVersion = TerramapMod.getVersion().getTerramapVersionString();
@@ -165,11 +415,52 @@ public abstract class RemoteSynchronizer {
 
         public final EntityPlayerMP player;
         public final long lastRegisterTime;
+        final PlayerSyncEncoder encoder; // Null if the client only understands the legacy sync packet
+        final SyncSchedule schedule;
+        final GeoBounds viewport; // Null if the client did not send it
+        final double zoom;
+        final boolean tracking;
         boolean noticeSent = false;
 
-        public RegisteredForUpdatePlayer(EntityPlayerMP player, long time) {
+        public RegisteredForUpdatePlayer(EntityPlayerMP player, long time, PlayerSyncEncoder encoder, SyncSchedule schedule, GeoBounds viewport, double zoom, boolean tracking) {
             this.player = player;
             this.lastRegisterTime = time;
+            this.encoder = encoder;
+            this.schedule = schedule;
+            this.viewport = viewport;
+            this.zoom = zoom;
+            this.tracking = tracking;
+        }
+
+        /**
+         * @return the number of ticks to wait before synchronizing this player again
+         */
+        int getSyncInterval() {
+            int interval = TerramapConfig.SERVER.syncInterval;
+            if(this.viewport == null) return interval; // Older client, we know nothing about its map
+            if(this.tracking || this.zoom >= CLOSE_SYNC_ZOOM) {
+                interval = Math.max(1, interval / 2);
+            } else if(this.zoom <= FAR_SYNC_ZOOM) {
+                interval *= 4;
+            }
+            // Back off when nothing has been moving around this client
+            return interval << Math.min(this.schedule.idleSyncs, MAX_IDLE_BACKOFF);
+        }
+
+    }
+
+    /**
+     * When a client should be synchronized next.
+     * Kept across registration renewals.
+     */
+    static class SyncSchedule {
+
+        long nextSyncTick = 0;
+        volatile int idleSyncs = 0; // Updated from the synchronization thread
+
+        void reset() {
+            this.nextSyncTick = 0;
+            this.idleSyncs = 0;
         }
 
     }
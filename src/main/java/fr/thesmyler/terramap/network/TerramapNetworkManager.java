@@ -8,6 +8,8 @@ import fr.thesmyler.terramap.network.SP2CMapStylePacket.SP2CMapStylePacketSledge
 import fr.thesmyler.terramap.network.SP2CMapStylePacket.SP2CMapStylePacketTerramapHandler;
 import fr.thesmyler.terramap.network.playersync.C2SPRegisterForUpdatesPacket;
 import fr.thesmyler.terramap.network.playersync.C2SPRegisterForUpdatesPacket.C2SRegisterForUpdatesPacketHandler;
+import fr.thesmyler.terramap.network.playersync.SP2CPlayerDeltaSyncPacket;
+import fr.thesmyler.terramap.network.playersync.SP2CPlayerDeltaSyncPacket.SP2CPlayerDeltaSyncPacketHandler;
 import fr.thesmyler.terramap.network.playersync.SP2CPlayerSyncPacket;
 import fr.thesmyler.terramap.network.playersync.SP2CPlayerSyncPacket.S2CPlayerSyncPacketHandler;
 import fr.thesmyler.terramap.network.playersync.SP2CRegistrationExpiresPacket;
@@ -18,6 +20,8 @@ import fr.thesmyler.terramap.network.warps.C2SPEditWarpPacket;
 import fr.thesmyler.terramap.network.warps.C2SPEditWarpPacket.C2SPEditWarpPacketHandler;
 import fr.thesmyler.terramap.network.warps.C2SPRequestMultiWarpPacket;
 import fr.thesmyler.terramap.network.warps.C2SPRequestMultiWarpPacket.C2SPRequestMultiWarpPacketHandler;
+import fr.thesmyler.terramap.network.warps.C2SPRequestWarpChangesPacket;
+import fr.thesmyler.terramap.network.warps.C2SPRequestWarpChangesPacket.C2SPRequestWarpChangesPacketHandler;
 import fr.thesmyler.terramap.network.warps.C2SPRequestWarpPacket;
 import fr.thesmyler.terramap.network.warps.C2SPRequestWarpPacket.C2SPRequestWarpPacketHandler;
 import fr.thesmyler.terramap.network.warps.SP2CCreateWarpConfirmationPacket;
@@ -32,6 +36,10 @@ import fr.thesmyler.terramap.network.warps.SP2CMultiWarpPacket.SP2CMultiWarpPack
 import fr.thesmyler.terramap.network.warps.SP2CWarpCommandPacket;
 import fr.thesmyler.terramap.network.warps.SP2CWarpCommandPacket.SP2CWarpCommandPacketProxyHandler;
 import fr.thesmyler.terramap.network.warps.SP2CWarpCommandPacket.SP2CWarpCommandPacketServerHandler;
+import fr.thesmyler.terramap.network.warps.SP2CWarpChangesPacket;
+import fr.thesmyler.terramap.network.warps.SP2CWarpChangesPacket.SP2CWarpChangesPacketHandler;
+import fr.thesmyler.terramap.network.warps.SP2CWarpKeysPacket;
+import fr.thesmyler.terramap.network.warps.SP2CWarpKeysPacket.SP2CWarpKeysPacketHandler;
 import fr.thesmyler.terramap.network.warps.SP2CWarpPacket;
 import fr.thesmyler.terramap.network.warps.SP2CWarpPacket.SP2CWarpPacketProxyHandler;
 import fr.thesmyler.terramap.network.warps.SP2CWarpPacket.SP2CWarpPacketServerHandler;
@@ -67,10 +75,14 @@ public abstract class TerramapNetworkManager {
         registerTerramapC2S(C2S_TERRAMAP_EDIT_WARP_DISCRIMINATOR, C2SPEditWarpPacketHandler.class, C2SPEditWarpPacket.class);
         registerTerramapS2C(S2C_TERRAMAP_EDIT_WARP_CONFIRMATION_DISCRIMINATOR, SP2CEditWarpConfirmationPacketServerHandler.class, SP2CEditWarpConfirmationPacket.class);
         registerTerramapS2C(S2C_TERRAMAP_WARP_COMMAND_DISCRIMINATOR, SP2CWarpCommandPacketServerHandler.class, SP2CWarpCommandPacket.class);
+        registerTerramapC2S(C2S_TERRAMAP_REQUEST_WARP_CHANGES_DISCRIMINATOR, C2SPRequestWarpChangesPacketHandler.class, C2SPRequestWarpChangesPacket.class);
+        registerTerramapS2C(S2C_TERRAMAP_WARP_CHANGES_DISCRIMINATOR, SP2CWarpChangesPacketHandler.class, SP2CWarpChangesPacket.class);
+        registerTerramapS2C(S2C_TERRAMAP_WARP_KEYS_DISCRIMINATOR, SP2CWarpKeysPacketHandler.class, SP2CWarpKeysPacket.class);
 
         registerMapsyncCP2S(C2SP_MAPSYNC_REGISTER_DISCRIMINATOR, C2SRegisterForUpdatesPacketHandler.class, C2SPRegisterForUpdatesPacket.class);
         registerMapsyncSP2C(SP2C_MAPSYNC_PLAYERSYNC_DISCRIMINATOR, S2CPlayerSyncPacketHandler.class, SP2CPlayerSyncPacket.class);
         registerMapsyncSP2C(SP2C_MAPSYNC_REGISTRATION_EXPIRES_DISCRIMINATOR, S2CRegistrationExpiresPacketHandler.class, SP2CRegistrationExpiresPacket.class);
+        registerMapsyncSP2C(SP2C_MAPSYNC_PLAYERDELTASYNC_DISCRIMINATOR, SP2CPlayerDeltaSyncPacketHandler.class, SP2CPlayerDeltaSyncPacket.class);
 
         registerSledgehammerP2C(P2C_SH_HELLO_DISCRIMINATOR, P2CSledgehammerHelloPacketHandler.class, P2CSledgehammerHelloPacket.class);
         registerSledgehammerP2C(P2C_SH_MAPSTYLE_DISCRIMINATOR, SP2CMapStylePacketSledgehammerHandler.class, SP2CMapStylePacket.class);
@@ -99,11 +111,15 @@ public abstract class TerramapNetworkManager {
     private static final int C2S_TERRAMAP_EDIT_WARP_DISCRIMINATOR = 9;
     private static final int S2C_TERRAMAP_EDIT_WARP_CONFIRMATION_DISCRIMINATOR = 10;
     private static final int S2C_TERRAMAP_WARP_COMMAND_DISCRIMINATOR = 11;
+    private static final int C2S_TERRAMAP_REQUEST_WARP_CHANGES_DISCRIMINATOR = 12;
+    private static final int S2C_TERRAMAP_WARP_CHANGES_DISCRIMINATOR = 13;
+    private static final int S2C_TERRAMAP_WARP_KEYS_DISCRIMINATOR = 14;
 
     // terramap:mapsync
     private static final int C2SP_MAPSYNC_REGISTER_DISCRIMINATOR = 0;
     private static final int SP2C_MAPSYNC_PLAYERSYNC_DISCRIMINATOR = 1;
     private static final int SP2C_MAPSYNC_REGISTRATION_EXPIRES_DISCRIMINATOR = 2;
+    private static final int SP2C_MAPSYNC_PLAYERDELTASYNC_DISCRIMINATOR = 3;
 
     //terramap:sh
     private static final int P2C_SH_HELLO_DISCRIMINATOR = 0;
@@ -1,6 +1,8 @@
 package fr.thesmyler.terramap.network.playersync;
 
 import fr.thesmyler.terramap.network.RemoteSynchronizer;
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
 import io.netty.buffer.ByteBuf;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.world.WorldServer;
@@ -11,6 +13,11 @@ import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 public class C2SPRegisterForUpdatesPacket implements IMessage {
 
     public boolean update = false;
+    /** The area shown by the client's map, null if unknown (e.g. older clients) */
+    public GeoBounds viewport = null;
+    public double zoom = 0d;
+    /** Whether the client's map is following a marker */
+    public boolean tracking = false;
 
     public C2SPRegisterForUpdatesPacket() {}
 
@@ -18,14 +25,44 @@ public class C2SPRegisterForUpdatesPacket implements IMessage {
         this.update = update;
     }
 
+    public C2SPRegisterForUpdatesPacket(boolean update, GeoBounds viewport, double zoom, boolean tracking) {
+        this.update = update;
+        this.viewport = viewport;
+        this.zoom = zoom;
+        this.tracking = tracking;
+    }
+
     @Override
     public void fromBytes(ByteBuf buf) {
         this.update = buf.readBoolean();
+        if(buf.isReadable()) { // Older clients do not send their viewport
+            double lowerLongitude = buf.readDouble();
+            double lowerLatitude = buf.readDouble();
+            double upperLongitude = buf.readDouble();
+            double upperLatitude = buf.readDouble();
+            this.zoom = buf.readDouble();
+            this.tracking = buf.readBoolean();
+            try {
+                this.viewport = new GeoBounds(
+                        new GeoPointImmutable(lowerLongitude, lowerLatitude),
+                        new GeoPointImmutable(upperLongitude, upperLatitude));
+            } catch(IllegalArgumentException e) {
+                this.viewport = null;
+            }
+        }
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
         buf.writeBoolean(this.update);
+        if(this.viewport != null) {
+            buf.writeDouble(this.viewport.lowerCorner.longitude());
+            buf.writeDouble(this.viewport.lowerCorner.latitude());
+            buf.writeDouble(this.viewport.upperCorner.longitude());
+            buf.writeDouble(this.viewport.upperCorner.latitude());
+            buf.writeDouble(this.zoom);
+            buf.writeBoolean(this.tracking);
+        }
     }
 
     public static class C2SRegisterForUpdatesPacketHandler implements IMessageHandler<C2SPRegisterForUpdatesPacket, IMessage>{
@@ -34,7 +71,7 @@ public class C2SPRegisterForUpdatesPacket implements IMessage {
         public C2SPRegisterForUpdatesPacket onMessage(C2SPRegisterForUpdatesPacket message, MessageContext ctx) {
             EntityPlayerMP player = ctx.getServerHandler().player;
             WorldServer world = player.getServerWorld();
-            if(message.update) world.addScheduledTask(() -> RemoteSynchronizer.registerPlayerForUpdates(player));
+            if(message.update) world.addScheduledTask(() -> RemoteSynchronizer.registerPlayerForUpdates(player, message.viewport, message.zoom, message.tracking));
             else world.addScheduledTask(()-> RemoteSynchronizer.unregisterPlayerForUpdates(player));
             return null;
         }
@@ -0,0 +1,126 @@
+package fr.thesmyler.terramap.network.playersync;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.util.geo.GeoPoint;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+
+/**
+ * Indexes players in a regular longitude/latitude grid so the players in a given area can be found
+ * without checking every single player.
+ * <br>
+ * The index is meant to be rebuilt from scratch for each synchronization.
+ *
+ * @author SmylerMC
+ *
+ */
+public class PlayerLocationIndex {
+
+    private final double cellSize;
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+    private TerramapPlayer[] players = new TerramapPlayer[0];
+    private double[] longitudes = new double[0];
+    private double[] latitudes = new double[0];
+    private int locatedCount = 0;
+
+    /**
+     * @param cellSize - the size of the grid cells, in degrees
+     */
+    public PlayerLocationIndex(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Replaces the content of this index with the given players.
+     * Players out of the projection's bounds are not indexed and will never be returned by queries.
+     *
+     * @param players - the players to index
+     */
+    public void index(TerramapPlayer[] players) {
+        this.players = players;
+        this.cells.clear();
+        this.longitudes = new double[players.length];
+        this.latitudes = new double[players.length];
+        this.locatedCount = 0;
+        for(int i = 0; i < players.length; i++) {
+            GeoPoint<?> location;
+            try {
+                location = players[i].getLocation();
+            } catch(OutOfProjectionBoundsException e) {
+                location = null;
+            }
+            if(location == null) {
+                this.longitudes[i] = this.latitudes[i] = Double.NaN;
+                continue;
+            }
+            this.longitudes[i] = location.longitude();
+            this.latitudes[i] = location.latitude();
+            long key = this.cellKey(this.cellX(location.longitude()), this.cellY(location.latitude()));
+            this.cells.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            this.locatedCount++;
+        }
+    }
+
+    /**
+     * Finds the players within the given bounds.
+     *
+     * @param bounds - the area to search
+     * @return the indexes of the players within the bounds, in the array last given to {@link #index(TerramapPlayer[])}
+     */
+    public int[] query(GeoBounds bounds) {
+        List<Integer> result = new ArrayList<>();
+        for(GeoBounds part: bounds.splitAtAntimeridian()) {
+            int minX = this.cellX(part.lowerCorner.longitude());
+            int maxX = this.cellX(part.upperCorner.longitude());
+            int minY = this.cellY(part.lowerCorner.latitude());
+            int maxY = this.cellY(part.upperCorner.latitude());
+            long cellCount = (long)(maxX - minX + 1) * (maxY - minY + 1);
+            if(cellCount > this.cells.size()) {
+                // Large area, it's faster to just go through the players
+                for(int i = 0; i < this.players.length; i++) {
+                    if(!Double.isNaN(this.longitudes[i]) && this.contains(part, i)) result.add(i);
+                }
+                continue;
+            }
+            for(int x = minX; x <= maxX; x++) {
+                for(int y = minY; y <= maxY; y++) {
+                    List<Integer> cell = this.cells.get(this.cellKey(x, y));
+                    if(cell == null) continue;
+                    for(int i: cell) if(this.contains(part, i)) result.add(i);
+                }
+            }
+        }
+        return result.stream().mapToInt(Integer::intValue).distinct().toArray();
+    }
+
+    /**
+     * @return the number of indexed players which are within the projection's bounds
+     */
+    public int getLocatedCount() {
+        return this.locatedCount;
+    }
+
+    private boolean contains(GeoBounds bounds, int player) {
+        double longitude = this.longitudes[player];
+        double latitude = this.latitudes[player];
+        return bounds.lowerCorner.longitude() <= longitude && longitude <= bounds.upperCorner.longitude()
+                && bounds.lowerCorner.latitude() <= latitude && latitude <= bounds.upperCorner.latitude();
+    }
+
+    private int cellX(double longitude) {
+        return (int) Math.floor((longitude + 180d) / this.cellSize);
+    }
+
+    private int cellY(double latitude) {
+        return (int) Math.floor((latitude + 90d) / this.cellSize);
+    }
+
+    private long cellKey(int x, int y) {
+        return (long) x << 32 | y & 0xFFFFFFFFL;
+    }
+
+}
@@ -0,0 +1,91 @@
+package fr.thesmyler.terramap.network.playersync;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.thesmyler.terramap.TerramapMod;
+import fr.thesmyler.terramap.network.playersync.SP2CPlayerDeltaSyncPacket.Entry;
+import fr.thesmyler.terramap.util.geo.GeoPointMutable;
+import net.minecraft.util.text.ITextComponent;
+
+/**
+ * Rebuilds the state of the synchronized players from the {@link SP2CPlayerDeltaSyncPacket} created by a {@link PlayerSyncEncoder}.
+ *
+ * @author SmylerMC
+ *
+ */
+public class PlayerSyncDecoder {
+
+    private final Map<Integer, PlayerState> players = new HashMap<>();
+    private final GeoPointMutable location = new GeoPointMutable();
+
+    /**
+     * Applies the changes of a packet.
+     * Entries about players this decoder does not know are ignored, they will be sent again with the next keyframe.
+     *
+     * @param packet - the packet to apply
+     */
+    public void apply(SP2CPlayerDeltaSyncPacket packet) {
+        if(packet.isKeyframe()) this.players.clear();
+        for(int id: packet.getRemoved()) this.players.remove(id);
+        for(Entry entry: packet.getEntries()) {
+            PlayerState state;
+            if(entry.has(Entry.NEW)) {
+                state = new PlayerState(new TerramapRemotePlayer(entry.uuid, null));
+                this.players.put(entry.sessionId, state);
+            } else {
+                state = this.players.get(entry.sessionId);
+                if(state == null) {
+                    TerramapMod.logger.debug("Got a player sync entry for an unknown session id: {}", entry.sessionId);
+                    continue;
+                }
+            }
+            TerramapRemotePlayer player = state.player;
+            if(entry.has(Entry.NAME)) player.setDisplayName(ITextComponent.Serializer.jsonToComponent(entry.displayName));
+            if(entry.has(Entry.GAMEMODE)) player.setGamemode(entry.gamemode);
+            if(entry.has(Entry.AZIMUTH)) state.azimuth = entry.azimuth * SP2CPlayerDeltaSyncPacket.AZIMUTH_QUANTUM;
+            if(entry.has(Entry.OUT_OF_PROJECTION)) {
+                player.setOutOfProjection();
+            } else if(entry.has(Entry.LOCATION) || entry.has(Entry.AZIMUTH) && !player.isOutOfProjection()) {
+                if(entry.has(Entry.ABSOLUTE_LOCATION)) {
+                    state.longitude = entry.longitude;
+                    state.latitude = entry.latitude;
+                } else if(entry.has(Entry.LOCATION)) {
+                    state.longitude += entry.longitude;
+                    state.latitude += entry.latitude;
+                }
+                this.location.set(
+                        state.longitude / SP2CPlayerDeltaSyncPacket.LOCATION_SCALE,
+                        state.latitude / SP2CPlayerDeltaSyncPacket.LOCATION_SCALE);
+                player.setLocationAndAzimuth(this.location, state.azimuth);
+            }
+        }
+    }
+
+    /**
+     * @return the players as they currently are
+     */
+    public TerramapRemotePlayer[] getPlayers() {
+        return this.players.values().stream().map(s -> s.player).toArray(TerramapRemotePlayer[]::new);
+    }
+
+    /**
+     * Forgets all players, e.g. when changing server.
+     */
+    public void reset() {
+        this.players.clear();
+    }
+
+    private static class PlayerState {
+
+        final TerramapRemotePlayer player;
+        int longitude, latitude;
+        float azimuth;
+
+        PlayerState(TerramapRemotePlayer player) {
+            this.player = player;
+        }
+
+    }
+
+}
@@ -0,0 +1,178 @@
+package fr.thesmyler.terramap.network.playersync;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import fr.thesmyler.terramap.network.playersync.SP2CPlayerDeltaSyncPacket.Entry;
+import fr.thesmyler.terramap.util.geo.GeoPoint;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.world.GameType;
+
+/**
+ * Keeps track of what a single client knows about the synchronized players,
+ * and creates the {@link SP2CPlayerDeltaSyncPacket} needed to bring it up to date.
+ * <br>
+ * Minecraft connections are reliable and ordered, so every packet this encoder creates is assumed to be received,
+ * and the last state sent is used as the reference for the next deltas.
+ * A keyframe is still sent every {@link #KEYFRAME_INTERVAL} synchronizations so clients can never drift for too long.
+ *
+ * @author SmylerMC
+ *
+ */
+public class PlayerSyncEncoder {
+
+    public static final int KEYFRAME_INTERVAL = 20;
+
+    private final Map<UUID, PlayerState> states = new HashMap<>();
+    private final BitSet usedSessionIds = new BitSet();
+    private int syncsSinceKeyframe = KEYFRAME_INTERVAL;
+    private final AtomicBoolean keyframeRequested = new AtomicBoolean(false); // Requested from the server thread, packets are encoded on the sync thread
+    private int outOfViewCount = 0;
+
+    /**
+     * Creates the packet to send to the client so it is up to date with the given players.
+     * Players which were in the previous call but are not anymore are removed on the client.
+     *
+     * @param players - the players to synchronize
+     * @return a packet to send to the client, or null if the client is already up to date
+     */
+    public SP2CPlayerDeltaSyncPacket encode(TerramapPlayer[] players) {
+        return this.encode(players, serializeDisplayNames(players), 0);
+    }
+
+    /**
+     * Same as {@link #encode(TerramapPlayer[])}, but with display names which have already been serialized,
+     * so they do not have to be serialized again for each client.
+     *
+     * @param players           - the players to synchronize
+     * @param displayNames      - the players' display names, as serialized by {@link #serializeDisplayNames(TerramapPlayer[])}
+     * @param outOfViewCount    - the number of players which are not sent because they are outside the client's viewport
+     * @return a packet to send to the client, or null if the client is already up to date
+     */
+    public SP2CPlayerDeltaSyncPacket encode(TerramapPlayer[] players, String[] displayNames, int outOfViewCount) {
+        boolean requested = this.keyframeRequested.getAndSet(false);
+        boolean keyframe = ++this.syncsSinceKeyframe >= KEYFRAME_INTERVAL || requested;
+        if(keyframe) this.syncsSinceKeyframe = 0;
+        Set<UUID> present = new HashSet<>();
+        List<Entry> entries = new ArrayList<>();
+        for(int i = 0; i < players.length; i++) {
+            TerramapPlayer player = players[i];
+            UUID uuid = player.getUUID();
+            present.add(uuid);
+            PlayerState state = this.states.get(uuid);
+            boolean isNew = state == null;
+            if(isNew) {
+                int id = this.usedSessionIds.nextClearBit(0);
+                this.usedSessionIds.set(id);
+                state = new PlayerState(id);
+                this.states.put(uuid, state);
+            }
+            Entry entry = this.encodePlayer(player, displayNames[i], state, keyframe || isNew);
+            if(entry.fields != 0) entries.add(entry);
+        }
+        List<Integer> removed = new ArrayList<>();
+        Iterator<Map.Entry<UUID, PlayerState>> iterator = this.states.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<UUID, PlayerState> state = iterator.next();
+            if(present.contains(state.getKey())) continue;
+            int id = state.getValue().sessionId;
+            this.usedSessionIds.clear(id);
+            if(!keyframe) removed.add(id); // Keyframes replace the entire client state anyway
+            iterator.remove();
+        }
+        if(!keyframe && entries.isEmpty() && removed.isEmpty() && outOfViewCount == this.outOfViewCount) return null;
+        this.outOfViewCount = outOfViewCount;
+        return new SP2CPlayerDeltaSyncPacket(keyframe, outOfViewCount, removed.stream().mapToInt(Integer::intValue).toArray(), entries);
+    }
+
+    /**
+     * Makes the next call to {@link #encode(TerramapPlayer[])} create a keyframe, e.g. because the client forgot the players it knew.
+     * This may be called from any thread.
+     */
+    public void requestKeyframe() {
+        this.keyframeRequested.set(true);
+    }
+
+    /**
+     * @param players - players to get the display names of
+     * @return the players' display names, serialized to JSON
+     */
+    public static String[] serializeDisplayNames(TerramapPlayer[] players) {
+        String[] names = new String[players.length];
+        for(int i = 0; i < players.length; i++) names[i] = ITextComponent.Serializer.componentToJson(players[i].getDisplayName());
+        return names;
+    }
+
+    private Entry encodePlayer(TerramapPlayer player, String name, PlayerState state, boolean full) {
+        Entry entry = new Entry(state.sessionId, 0);
+        if(full) {
+            entry.fields |= Entry.NEW;
+            entry.uuid = player.getUUID();
+        }
+        if(full || !name.equals(state.displayName)) {
+            entry.fields |= Entry.NAME;
+            entry.displayName = state.displayName = name;
+        }
+        GameType gamemode = player.getGamemode();
+        if(full || gamemode != state.gamemode) {
+            entry.fields |= Entry.GAMEMODE;
+            entry.gamemode = state.gamemode = gamemode;
+        }
+        GeoPoint<?> location;
+        try {
+            location = player.getLocation();
+        } catch(OutOfProjectionBoundsException e) {
+            location = null;
+        }
+        if(location == null) {
+            if(full || !state.outOfProjection) entry.fields |= Entry.OUT_OF_PROJECTION;
+            state.outOfProjection = true;
+            return entry;
+        }
+        int longitude = (int) Math.round(location.longitude() * SP2CPlayerDeltaSyncPacket.LOCATION_SCALE);
+        int latitude = (int) Math.round(location.latitude() * SP2CPlayerDeltaSyncPacket.LOCATION_SCALE);
+        if(full || state.outOfProjection) {
+            entry.fields |= Entry.LOCATION | Entry.ABSOLUTE_LOCATION;
+            entry.longitude = longitude;
+            entry.latitude = latitude;
+        } else if(longitude != state.longitude || latitude != state.latitude) {
+            entry.fields |= Entry.LOCATION;
+            entry.longitude = longitude - state.longitude;
+            entry.latitude = latitude - state.latitude;
+        }
+        state.longitude = longitude;
+        state.latitude = latitude;
+        int azimuth = Math.round(player.getAzimuth() / SP2CPlayerDeltaSyncPacket.AZIMUTH_QUANTUM) & 0xFFFF;
+        if(full || state.outOfProjection || azimuth != state.azimuth) {
+            entry.fields |= Entry.AZIMUTH;
+            entry.azimuth = state.azimuth = azimuth;
+        }
+        state.outOfProjection = false;
+        return entry;
+    }
+
+    private static class PlayerState {
+
+        final int sessionId;
+        String displayName;
+        GameType gamemode;
+        boolean outOfProjection;
+        int longitude, latitude;
+        int azimuth;
+
+        PlayerState(int sessionId) {
+            this.sessionId = sessionId;
+        }
+
+    }
+
+}
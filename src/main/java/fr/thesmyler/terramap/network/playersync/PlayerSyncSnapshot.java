@@ -0,0 +1,141 @@
+package fr.thesmyler.terramap.network.playersync;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import fr.thesmyler.terramap.TerramapMod;
+import fr.thesmyler.terramap.util.geo.GeoPointMutable;
+import fr.thesmyler.terramap.util.geo.GeoPointReadOnly;
+import net.buildtheearth.terraplusplus.projection.GeographicProjection;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.world.GameType;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * The state of the players of a world at a given tick, as needed to synchronize them.
+ * <br>
+ * Capturing a snapshot only copies a few fields from each player, so it is cheap enough to be done on the server thread.
+ * Everything else (projecting locations, filtering, encoding) can then be done from another thread.
+ * The snapshot and the {@link TerramapPlayer} it contains are reused for each capture,
+ * so a snapshot must not be captured again while it is still being processed.
+ *
+ * @author SmylerMC
+ *
+ */
+public class PlayerSyncSnapshot {
+
+    private SnapshotPlayer[] players = new SnapshotPlayer[0];
+    private int count = 0;
+
+    /**
+     * Captures the state of the given players. Has to be called from the server thread.
+     *
+     * @param entities - the players to capture
+     */
+    public void capture(List<EntityPlayer> entities) {
+        if(this.players.length < entities.size()) {
+            SnapshotPlayer[] players = new SnapshotPlayer[Math.max(entities.size(), this.players.length * 2)];
+            System.arraycopy(this.players, 0, players, 0, this.players.length);
+            for(int i = this.players.length; i < players.length; i++) players[i] = new SnapshotPlayer();
+            this.players = players;
+        }
+        this.count = entities.size();
+        for(int i = 0; i < this.count; i++) this.players[i].capture(entities.get(i));
+    }
+
+    /**
+     * Computes the locations of the captured players and filters them. Can be called from any thread.
+     *
+     * @param projection    - the projection to compute the players' locations with
+     * @param filter        - a filter the players have to match to be synchronized
+     * @return the players to synchronize
+     */
+    public TerramapPlayer[] process(GeographicProjection projection, Predicate<TerramapPlayer> filter) {
+        List<TerramapPlayer> result = new ArrayList<>(this.count);
+        for(int i = 0; i < this.count; i++) {
+            SnapshotPlayer player = this.players[i];
+            if(!filter.test(player)) continue;
+            player.project(projection);
+            result.add(player);
+        }
+        return result.toArray(new TerramapPlayer[0]);
+    }
+
+    /**
+     * @return the number of players in this snapshot
+     */
+    public int size() {
+        return this.count;
+    }
+
+    private static class SnapshotPlayer extends TerramapPlayer {
+
+        UUID uuid;
+        ITextComponent displayName;
+        GameType gamemode;
+        double x, z;
+        float yaw;
+        final GeoPointMutable location = new GeoPointMutable();
+        float azimuth;
+        boolean outOfProjection;
+
+        void capture(EntityPlayer player) {
+            this.uuid = player.getPersistentID();
+            this.displayName = player.getDisplayName();
+            this.gamemode = TerramapMod.proxy.getGameMode(player);
+            this.x = player.posX;
+            this.z = player.posZ;
+            this.yaw = player.rotationYaw;
+        }
+
+        void project(GeographicProjection projection) {
+            try {
+                this.location.set(projection.toGeo(this.x, this.z));
+                this.azimuth = projection.azimuth(this.x, this.z, this.yaw);
+                this.outOfProjection = false;
+            } catch(OutOfProjectionBoundsException | IllegalArgumentException e) {
+                this.outOfProjection = true;
+            }
+        }
+
+        @Override
+        public UUID getUUID() {
+            return this.uuid;
+        }
+
+        @Override
+        public ITextComponent getDisplayName() {
+            return this.displayName;
+        }
+
+        @Override
+        public GeoPointReadOnly getLocation() throws OutOfProjectionBoundsException {
+            if(this.outOfProjection) throw OutOfProjectionBoundsException.get();
+            return this.location.getReadOnly();
+        }
+
+        @Override
+        public float getAzimuth() {
+            return this.azimuth;
+        }
+
+        @Override
+        public GameType getGamemode() {
+            return this.gamemode;
+        }
+
+        @Override
+        @SideOnly(Side.CLIENT)
+        public ResourceLocation getSkin() {
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,210 @@
+package fr.thesmyler.terramap.network.playersync;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import fr.thesmyler.terramap.TerramapClientContext;
+import fr.thesmyler.terramap.network.NetworkUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.client.Minecraft;
+import net.minecraft.world.GameType;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Second version of the player synchronization packet, sent to clients which are recent enough to understand it instead of {@link SP2CPlayerSyncPacket}.
+ * <br>
+ * Players are identified by short session ids, and only the properties which have changed since the previous packet are sent.
+ * Locations are quantized to millionths of degrees (about 10cm) and are sent relative to the previous location the client received,
+ * unless the {@link Entry#ABSOLUTE_LOCATION} flag is set.
+ * Keyframes contain the full state of every synchronized player, any player not in a keyframe should be forgotten.
+ * <br>
+ * The state of the synchronization is kept by {@link PlayerSyncEncoder} on the server and by {@link PlayerSyncDecoder} on the client.
+ *
+ * @author SmylerMC
+ *
+ */
+public class SP2CPlayerDeltaSyncPacket implements IMessage {
+
+    /** Locations are sent as integer numbers of millionths of degrees */
+    public static final double LOCATION_SCALE = 1e6d;
+    public static final float AZIMUTH_QUANTUM = 360f / 65536f;
+
+    private static final int KEYFRAME = 1;
+
+    protected boolean keyframe;
+    protected int outOfViewCount;
+    protected int[] removed;
+    protected List<Entry> entries;
+    protected ByteBuf encoded;
+
+    public SP2CPlayerDeltaSyncPacket() {} // Required by forge
+
+    public SP2CPlayerDeltaSyncPacket(boolean keyframe, int outOfViewCount, int[] removed, List<Entry> entries) {
+        this.keyframe = keyframe;
+        this.outOfViewCount = outOfViewCount;
+        this.removed = removed;
+        this.entries = entries;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.keyframe = (buf.readByte() & KEYFRAME) != 0;
+        this.outOfViewCount = NetworkUtil.decodeVarInt(buf);
+        this.removed = new int[NetworkUtil.decodeVarInt(buf)];
+        for(int i = 0; i < this.removed.length; i++) this.removed[i] = NetworkUtil.decodeVarInt(buf);
+        int count = NetworkUtil.decodeVarInt(buf);
+        this.entries = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            Entry entry = new Entry(NetworkUtil.decodeVarInt(buf), buf.readUnsignedByte());
+            if(entry.has(Entry.NEW)) {
+                long leastUUID = buf.readLong();
+                long mostUUID = buf.readLong();
+                entry.uuid = new UUID(mostUUID, leastUUID);
+            }
+            if(entry.has(Entry.NAME)) entry.displayName = NetworkUtil.decodeStringFromByteBuf(buf);
+            if(entry.has(Entry.GAMEMODE)) entry.gamemode = GameType.getByID(buf.readByte());
+            if(entry.has(Entry.LOCATION)) {
+                if(entry.has(Entry.ABSOLUTE_LOCATION)) {
+                    entry.longitude = buf.readInt();
+                    entry.latitude = buf.readInt();
+                } else {
+                    entry.longitude = NetworkUtil.decodeZigZagVarInt(buf);
+                    entry.latitude = NetworkUtil.decodeZigZagVarInt(buf);
+                }
+            }
+            if(entry.has(Entry.AZIMUTH)) entry.azimuth = buf.readUnsignedShort();
+            this.entries.add(entry);
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        if(this.encoded != null) {
+            buf.writeBytes(this.encoded, 0, this.encoded.writerIndex());
+        } else {
+            this.writeEntries(buf);
+        }
+    }
+
+    /**
+     * Serializes this packet in advance, so sending it later is only a matter of copying bytes.
+     * 
+     * @return this packet
+     */
+    public SP2CPlayerDeltaSyncPacket encode() {
+        ByteBuf buf = Unpooled.buffer();
+        this.writeEntries(buf);
+        this.encoded = buf;
+        return this;
+    }
+
+    private void writeEntries(ByteBuf buf) {
+        buf.writeByte(this.keyframe ? KEYFRAME: 0);
+        NetworkUtil.encodeVarInt(this.outOfViewCount, buf);
+        NetworkUtil.encodeVarInt(this.removed.length, buf);
+        for(int id: this.removed) NetworkUtil.encodeVarInt(id, buf);
+        NetworkUtil.encodeVarInt(this.entries.size(), buf);
+        for(Entry entry: this.entries) {
+            NetworkUtil.encodeVarInt(entry.sessionId, buf);
+            buf.writeByte(entry.fields);
+            if(entry.has(Entry.NEW)) {
+                buf.writeLong(entry.uuid.getLeastSignificantBits());
+                buf.writeLong(entry.uuid.getMostSignificantBits());
+            }
+            if(entry.has(Entry.NAME)) NetworkUtil.encodeStringToByteBuf(entry.displayName, buf);
+            if(entry.has(Entry.GAMEMODE)) buf.writeByte(entry.gamemode.getID());
+            if(entry.has(Entry.LOCATION)) {
+                if(entry.has(Entry.ABSOLUTE_LOCATION)) {
+                    buf.writeInt(entry.longitude);
+                    buf.writeInt(entry.latitude);
+                } else {
+                    NetworkUtil.encodeZigZagVarInt(entry.longitude, buf);
+                    NetworkUtil.encodeZigZagVarInt(entry.latitude, buf);
+                }
+            }
+            if(entry.has(Entry.AZIMUTH)) buf.writeShort(entry.azimuth);
+        }
+    }
+
+    public boolean isKeyframe() {
+        return this.keyframe;
+    }
+
+    /**
+     * @return the number of players which are synchronized but were not sent because they are outside the client's viewport
+     */
+    public int getOutOfViewCount() {
+        return this.outOfViewCount;
+    }
+
+    public int[] getRemoved() {
+        return this.removed;
+    }
+
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * The changes to the state of a single player.
+     */
+    public static class Entry {
+
+        /** The player is new to the client, its UUID is included */
+        public static final int NEW = 1;
+        /** The player's display name has changed, it is included as a JSON text component */
+        public static final int NAME = 1 << 1;
+        /** The player's gamemode has changed */
+        public static final int GAMEMODE = 1 << 2;
+        /** The player's location has changed */
+        public static final int LOCATION = 1 << 3;
+        /** The location is absolute instead of being relative to the previous one */
+        public static final int ABSOLUTE_LOCATION = 1 << 4;
+        /** The player's azimuth has changed */
+        public static final int AZIMUTH = 1 << 5;
+        /** The player is out of the projection's bounds, its location is unknown */
+        public static final int OUT_OF_PROJECTION = 1 << 6;
+
+        public final int sessionId;
+        public int fields;
+        public UUID uuid;
+        public String displayName;
+        public GameType gamemode;
+        public int longitude, latitude;
+        public int azimuth;
+
+        public Entry(int sessionId, int fields) {
+            this.sessionId = sessionId;
+            this.fields = fields;
+        }
+
+        public boolean has(int field) {
+            return (this.fields & field) != 0;
+        }
+
+    }
+
+    public static class SP2CPlayerDeltaSyncPacketHandler implements IMessageHandler<SP2CPlayerDeltaSyncPacket, IMessage> {
+
+        //Required by forge
+        public SP2CPlayerDeltaSyncPacketHandler(){}
+
+        @Override
+        public IMessage onMessage(SP2CPlayerDeltaSyncPacket message, MessageContext ctx) {
+            Minecraft.getMinecraft().addScheduledTask(() -> {
+                TerramapClientContext context = TerramapClientContext.getContext();
+                PlayerSyncDecoder decoder = context.getPlayerSyncDecoder();
+                decoder.apply(message);
+                context.syncPlayers(decoder.getPlayers());
+                context.setOutOfViewPlayerCount(message.getOutOfViewCount());
+            });
+            return null;
+        }
+
+    }
+
+}
@@ -7,6 +7,7 @@ import fr.thesmyler.terramap.network.NetworkUtil;
 import fr.thesmyler.terramap.util.geo.GeoPoint;
 import fr.thesmyler.terramap.util.geo.GeoPointMutable;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.minecraft.client.Minecraft;
 import net.minecraft.util.text.ITextComponent;
@@ -17,12 +18,13 @@ import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
 public class SP2CPlayerSyncPacket implements IMessage {
 
-    protected TerramapLocalPlayer[] localPlayers;
+    protected TerramapPlayer[] localPlayers;
     protected TerramapRemotePlayer[] remotePlayers;
+    protected ByteBuf encoded;
 
     public SP2CPlayerSyncPacket() {} // Required by forge
 
-    public SP2CPlayerSyncPacket(TerramapLocalPlayer[] players) {
+    public SP2CPlayerSyncPacket(TerramapPlayer[] players) {
         this.localPlayers = players;
     }
 
@@ -50,6 +52,27 @@ public class SP2CPlayerSyncPacket implements IMessage {
 
     @Override
     public void toBytes(ByteBuf buf) {
+        if(this.encoded != null) {
+            buf.writeBytes(this.encoded, 0, this.encoded.writerIndex());
+        } else {
+            this.writePlayers(buf);
+        }
+    }
+
+    /**
+     * Serializes this packet once and for all, so it can then be sent to any number of clients without being serialized again.
+     * This should be called from the thread that created the packet, before it is sent, as packets are encoded on the network threads.
+     * 
+     * @return this packet
+     */
+    public SP2CPlayerSyncPacket encode() {
+        ByteBuf buf = Unpooled.buffer();
+        this.writePlayers(buf);
+        this.encoded = buf;
+        return this;
+    }
+
+    private void writePlayers(ByteBuf buf) {
         buf.writeInt(this.localPlayers.length);
         for(TerramapPlayer player: this.localPlayers) {
             double[] coordinates;
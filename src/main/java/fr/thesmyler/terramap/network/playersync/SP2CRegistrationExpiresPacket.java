@@ -23,9 +23,10 @@ public class SP2CRegistrationExpiresPacket implements IMessage {
 
         @Override
         public C2SPRegisterForUpdatesPacket onMessage(SP2CRegistrationExpiresPacket message, MessageContext ctx) {
-            if(TerramapClientContext.getContext().needsUpdate()) {
+            TerramapClientContext context = TerramapClientContext.getContext();
+            if(context.needsUpdate()) {
                 TerramapMod.logger.debug("Renewing registration for map update to server");
-                return new C2SPRegisterForUpdatesPacket(true);
+                return new C2SPRegisterForUpdatesPacket(true, context.getMapViewport(), context.getMapViewportZoom(), context.isMapTracking());
             }
             return null;
         }
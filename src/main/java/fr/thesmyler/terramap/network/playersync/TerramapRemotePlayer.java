@@ -9,6 +9,7 @@ import com.mojang.authlib.minecraft.MinecraftProfileTexture.Type;
 import fr.thesmyler.terramap.util.geo.GeoPoint;
 import fr.thesmyler.terramap.util.geo.GeoPointMutable;
 import fr.thesmyler.terramap.util.geo.GeoPointReadOnly;
+import fr.thesmyler.terramap.util.geo.MotionInterpolator;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.resources.DefaultPlayerSkin;
@@ -20,6 +21,9 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 
 public class TerramapRemotePlayer extends TerramapPlayer {
 
+    private static final long MIN_INTERPOLATION_DELAY = 50;
+    private static final long MAX_INTERPOLATION_DELAY = 2000;
+
     protected final UUID uuid;
     protected ITextComponent displayName;
     protected final GeoPointMutable location = new GeoPointMutable();
@@ -28,6 +32,7 @@ public class TerramapRemotePlayer extends TerramapPlayer {
     protected GameType gamemode = GameType.NOT_SET;
     protected ResourceLocation texture;
     protected boolean texureRequested = false;
+    protected final MotionInterpolator motion = new MotionInterpolator(MIN_INTERPOLATION_DELAY, MAX_INTERPOLATION_DELAY);
 
     public TerramapRemotePlayer(UUID uuid, ITextComponent name) {
         this.uuid = uuid;
@@ -58,6 +63,7 @@ public class TerramapRemotePlayer extends TerramapPlayer {
         this.location.set(location);
         this.azimuth = azimuth;
         this.outOfProjection = false;
+        this.motion.addSample(System.currentTimeMillis(), location, azimuth);
     }
 
     @Override
@@ -67,6 +73,17 @@ public class TerramapRemotePlayer extends TerramapPlayer {
 
     public void setOutOfProjection() {
         this.outOfProjection = true;
+        this.motion.reset();
+    }
+
+    /**
+     * The location and azimuth of this player are only known when a sync packet is received,
+     * this gives a smoothed version of them suitable for display.
+     *
+     * @return the motion interpolator of this player
+     */
+    public MotionInterpolator getMotion() {
+        return this.motion;
     }
 
     public boolean isOutOfProjection() {
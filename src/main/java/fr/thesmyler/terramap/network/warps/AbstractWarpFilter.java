@@ -1,21 +1,44 @@
 package fr.thesmyler.terramap.network.warps;
 
+import fr.thesmyler.terramap.warp.WarpFilter;
 import io.netty.buffer.ByteBuf;
 
 /**
- * Used to filter warps in multi warp requests
- * 
- * TODO Implement warp filtering
+ * Used to filter warps in multi warp requests.
+ * Filters are written with a leading type byte, which is used to know which filter to read.
  * 
  * @author SmylerMC
  *
  */
-public abstract class AbstractWarpFilter {
+public abstract class AbstractWarpFilter implements WarpFilter {
+
+    protected static final byte BOUNDS_FILTER = 0x00;
+    protected static final byte PROPERTY_FILTER = 0x01;
+    protected static final byte ZOOM_FILTER = 0x02;
+    protected static final byte PROPERTY_PREFIX_FILTER = 0x03;
 
     public abstract void writeToByteBuf(ByteBuf buf);
 
+    /**
+     * Reads a filter written with {@link #writeToByteBuf(ByteBuf)}.
+     * 
+     * @param buf - the buffer to read from
+     * @return the filter, or null if it is not a known or valid filter, in which case the rest of the buffer cannot be read
+     */
     public static AbstractWarpFilter readFromByteBuf(ByteBuf buf) {
-        return null;
+        byte type = buf.readByte();
+        switch(type) {
+            case BOUNDS_FILTER:
+                return BoundsWarpFilter.read(buf);
+            case PROPERTY_FILTER:
+                return PropertyWarpFilter.read(buf);
+            case ZOOM_FILTER:
+                return ZoomWarpFilter.read(buf);
+            case PROPERTY_PREFIX_FILTER:
+                return PropertyPrefixWarpFilter.read(buf);
+            default:
+                return null;
+        }
     }
 
 }
@@ -0,0 +1,63 @@
+package fr.thesmyler.terramap.network.warps;
+
+import java.util.Collection;
+
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
+import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpStore;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Only matches warps which are located within the given bounds.
+ * 
+ * @author SmylerMC
+ *
+ */
+public class BoundsWarpFilter extends AbstractWarpFilter {
+
+    private final GeoBounds bounds;
+
+    public BoundsWarpFilter(GeoBounds bounds) {
+        this.bounds = bounds;
+    }
+
+    @Override
+    public boolean test(Warp warp) {
+        GeoPointImmutable location = warp.getLocation();
+        return location != null && this.bounds.contains(location);
+    }
+
+    @Override
+    public Collection<String> getCandidates(WarpStore store) {
+        return store.getIdsInBounds(this.bounds);
+    }
+
+    public GeoBounds getBounds() {
+        return this.bounds;
+    }
+
+    @Override
+    public void writeToByteBuf(ByteBuf buf) {
+        buf.writeByte(BOUNDS_FILTER);
+        buf.writeDouble(this.bounds.lowerCorner.longitude());
+        buf.writeDouble(this.bounds.lowerCorner.latitude());
+        buf.writeDouble(this.bounds.upperCorner.longitude());
+        buf.writeDouble(this.bounds.upperCorner.latitude());
+    }
+
+    static BoundsWarpFilter read(ByteBuf buf) {
+        double lowerLongitude = buf.readDouble();
+        double lowerLatitude = buf.readDouble();
+        double upperLongitude = buf.readDouble();
+        double upperLatitude = buf.readDouble();
+        try {
+            return new BoundsWarpFilter(new GeoBounds(
+                    new GeoPointImmutable(lowerLongitude, lowerLatitude),
+                    new GeoPointImmutable(upperLongitude, upperLatitude)));
+        } catch(IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
@@ -1,7 +1,11 @@
 package fr.thesmyler.terramap.network.warps;
 
+import fr.thesmyler.terramap.permissions.Permission;
+import fr.thesmyler.terramap.permissions.PermissionManager;
 import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpStore;
 import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
@@ -33,7 +37,14 @@ public class C2SPCreateWarpPacket implements IMessage {
 
         @Override
         public SP2CCreateWarpConfirmationPacket onMessage(C2SPCreateWarpPacket pkt, MessageContext ctx) {
-            return new SP2CCreateWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.NOT_IMPLEMENTED);
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            WarpStore store = WarpStore.getWorldStore(player.getServerWorld());
+            if(store == null) return new SP2CCreateWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.NOT_IMPLEMENTED);
+            if(!PermissionManager.hasPermission(player, Permission.WARPS_CREATE)) return new SP2CCreateWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.FORBIDDEN);
+            if(pkt.warp.getId().isEmpty()) return new SP2CCreateWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.INVALID_KEYS);
+            // The id is already taken
+            if(!store.add(pkt.warp)) return new SP2CCreateWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.INVALID_KEYS);
+            return new SP2CCreateWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.OK);
         }
 
     }
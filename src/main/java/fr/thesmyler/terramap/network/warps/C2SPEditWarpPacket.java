@@ -1,7 +1,11 @@
 package fr.thesmyler.terramap.network.warps;
 
+import fr.thesmyler.terramap.permissions.Permission;
+import fr.thesmyler.terramap.permissions.PermissionManager;
 import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpStore;
 import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
@@ -33,7 +37,13 @@ public class C2SPEditWarpPacket implements IMessage {
 
         @Override
         public SP2CEditWarpConfirmationPacket onMessage(C2SPEditWarpPacket pkt, MessageContext ctx) {
-            return new SP2CEditWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.NOT_IMPLEMENTED);
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            WarpStore store = WarpStore.getWorldStore(player.getServerWorld());
+            if(store == null) return new SP2CEditWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.NOT_IMPLEMENTED);
+            if(!PermissionManager.hasPermission(player, Permission.WARPS_EDIT)) return new SP2CEditWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.FORBIDDEN);
+            if(!store.contains(pkt.warp.getId())) return new SP2CEditWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.NO_SUCH_WARP);
+            store.put(pkt.warp); // Written to disk in the background
+            return new SP2CEditWarpConfirmationPacket(pkt.requestId, WarpRequestStatus.OK);
         }
 
     }
@@ -1,34 +1,80 @@
 package fr.thesmyler.terramap.network.warps;
 
+import java.util.List;
+
 import fr.thesmyler.terramap.network.NetworkUtil;
+import fr.thesmyler.terramap.network.RemoteSynchronizer;
+import fr.thesmyler.terramap.permissions.Permission;
+import fr.thesmyler.terramap.permissions.PermissionManager;
+import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpStore;
 import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
+/**
+ * Asks for the warps which match the given filters.
+ * Replies only contain up to {@link C2SPRequestMultiWarpPacketHandler#PAGE_SIZE} warps.
+ * When there are more, the reply has the {@link WarpRequestStatus#MULTIPART} status and a cursor,
+ * and the same request has to be sent again with that cursor to get the next warps.
+ * 
+ * @author SmylerMC
+ *
+ */
 public class C2SPRequestMultiWarpPacket implements IMessage {
 
+    private static final int MAX_FILTERS = 16;
+    private static final int MAX_KEYS = 64;
+
     private long requestId;
     private AbstractWarpFilter[] filters;
     private String[] keys;
+    private String cursor = "";
+    private boolean tooManyKeys = false; // Only set when decoding
+
+    /**
+     * @param requestId - the id of the request, replies have the same one
+     * @param filters   - the filters the warps have to match
+     * @param cursor    - the cursor of the previous reply to get the next warps, or an empty string to get the first ones
+     * @param keys      - the properties to include in the reply, all of them if there are none
+     */
+    public C2SPRequestMultiWarpPacket(long requestId, AbstractWarpFilter[] filters, String cursor, String... keys) {
+        this.requestId = requestId;
+        this.filters = filters;
+        this.cursor = cursor;
+        this.keys = keys;
+    }
 
     public C2SPRequestMultiWarpPacket() {}
 
     @Override
     public void fromBytes(ByteBuf buf) {
         this.requestId = buf.readLong();
-        this.filters = new AbstractWarpFilter[buf.readInt()];
+        int filterCount = buf.readInt();
+        if(filterCount < 0 || filterCount > MAX_FILTERS) return;
+        this.filters = new AbstractWarpFilter[filterCount];
         for(int i=0; i<this.filters.length; i++) {
             AbstractWarpFilter filter = AbstractWarpFilter.readFromByteBuf(buf);
             if(filter == null) {
                 this.filters = null;
                 return;
             }
+            this.filters[i] = filter;
         }
-        this.keys = new String[buf.readInt()];
+        int keyCount = buf.readInt();
+        if(keyCount < 0 || keyCount > MAX_KEYS) {
+            this.tooManyKeys = true;
+            return;
+        }
+        this.keys = new String[keyCount];
         for(int i=0; i<this.keys.length; i++) {
             this.keys[i] = NetworkUtil.decodeStringFromByteBuf(buf);
         }
+        if(buf.isReadable()) { // Older clients do not send a cursor
+            this.cursor = NetworkUtil.decodeStringFromByteBuf(buf);
+        }
     }
 
     @Override
@@ -42,13 +88,34 @@ public class C2SPRequestMultiWarpPacket implements IMessage {
         for(String key: this.keys) {
             NetworkUtil.encodeStringToByteBuf(key, buf);
         }
+        NetworkUtil.encodeStringToByteBuf(this.cursor, buf);
     }
 
     public static class C2SPRequestMultiWarpPacketHandler implements IMessageHandler<C2SPRequestMultiWarpPacket, IMessage> {
 
+        /**
+         * The maximum number of warps in a reply, so replies stay small enough not to hold up other packets
+         */
+        public static final int PAGE_SIZE = 100;
+
         @Override
         public SP2CMultiWarpPacket onMessage(C2SPRequestMultiWarpPacket pkt, MessageContext ctx) {
-            return new SP2CMultiWarpPacket(pkt.requestId, WarpRequestStatus.NOT_IMPLEMENTED);
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            WarpStore store = WarpStore.getWorldStore(player.getServerWorld());
+            if(store == null) return new SP2CMultiWarpPacket(pkt.requestId, WarpRequestStatus.NOT_IMPLEMENTED);
+            if(!PermissionManager.hasPermission(player, Permission.WARPS_READ)) return new SP2CMultiWarpPacket(pkt.requestId, WarpRequestStatus.FORBIDDEN);
+            if(pkt.filters == null) return new SP2CMultiWarpPacket(pkt.requestId, WarpRequestStatus.INVALID_FILTER);
+            if(pkt.tooManyKeys) return new SP2CMultiWarpPacket(pkt.requestId, WarpRequestStatus.INVALID_KEYS);
+            String after = pkt.cursor.isEmpty() ? null: pkt.cursor;
+            long revision = store.getRevision(); // Read first, the warps found can only be newer
+            List<Warp> found = store.find(PAGE_SIZE + 1, after, pkt.filters);
+            int knownKeys = RemoteSynchronizer.sendWarpKeys(player);
+            if(found.size() > PAGE_SIZE) {
+                Warp[] warps = found.subList(0, PAGE_SIZE).toArray(new Warp[0]);
+                String cursor = warps[warps.length - 1].getId();
+                return new SP2CMultiWarpPacket(pkt.requestId, WarpRequestStatus.MULTIPART, cursor, pkt.keys, revision, knownKeys, warps);
+            }
+            return new SP2CMultiWarpPacket(pkt.requestId, WarpRequestStatus.OK, "", pkt.keys, revision, knownKeys, found.toArray(new Warp[0]));
         }
 
     }
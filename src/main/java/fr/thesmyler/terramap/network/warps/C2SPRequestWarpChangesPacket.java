@@ -0,0 +1,59 @@
+package fr.thesmyler.terramap.network.warps;
+
+import fr.thesmyler.terramap.network.RemoteSynchronizer;
+import fr.thesmyler.terramap.permissions.Permission;
+import fr.thesmyler.terramap.permissions.PermissionManager;
+import fr.thesmyler.terramap.warp.WarpStore;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Asks which warps changed since a revision, so the client can keep the warps it has cached instead of requesting them again.
+ * The client is then also sent the changes as they happen, until it logs out.
+ * 
+ * @author SmylerMC
+ *
+ */
+public class C2SPRequestWarpChangesPacket implements IMessage {
+
+    private long requestId;
+    private long revision;
+
+    public C2SPRequestWarpChangesPacket(long requestId, long revision) {
+        this.requestId = requestId;
+        this.revision = revision;
+    }
+
+    public C2SPRequestWarpChangesPacket() {}
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.requestId = buf.readLong();
+        this.revision = buf.readLong();
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeLong(this.requestId);
+        buf.writeLong(this.revision);
+    }
+
+    public static class C2SPRequestWarpChangesPacketHandler implements IMessageHandler<C2SPRequestWarpChangesPacket, IMessage> {
+
+        @Override
+        public SP2CWarpChangesPacket onMessage(C2SPRequestWarpChangesPacket pkt, MessageContext ctx) {
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            WarpStore store = WarpStore.getWorldStore(player.getServerWorld());
+            if(store == null) return new SP2CWarpChangesPacket(pkt.requestId, WarpRequestStatus.NOT_IMPLEMENTED);
+            if(!PermissionManager.hasPermission(player, Permission.WARPS_READ)) return new SP2CWarpChangesPacket(pkt.requestId, WarpRequestStatus.FORBIDDEN);
+            RemoteSynchronizer.subscribeToWarpChanges(player);
+            int knownKeys = RemoteSynchronizer.sendWarpKeys(player);
+            return SP2CWarpChangesPacket.describeChanges(pkt.requestId, store, pkt.revision, knownKeys);
+        }
+
+    }
+
+}
@@ -1,7 +1,12 @@
 package fr.thesmyler.terramap.network.warps;
 
 import fr.thesmyler.terramap.network.NetworkUtil;
+import fr.thesmyler.terramap.permissions.Permission;
+import fr.thesmyler.terramap.permissions.PermissionManager;
+import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpStore;
 import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
@@ -34,7 +39,13 @@ public class C2SPRequestWarpPacket implements IMessage {
 
         @Override
         public SP2CWarpPacket onMessage(C2SPRequestWarpPacket pkt, MessageContext ctx) {
-            return new SP2CWarpPacket(pkt.requestId, WarpRequestStatus.NOT_IMPLEMENTED, null);
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            WarpStore store = WarpStore.getWorldStore(player.getServerWorld());
+            if(store == null) return new SP2CWarpPacket(pkt.requestId, WarpRequestStatus.NOT_IMPLEMENTED, null);
+            if(!PermissionManager.hasPermission(player, Permission.WARPS_READ)) return new SP2CWarpPacket(pkt.requestId, WarpRequestStatus.FORBIDDEN, null);
+            Warp warp = store.get(pkt.warpId);
+            if(warp == null) return new SP2CWarpPacket(pkt.requestId, WarpRequestStatus.NO_SUCH_WARP, null);
+            return new SP2CWarpPacket(pkt.requestId, WarpRequestStatus.OK, warp);
         }
 
     }
@@ -0,0 +1,58 @@
+package fr.thesmyler.terramap.network.warps;
+
+import java.util.Collection;
+
+import fr.thesmyler.terramap.network.NetworkUtil;
+import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpStore;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Only matches warps which have a value starting with the given prefix for the given property.
+ * 
+ * @author SmylerMC
+ *
+ */
+public class PropertyPrefixWarpFilter extends AbstractWarpFilter {
+
+    private final String key;
+    private final String prefix;
+
+    public PropertyPrefixWarpFilter(String key, String prefix) {
+        this.key = key;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public boolean test(Warp warp) {
+        return warp.hasProperty(this.key) && warp.getProperty(this.key).startsWith(this.prefix);
+    }
+
+    @Override
+    public Collection<String> getCandidates(WarpStore store) {
+        if(Warp.ID_KEY.equals(this.key) || Warp.LONGITUDE_KEY.equals(this.key) || Warp.LATITUDE_KEY.equals(this.key)) return null; // Not indexed
+        return store.getIdsWithPropertyPrefix(this.key, this.prefix);
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    @Override
+    public void writeToByteBuf(ByteBuf buf) {
+        buf.writeByte(PROPERTY_PREFIX_FILTER);
+        NetworkUtil.encodeStringToByteBuf(this.key, buf);
+        NetworkUtil.encodeStringToByteBuf(this.prefix, buf);
+    }
+
+    static PropertyPrefixWarpFilter read(ByteBuf buf) {
+        String key = NetworkUtil.decodeStringFromByteBuf(buf);
+        String prefix = NetworkUtil.decodeStringFromByteBuf(buf);
+        return new PropertyPrefixWarpFilter(key, prefix);
+    }
+
+}
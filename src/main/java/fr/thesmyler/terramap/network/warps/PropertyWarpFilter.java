@@ -0,0 +1,62 @@
+package fr.thesmyler.terramap.network.warps;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import fr.thesmyler.terramap.network.NetworkUtil;
+import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpStore;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Only matches warps which have the given value for the given property.
+ * 
+ * @author SmylerMC
+ *
+ */
+public class PropertyWarpFilter extends AbstractWarpFilter {
+
+    private final String key;
+    private final String value;
+
+    public PropertyWarpFilter(String key, String value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public boolean test(Warp warp) {
+        return warp.hasProperty(this.key) && warp.getProperty(this.key).equals(this.value);
+    }
+
+    @Override
+    public Collection<String> getCandidates(WarpStore store) {
+        if(Warp.ID_KEY.equals(this.key)) {
+            return store.contains(this.value) ? Collections.singleton(this.value): Collections.emptySet();
+        }
+        if(Warp.LONGITUDE_KEY.equals(this.key) || Warp.LATITUDE_KEY.equals(this.key)) return null; // Not indexed
+        return store.getIdsWithProperty(this.key, this.value);
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public String getValue() {
+        return this.value;
+    }
+
+    @Override
+    public void writeToByteBuf(ByteBuf buf) {
+        buf.writeByte(PROPERTY_FILTER);
+        NetworkUtil.encodeStringToByteBuf(this.key, buf);
+        NetworkUtil.encodeStringToByteBuf(this.value, buf);
+    }
+
+    static PropertyWarpFilter read(ByteBuf buf) {
+        String key = NetworkUtil.decodeStringFromByteBuf(buf);
+        String value = NetworkUtil.decodeStringFromByteBuf(buf);
+        return new PropertyWarpFilter(key, value);
+    }
+
+}
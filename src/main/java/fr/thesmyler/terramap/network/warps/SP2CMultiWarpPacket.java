@@ -1,7 +1,10 @@
 package fr.thesmyler.terramap.network.warps;
 
+import fr.thesmyler.terramap.TerramapClientContext;
+import fr.thesmyler.terramap.network.NetworkUtil;
 import fr.thesmyler.terramap.warp.Warp;
 import io.netty.buffer.ByteBuf;
+import net.minecraft.client.Minecraft;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
@@ -11,6 +14,10 @@ public class SP2CMultiWarpPacket implements IMessage {
     private long requestId;
     private WarpRequestStatus status;
     private Warp[] warps;
+    private String cursor = "";
+    private String[] keys = new String[0];
+    private long revision = 0;
+    private int knownKeys = -1;
 
     public SP2CMultiWarpPacket(long requestId, WarpRequestStatus status, Warp... warps) {
         this.requestId = requestId;
@@ -18,6 +25,23 @@ public class SP2CMultiWarpPacket implements IMessage {
         this.warps = warps;
     }
 
+    /**
+     * @param requestId - the id of the request this replies to
+     * @param status    - the status of the request, {@link WarpRequestStatus#MULTIPART} if there are more warps to get
+     * @param cursor    - the cursor to request the next warps with, if the status is {@link WarpRequestStatus#MULTIPART}
+     * @param keys      - the properties to send, all of them if there are none
+     * @param revision  - the revision of the server's warps the warps are from
+     * @param knownKeys - the number of warp keys the client has been sent, or -1 to send warps with their keys
+     * @param warps     - the warps to send
+     */
+    public SP2CMultiWarpPacket(long requestId, WarpRequestStatus status, String cursor, String[] keys, long revision, int knownKeys, Warp... warps) {
+        this(requestId, status, warps);
+        this.cursor = cursor;
+        this.keys = keys;
+        this.revision = revision;
+        this.knownKeys = knownKeys;
+    }
+
     public SP2CMultiWarpPacket() {}
 
     @Override
@@ -29,6 +53,12 @@ public class SP2CMultiWarpPacket implements IMessage {
             for(int i=0; i < this.warps.length; i++) {
                 this.warps[i] = Warp.readWarpFromByteBuf(buf);
             }
+            if(this.status == WarpRequestStatus.MULTIPART) {
+                this.cursor = NetworkUtil.decodeStringFromByteBuf(buf);
+            }
+            if(buf.isReadable()) { // Older servers do not send a revision
+                this.revision = buf.readLong();
+            }
         } else {
             this.warps = new Warp[0];
         }
@@ -40,15 +70,53 @@ public class SP2CMultiWarpPacket implements IMessage {
         buf.writeByte(this.status.getNetworkCode());
         buf.writeInt(this.warps.length);
         for(Warp warp: this.warps) {
-            warp.encodeToByteBuf(buf);
+            if(this.knownKeys >= 0) {
+                warp.encodeIndexedToByteBuf(buf, this.knownKeys, this.keys);
+            } else if(this.keys.length > 0) {
+                warp.encodeToByteBuf(buf, this.keys);
+            } else {
+                warp.encodeToByteBuf(buf);
+            }
         }
+        if(this.status == WarpRequestStatus.MULTIPART) {
+            NetworkUtil.encodeStringToByteBuf(this.cursor, buf);
+        }
+        if(this.status.isSuccess()) {
+            buf.writeLong(this.revision);
+        }
+    }
+
+    public long getRequestId() {
+        return this.requestId;
+    }
+
+    public WarpRequestStatus getStatus() {
+        return this.status;
+    }
+
+    public Warp[] getWarps() {
+        return this.warps;
+    }
+
+    /**
+     * @return the cursor to request the next warps with, if the status is {@link WarpRequestStatus#MULTIPART}
+     */
+    public String getCursor() {
+        return this.cursor;
+    }
+
+    /**
+     * @return the revision of the server's warps the warps are from, 0 if the server did not tell
+     */
+    public long getRevision() {
+        return this.revision;
     }
 
     public static class SP2CMultiWarpPacketServerHandler implements IMessageHandler<SP2CMultiWarpPacket, IMessage> {
 
         @Override
         public IMessage onMessage(SP2CMultiWarpPacket message, MessageContext ctx) {
-            //TODO SP2CMultiWarpPacketServerHandler
+            Minecraft.getMinecraft().addScheduledTask(() -> TerramapClientContext.getContext().onWarpsReceived(message));
             return null;
         }
 
@@ -0,0 +1,177 @@
+package fr.thesmyler.terramap.network.warps;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import fr.thesmyler.terramap.TerramapClientContext;
+import fr.thesmyler.terramap.network.NetworkUtil;
+import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpStore;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Tells a client which warps changed between two revisions.
+ * Changed warps only have their id and location, clients are expected to request them again if they need them.
+ * This is either a reply to a {@link C2SPRequestWarpChangesPacket}, or is sent by the server to clients which have their map open when warps change,
+ * in which case the request id is 0.
+ * 
+ * @author SmylerMC
+ *
+ */
+public class SP2CWarpChangesPacket implements IMessage {
+
+    /**
+     * Past this many changes, clients are told to start over instead
+     */
+    public static final int MAX_CHANGES = 1000;
+
+    private static final String[] LOCATION_KEYS = {Warp.LONGITUDE_KEY, Warp.LATITUDE_KEY};
+
+    private long requestId;
+    private WarpRequestStatus status;
+    private long since;
+    private long revision;
+    private boolean reset;
+    private Warp[] changed = new Warp[0];
+    private String[] removed = new String[0];
+    private int knownKeys = -1;
+
+    public SP2CWarpChangesPacket(long requestId, WarpRequestStatus status) {
+        this.requestId = requestId;
+        this.status = status;
+    }
+
+    /**
+     * @param requestId - the id of the request this replies to, 0 if this was not requested
+     * @param since     - the revision the changes start from
+     * @param revision  - the revision the changes go up to
+     * @param reset     - true if the changes are not known, in which case clients have to forget all the warps they have
+     * @param changed   - the warps which were added or changed
+     * @param removed   - the ids of the warps which were removed
+     * @param knownKeys - the number of warp keys the client has been sent, or -1 to send warps with their keys
+     */
+    public SP2CWarpChangesPacket(long requestId, long since, long revision, boolean reset, Warp[] changed, String[] removed, int knownKeys) {
+        this(requestId, WarpRequestStatus.OK);
+        this.since = since;
+        this.revision = revision;
+        this.reset = reset;
+        this.changed = changed;
+        this.removed = removed;
+        this.knownKeys = knownKeys;
+    }
+
+    public SP2CWarpChangesPacket() {}
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.requestId = buf.readLong();
+        this.status = WarpRequestStatus.getFromNetworkCode(buf.readByte());
+        if(this.status.isSuccess()) {
+            this.since = buf.readLong();
+            this.revision = buf.readLong();
+            this.reset = buf.readBoolean();
+            this.changed = new Warp[buf.readInt()];
+            for(int i = 0; i < this.changed.length; i++) {
+                this.changed[i] = Warp.readWarpFromByteBuf(buf);
+            }
+            this.removed = NetworkUtil.decodeStringArrayFromByteBuf(buf);
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeLong(this.requestId);
+        buf.writeByte(this.status.getNetworkCode());
+        if(this.status.isSuccess()) {
+            buf.writeLong(this.since);
+            buf.writeLong(this.revision);
+            buf.writeBoolean(this.reset);
+            buf.writeInt(this.changed.length);
+            for(Warp warp: this.changed) {
+                if(this.knownKeys >= 0) {
+                    warp.encodeIndexedToByteBuf(buf, this.knownKeys, LOCATION_KEYS);
+                } else {
+                    warp.encodeToByteBuf(buf, LOCATION_KEYS);
+                }
+            }
+            NetworkUtil.encodeStringArrayToByteBuf(this.removed, buf);
+        }
+    }
+
+    public long getRequestId() {
+        return this.requestId;
+    }
+
+    public WarpRequestStatus getStatus() {
+        return this.status;
+    }
+
+    public long getSince() {
+        return this.since;
+    }
+
+    public long getRevision() {
+        return this.revision;
+    }
+
+    /**
+     * @return whether the changes are unknown and all warps have to be forgotten
+     */
+    public boolean isReset() {
+        return this.reset;
+    }
+
+    public Warp[] getChanged() {
+        return this.changed;
+    }
+
+    public String[] getRemoved() {
+        return this.removed;
+    }
+
+    /**
+     * Looks up the changes made to a store since a revision.
+     * 
+     * @param requestId - the id of the request
+     * @param store     - the store to look up the changes of
+     * @param since     - the revision to start from
+     * @param knownKeys - the number of warp keys the client has been sent, or -1 to send warps with their keys
+     * 
+     * @return a packet which describes the changes
+     */
+    public static SP2CWarpChangesPacket describeChanges(long requestId, WarpStore store, long since, int knownKeys) {
+        long revision = store.getRevision(); // Read first, later changes can be included but none can be missed
+        Set<String> ids = new HashSet<>();
+        if(!store.getChangesSince(since, ids) || ids.size() > MAX_CHANGES) {
+            return new SP2CWarpChangesPacket(requestId, since, revision, true, new Warp[0], new String[0], knownKeys);
+        }
+        List<Warp> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for(String id: ids) {
+            Warp warp = store.get(id);
+            if(warp != null) {
+                changed.add(warp);
+            } else {
+                removed.add(id);
+            }
+        }
+        return new SP2CWarpChangesPacket(requestId, since, revision, false, changed.toArray(new Warp[0]), removed.toArray(new String[0]), knownKeys);
+    }
+
+    public static class SP2CWarpChangesPacketHandler implements IMessageHandler<SP2CWarpChangesPacket, IMessage> {
+
+        @Override
+        public IMessage onMessage(SP2CWarpChangesPacket message, MessageContext ctx) {
+            Minecraft.getMinecraft().addScheduledTask(() -> TerramapClientContext.getContext().onWarpChanges(message));
+            return null;
+        }
+
+    }
+
+}
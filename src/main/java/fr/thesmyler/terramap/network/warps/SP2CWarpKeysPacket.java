@@ -0,0 +1,59 @@
+package fr.thesmyler.terramap.network.warps;
+
+import fr.thesmyler.terramap.TerramapMod;
+import fr.thesmyler.terramap.network.NetworkUtil;
+import fr.thesmyler.terramap.warp.WarpSchema;
+import io.netty.buffer.ByteBuf;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Sends the client the warp property keys of the server's {@link WarpSchema}, so warps can then be sent with key indexes instead of keys.
+ * The server first sends all its keys, starting from index 0, and then the ones it adds, before sending any warp which uses them.
+ * 
+ * @author SmylerMC
+ *
+ */
+public class SP2CWarpKeysPacket implements IMessage {
+
+    private int first;
+    private String[] keys;
+
+    /**
+     * @param first - the index of the first key
+     * @param keys  - the keys, sorted by index
+     */
+    public SP2CWarpKeysPacket(int first, String[] keys) {
+        this.first = first;
+        this.keys = keys;
+    }
+
+    public SP2CWarpKeysPacket() {}
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.first = buf.readInt();
+        this.keys = NetworkUtil.decodeStringArrayFromByteBuf(buf);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeInt(this.first);
+        NetworkUtil.encodeStringArrayToByteBuf(this.keys, buf);
+    }
+
+    public static class SP2CWarpKeysPacketHandler implements IMessageHandler<SP2CWarpKeysPacket, IMessage> {
+
+        @Override
+        public IMessage onMessage(SP2CWarpKeysPacket message, MessageContext ctx) {
+            // Not scheduled, the next packets may need these keys to be decoded
+            if(!WarpKeyTable.add(message.first, message.keys)) {
+                TerramapMod.logger.warn("Server sent warp keys out of order, starting at {}", message.first);
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -26,13 +26,16 @@ public class SP2CWarpPacket implements IMessage {
     public void fromBytes(ByteBuf buf) {
         this.requestId = buf.readLong();
         this.status = WarpRequestStatus.getFromNetworkCode(buf.readByte());
+        if(this.status.isSuccess()) {
+            this.warp = Warp.readWarpFromByteBuf(buf);
+        }
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
         buf.writeLong(this.requestId);
         buf.writeByte(this.status.getNetworkCode());
-        if(this.warp != null) {
+        if(this.status.isSuccess() && this.warp != null) {
             this.warp.encodeToByteBuf(buf);
         }
     }
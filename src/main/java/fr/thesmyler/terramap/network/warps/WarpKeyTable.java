@@ -0,0 +1,53 @@
+package fr.thesmyler.terramap.network.warps;
+
+import java.util.Arrays;
+
+import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpSchema;
+
+/**
+ * The warp property keys a client was sent by the server it is connected to, with {@link SP2CWarpKeysPacket}.
+ * Warps encoded with {@link Warp#encodeIndexedToByteBuf} refer to their keys by their index in this table.
+ * <br>
+ * The server sends its keys starting from index 0 once per connection, and new ones as they are used,
+ * so this table is updated on the network thread, right as the keys are received, before any warp which uses them is decoded.
+ *
+ * @author SmylerMC
+ *
+ */
+public final class WarpKeyTable {
+
+    private static volatile String[] keys = new String[0];
+
+    private WarpKeyTable() {}
+
+    /**
+     * Adds keys to the table.
+     *
+     * @param first - the index of the first key, 0 if the server is sending its keys from the start
+     * @param added - the keys to add
+     *
+     * @return false if the keys do not follow the ones already received and were ignored
+     */
+    public static synchronized boolean add(int first, String[] added) {
+        String[] current = first == 0 ? new String[0]: keys;
+        if(first != current.length || current.length + added.length > WarpSchema.MAX_KEYS) return false;
+        String[] next = Arrays.copyOf(current, current.length + added.length);
+        System.arraycopy(added, 0, next, current.length, added.length);
+        keys = next;
+        return true;
+    }
+
+    /**
+     * @param index - the index of a key
+     * @return the key the server gave that index to
+     *
+     * @throws IllegalArgumentException if the server did not send a key with that index
+     */
+    public static String getKey(int index) {
+        String[] current = keys;
+        if(index < 0 || index >= current.length) throw new IllegalArgumentException("Unknown warp key index: " + index);
+        return current[index];
+    }
+
+}
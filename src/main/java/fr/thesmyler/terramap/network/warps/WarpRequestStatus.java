@@ -3,12 +3,12 @@ package fr.thesmyler.terramap.network.warps;
 public enum WarpRequestStatus {
 
     OK(0x00, true),                 // Everything went fine, the request has been handled
-    MULTIPART(0x01, true),          // To many matching warps, other packets will follow
+    MULTIPART(0x01, true),          // To many matching warps, request again with the cursor of the reply to get the next ones
     TOO_MANY(0x02, false),          // To many matching warps, this request will not be handled
     NO_SUCH_WARP(0x03, false),      // The warp did not exist
     NOT_IMPLEMENTED(0x04, false),   // Warps are not supported
     INVALID_FILTER(0x05, false),    // The request contained an invalid filter
-    INVALID_KEYS(0x06, false),      // One of the keys requested cannot be included in multi request
+    INVALID_KEYS(0x06, false),      // One of the keys requested cannot be included in multi request, or too many keys were requested
     FORBIDDEN(0x07, false),         // The user did not have the required permission to make that request
     UNKNOWN(Byte.MAX_VALUE, false); // The status code was not known
 
@@ -0,0 +1,42 @@
+package fr.thesmyler.terramap.network.warps;
+
+import fr.thesmyler.terramap.warp.Warp;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Only matches warps which should be displayed on a map at the given zoom level,
+ * that is warps which do not have a minimum zoom level or which minimum zoom level is not above the given one.
+ * 
+ * @author SmylerMC
+ *
+ */
+public class ZoomWarpFilter extends AbstractWarpFilter {
+
+    private final double zoom;
+
+    public ZoomWarpFilter(double zoom) {
+        this.zoom = zoom;
+    }
+
+    @Override
+    public boolean test(Warp warp) {
+        return warp.getMinZoom() <= this.zoom;
+    }
+
+    public double getZoom() {
+        return this.zoom;
+    }
+
+    @Override
+    public void writeToByteBuf(ByteBuf buf) {
+        buf.writeByte(ZOOM_FILTER);
+        buf.writeDouble(this.zoom);
+    }
+
+    static ZoomWarpFilter read(ByteBuf buf) {
+        double zoom = buf.readDouble();
+        if(!Double.isFinite(zoom)) return null;
+        return new ZoomWarpFilter(zoom);
+    }
+
+}
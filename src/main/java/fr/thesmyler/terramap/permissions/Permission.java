@@ -27,7 +27,19 @@ public enum Permission {
     RADAR_MOBS(
             "terramap.radar.mobs",
             DefaultPermissionLevel.ALL,
-            "Allows players to see mobs on the map");
+            "Allows players to see mobs on the map"),
+    WARPS_READ(
+            "terramap.warps.read",
+            DefaultPermissionLevel.ALL,
+            "Allows players to see warps on the map"),
+    WARPS_CREATE(
+            "terramap.warps.create",
+            DefaultPermissionLevel.OP,
+            "Allows players to create warps"),
+    WARPS_EDIT(
+            "terramap.warps.edit",
+            DefaultPermissionLevel.OP,
+            "Allows players to edit existing warps");
 
     private final String node;
     private final DefaultPermissionLevel lvl;
@@ -3,11 +3,19 @@ package fr.thesmyler.terramap.saving.server;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
@@ -17,6 +25,12 @@ import fr.thesmyler.terramap.TerramapConfig;
 import net.minecraft.world.WorldServer;
 
 /**
+ * Server side preferences, saved per world.
+ * <br>
+ * Changes are not written right away: the world is marked as dirty, and its preferences are written on a background thread
+ * {@link #WRITE_DELAY} milliseconds later, so bursts of changes only produce one write.
+ * Files are written to a temporary file first and then renamed, so a crash never leaves them half written.
+ * Pending changes are written when the overworld unloads.
  * 
  * @author SmylerMC
  *
@@ -25,7 +39,14 @@ public class TerramapServerPreferences {
 
     public static final String FILENAME = "terramap_server_preferences.json";
 
-    private static final Map<String, WorldPreferences> preferences = new HashMap<>();
+    private static final long WRITE_DELAY = 1000;
+    private static final long RETRY_DELAY = 10000;
+
+    private static final Map<String, WorldPreferences> preferences = new ConcurrentHashMap<>();
+
+    // A single thread, so writes to a file never overlap
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Terramap preferences writer").setDaemon(true).build());
 
     private static boolean loggedDebugError = false;
     private static long lastErrorLog = Long.MIN_VALUE;
@@ -43,9 +64,8 @@ public class TerramapServerPreferences {
     public static boolean shouldDisplayPlayer(WorldServer world, UUID uuid) {
         try {
             WorldPreferences preferences = TerramapServerPreferences.getWorldPreferences(world);
-            synchronized(preferences) {
-                return preferences.players.containsKey(uuid) ? preferences.players.get(uuid).display : TerramapConfig.SERVER.playersDisplayDefault;
-            }
+            PlayerPreferences pp = preferences.players.get(uuid);
+            return pp != null ? pp.display : TerramapConfig.SERVER.playersDisplayDefault;
         } catch(Exception e) {
             if(!loggedDebugError) {
                 TerramapMod.logger.error("Failed to get player display preferences. This error will only be displayed once.");
@@ -57,7 +77,8 @@ public class TerramapServerPreferences {
     }
 
     /**
-     * Sets a players display preference for the specified world
+     * Sets a players display preference for the specified world.
+     * The change is saved asynchronously.
      * 
      * @param world
      * @param uuid
@@ -65,14 +86,9 @@ public class TerramapServerPreferences {
      */
     public static void setShouldDisplayPlayer(WorldServer world, UUID uuid, boolean yesNo) {
         try {
-            synchronized(preferences) {
-                WorldPreferences worldPreferences = TerramapServerPreferences.getWorldPreferences(world);
-                synchronized(worldPreferences) {
-                    PlayerPreferences pp = worldPreferences.players.getOrDefault(uuid, new PlayerPreferences());
-                    pp.display = yesNo;
-                    worldPreferences.players.put(uuid, pp);
-                }
-            }
+            WorldPreferences worldPreferences = TerramapServerPreferences.getWorldPreferences(world);
+            // Preferences are replaced rather than changed, as they may be being written
+            worldPreferences.players.put(uuid, new PlayerPreferences(yesNo));
             saveWorldPreferences(world);
         } catch(Exception e) {
             TerramapMod.logger.error("Failed to set player display preferences! See stack trace:");
@@ -88,7 +104,7 @@ public class TerramapServerPreferences {
     public static UUID getWorldUUID(WorldServer world) {
         try {
             WorldPreferences prefs = TerramapServerPreferences.getWorldPreferences(world);
-            synchronized(prefs) {
+            synchronized(prefs) { // Only ever contended once per world
                 UUID uuid = prefs.world_uuid;
                 if(uuid.getLeastSignificantBits() == 0 && uuid.getMostSignificantBits() == 0) {
                     uuid = UUID.randomUUID();
@@ -104,69 +120,66 @@ public class TerramapServerPreferences {
         return new UUID(0, 0);
     }
 
+    /**
+     * Writes the given world's pending changes and forgets its preferences.
+     * This waits for the write to complete.
+     * 
+     * @param world
+     */
     public static void unloadWorldPreferences(WorldServer world) {
         try {
             File file = TerramapServerPreferences.getFileForWorld(world);
-            synchronized(preferences) {
-                TerramapServerPreferences.preferences.remove(file.getAbsolutePath());
-            }
+            WorldPreferences prefs = TerramapServerPreferences.preferences.remove(file.getAbsolutePath());
+            if(prefs != null) WRITER.submit(() -> write(file, prefs)).get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch(Exception e) {
             TerramapMod.logger.warn("Failed to unload a world server preferences");
         }
     }
 
     /**
-     * Saves the currently loaded preferences for the given file
+     * Marks the currently loaded preferences for the given world as dirty, so they are saved in the background
      * /!\ Be careful, if this world's preferences were not loaded first, they will be overwritten with the default values
      * 
      * @param world
      */
     public static void saveWorldPreferences(WorldServer world) {
-        try {
-            File file = TerramapServerPreferences.getFileForWorld(world);
-            WorldPreferences prefs = TerramapServerPreferences.getWorldPreferences(world);
-            synchronized(prefs) {
-                save(file, prefs);
-            }
-        } catch(Exception e) {
-            long t = System.currentTimeMillis();
-            if(t > lastErrorLog + 10000) {
-                TerramapMod.logger.error("Failed to save server preferences");
-                TerramapMod.logger.catching(e);
-                lastErrorLog = t;
-            }
-        }
+        File file = TerramapServerPreferences.getFileForWorld(world);
+        WorldPreferences prefs = TerramapServerPreferences.getWorldPreferences(world);
+        markDirty(file, prefs, WRITE_DELAY);
     }
 
     /**
-     * Saves all currently loaded server world preferences
+     * Saves all currently loaded server world preferences which have pending changes, and waits for them to be written
      */
     public static void saveAllPreferences() {
         try {
-            synchronized(preferences) {
-                for(String key: TerramapServerPreferences.preferences.keySet()) {
-                    WorldPreferences preferences = TerramapServerPreferences.preferences.get(key);
-                    File file = new File(key);
-                    TerramapServerPreferences.save(file, preferences);
+            WRITER.submit(() -> {
+                for(Map.Entry<String, WorldPreferences> entry: TerramapServerPreferences.preferences.entrySet()) {
+                    write(new File(entry.getKey()), entry.getValue());
                 }
-            }
-        } catch(Exception e) {
-            long t = System.currentTimeMillis();
-            if(t > lastErrorLog + 10000) {
-                TerramapMod.logger.error("Failed to save server preferences");
-                TerramapMod.logger.catching(e);
-                lastErrorLog = t;
-            }
+            }).get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            TerramapMod.logger.error("Failed to save server preferences");
+            TerramapMod.logger.catching(e);
         }
     }
 
     /**
-     * Loads the specified world's server preferences
+     * Loads the specified world's server preferences, unless they are already loaded.
+     * Dimensions share the preferences of their world, which may have changes which have not been written yet.
      * 
      * @param world
      */
     public static void loadWorldPreferences(WorldServer world) {
         File fileToLoad = TerramapServerPreferences.getFileForWorld(world);
+        TerramapServerPreferences.preferences.computeIfAbsent(fileToLoad.getAbsolutePath(), path -> load(fileToLoad));
+    }
+
+    private static WorldPreferences load(File fileToLoad) {
         WorldPreferences preferences = new WorldPreferences();
         if(fileToLoad.exists()) {
             try {
@@ -180,14 +193,40 @@ public class TerramapServerPreferences {
         } else {
             TerramapMod.logger.info("Loaded new empty server preferences as file did not exist");
         }
-        synchronized(TerramapServerPreferences.preferences) {
-            TerramapServerPreferences.preferences.put(fileToLoad.getAbsolutePath(), preferences);
+        return preferences;
+    }
+
+    private static void markDirty(File file, WorldPreferences preferences, long delay) {
+        // Only the first change schedules a write, the ones which follow are written with it
+        if(preferences.dirty.compareAndSet(false, true)) {
+            WRITER.schedule(() -> write(file, preferences), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void write(File file, WorldPreferences preferences) {
+        if(!preferences.dirty.getAndSet(false)) return; // Already written
+        try {
+            save(file, preferences);
+        } catch(Exception e) {
+            long t = System.currentTimeMillis();
+            if(t > lastErrorLog + 10000) {
+                TerramapMod.logger.error("Failed to save server preferences");
+                TerramapMod.logger.catching(e);
+                lastErrorLog = t;
+            }
+            markDirty(file, preferences, RETRY_DELAY);
         }
     }
 
     private static void save(File file, WorldPreferences preferences) throws IOException {
         String str = GSON.toJson(preferences);
-        Files.write(file.toPath(), str.getBytes(Charset.defaultCharset()));
+        File temp = new File(file.getPath() + ".tmp");
+        Files.write(temp.toPath(), str.getBytes(Charset.defaultCharset()));
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
     private static File getFileForWorld(WorldServer world) {
@@ -196,20 +235,26 @@ public class TerramapServerPreferences {
 
     private static WorldPreferences getWorldPreferences(WorldServer world) {
         File file = TerramapServerPreferences.getFileForWorld(world);
-        synchronized(preferences) {
-            WorldPreferences prefs = TerramapServerPreferences.preferences.getOrDefault(file.toString(), new WorldPreferences());
-            preferences.put(file.getAbsolutePath(), prefs);
-            return prefs;
-        }
+        return TerramapServerPreferences.preferences.computeIfAbsent(file.getAbsolutePath(), path -> new WorldPreferences());
     }
 
     private static class WorldPreferences {
-        public UUID world_uuid = new UUID(0, 0);
-        public Map<UUID, PlayerPreferences> players = new HashMap<>();
+        public volatile UUID world_uuid = new UUID(0, 0);
+        public ConcurrentHashMap<UUID, PlayerPreferences> players = new ConcurrentHashMap<>();
+        private final transient AtomicBoolean dirty = new AtomicBoolean(false);
     }
 
     private static class PlayerPreferences {
-        public boolean display = TerramapConfig.SERVER.playersDisplayDefault;
+        public final boolean display;
+
+        PlayerPreferences(boolean display) {
+            this.display = display;
+        }
+
+        @SuppressWarnings("unused") // Used by Gson
+        PlayerPreferences() {
+            this(TerramapConfig.SERVER.playersDisplayDefault);
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package fr.thesmyler.terramap.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * A bounded record of the values which were added to or removed from a collection,
+ * so consumers can keep up with the collection by only looking at what changed since they last checked.
+ * <br>
+ * Each consumer keeps its own {@link Cursor}. Only the last changes are kept,
+ * a consumer that fell too far behind is told so and has to rebuild its state from the collection itself.
+ *
+ * @param <T> the type of values in the journal
+ *
+ * @author SmylerMC
+ *
+ */
+public class ChangeJournal<T> {
+
+    private final Object[] values;
+    private final boolean[] additions;
+    private long head = 0;
+    private long oldest = 0;
+
+    /**
+     * @param capacity - how many changes to remember
+     */
+    public ChangeJournal(int capacity) {
+        if(capacity <= 0) throw new IllegalArgumentException("Journal capacity has to be positive");
+        this.values = new Object[capacity];
+        this.additions = new boolean[capacity];
+    }
+
+    /**
+     * Records that a value was added to the collection.
+     *
+     * @param value - the value that was added
+     */
+    public void added(T value) {
+        this.record(value, true);
+    }
+
+    /**
+     * Records that a value was removed from the collection.
+     *
+     * @param value - the value that was removed
+     */
+    public void removed(T value) {
+        this.record(value, false);
+    }
+
+    /**
+     * Forgets all changes. All consumers will have to rebuild their state on their next read.
+     */
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.oldest = ++this.head;
+    }
+
+    /**
+     * Passes the changes recorded since the last read with the given cursor to a listener, and moves the cursor forward.
+     * <br>
+     * If some of these changes are not available anymore, or if the cursor has never been used with this journal,
+     * nothing is passed to the listener, the cursor is moved to the current position and false is returned.
+     * The caller is then expected to rebuild its state from scratch.
+     *
+     * @param cursor    - the caller's position in this journal
+     * @param listener  - a listener to pass the changes to
+     * @return whether the changes could be read
+     */
+    public boolean read(Cursor<T> cursor, Listener<T> listener) {
+        if(cursor.journal != this || !this.read(cursor.position, listener)) {
+            cursor.journal = this;
+            cursor.position = this.head;
+            return false;
+        }
+        cursor.position = this.head;
+        return true;
+    }
+
+    /**
+     * Passes the changes recorded since the given position to a listener.
+     * This is meant for consumers which cannot keep a {@link Cursor}, e.g. because they are on the other side of the network.
+     *
+     * @param position  - a position previously returned by {@link #getPosition()}
+     * @param listener  - a listener to pass the changes to
+     * @return whether the changes could be read, if not nothing is passed to the listener
+     */
+    @SuppressWarnings("unchecked")
+    public boolean read(long position, Listener<T> listener) {
+        if(position < this.oldest || position > this.head) return false;
+        for(long i = position; i < this.head; i++) {
+            int index = (int) (i % this.values.length);
+            listener.onChange((T) this.values[index], this.additions[index]);
+        }
+        return true;
+    }
+
+    /**
+     * @return the current position of this journal, which grows by one with each change
+     */
+    public long getPosition() {
+        return this.head;
+    }
+
+    private void record(T value, boolean added) {
+        int index = (int) (this.head % this.values.length);
+        this.values[index] = value;
+        this.additions[index] = added;
+        this.head++;
+        this.oldest = Math.max(this.oldest, this.head - this.values.length);
+    }
+
+    /**
+     * A consumer's position in a {@link ChangeJournal}.
+     *
+     * @param <T> the type of values in the journal
+     *
+     * @author SmylerMC
+     *
+     */
+    public static final class Cursor<T> {
+
+        private ChangeJournal<T> journal;
+        private long position;
+
+        /**
+         * Makes the next read with this cursor fail, so its consumer rebuilds its state.
+         */
+        public void invalidate() {
+            this.journal = null;
+        }
+
+    }
+
+    @FunctionalInterface
+    public interface Listener<T> {
+
+        void onChange(T value, boolean added);
+
+    }
+
+}
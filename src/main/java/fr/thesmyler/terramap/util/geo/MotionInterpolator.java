@@ -0,0 +1,158 @@
+package fr.thesmyler.terramap.util.geo;
+
+/**
+ * Smooths the motion of something which location is only known at irregular intervals, like a remote player.
+ * <br>
+ * Timestamped samples are recorded as they are received, and the location is interpolated between them
+ * with a delay equal to the average interval between samples, so there is usually a sample on each side of the interpolated time.
+ * If the next sample is late, the last sample is held until a new one arrives.
+ * The motion is not extrapolated: samples are only sent when something moved,
+ * so a late sample usually means it stopped, and going further would have to be undone.
+ *
+ * @author SmylerMC
+ *
+ */
+public class MotionInterpolator {
+
+    private static final int SAMPLE_COUNT = 4;
+
+    private final long[] times = new long[SAMPLE_COUNT];
+    // Longitudes are unwrapped relative to the previous sample, so interpolating across the antimeridian works
+    private final double[] longitudes = new double[SAMPLE_COUNT];
+    private final double[] latitudes = new double[SAMPLE_COUNT];
+    private final float[] azimuths = new float[SAMPLE_COUNT];
+    private int oldest = 0;
+    private int count = 0;
+
+    private final long minDelay;
+    private final long maxDelay;
+
+    private final GeoPointMutable location = new GeoPointMutable();
+    private float azimuth = Float.NaN;
+
+    /**
+     * @param minDelay  - the minimum interpolation delay, in milliseconds
+     * @param maxDelay  - the maximum interpolation delay, in milliseconds
+     */
+    public MotionInterpolator(long minDelay, long maxDelay) {
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Records a new sample. Samples have to be added in chronological order.
+     * A sample with the same time as the previous one replaces it.
+     *
+     * @param time      - the time the sample was received at, in milliseconds
+     * @param location  - the location at that time
+     * @param azimuth   - the azimuth at that time, in degrees
+     */
+    public void addSample(long time, GeoPoint<?> location, float azimuth) {
+        double longitude = location.longitude();
+        int index;
+        if(this.count > 0) {
+            int newest = this.index(this.count - 1);
+            longitude = this.longitudes[newest] + GeoUtil.getLongitudeInRange(longitude - this.longitudes[newest]);
+            if(this.times[newest] >= time) {
+                index = newest;
+            } else if(this.count < SAMPLE_COUNT) {
+                index = this.index(this.count++);
+            } else {
+                index = this.oldest;
+                this.oldest = (this.oldest + 1) % SAMPLE_COUNT;
+            }
+        } else {
+            index = this.index(this.count++);
+        }
+        this.times[index] = time;
+        this.longitudes[index] = longitude;
+        this.latitudes[index] = location.latitude();
+        this.azimuths[index] = azimuth;
+    }
+
+    /**
+     * Forgets all samples, e.g. because the location is not known anymore.
+     */
+    public void reset() {
+        this.count = 0;
+        this.oldest = 0;
+        this.azimuth = Float.NaN;
+    }
+
+    /**
+     * @return whether at least one sample has been recorded since the last reset
+     */
+    public boolean hasSamples() {
+        return this.count > 0;
+    }
+
+    /**
+     * @return the current interpolation delay, in milliseconds
+     */
+    public long getDelay() {
+        if(this.count < 2) return this.minDelay;
+        long span = this.times[this.index(this.count - 1)] - this.times[this.oldest];
+        return Math.max(this.minDelay, Math.min(this.maxDelay, span / (this.count - 1)));
+    }
+
+    /**
+     * Computes the location and azimuth to display at the given time.
+     * They can then be retrieved with {@link #getLocation()} and {@link #getAzimuth()}.
+     *
+     * @param time - the current time, in milliseconds
+     */
+    public void update(long time) {
+        if(this.count == 0) return;
+        long delay = this.getDelay();
+        long t = time - delay;
+        int newestIndex = this.index(this.count - 1);
+        if(this.count == 1 || t <= this.times[this.oldest]) {
+            this.setFromSample(this.count == 1 ? newestIndex: this.oldest);
+            return;
+        }
+        if(t >= this.times[newestIndex]) {
+            this.setFromSample(newestIndex);
+            return;
+        }
+        for(int i = 0; i < this.count - 1; i++) {
+            int from = this.index(i);
+            int to = this.index(i + 1);
+            if(this.times[to] < t) continue;
+            double factor = (double)(t - this.times[from]) / (this.times[to] - this.times[from]);
+            this.setInterpolated(from, to, factor);
+            float deltaAzimuth = ((this.azimuths[to] - this.azimuths[from]) % 360f + 540f) % 360f - 180f;
+            this.azimuth = this.azimuths[from] + (float) factor * deltaAzimuth;
+            return;
+        }
+    }
+
+    /**
+     * @return the location computed by the last call to {@link #update(long)}
+     */
+    public GeoPointReadOnly getLocation() {
+        return this.location.getReadOnly();
+    }
+
+    /**
+     * @return the azimuth computed by the last call to {@link #update(long)}, or NaN if there is none
+     */
+    public float getAzimuth() {
+        return this.azimuth;
+    }
+
+    private void setFromSample(int index) {
+        this.location.set(this.longitudes[index], this.latitudes[index]);
+        this.azimuth = this.azimuths[index];
+    }
+
+    private void setInterpolated(int from, int to, double factor) {
+        double longitude = this.longitudes[from] + (this.longitudes[to] - this.longitudes[from]) * factor;
+        double latitude = this.latitudes[from] + (this.latitudes[to] - this.latitudes[from]) * factor;
+        this.location.set(longitude, Math.max(-90d, Math.min(90d, latitude)));
+    }
+
+    private int index(int i) {
+        return (this.oldest + i) % SAMPLE_COUNT;
+    }
+
+}
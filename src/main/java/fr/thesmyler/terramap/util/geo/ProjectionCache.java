@@ -0,0 +1,311 @@
+package fr.thesmyler.terramap.util.geo;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+import net.buildtheearth.terraplusplus.projection.GeographicProjection;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+
+/**
+ * A bounded cache of Minecraft block position to geographic coordinates projections.
+ * <br>
+ * Block positions are packed into a single long, so no object is allocated for lookups.
+ * Entries are kept across calls until the cache is full, at which point the least recently used ones are evicted.
+ * Positions that are out of the projection's bounds are cached as well, as NaN coordinates.
+ * <br>
+ * If a {@link ProjectionWorker} is set, misses are not computed synchronously but requested from the worker,
+ * by order of distance to the worker's priority center, and are reported as out of bounds until the result has been collected with {@link #update()}.
+ * <br>
+ * This class is not thread safe.
+ *
+ * @author SmylerMC
+ *
+ */
+public class ProjectionCache {
+
+    private static final int NONE = -1;
+
+    private GeographicProjection projection;
+    private final int capacity;
+
+    // Entries are stored in parallel arrays, indexed by slot
+    private final long[] keys;
+    private final double[] longitudes;
+    private final double[] latitudes;
+    private final int[] chain;      // Next slot in the same bucket
+    private final int[] newer;      // Next slot in usage order
+    private final int[] older;      // Previous slot in usage order
+    private final int[] buckets;
+    private final int bucketMask;
+    private int newest = NONE;
+    private int oldest = NONE;
+    private int size = 0;
+    private double lastLongitude, lastLatitude; // Used when a position cannot be packed in a key and is therefore not cached
+
+    private ProjectionWorker worker;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * @param projection    - the projection to use, may be null
+     * @param capacity      - the maximum number of projections to keep in this cache
+     */
+    public ProjectionCache(GeographicProjection projection, int capacity) {
+        Preconditions.checkArgument(capacity > 0, "Capacity has to be strictly positive");
+        this.projection = projection;
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.longitudes = new double[capacity];
+        this.latitudes = new double[capacity];
+        this.chain = new int[capacity];
+        this.newer = new int[capacity];
+        this.older = new int[capacity];
+        this.buckets = new int[Integer.highestOneBit(capacity) << 1];
+        this.bucketMask = this.buckets.length - 1;
+        Arrays.fill(this.buckets, NONE);
+    }
+
+    /**
+     * Projects a block position to geographic coordinates, using a cached value if there is one.
+     *
+     * @param destination   - a point in which to store the result
+     * @param x             - the X coordinate of the block
+     * @param z             - the Z coordinate of the block
+     * @return destination, for chaining
+     *
+     * @throws OutOfProjectionBoundsException if the position is out of the projection's bounds, or if its projection is still being computed by the worker
+     */
+    public GeoPointMutable toGeo(GeoPointMutable destination, long x, long z) throws OutOfProjectionBoundsException {
+        int slot = this.project(x, z);
+        double longitude = slot != NONE ? this.longitudes[slot] : this.lastLongitude;
+        double latitude = slot != NONE ? this.latitudes[slot] : this.lastLatitude;
+        if(Double.isNaN(longitude)) throw OutOfProjectionBoundsException.get();
+        return destination.set(longitude, latitude);
+    }
+
+    /**
+     * Projects a line of regularly spaced block positions in a single call.
+     * The results are stored in the destination array as longitude, latitude pairs.
+     * Positions that are out of the projection's bounds, or that are still being computed by the worker, result in NaN coordinates.
+     *
+     * @param destination   - an array to store the results in, it has to be at least twice as long as count
+     * @param x             - the X coordinate of the first block
+     * @param z             - the Z coordinate of the first block
+     * @param stepX         - the increment to add to the X coordinate between each point
+     * @param stepZ         - the increment to add to the Z coordinate between each point
+     * @param count         - the number of points to project
+     * @return destination, for chaining
+     */
+    public double[] toGeo(double[] destination, long x, long z, long stepX, long stepZ, int count) {
+        Preconditions.checkArgument(destination.length >= count * 2, "Destination array is too small");
+        for(int i = 0; i < count; i++) {
+            int slot = this.project(x + i * stepX, z + i * stepZ);
+            destination[2*i] = slot != NONE ? this.longitudes[slot] : this.lastLongitude;
+            destination[2*i + 1] = slot != NONE ? this.latitudes[slot] : this.lastLatitude;
+        }
+        return destination;
+    }
+
+    /**
+     * Changes the projection used by this cache. Cached values are cleared if it is different from the current one.
+     *
+     * @param projection - the new projection
+     */
+    public void setProjection(GeographicProjection projection) {
+        if(this.worker != null) this.worker.setProjection(projection);
+        if(projection == this.projection) return;
+        this.projection = projection;
+        this.clear();
+    }
+
+    /**
+     * Sets a worker to compute missing projections in the background. If null, missing projections are computed synchronously.
+     *
+     * @param worker - a worker using {@link ProjectionWorker#TO_GEO}, or null
+     */
+    public void setWorker(ProjectionWorker worker) {
+        if(this.worker != null) this.worker.cancelAll();
+        this.worker = worker;
+        if(worker != null) worker.setProjection(this.projection);
+    }
+
+    public ProjectionWorker getWorker() {
+        return this.worker;
+    }
+
+    /**
+     * Sets the position missing projections are prioritized around when using a worker.
+     * Projections which have already been requested are reordered.
+     *
+     * @param x - the X coordinate of the priority center, in blocks
+     * @param z - the Z coordinate of the priority center, in blocks
+     */
+    public void setPriorityCenter(double x, double z) {
+        if(this.worker != null) this.worker.setPriorityCenter(x, z);
+    }
+
+    /**
+     * @param x - the X coordinate of a block
+     * @param z - the Z coordinate of a block
+     * @return whether the projection of the given position has been requested from the worker but has not been collected yet
+     */
+    public boolean isPending(long x, long z) {
+        return this.worker != null && (int) x == x && (int) z == z && this.worker.isPending(x << 32 | z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Collects the projections computed by the worker since the last call and adds them to the cache.
+     *
+     * @return the number of new projections
+     */
+    public int update() {
+        if(this.worker == null) return 0;
+        return this.worker.poll((key, lola) -> {
+            if(lola == null) this.insert(key, Double.NaN, Double.NaN);
+            else this.insert(key, lola[0], lola[1]);
+        });
+    }
+
+    public GeographicProjection getProjection() {
+        return this.projection;
+    }
+
+    /**
+     * Removes all values from this cache.
+     */
+    public void clear() {
+        Arrays.fill(this.buckets, NONE);
+        this.newest = this.oldest = NONE;
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public long getHitCount() {
+        return this.hitCount;
+    }
+
+    public long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Finds or computes the projection of a position.
+     *
+     * @return the slot the result is stored in, or {@link #NONE} if it could not be cached or is being computed by the worker,
+     *         in which case it is stored in the last* fields
+     */
+    private int project(long x, long z) {
+        if((int) x != x || (int) z != z) {
+            // Too far away to be packed in a key, this should not happen with any reasonable projection
+            this.missCount++;
+            double[] lola = this.computeProjection(x, z);
+            this.lastLongitude = lola[0];
+            this.lastLatitude = lola[1];
+            return NONE;
+        }
+        long key = x << 32 | z & 0xFFFFFFFFL;
+        int bucket = hash(key) & this.bucketMask;
+        for(int slot = this.buckets[bucket]; slot != NONE; slot = this.chain[slot]) {
+            if(this.keys[slot] == key) {
+                this.hitCount++;
+                this.markUsed(slot);
+                return slot;
+            }
+        }
+        this.missCount++;
+        if(this.worker != null) {
+            this.worker.request(key, x, z);
+            this.lastLongitude = this.lastLatitude = Double.NaN;
+            return NONE;
+        }
+        double[] lola = this.computeProjection(x, z);
+        return this.insert(key, lola[0], lola[1]);
+    }
+
+    private int insert(long key, double longitude, double latitude) {
+        int bucket = hash(key) & this.bucketMask;
+        int slot;
+        for(slot = this.buckets[bucket]; slot != NONE; slot = this.chain[slot]) {
+            if(this.keys[slot] == key) {
+                this.longitudes[slot] = longitude;
+                this.latitudes[slot] = latitude;
+                this.markUsed(slot);
+                return slot;
+            }
+        }
+        if(this.size < this.capacity) {
+            slot = this.size++;
+        } else {
+            slot = this.oldest;
+            this.unlink(slot);
+            this.removeFromBucket(slot);
+        }
+        this.keys[slot] = key;
+        this.longitudes[slot] = longitude;
+        this.latitudes[slot] = latitude;
+        this.chain[slot] = this.buckets[bucket];
+        this.buckets[bucket] = slot;
+        this.linkNewest(slot);
+        return slot;
+    }
+
+    private double[] computeProjection(long x, long z) {
+        try {
+            return this.projection.toGeo(x, z);
+        } catch(OutOfProjectionBoundsException e) {
+            return new double[] { Double.NaN, Double.NaN };
+        }
+    }
+
+    private void markUsed(int slot) {
+        if(slot == this.newest) return;
+        this.unlink(slot);
+        this.linkNewest(slot);
+    }
+
+    private void linkNewest(int slot) {
+        this.older[slot] = this.newest;
+        this.newer[slot] = NONE;
+        if(this.newest != NONE) this.newer[this.newest] = slot;
+        this.newest = slot;
+        if(this.oldest == NONE) this.oldest = slot;
+    }
+
+    private void unlink(int slot) {
+        int older = this.older[slot];
+        int newer = this.newer[slot];
+        if(older != NONE) this.newer[older] = newer;
+        else this.oldest = newer;
+        if(newer != NONE) this.older[newer] = older;
+        else this.newest = older;
+    }
+
+    private void removeFromBucket(int slot) {
+        int bucket = hash(this.keys[slot]) & this.bucketMask;
+        if(this.buckets[bucket] == slot) {
+            this.buckets[bucket] = this.chain[slot];
+            return;
+        }
+        for(int previous = this.buckets[bucket]; previous != NONE; previous = this.chain[previous]) {
+            if(this.chain[previous] == slot) {
+                this.chain[previous] = this.chain[slot];
+                return;
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ key >>> 32);
+    }
+
+}
@@ -0,0 +1,251 @@
+package fr.thesmyler.terramap.util.geo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import net.buildtheearth.terraplusplus.projection.GeographicProjection;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+
+/**
+ * Runs expensive projection computations (e.g. {@link GeographicProjection#toGeo(double, double)})
+ * on a background fork-join pool, so they never block the render thread.
+ * Work which is done per tile, like the distortion map's, already happens on the tile decoding threads and does not need a worker.
+ * <br>
+ * Requests are identified by a long key chosen by the caller, and are computed by order of distance to a priority center, closest first.
+ * When the center moves, pending requests are reordered, and those which have been cancelled are dropped from the queue.
+ * Results are posted back and have to be collected with {@link #poll(ResultConsumer)}, typically at the start of the next frame.
+ * Callers are expected to re-request every point they still need each frame, between {@link #beginFrame()} and {@link #cancelStale()},
+ * so that work for points which are not needed anymore (e.g. because they have scrolled off-screen) can be cancelled.
+ * <br>
+ * Apart from the computation itself, everything happens on the thread using the worker, which should always be the same.
+ *
+ * @author SmylerMC
+ *
+ */
+public class ProjectionWorker {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Terramap projection worker #" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            },
+            null, true);
+
+    public static final Computation TO_GEO = GeographicProjection::toGeo;
+
+    private final Computation computation;
+    private GeographicProjection projection;
+    private final Map<Long, Request> requests = new HashMap<>();
+    private final Queue<Request> queue = new PriorityQueue<>(64, Comparator.comparingDouble(r -> r.priority)); // Guarded by itself
+    private final Queue<Request> completed = new ConcurrentLinkedQueue<>();
+    private int frame = 0;
+    private double priorityX, priorityY;
+
+    /**
+     * @param computation - the computation this worker runs
+     */
+    public ProjectionWorker(Computation computation) {
+        this.computation = computation;
+    }
+
+    /**
+     * Requests a computation, unless it has already been requested and its result has not yet been collected.
+     *
+     * @param key   - a key identifying the request, to use when collecting the result
+     * @param x     - the first argument of the computation
+     * @param y     - the second argument of the computation
+     */
+    public void request(long key, double x, double y) {
+        Request request = this.requests.get(key);
+        if(request != null) {
+            request.frame = this.frame;
+            return;
+        }
+        if(this.projection == null) return;
+        request = new Request(key, x, y, this.projection, this.frame);
+        request.priority = this.priorityOf(request);
+        this.requests.put(key, request);
+        synchronized(this.queue) {
+            this.queue.add(request);
+        }
+        POOL.execute(this::computeNext); // Each task computes one request, whichever has the highest priority when it runs
+    }
+
+    /**
+     * Collects the results which have been computed since the last call.
+     *
+     * @param consumer - a consumer to pass results to. The result is null if the computation failed because the input was out of the projection's bounds.
+     * @return the number of results collected
+     */
+    public int poll(ResultConsumer consumer) {
+        int count = 0;
+        Request request;
+        while((request = this.completed.poll()) != null) {
+            if(this.requests.get(request.key) != request) continue; // Cancelled
+            this.requests.remove(request.key);
+            consumer.accept(request.key, request.result);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Sets the point requests are prioritized around, in the same space as the arguments of the computation.
+     * Pending requests are reordered if it has changed, and those which have been cancelled are dropped.
+     * The queue is rebuilt while holding its lock, so pool tasks never find it empty and there still is a task for each request.
+     *
+     * @param x - the first coordinate of the priority center
+     * @param y - the second coordinate of the priority center
+     */
+    public void setPriorityCenter(double x, double y) {
+        if(x == this.priorityX && y == this.priorityY) return;
+        this.priorityX = x;
+        this.priorityY = y;
+        synchronized(this.queue) {
+            List<Request> pending = new ArrayList<>(this.queue);
+            this.queue.clear();
+            for(Request request: pending) {
+                if(request.cancelled) continue; // Its task will compute another request, or return
+                request.priority = this.priorityOf(request);
+                this.queue.add(request);
+            }
+        }
+    }
+
+    /**
+     * Starts a new frame. Requests which are not made again before the next call to {@link #cancelStale()} are cancelled.
+     */
+    public void beginFrame() {
+        this.frame++;
+    }
+
+    /**
+     * Cancels all pending requests that have not been requested again since the last call to {@link #beginFrame()}.
+     */
+    public void cancelStale() {
+        Iterator<Request> iterator = this.requests.values().iterator();
+        while(iterator.hasNext()) {
+            Request request = iterator.next();
+            if(request.frame != this.frame) {
+                request.cancelled = true;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Cancels all pending requests.
+     */
+    public void cancelAll() {
+        this.requests.values().forEach(r -> r.cancelled = true);
+        this.requests.clear();
+    }
+
+    /**
+     * Sets the projection to use for new requests. All pending requests are cancelled if it is different from the current one.
+     *
+     * @param projection - the projection to use
+     */
+    public void setProjection(GeographicProjection projection) {
+        if(projection == this.projection) return;
+        this.projection = projection;
+        this.cancelAll();
+    }
+
+    public GeographicProjection getProjection() {
+        return this.projection;
+    }
+
+    /**
+     * @param key - the key of a request
+     * @return whether a request with the given key has been made and its result has not been collected yet
+     */
+    public boolean isPending(long key) {
+        return this.requests.containsKey(key);
+    }
+
+    /**
+     * @return the number of requests which have not been collected yet
+     */
+    public int getPendingCount() {
+        return this.requests.size();
+    }
+
+    /**
+     * @return the number of tasks waiting to run in the pool shared by all workers, for tests
+     */
+    static long getQueuedTaskCount() {
+        return POOL.getQueuedTaskCount() + POOL.getQueuedSubmissionCount();
+    }
+
+    private double priorityOf(Request request) {
+        double dx = request.x - this.priorityX;
+        double dy = request.y - this.priorityY;
+        return dx*dx + dy*dy;
+    }
+
+    private void computeNext() {
+        Request request;
+        synchronized(this.queue) {
+            request = this.queue.poll();
+        }
+        if(request == null || request.cancelled) return;
+        try {
+            request.result = this.computation.compute(request.projection, request.x, request.y);
+        } catch(OutOfProjectionBoundsException | RuntimeException silenced) {
+            // Some projections throw other exceptions when far enough out of their bounds
+            request.result = null;
+        }
+        this.completed.add(request);
+    }
+
+    /**
+     * A projection computation.
+     */
+    @FunctionalInterface
+    public interface Computation {
+
+        double[] compute(GeographicProjection projection, double x, double y) throws OutOfProjectionBoundsException;
+
+    }
+
+    @FunctionalInterface
+    public interface ResultConsumer {
+
+        void accept(long key, double[] result);
+
+    }
+
+    private static class Request {
+
+        final long key;
+        final double x, y;
+        double priority; // Only changed while holding the queue's lock
+        final GeographicProjection projection;
+        volatile boolean cancelled = false;
+        double[] result; // Published through the completed queue
+        int frame;
+
+        Request(long key, double x, double y, GeographicProjection projection, int frame) {
+            this.key = key;
+            this.x = x;
+            this.y = y;
+            this.projection = projection;
+            this.frame = frame;
+        }
+
+    }
+
+}
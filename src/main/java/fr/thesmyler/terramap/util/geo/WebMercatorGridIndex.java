@@ -0,0 +1,143 @@
+package fr.thesmyler.terramap.util.geo;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes values by location in a grid made of the Web-Mercator tiles of a given zoom level,
+ * so the values in a given area can be found without checking every single one of them.
+ * <br>
+ * Values can be moved around by putting them again with their new location.
+ * Values without a location are kept in the index but are never returned by queries.
+ *
+ * @param <T> the type of values in the index
+ *
+ * @author SmylerMC
+ *
+ */
+public class WebMercatorGridIndex<T> {
+
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    private final int zoom;
+    private final int size;
+    private final Map<Long, Set<T>> cells = new HashMap<>();
+    private final Map<T, Long> valueCells = new HashMap<>();
+
+    /**
+     * @param zoom - the Web-Mercator zoom level which tiles are used as grid cells
+     */
+    public WebMercatorGridIndex(int zoom) {
+        if(zoom < 0 || zoom > WebMercatorUtil.MAX_ZOOM) throw new IllegalArgumentException("Invalid zoom level: " + zoom);
+        this.zoom = zoom;
+        this.size = 1 << zoom;
+    }
+
+    /**
+     * Adds a value to this index, or moves it if it is already indexed.
+     *
+     * @param value     - the value to index
+     * @param location  - the value's location, may be null
+     */
+    public void put(T value, GeoPoint<?> location) {
+        long cell = location != null ? this.cellKey(this.cellX(location.longitude()), this.cellY(location.latitude())): NO_CELL;
+        Long previous = this.valueCells.put(value, cell);
+        if(previous != null && previous == cell) return;
+        if(previous != null && previous != NO_CELL) this.removeFromCell(previous, value);
+        if(cell != NO_CELL) this.cells.computeIfAbsent(cell, k -> new HashSet<>()).add(value);
+    }
+
+    /**
+     * Removes a value from this index.
+     *
+     * @param value - the value to remove
+     * @return whether the value was in this index
+     */
+    public boolean remove(T value) {
+        Long cell = this.valueCells.remove(value);
+        if(cell == null) return false;
+        if(cell != NO_CELL) this.removeFromCell(cell, value);
+        return true;
+    }
+
+    /**
+     * Finds the values in the cells which intersect the given bounds.
+     * Values just outside the bounds may be included, as long as they are in the same cell as the bounds' edges.
+     *
+     * @param bounds        - the area to search
+     * @param destination   - a collection to add the values to
+     * @return the destination collection
+     */
+    public <C extends Collection<? super T>> C query(GeoBounds bounds, C destination) {
+        for(GeoBounds part: bounds.splitAtAntimeridian()) {
+            int minX = this.cellX(part.lowerCorner.longitude());
+            int maxX = this.cellX(part.upperCorner.longitude());
+            int minY = this.cellY(part.upperCorner.latitude());
+            int maxY = this.cellY(part.lowerCorner.latitude());
+            long cellCount = (long)(maxX - minX + 1) * (maxY - minY + 1);
+            if(cellCount > this.cells.size()) {
+                // Large area, it's faster to go through the occupied cells
+                for(Map.Entry<Long, Set<T>> entry: this.cells.entrySet()) {
+                    long key = entry.getKey();
+                    int x = (int) (key >> 32);
+                    int y = (int) key;
+                    if(minX <= x && x <= maxX && minY <= y && y <= maxY) destination.addAll(entry.getValue());
+                }
+                continue;
+            }
+            for(int x = minX; x <= maxX; x++) {
+                for(int y = minY; y <= maxY; y++) {
+                    Set<T> cell = this.cells.get(this.cellKey(x, y));
+                    if(cell != null) destination.addAll(cell);
+                }
+            }
+        }
+        return destination;
+    }
+
+    /**
+     * @param value - a value
+     * @return whether the given value is in this index
+     */
+    public boolean contains(T value) {
+        return this.valueCells.containsKey(value);
+    }
+
+    /**
+     * @return the number of values in this index, with or without a location
+     */
+    public int size() {
+        return this.valueCells.size();
+    }
+
+    public void clear() {
+        this.cells.clear();
+        this.valueCells.clear();
+    }
+
+    private void removeFromCell(long key, T value) {
+        Set<T> cell = this.cells.get(key);
+        if(cell == null) return;
+        cell.remove(value);
+        if(cell.isEmpty()) this.cells.remove(key);
+    }
+
+    private int cellX(double longitude) {
+        int x = (int) Math.floor(WebMercatorUtil.getXFromLongitude(longitude, this.zoom) / WebMercatorUtil.TILE_DIMENSIONS);
+        return Math.max(0, Math.min(this.size - 1, x));
+    }
+
+    private int cellY(double latitude) {
+        latitude = Math.max(-WebMercatorUtil.LIMIT_LATITUDE, Math.min(WebMercatorUtil.LIMIT_LATITUDE, latitude));
+        int y = (int) Math.floor(WebMercatorUtil.getYFromLatitude(latitude, this.zoom) / WebMercatorUtil.TILE_DIMENSIONS);
+        return Math.max(0, Math.min(this.size - 1, y));
+    }
+
+    private long cellKey(int x, int y) {
+        return (long) x << 32 | y & 0xFFFFFFFFL;
+    }
+
+}
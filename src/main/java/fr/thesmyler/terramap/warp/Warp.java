@@ -1,100 +1,318 @@
 package fr.thesmyler.terramap.warp;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import fr.thesmyler.terramap.network.NetworkUtil;
+import fr.thesmyler.terramap.network.warps.WarpKeyTable;
+import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
 import io.netty.buffer.ByteBuf;
 
 /**
+ * A warp is a set of string properties, one of which is its id.
+ * Warps which have a location store it in the {@link #LONGITUDE_KEY} and {@link #LATITUDE_KEY} properties, as decimal degrees.
+ * Warps which should only appear on maps zoomed in enough store the minimum zoom level in the {@link #MIN_ZOOM_KEY} property.
+ * The name to show for a warp is in its {@link #NAME_KEY} property.
+ * <br>
+ * Properties with a key from {@link WarpSchema} are kept in two small parallel arrays, sorted by key index, so warps do not each keep their own keys.
+ * Other properties, like those of warps decoded from packets, are kept in a map until the warp is stored in a {@link WarpStore}, which interns their keys.
+ * Copies share the arrays until one of them is changed.
  * 
  * @author Smyler
- * 
- * TODO Implement warps
  *
  */
 public class Warp {
 
-    private final Map<String, String> properties = new HashMap<>();
+    public static final String ID_KEY = "id";
+    public static final String LONGITUDE_KEY = "longitude";
+    public static final String LATITUDE_KEY = "latitude";
+    public static final String MIN_ZOOM_KEY = "min_zoom";
+    public static final String NAME_KEY = "name";
+
+    private static final int[] NO_INDEXES = new int[0];
+    private static final String[] NO_VALUES = new String[0];
+
+    private int[] indexes = NO_INDEXES; // Schema indexes of the keys, sorted
+    private String[] values = NO_VALUES;
+    private boolean shared = false; // The arrays are also used by a copy and have to be copied before being changed
+    private Map<String, String> extraProperties = null; // Properties with a key which is not in the schema
 
     public Warp(String id) {
-        this.setProperty("id", id);
+        this.setProperty(ID_KEY, id);
+    }
+
+    private Warp(int[] indexes, String[] values, Map<String, String> extraProperties) {
+        this.indexes = indexes;
+        this.values = values;
+        this.shared = true;
+        if(extraProperties != null) this.extraProperties = new HashMap<>(extraProperties);
     }
 
     public String getId() {
-        return this.getProperty("id");
+        return this.getProperty(ID_KEY);
+    }
+
+    /**
+     * @return the location of this warp, or null if it does not have a valid one
+     */
+    @Nullable
+    public GeoPointImmutable getLocation() {
+        String longitude = this.getValue(LONGITUDE_KEY);
+        String latitude = this.getValue(LATITUDE_KEY);
+        if(longitude == null || latitude == null) return null;
+        try {
+            return new GeoPointImmutable(Double.parseDouble(longitude), Double.parseDouble(latitude));
+        } catch(IllegalArgumentException e) { // Also catches NumberFormatException
+            return null;
+        }
+    }
+
+    /**
+     * @return the zoom level from which this warp should appear on maps,
+     * or negative infinity if it does not have a valid {@link #MIN_ZOOM_KEY} property and should always appear
+     */
+    public double getMinZoom() {
+        String zoom = this.getValue(MIN_ZOOM_KEY);
+        if(zoom == null) return Double.NEGATIVE_INFINITY;
+        try {
+            double value = Double.parseDouble(zoom);
+            return Double.isNaN(value) ? Double.NEGATIVE_INFINITY: value;
+        } catch(NumberFormatException e) {
+            return Double.NEGATIVE_INFINITY;
+        }
     }
 
     public boolean hasProperty(String key) {
-        return this.properties.containsKey(key);
+        return this.getValue(key) != null;
     }
 
     public String getProperty(String property) {
-        return this.properties.getOrDefault(property, "");
+        String value = this.getValue(property);
+        return value != null ? value: "";
     }
 
     public void setProperty(String key, String value) {
+        int index = WarpSchema.indexOf(key);
+        if(this.extraProperties != null && this.extraProperties.remove(key) != null && this.extraProperties.isEmpty()) {
+            this.extraProperties = null;
+        }
         if(value == null || value.length() == 0) {
-            this.properties.remove(key);
+            if(index >= 0) this.removeIndexed(index);
+        } else if(index >= 0) {
+            this.setIndexed(index, value);
         } else {
-            this.properties.put(key, value);
+            if(this.extraProperties == null) this.extraProperties = new HashMap<>();
+            this.extraProperties.put(key, value);
         }
     }
 
+    /**
+     * @return a new set with the keys of the properties of this warp
+     */
     public Set<String> getPropertyKeys() {
-        return this.properties.keySet();
+        Set<String> keys = new HashSet<>();
+        for(int index: this.indexes) keys.add(WarpSchema.getKey(index));
+        if(this.extraProperties != null) keys.addAll(this.extraProperties.keySet());
+        return keys;
+    }
+
+    /**
+     * @return the number of properties of this warp, including its id
+     */
+    public int getPropertyCount() {
+        return this.indexes.length + (this.extraProperties != null ? this.extraProperties.size(): 0);
     }
 
     /**
      * Returns a warp with the same id as this one and the same properties as this one for the specified ones
      * 
-     * @param properties
-     * @return
+     * @param properties - the keys of the properties to keep
+     * @return a new warp with only the specified properties
      */
     public Warp getCopyWithStrippedProperties(String... properties) {
         Warp warp = new Warp(this.getId());
         for(String key: properties) {
-            warp.setProperty(key, this.getProperty(key));
+            String value = this.getValue(key);
+            if(value != null) warp.setProperty(key, value);
         }
         return warp;
     }
 
+    /**
+     * @return a copy of this warp, with all its properties
+     */
+    public Warp copy() {
+        this.shared = true;
+        return new Warp(this.indexes, this.values, this.extraProperties);
+    }
+
+    /**
+     * Gives the keys of this warp's properties an index in {@link WarpSchema}, if they do not have one yet and it is not full.
+     * This is done by {@link WarpStore} for the warps it keeps, so the schema only grows with the keys of stored warps.
+     */
+    void internKeys() {
+        if(this.extraProperties == null) return;
+        Iterator<Map.Entry<String, String>> iterator = this.extraProperties.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<String, String> entry = iterator.next();
+            int index = WarpSchema.intern(entry.getKey());
+            if(index < 0) continue;
+            this.setIndexed(index, entry.getValue());
+            iterator.remove();
+        }
+        if(this.extraProperties.isEmpty()) this.extraProperties = null;
+    }
+
     public void encodeToByteBuf(ByteBuf buf) {
-        buf.writeInt(this.properties.size() - 1); // Id is assumed
+        buf.writeInt(this.getPropertyCount() - 1); // Id is assumed
         NetworkUtil.encodeStringToByteBuf(this.getId(), buf);
-        for(String key: this.properties.keySet()) {
-            if(key.equals("id")) continue;
-            NetworkUtil.encodeStringToByteBuf(key, buf);
-            NetworkUtil.encodeStringToByteBuf(this.properties.get(key), buf);
+        for(int i = 0; i < this.indexes.length; i++) {
+            if(this.indexes[i] == 0) continue; // Id
+            NetworkUtil.encodeStringToByteBuf(WarpSchema.getKey(this.indexes[i]), buf);
+            NetworkUtil.encodeStringToByteBuf(this.values[i], buf);
+        }
+        if(this.extraProperties == null) return;
+        for(Map.Entry<String, String> entry: this.extraProperties.entrySet()) {
+            NetworkUtil.encodeStringToByteBuf(entry.getKey(), buf);
+            NetworkUtil.encodeStringToByteBuf(entry.getValue(), buf);
         }
     }
 
     public void encodeToByteBuf(ByteBuf buf, String ... properties) {
-        Map<String, String> validProperties = new HashMap<>();
+        int countIndex = buf.writerIndex();
+        buf.writeInt(0);
+        NetworkUtil.encodeStringToByteBuf(this.getId(), buf);
+        int count = 0;
         for(String key: properties) {
-            if(!key.equals("id") && this.properties.containsKey(key)) {
-                validProperties.put(key, this.getProperty(key));
-            }
+            String value = this.getValue(key);
+            if(key.equals(ID_KEY) || value == null) continue;
+            NetworkUtil.encodeStringToByteBuf(key, buf);
+            NetworkUtil.encodeStringToByteBuf(value, buf);
+            count++;
         }
-        buf.writeInt(validProperties.size());
+        buf.setInt(countIndex, count);
+    }
+
+    /**
+     * Encodes this warp with the index its keys have in {@link WarpSchema} instead of the keys themselves.
+     * This is only understood by clients which have been sent the schema with a {@link fr.thesmyler.terramap.network.warps.SP2CWarpKeysPacket}.
+     *
+     * @param buf           - the buffer to write to
+     * @param knownKeys     - the number of keys the receiving client has been sent, keys with a greater index are sent in full
+     * @param properties    - the keys of the properties to encode, all of them if there are none
+     */
+    public void encodeIndexedToByteBuf(ByteBuf buf, int knownKeys, String... properties) {
+        int countIndex = buf.writerIndex();
+        buf.writeInt(0);
         NetworkUtil.encodeStringToByteBuf(this.getId(), buf);
-        for(String key: validProperties.keySet()) {
+        int count = 0;
+        if(properties.length == 0) {
+            for(int i = 0; i < this.indexes.length; i++) {
+                if(this.indexes[i] == 0) continue; // Id
+                encodeIndexedProperty(buf, this.indexes[i], WarpSchema.getKey(this.indexes[i]), this.values[i], knownKeys);
+                count++;
+            }
+            if(this.extraProperties != null) {
+                for(Map.Entry<String, String> entry: this.extraProperties.entrySet()) {
+                    encodeIndexedProperty(buf, -1, entry.getKey(), entry.getValue(), knownKeys);
+                    count++;
+                }
+            }
+        } else {
+            for(String key: properties) {
+                String value = this.getValue(key);
+                if(key.equals(ID_KEY) || value == null) continue;
+                encodeIndexedProperty(buf, WarpSchema.indexOf(key), key, value, knownKeys);
+                count++;
+            }
+        }
+        buf.setInt(countIndex, ~count); // Negative counts tell the properties are indexed
+    }
+
+    private static void encodeIndexedProperty(ByteBuf buf, int index, String key, String value, int knownKeys) {
+        if(index >= 0 && index < knownKeys) {
+            buf.writeShort(index);
+        } else {
+            buf.writeShort(-1);
             NetworkUtil.encodeStringToByteBuf(key, buf);
-            NetworkUtil.encodeStringToByteBuf(validProperties.get(key), buf);
         }
+        NetworkUtil.encodeStringToByteBuf(value, buf);
     }
 
     public static Warp readWarpFromByteBuf(ByteBuf buf) {
         int keyCount = buf.readInt();
         String id = NetworkUtil.decodeStringFromByteBuf(buf);
         Warp warp = new Warp(id);
-        for(int i=0; i<keyCount; i++) {
-            String key = NetworkUtil.decodeStringFromByteBuf(buf);
-            String value = NetworkUtil.decodeStringFromByteBuf(buf);
-            warp.setProperty(key, value);
+        if(keyCount >= 0) {
+            for(int i=0; i<keyCount; i++) {
+                String key = NetworkUtil.decodeStringFromByteBuf(buf);
+                String value = NetworkUtil.decodeStringFromByteBuf(buf);
+                warp.setProperty(key, value);
+            }
+        } else {
+            for(int i=0; i<~keyCount; i++) {
+                int index = buf.readShort();
+                String key = index >= 0 ? WarpKeyTable.getKey(index): NetworkUtil.decodeStringFromByteBuf(buf);
+                String value = NetworkUtil.decodeStringFromByteBuf(buf);
+                warp.setProperty(key, value);
+            }
         }
         return warp;
     }
 
+    private String getValue(String key) {
+        int index = WarpSchema.indexOf(key);
+        if(index >= 0) {
+            int position = Arrays.binarySearch(this.indexes, index);
+            if(position >= 0) return this.values[position];
+        }
+        // The key may have been interned after the property was set
+        return this.extraProperties != null ? this.extraProperties.get(key): null;
+    }
+
+    private void setIndexed(int index, String value) {
+        int position = Arrays.binarySearch(this.indexes, index);
+        if(position >= 0) {
+            if(this.shared) {
+                this.values = this.values.clone();
+                this.indexes = this.indexes.clone();
+                this.shared = false;
+            }
+            this.values[position] = value;
+            return;
+        }
+        position = -position - 1;
+        int[] indexes = new int[this.indexes.length + 1];
+        String[] values = new String[this.values.length + 1];
+        System.arraycopy(this.indexes, 0, indexes, 0, position);
+        System.arraycopy(this.values, 0, values, 0, position);
+        indexes[position] = index;
+        values[position] = value;
+        System.arraycopy(this.indexes, position, indexes, position + 1, this.indexes.length - position);
+        System.arraycopy(this.values, position, values, position + 1, this.values.length - position);
+        this.indexes = indexes;
+        this.values = values;
+        this.shared = false;
+    }
+
+    private void removeIndexed(int index) {
+        int position = Arrays.binarySearch(this.indexes, index);
+        if(position < 0) return;
+        int[] indexes = new int[this.indexes.length - 1];
+        String[] values = new String[this.values.length - 1];
+        System.arraycopy(this.indexes, 0, indexes, 0, position);
+        System.arraycopy(this.values, 0, values, 0, position);
+        System.arraycopy(this.indexes, position + 1, indexes, position, indexes.length - position);
+        System.arraycopy(this.values, position + 1, values, position, values.length - position);
+        this.indexes = indexes;
+        this.values = values;
+        this.shared = false;
+    }
+
 }
@@ -0,0 +1,335 @@
+package fr.thesmyler.terramap.warp;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
+import fr.thesmyler.terramap.util.geo.WebMercatorUtil;
+
+/**
+ * Keeps the warps the client has received, per world and per Web-Mercator tile, so the map does not have to request them again each time it opens.
+ * <br>
+ * Each world has the server revision its warps are up to date with.
+ * When the server tells what changed since a revision, the tiles which had or now have the changed warps are forgotten and have to be requested again.
+ * Only the least recently used tiles are kept once the capacity is reached.
+ *
+ * @author SmylerMC
+ *
+ */
+public class WarpCache {
+
+    /**
+     * The zoom level of the tiles warps are cached by
+     */
+    public static final int TILE_ZOOM = 10;
+
+    /**
+     * The revision of worlds which have no warp cached
+     */
+    public static final long NO_REVISION = -1L;
+
+    private static final int TILE_COUNT = 1 << TILE_ZOOM;
+
+    private final int capacity;
+    private final Map<UUID, WorldWarps> worlds = new HashMap<>();
+    private long modifications = 0;
+
+    /**
+     * @param capacity - the maximum number of tiles to keep for each world
+     */
+    public WarpCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param world - the uuid of a world
+     * @param x     - the x coordinate of a tile
+     * @param y     - the y coordinate of a tile
+     *
+     * @return the warps of the given tile, or null if they have not all been received
+     */
+    @Nullable
+    public Collection<Warp> getWarps(UUID world, int x, int y) {
+        WorldWarps warps = this.worlds.get(world);
+        if(warps == null) return null;
+        Tile tile = warps.tiles.get(getTileKey(x, y));
+        return tile != null && tile.complete ? Collections.unmodifiableCollection(tile.warps.values()): null;
+    }
+
+    /**
+     * Collects the cached warps of the tiles in an area.
+     * Tiles which have not all been received are skipped, and so is everything if the area covers more than the given number of tiles.
+     * Warps from the tiles on the edges of the area may be outside of it.
+     *
+     * @param world     - the uuid of a world
+     * @param area      - the area to get the warps of
+     * @param maxTiles  - the maximum number of tiles to look at
+     * @param dest      - the collection to add the warps to
+     */
+    public void getWarps(UUID world, GeoBounds area, int maxTiles, Collection<Warp> dest) {
+        WorldWarps warps = this.worlds.get(world);
+        if(warps == null) return;
+        forEachTile(area, maxTiles, (x, y) -> {
+            Tile tile = warps.tiles.get(getTileKey(x, y));
+            if(tile != null && tile.complete) dest.addAll(tile.warps.values());
+        });
+    }
+
+    /**
+     * @param world - the uuid of a world
+     * @param x     - the x coordinate of a tile
+     * @param y     - the y coordinate of a tile
+     *
+     * @return whether all the warps of the given tile have been received
+     */
+    public boolean isComplete(UUID world, int x, int y) {
+        WorldWarps warps = this.worlds.get(world);
+        if(warps == null) return false;
+        Tile tile = warps.tiles.get(getTileKey(x, y));
+        return tile != null && tile.complete;
+    }
+
+    /**
+     * Caches warps received for a tile.
+     * Warps which are not located in that tile are ignored, they are cached when their own tile is received.
+     *
+     * @param world     - the uuid of the world
+     * @param x         - the x coordinate of the tile
+     * @param y         - the y coordinate of the tile
+     * @param warps     - the warps received
+     * @param revision  - the server revision the warps are from
+     * @param first     - whether these are the first warps received for the tile
+     * @param complete  - whether these are the last warps received for the tile
+     *
+     * @return false if the tile was forgotten since its first warps were received,
+     *          or if the warps are older than changes already applied to the cache,
+     *          in which case the tile has to be requested again from the start
+     */
+    public boolean addWarps(UUID world, int x, int y, Collection<Warp> warps, long revision, boolean first, boolean complete) {
+        WorldWarps worldWarps = this.worlds.computeIfAbsent(world, w -> new WorldWarps());
+        this.modifications++;
+        // Tiles are fetched after the world's revision, so any change since then is applied to them too
+        if(worldWarps.revision == NO_REVISION) worldWarps.revision = revision;
+        long key = getTileKey(x, y);
+        if(revision < worldWarps.revision) {
+            worldWarps.invalidate(key);
+            return false;
+        }
+        Tile tile = worldWarps.tiles.get(key);
+        if(tile == null) {
+            if(!first) return false;
+            tile = new Tile();
+            worldWarps.tiles.put(key, tile);
+        }
+        for(Warp warp: warps) {
+            GeoPointImmutable location = warp.getLocation();
+            if(location == null || getTileKey(getTileX(location.longitude()), getTileY(location.latitude())) != key) continue;
+            Long previous = worldWarps.warpTiles.put(warp.getId(), key);
+            if(previous != null && previous != key) worldWarps.invalidate(previous);
+            tile.warps.put(warp.getId(), warp);
+        }
+        tile.complete = complete;
+        return true;
+    }
+
+    /**
+     * Forgets the tiles affected by changes made on the server.
+     *
+     * @param world     - the uuid of the world
+     * @param since     - the revision the changes start from
+     * @param revision  - the revision the changes go up to
+     * @param changed   - the warps which were added or changed, only their id and location are used
+     * @param removed   - the ids of the warps which were removed
+     */
+    public void applyChanges(UUID world, long since, long revision, Collection<Warp> changed, Collection<String> removed) {
+        WorldWarps worldWarps = this.worlds.get(world);
+        if(worldWarps == null) return;
+        this.modifications++;
+        for(String id: removed) worldWarps.invalidateWarp(id);
+        for(Warp warp: changed) {
+            worldWarps.invalidateWarp(warp.getId());
+            GeoPointImmutable location = warp.getLocation();
+            if(location != null) worldWarps.invalidate(getTileKey(getTileX(location.longitude()), getTileY(location.latitude())));
+        }
+        // Changes which start after our revision leave a gap, the next revalidation will cover it
+        if(since <= worldWarps.revision && worldWarps.revision < revision) worldWarps.revision = revision;
+    }
+
+    /**
+     * @param world - the uuid of a world
+     * @return the server revision the warps of that world are up to date with, or {@link #NO_REVISION}
+     */
+    public long getRevision(UUID world) {
+        WorldWarps warps = this.worlds.get(world);
+        return warps != null ? warps.revision: NO_REVISION;
+    }
+
+    /**
+     * Forgets a tile.
+     *
+     * @param world - the uuid of the world
+     * @param x     - the x coordinate of the tile
+     * @param y     - the y coordinate of the tile
+     */
+    public void invalidate(UUID world, int x, int y) {
+        WorldWarps warps = this.worlds.get(world);
+        if(warps != null) warps.invalidate(getTileKey(x, y));
+        this.modifications++;
+    }
+
+    /**
+     * Forgets all the warps of a world.
+     *
+     * @param world - the uuid of the world
+     */
+    public void reset(UUID world) {
+        this.worlds.remove(world);
+        this.modifications++;
+    }
+
+    /**
+     * @return a number which changes every time warps are added to or removed from this cache
+     */
+    public long getModificationCount() {
+        return this.modifications;
+    }
+
+    /**
+     * @param world - the uuid of a world
+     * @return the number of tiles cached for that world, complete or not
+     */
+    public int getTileCount(UUID world) {
+        WorldWarps warps = this.worlds.get(world);
+        return warps != null ? warps.tiles.size(): 0;
+    }
+
+    /**
+     * @param longitude - a longitude
+     * @return the x coordinate of the tile the given longitude is in
+     */
+    public static int getTileX(double longitude) {
+        int x = (int) Math.floor(WebMercatorUtil.getXFromLongitude(longitude, TILE_ZOOM) / WebMercatorUtil.TILE_DIMENSIONS);
+        return Math.max(0, Math.min(TILE_COUNT - 1, x));
+    }
+
+    /**
+     * @param latitude - a latitude
+     * @return the y coordinate of the tile the given latitude is in
+     */
+    public static int getTileY(double latitude) {
+        latitude = Math.max(-WebMercatorUtil.LIMIT_LATITUDE, Math.min(WebMercatorUtil.LIMIT_LATITUDE, latitude));
+        int y = (int) Math.floor(WebMercatorUtil.getYFromLatitude(latitude, TILE_ZOOM) / WebMercatorUtil.TILE_DIMENSIONS);
+        return Math.max(0, Math.min(TILE_COUNT - 1, y));
+    }
+
+    /**
+     * Calls the given consumer with the coordinates of each tile in an area.
+     *
+     * @param area      - an area
+     * @param maxTiles  - the maximum number of tiles, the consumer is not called at all if the area has more
+     * @param consumer  - the consumer to call with each tile
+     *
+     * @return false if the area had too many tiles
+     */
+    public static boolean forEachTile(GeoBounds area, int maxTiles, TileConsumer consumer) {
+        GeoBounds[] parts = area.splitAtAntimeridian();
+        long count = 0;
+        for(GeoBounds part: parts) {
+            long width = getTileX(part.upperCorner.longitude()) - getTileX(part.lowerCorner.longitude()) + 1;
+            long height = getTileY(part.lowerCorner.latitude()) - getTileY(part.upperCorner.latitude()) + 1;
+            count += width * height;
+        }
+        if(count > maxTiles) return false;
+        for(GeoBounds part: parts) {
+            int maxX = getTileX(part.upperCorner.longitude());
+            int maxY = getTileY(part.lowerCorner.latitude());
+            for(int x = getTileX(part.lowerCorner.longitude()); x <= maxX; x++) {
+                for(int y = getTileY(part.upperCorner.latitude()); y <= maxY; y++) {
+                    consumer.accept(x, y);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param x - the x coordinate of a tile
+     * @param y - the y coordinate of a tile
+     * @return the area covered by the given tile
+     */
+    public static GeoBounds getTileBounds(int x, int y) {
+        double size = WebMercatorUtil.TILE_DIMENSIONS;
+        double west = WebMercatorUtil.getLongitudeFromX(x * size, TILE_ZOOM);
+        double east = WebMercatorUtil.getLongitudeFromX((x + 1) * size, TILE_ZOOM);
+        double north = WebMercatorUtil.getLatitudeFromY(y * size, TILE_ZOOM);
+        double south = WebMercatorUtil.getLatitudeFromY((y + 1) * size, TILE_ZOOM);
+        // The poles are out of the projection, but warps there are put in the first and last rows of tiles
+        if(y == 0) north = 90d;
+        if(y == TILE_COUNT - 1) south = -90d;
+        if(x == TILE_COUNT - 1) east = 180d;
+        return new GeoBounds(new GeoPointImmutable(west, south), new GeoPointImmutable(east, north));
+    }
+
+    /**
+     * @param x - the x coordinate of a tile
+     * @param y - the y coordinate of a tile
+     *
+     * @return a single number identifying the tile
+     */
+    public static long getTileKey(int x, int y) {
+        return (long) x << 32 | y & 0xFFFFFFFFL;
+    }
+
+    private class WorldWarps {
+
+        long revision = NO_REVISION;
+        final Map<String, Long> warpTiles = new HashMap<>();
+        final Map<Long, Tile> tiles = new LinkedHashMap<Long, Tile>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+                if(this.size() <= WarpCache.this.capacity) return false;
+                WarpCache.this.modifications++;
+                for(String id: eldest.getValue().warps.keySet()) WorldWarps.this.warpTiles.remove(id);
+                return true;
+            }
+
+        };
+
+        void invalidateWarp(String id) {
+            Long key = this.warpTiles.get(id);
+            if(key != null) this.invalidate(key);
+        }
+
+        void invalidate(long key) {
+            Tile tile = this.tiles.remove(key);
+            if(tile == null) return;
+            for(String id: tile.warps.keySet()) this.warpTiles.remove(id);
+        }
+
+    }
+
+    @FunctionalInterface
+    public interface TileConsumer {
+
+        void accept(int x, int y);
+
+    }
+
+    private static class Tile {
+
+        final Map<String, Warp> warps = new HashMap<>();
+        boolean complete = false;
+
+    }
+
+}
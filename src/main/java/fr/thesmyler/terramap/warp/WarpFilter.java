@@ -0,0 +1,33 @@
+package fr.thesmyler.terramap.warp;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+/**
+ * Selects warps when searching a {@link WarpStore}.
+ *
+ * @author SmylerMC
+ *
+ */
+public interface WarpFilter {
+
+    /**
+     * @param warp - a warp
+     * @return whether the warp matches this filter
+     */
+    boolean test(Warp warp);
+
+    /**
+     * Uses the indexes of a store to narrow down the warps which may match this filter.
+     * The store still tests each of them against every filter, so this may return warps which do not match.
+     *
+     * @param store - the store being searched
+     * @return the ids of the warps which may match this filter, or null if this filter cannot use the store's indexes
+     */
+    @Nullable
+    default Collection<String> getCandidates(WarpStore store) {
+        return null;
+    }
+
+}
@@ -0,0 +1,88 @@
+package fr.thesmyler.terramap.warp;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The property keys used by stored warps, each of which is given an index the first time a {@link WarpStore} keeps a warp with it.
+ * Warps refer to their keys by these indexes instead of each keeping its own keys,
+ * and servers send those indexes instead of the keys to clients which have been sent the schema.
+ * <br>
+ * Indexes never change once given, {@link Warp#ID_KEY} is always 0.
+ * Past {@link #MAX_KEYS} keys, new keys are not given an index anymore.
+ *
+ * @author SmylerMC
+ *
+ */
+public final class WarpSchema {
+
+    /**
+     * The maximum number of keys this schema indexes
+     */
+    public static final int MAX_KEYS = 1024;
+
+    private static final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private static volatile String[] keys = new String[0];
+
+    static {
+        intern(Warp.ID_KEY);
+    }
+
+    private WarpSchema() {}
+
+    /**
+     * @param key - a property key
+     * @return the index of the given key, which is given one if it does not have one yet, or -1 if the schema is full
+     */
+    public static int intern(String key) {
+        Integer index = indexes.get(key);
+        if(index != null) return index;
+        synchronized(WarpSchema.class) {
+            index = indexes.get(key);
+            if(index != null) return index;
+            String[] current = keys;
+            if(current.length >= MAX_KEYS) return -1;
+            String[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = key;
+            keys = next; // Published before the index so any index read can be resolved
+            indexes.put(key, current.length);
+            return current.length;
+        }
+    }
+
+    /**
+     * @param key - a property key
+     * @return the index of the given key, or -1 if it does not have one
+     */
+    public static int indexOf(String key) {
+        return indexes.getOrDefault(key, -1);
+    }
+
+    /**
+     * @param index - the index of a key
+     * @return the key with the given index
+     *
+     * @throws ArrayIndexOutOfBoundsException if no key has that index
+     */
+    public static String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param from - the index of the first key to return
+     * @return the keys with an index greater or equal to the given one, sorted by index
+     */
+    public static String[] getKeys(int from) {
+        String[] current = keys;
+        return Arrays.copyOfRange(current, Math.min(from, current.length), current.length);
+    }
+
+    /**
+     * @return the number of keys with an index
+     */
+    public static int size() {
+        return keys.length;
+    }
+
+}
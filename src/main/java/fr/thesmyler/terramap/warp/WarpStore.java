@@ -0,0 +1,546 @@
+package fr.thesmyler.terramap.warp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import fr.thesmyler.terramap.TerramapMod;
+import fr.thesmyler.terramap.util.collections.ChangeJournal;
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.util.geo.WebMercatorGridIndex;
+import net.minecraft.world.WorldServer;
+
+/**
+ * Keeps the warps of a world, indexed by location and by property value so searches only look at the warps which may match.
+ * Warps and the ids in the property index are sorted by id, so searching one page after another seeks directly to where the last page stopped.
+ * <br>
+ * Changes are appended to a log file as they are made, so saving a warp does not rewrite all the others.
+ * The log is written on a background thread, so neither the network threads changing warps nor those searching them ever wait for the disk.
+ * The log is replayed when loading, and is compacted into a snapshot of the current warps once it is mostly made of outdated records.
+ * A record which was not fully written, e.g. because the server crashed, is dropped when loading.
+ * <br>
+ * Each change gives the store a new revision, and the last changes are remembered so clients can ask what changed since the revision they know.
+ * Revisions start from the time the store was loaded, so they keep growing when the server restarts,
+ * and clients with a revision from before the restart are told to start over.
+ * <br>
+ * Stores are accessed from the network threads, so all methods are synchronized.
+ * The log file itself is only touched by the writer thread, apart from when loading.
+ *
+ * @author SmylerMC
+ *
+ */
+public class WarpStore {
+
+    public static final String FILENAME = "terramap_warps.log";
+
+    private static final int MAGIC = 0x5457524C;
+    private static final int VERSION = 1;
+    private static final byte PUT_RECORD = 1;
+    private static final byte REMOVE_RECORD = 2;
+    private static final int INDEX_ZOOM = 10; // Cells are about 40km wide at the equator
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+    private static final int CHANGE_JOURNAL_CAPACITY = 4096;
+
+    private static final Map<String, WarpStore> stores = new HashMap<>();
+
+    // A single thread, so records are appended in the order the changes were made
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Terramap warp writer").setDaemon(true).build());
+
+    private final File file;
+    private final NavigableMap<String, Warp> warps = new TreeMap<>();
+    private final WebMercatorGridIndex<String> locations = new WebMercatorGridIndex<>(INDEX_ZOOM);
+    private final Map<String, NavigableMap<String, NavigableSet<String>>> properties = new HashMap<>(); // key -> value -> ids, values are sorted for prefix searches
+    private DataOutputStream log; // Writer thread only, once loaded
+    private int logRecords = 0; // Writer thread only, once loaded
+    private ChangeJournal<String> changes = new ChangeJournal<>(CHANGE_JOURNAL_CAPACITY);
+    private long revisionBase = 0;
+
+    /**
+     * Creates an empty store. Call {@link #load()} before using it.
+     *
+     * @param file - the log file of this store
+     */
+    public WarpStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads this store's warps from its log file, creating the file if it does not exist.
+     *
+     * @throws IOException if the log cannot be read or written to, in which case the file is left untouched
+     */
+    public void load() throws IOException {
+        this.flush(); // Before locking, as the writer may be waiting for the lock
+        this.replay();
+    }
+
+    private synchronized void replay() throws IOException {
+        this.closeLog();
+        this.warps.clear();
+        this.locations.clear();
+        this.properties.clear();
+        this.logRecords = 0;
+        this.changes = new ChangeJournal<>(CHANGE_JOURNAL_CAPACITY);
+        this.revisionBase = System.currentTimeMillis() << 16; // Leaves room for 65536 changes per millisecond of uptime
+        boolean rewrite = !this.file.exists();
+        if(!rewrite) {
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+                if(in.readInt() != MAGIC) throw new IOException("Not a warp log: " + this.file);
+                int version = in.readInt();
+                if(version != VERSION) throw new IOException("Unsupported warp log version: " + version);
+                int type;
+                while((type = in.read()) >= 0) {
+                    if(type == PUT_RECORD) {
+                        this.index(readWarp(in));
+                    } else if(type == REMOVE_RECORD) {
+                        this.unindex(in.readUTF());
+                    } else {
+                        throw new IOException("Unknown warp log record: " + type);
+                    }
+                    this.logRecords++;
+                }
+            } catch(EOFException e) {
+                rewrite = true; // The last record is incomplete
+            }
+        }
+        if(rewrite || this.needsCompaction(this.warps.size())) {
+            this.compact(new ArrayList<>(this.warps.values()));
+        } else {
+            this.openLog();
+        }
+    }
+
+    /**
+     * Adds a warp to this store, or replaces the warp with the same id.
+     * The store keeps a copy of the warp, so changing the given warp afterward does not change the stored one.
+     * The change is written to the log in the background, see {@link #flush()}.
+     *
+     * @param warp - the warp to save
+     *
+     * @throws IllegalArgumentException if the warp has no id
+     */
+    public synchronized void put(Warp warp) {
+        if(warp.getId().isEmpty()) throw new IllegalArgumentException("Cannot store a warp without an id");
+        Warp copy = warp.copy();
+        this.index(copy);
+        this.changes.added(copy.getId());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        try {
+            record.writeByte(PUT_RECORD);
+            writeWarp(record, copy);
+        } catch(IOException e) {
+            throw new IllegalStateException("Failed to encode warp record", e); // Byte arrays do not throw
+        }
+        this.write(bytes.toByteArray());
+    }
+
+    /**
+     * Adds a warp to this store, unless there already is a warp with the same id.
+     *
+     * @param warp - the warp to save
+     * @return whether the warp was added
+     *
+     * @throws IllegalArgumentException if the warp has no id
+     */
+    public synchronized boolean add(Warp warp) {
+        if(this.warps.containsKey(warp.getId())) return false;
+        this.put(warp);
+        return true;
+    }
+
+    /**
+     * Removes a warp from this store.
+     *
+     * @param id - the id of the warp to remove
+     * @return whether there was a warp with that id
+     */
+    public synchronized boolean remove(String id) {
+        if(!this.warps.containsKey(id)) return false;
+        this.unindex(id);
+        this.changes.removed(id);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        try {
+            record.writeByte(REMOVE_RECORD);
+            record.writeUTF(id);
+        } catch(IOException e) {
+            throw new IllegalStateException("Failed to encode warp record", e); // Byte arrays do not throw
+        }
+        this.write(bytes.toByteArray());
+        return true;
+    }
+
+    /**
+     * @param id - a warp id
+     * @return a copy of the warp with the given id, or null if there is none
+     */
+    @Nullable
+    public synchronized Warp get(String id) {
+        Warp warp = this.warps.get(id);
+        return warp != null ? warp.copy(): null;
+    }
+
+    public synchronized boolean contains(String id) {
+        return this.warps.containsKey(id);
+    }
+
+    public synchronized int size() {
+        return this.warps.size();
+    }
+
+    /**
+     * @return the current revision of this store, which grows with each change
+     */
+    public synchronized long getRevision() {
+        return this.revisionBase + this.changes.getPosition();
+    }
+
+    /**
+     * Finds the warps which were added, changed or removed since the given revision.
+     *
+     * @param revision      - a revision previously returned by {@link #getRevision()}
+     * @param destination   - a collection to add the ids of the changed warps to
+     * @return whether the changes are known, if not the caller has to assume any warp may have changed
+     */
+    public synchronized boolean getChangesSince(long revision, Collection<String> destination) {
+        return this.changes.read(revision - this.revisionBase, (id, added) -> destination.add(id));
+    }
+
+    /**
+     * Searches this store.
+     * The warps are first narrowed down with the filter which can use an index to select the least warps,
+     * and each of the remaining warps is then tested against all filters.
+     *
+     * @param limit     - the maximum number of warps to return
+     * @param filters   - the filters warps have to match, no filter matches all warps
+     *
+     * @return copies of the matching warps, sorted by id
+     */
+    public synchronized List<Warp> find(int limit, WarpFilter... filters) {
+        return this.find(limit, null, filters);
+    }
+
+    /**
+     * Searches this store, one page at a time.
+     * Results are sorted by id, so the next page can be retrieved by searching again after the id of the last warp of the previous one.
+     * Warps which are added or removed between two pages may or may not be returned, but no warp is ever returned twice.
+     *
+     * @param limit     - the maximum number of warps to return
+     * @param after     - only warps with an id which comes after this one are returned, may be null to start from the first warp
+     * @param filters   - the filters warps have to match, no filter matches all warps
+     *
+     * @return copies of the matching warps, sorted by id
+     */
+    public synchronized List<Warp> find(int limit, @Nullable String after, WarpFilter... filters) {
+        Collection<String> candidates = null;
+        for(WarpFilter filter: filters) {
+            Collection<String> filterCandidates = filter.getCandidates(this);
+            if(filterCandidates != null && (candidates == null || filterCandidates.size() < candidates.size())) {
+                candidates = filterCandidates;
+            }
+        }
+        NavigableSet<String> sorted;
+        if(candidates == null) sorted = this.warps.navigableKeySet();
+        else if(candidates instanceof NavigableSet) sorted = (NavigableSet<String>) candidates; // The store's own sets are sorted by id
+        else sorted = new TreeSet<>(candidates);
+        if(after != null) sorted = sorted.tailSet(after, false);
+        List<Warp> found = new ArrayList<>(Math.max(0, Math.min(limit, 64)));
+        search: for(String id: sorted) {
+            if(found.size() >= limit) break;
+            Warp warp = this.warps.get(id);
+            if(warp == null) continue;
+            for(WarpFilter filter: filters) {
+                if(!filter.test(warp)) continue search;
+            }
+            found.add(warp.copy());
+        }
+        return found;
+    }
+
+    /**
+     * Finds the warps which may be within the given bounds.
+     * Warps close to the bounds may be included, they should be checked with {@link GeoBounds#contains(fr.thesmyler.terramap.util.geo.GeoPoint)}.
+     *
+     * @param bounds - the area to search
+     * @return the ids of the warps in or around the area, sorted
+     */
+    public synchronized NavigableSet<String> getIdsInBounds(GeoBounds bounds) {
+        return this.locations.query(bounds, new TreeSet<>());
+    }
+
+    /**
+     * Finds the warps which have the given value for the given property.
+     * Locations are not indexed by this method, see {@link #getIdsInBounds(GeoBounds)}.
+     * The returned set is a view which changes with the store, it should only be used while searching.
+     *
+     * @param key   - a property key
+     * @param value - a property value
+     * @return the ids of the warps which have that value, sorted
+     */
+    public synchronized NavigableSet<String> getIdsWithProperty(String key, String value) {
+        Map<String, NavigableSet<String>> values = this.properties.get(key);
+        if(values == null) return Collections.emptyNavigableSet();
+        NavigableSet<String> ids = values.get(value);
+        return ids != null ? Collections.unmodifiableNavigableSet(ids): Collections.emptyNavigableSet();
+    }
+
+    /**
+     * Finds the warps which have a value starting with the given prefix for the given property.
+     * Locations are not indexed by this method, see {@link #getIdsInBounds(GeoBounds)}.
+     *
+     * @param key       - a property key
+     * @param prefix    - the start of the property value
+     * @return the ids of the warps which have a matching value, sorted
+     */
+    public synchronized NavigableSet<String> getIdsWithPropertyPrefix(String key, String prefix) {
+        NavigableMap<String, NavigableSet<String>> values = this.properties.get(key);
+        if(values == null) return Collections.emptyNavigableSet();
+        NavigableSet<String> ids = new TreeSet<>();
+        for(Map.Entry<String, NavigableSet<String>> entry: values.tailMap(prefix, true).entrySet()) {
+            if(!entry.getKey().startsWith(prefix)) break;
+            ids.addAll(entry.getValue());
+        }
+        return ids;
+    }
+
+    /**
+     * Waits for the changes made so far to be written to the log.
+     * Write errors are logged, the log is then rewritten with the next change.
+     */
+    public void flush() {
+        try {
+            WRITER.submit(() -> {}).get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            TerramapMod.logger.catching(e); // Writes catch their own errors
+        }
+    }
+
+    /**
+     * Writes pending changes and closes the log file. Changing the store afterward opens it again.
+     */
+    public void close() {
+        this.write(null);
+        this.flush();
+    }
+
+    /**
+     * Appends a record to the log on the writer thread, or closes the log if the record is null.
+     * Called while holding the store's lock, so records are queued in the order the changes were made.
+     */
+    private void write(byte[] record) {
+        WRITER.execute(() -> {
+            if(record == null) {
+                this.closeLog();
+                return;
+            }
+            try {
+                // The log is closed after a failed write, as it may end with part of a record. The snapshot includes this change.
+                if(this.log == null) {
+                    this.compact(this.snapshot());
+                    return;
+                }
+                this.log.write(record);
+                this.log.flush();
+                this.logRecords++;
+                int size;
+                synchronized(this) {
+                    size = this.warps.size();
+                }
+                if(this.needsCompaction(size)) this.compact(this.snapshot());
+            } catch(IOException e) {
+                // The next change will try rewriting the whole log
+                this.closeLog();
+                TerramapMod.logger.warn("Failed to write to warp log " + this.file);
+                TerramapMod.logger.catching(e);
+            }
+        });
+    }
+
+    private synchronized List<Warp> snapshot() {
+        return new ArrayList<>(this.warps.values()); // Stored warps are never changed, they are replaced
+    }
+
+    /**
+     * Rewrites the log file so it only contains the given warps.
+     * The new log is written next to the old one and moved over it, so a crash does not lose the old log.
+     *
+     * @throws IOException if the log could not be written
+     */
+    private void compact(Collection<Warp> warps) throws IOException {
+        this.closeLog();
+        File temp = new File(this.file.getPath() + ".tmp");
+        try(FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for(Warp warp: warps) {
+                out.writeByte(PUT_RECORD);
+                writeWarp(out, warp);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.logRecords = warps.size();
+        this.openLog();
+    }
+
+    private boolean needsCompaction(int size) {
+        return this.logRecords > MIN_COMPACTION_RECORDS && this.logRecords > 2 * size;
+    }
+
+    private void openLog() throws IOException {
+        this.log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, true)));
+    }
+
+    private void closeLog() {
+        if(this.log == null) return;
+        try {
+            this.log.close();
+        } catch(IOException ignored) {
+            // Everything written was already flushed
+        }
+        this.log = null;
+    }
+
+    private void index(Warp warp) {
+        warp.internKeys(); // Only the keys of stored warps are interned, not those clients send
+        String id = warp.getId();
+        this.unindex(id);
+        this.warps.put(id, warp);
+        this.locations.put(id, warp.getLocation());
+        for(String key: warp.getPropertyKeys()) {
+            if(!isPropertyIndexed(key)) continue;
+            this.properties.computeIfAbsent(key, k -> new TreeMap<>())
+                           .computeIfAbsent(warp.getProperty(key), v -> new TreeSet<>())
+                           .add(id);
+        }
+    }
+
+    private void unindex(String id) {
+        Warp warp = this.warps.remove(id);
+        if(warp == null) return;
+        this.locations.remove(id);
+        for(String key: warp.getPropertyKeys()) {
+            if(!isPropertyIndexed(key)) continue;
+            Map<String, NavigableSet<String>> values = this.properties.get(key);
+            if(values == null) continue;
+            String value = warp.getProperty(key);
+            NavigableSet<String> ids = values.get(value);
+            if(ids == null) continue;
+            ids.remove(id);
+            if(ids.isEmpty()) values.remove(value);
+            if(values.isEmpty()) this.properties.remove(key);
+        }
+    }
+
+    private static boolean isPropertyIndexed(String key) {
+        return !Warp.ID_KEY.equals(key) && !Warp.LONGITUDE_KEY.equals(key) && !Warp.LATITUDE_KEY.equals(key);
+    }
+
+    private static void writeWarp(DataOutputStream out, Warp warp) throws IOException {
+        out.writeUTF(warp.getId());
+        out.writeInt(warp.getPropertyCount() - 1); // Id is assumed
+        for(String key: warp.getPropertyKeys()) {
+            if(key.equals(Warp.ID_KEY)) continue;
+            out.writeUTF(key);
+            out.writeUTF(warp.getProperty(key));
+        }
+    }
+
+    private static Warp readWarp(DataInputStream in) throws IOException {
+        Warp warp = new Warp(in.readUTF());
+        int count = in.readInt();
+        for(int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            warp.setProperty(key, in.readUTF());
+        }
+        return warp;
+    }
+
+    /**
+     * Loads the given world's warps. Dimensions share their warps with the overworld.
+     *
+     * @param world - the world to load the warps of
+     */
+    public static void loadWorldStore(WorldServer world) {
+        File file = getFileForWorld(world);
+        synchronized(stores) {
+            if(stores.containsKey(file.getAbsolutePath())) return;
+            WarpStore store = new WarpStore(file);
+            try {
+                store.load();
+                stores.put(file.getAbsolutePath(), store);
+                TerramapMod.logger.info("Loaded " + store.size() + " warps for world " + world.getSaveHandler().getWorldDirectory().getName());
+            } catch(IOException e) {
+                TerramapMod.logger.error("Failed to load warps, they will not be available on this world");
+                TerramapMod.logger.catching(e);
+            }
+        }
+    }
+
+    /**
+     * Closes and forgets the given world's warps.
+     *
+     * @param world - the world to unload the warps of
+     */
+    public static void unloadWorldStore(WorldServer world) {
+        File file = getFileForWorld(world);
+        synchronized(stores) {
+            WarpStore store = stores.remove(file.getAbsolutePath());
+            if(store != null) store.close();
+        }
+    }
+
+    /**
+     * @param world - a world
+     * @return the warps of the given world, or null if they are not loaded
+     */
+    @Nullable
+    public static WarpStore getWorldStore(WorldServer world) {
+        File file = getFileForWorld(world);
+        synchronized(stores) {
+            return stores.get(file.getAbsolutePath());
+        }
+    }
+
+    private static File getFileForWorld(WorldServer world) {
+        return new File(world.getSaveHandler().getWorldDirectory().getAbsoluteFile() + File.separator + FILENAME);
+    }
+
+}
@@ -0,0 +1,46 @@
+package fr.thesmyler.smylibgui.container;
+
+import java.util.Iterator;
+
+import fr.thesmyler.smylibgui.SmyLibGuiTest;
+import fr.thesmyler.smylibgui.widgets.IWidget;
+import fr.thesmyler.smylibgui.widgets.buttons.TextButtonWidget;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WidgetStoreTest extends SmyLibGuiTest {
+
+    @Test
+    public void orderTest() {
+        WidgetStore store = new WidgetStore();
+        IWidget low = new TextButtonWidget(0, 0, 0, 10, "low");
+        IWidget high = new TextButtonWidget(0, 0, 10, 10, "high");
+        IWidget middle1 = new TextButtonWidget(0, 0, 5, 10, "middle1");
+        IWidget middle2 = new TextButtonWidget(0, 0, 5, 10, "middle2");
+        assertTrue(store.add(middle1));
+        assertTrue(store.add(low));
+        assertTrue(store.add(high));
+        assertTrue(store.add(middle2));
+        assertFalse(store.add(middle1));
+        assertEquals(4, store.size());
+
+        assertOrder(store.iterator(), high, middle1, middle2, low);
+        assertOrder(store.descendingIterator(), low, middle2, middle1, high);
+
+        assertTrue(store.remove(middle1));
+        assertFalse(store.remove(middle1));
+        assertFalse(store.contains(middle1));
+        assertOrder(store.iterator(), high, middle2, low);
+
+        // Modifying the store while iterating is fine
+        for(IWidget widget: store) store.remove(widget);
+        assertTrue(store.isEmpty());
+    }
+
+    private static void assertOrder(Iterator<IWidget> iterator, IWidget... expected) {
+        for(IWidget widget: expected) assertSame(widget, iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+}
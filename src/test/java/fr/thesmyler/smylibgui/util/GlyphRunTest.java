@@ -0,0 +1,71 @@
+package fr.thesmyler.smylibgui.util;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GlyphRunTest {
+
+    private static final int[] CHAR_WIDTHS = new int[256];
+    private static final int[] COLOR_CODES = new int[32];
+    private static final int FONT_HEIGHT = 9;
+
+    static {
+        Arrays.fill(CHAR_WIDTHS, 6);
+    }
+
+    @Test
+    public void layoutTest() {
+        GlyphRun run = layout("Hello", false);
+        assertEquals(5, run.getGlyphCount());
+        assertEquals(30f, run.getWidth());
+
+        // Spaces have no glyph, formatting codes take no space
+        run = layout("\u00a7cA B", false);
+        assertEquals(2, run.getGlyphCount());
+        assertEquals(16f, run.getWidth());
+
+        // Shadow is offset by one, bold draws each glyph twice and is one unit wider
+        run = layout("\u00a7lAB", true);
+        assertEquals(8, run.getGlyphCount());
+        assertEquals(15f, run.getWidth());
+
+        run = layout("\u00a7n\u00a7mAB", false);
+        assertEquals(2, run.getGlyphCount());
+        assertEquals(4, run.getLineCount());
+    }
+
+    @Test
+    public void unsupportedTest() {
+        assertSame(GlyphRun.UNSUPPORTED, layout("\u00a7kObfuscated", false));
+        assertSame(GlyphRun.UNSUPPORTED, layout("Caf\u00e9", false));
+        char[] tooLong = new char[GlyphRun.MAX_LENGTH + 1];
+        Arrays.fill(tooLong, 'a');
+        assertSame(GlyphRun.UNSUPPORTED, layout(new String(tooLong), false));
+    }
+
+    @Test
+    public void cacheEvictionTest() {
+        GlyphRunCache cache = new GlyphRunCache(2);
+        GlyphRun a = layout("a", false);
+        GlyphRun b = layout("b", false);
+        GlyphRun c = layout("c", false);
+        cache.put("a", 0xFFFFFFFF, false, a);
+        cache.put("b", 0xFFFFFFFF, false, b);
+        assertSame(a, cache.get("a", 0xFFFFFFFF, false));
+        assertNull(cache.get("a", 0xFF000000, false));
+        assertNull(cache.get("a", 0xFFFFFFFF, true));
+        cache.put("c", 0xFFFFFFFF, false, c); // b is the least recently used
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b", 0xFFFFFFFF, false));
+        assertSame(a, cache.get("a", 0xFFFFFFFF, false));
+        assertSame(c, cache.get("c", 0xFFFFFFFF, false));
+    }
+
+    private static GlyphRun layout(String text, boolean shadow) {
+        return GlyphRun.layout(text, 0xFFFFFFFF, shadow, CHAR_WIDTHS, COLOR_CODES, FONT_HEIGHT);
+    }
+
+}
@@ -0,0 +1,144 @@
+package fr.thesmyler.terramap.maps.raster;
+
+import fr.thesmyler.terramap.util.geo.TilePosImmutable;
+import net.minecraft.util.ResourceLocation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingRasterTiledMapTest {
+
+    @Test
+    public void unloadsLeastRecentlyUsedTilesTest() {
+        TestMap map = new TestMap();
+        map.setMaxLoad(3);
+        TestTile base = map.getTile(new TilePosImmutable(0, 0, 0));
+        TestTile first = map.getTile(new TilePosImmutable(5, 1, 1));
+        TestTile second = map.getTile(new TilePosImmutable(5, 1, 2));
+        assertEquals(3, map.getLoadedCount());
+        assertSame(first, map.getTile(new TilePosImmutable(5, 1, 1)));
+        TestTile third = map.getTile(new TilePosImmutable(5, 1, 3));
+        assertEquals(3, map.getLoadedCount());
+        assertTrue(second.unloaded);
+        assertFalse(first.unloaded);
+        assertFalse(third.unloaded);
+        assertFalse(base.unloaded);
+        assertEquals(1, map.getHitCount());
+        assertEquals(4, map.getMissCount());
+        assertEquals(1, map.getEvictionCount());
+    }
+
+    @Test
+    public void keepsBaseTilesLoadedTest() {
+        TestMap map = new TestMap();
+        map.setMaxLoad(2);
+        TestTile base = map.getTile(new TilePosImmutable(0, 0, 0));
+        for(int i = 0; i < 10; i++) map.getTile(new TilePosImmutable(10, i, i));
+        assertFalse(base.unloaded);
+        assertSame(base, map.getTile(new TilePosImmutable(0, 0, 0)));
+        assertEquals(2, map.getLoadedCount());
+        map.unloadAll();
+        assertTrue(base.unloaded);
+        assertEquals(0, map.getLoadedCount());
+    }
+
+    private static class TestMap extends CachingRasterTiledMap<TestTile> {
+
+        @Override
+        protected TestTile createNewTile(TilePosImmutable pos) {
+            return new TestTile(pos);
+        }
+
+        @Override
+        public int getMinZoom() {
+            return 0;
+        }
+
+        @Override
+        public int getMaxZoom() {
+            return 19;
+        }
+
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Override
+        public String getLocalizedName(String localeKey) {
+            return "Test";
+        }
+
+        @Override
+        public String getComment() {
+            return "";
+        }
+
+        @Override
+        public TiledMapProvider getProvider() {
+            return TiledMapProvider.INTERNAL;
+        }
+
+        @Override
+        public long getProviderVersion() {
+            return 0;
+        }
+
+        @Override
+        public int getDisplayPriority() {
+            return 0;
+        }
+
+        @Override
+        public boolean isAllowedOnMinimap() {
+            return false;
+        }
+
+        @Override
+        public boolean isDebug() {
+            return true;
+        }
+
+        @Override
+        public ResourceLocation getDefaultTileTexture() {
+            return null;
+        }
+
+    }
+
+    private static class TestTile implements RasterTile {
+
+        private final TilePosImmutable position;
+        private boolean unloaded = false;
+
+        TestTile(TilePosImmutable position) {
+            this.position = position;
+        }
+
+        @Override
+        public boolean isTextureAvailable() {
+            return false;
+        }
+
+        @Override
+        public ResourceLocation getTexture() {
+            return null;
+        }
+
+        @Override
+        public void cancelTextureLoading() {
+        }
+
+        @Override
+        public void unloadTexture() {
+            this.unloaded = true;
+        }
+
+        @Override
+        public TilePosImmutable getPosition() {
+            return this.position;
+        }
+
+    }
+
+}
@@ -0,0 +1,74 @@
+package fr.thesmyler.terramap.maps.raster;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import fr.thesmyler.terramap.TerramapTest;
+import fr.thesmyler.terramap.util.geo.TilePosImmutable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileDiskCacheTest extends TerramapTest {
+
+    private static final TilePosImmutable POSITION = new TilePosImmutable(3, 2, 5);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void writeAndReadTest() throws Exception {
+        TileDiskCache cache = new TileDiskCache(this.directory, 1024 * 1024);
+        assertNull(cache.read("osm", 1, POSITION));
+        DecodedImage image = this.testImage();
+        cache.write("osm", 1, POSITION, completedFuture(image)).get();
+        assertEquals(1, cache.getTileCount());
+        DecodedImage read = cache.read("osm", 1, POSITION).get();
+        assertEquals(image.getWidth(), read.getWidth());
+        assertEquals(image.getHeight(), read.getHeight());
+        assertArrayEquals(image.getPixels(), read.getPixels());
+        assertNull(cache.read("osm", 2, POSITION));
+        assertNull(cache.read("other", 1, POSITION));
+
+        // A new cache in the same directory should find the tile once it has indexed it, which is done before writing
+        TileDiskCache reloaded = new TileDiskCache(this.directory, 1024 * 1024);
+        reloaded.write("osm", 1, new TilePosImmutable(0, 0, 0), completedFuture(image)).get();
+        assertNotNull(reloaded.read("osm", 1, POSITION));
+    }
+
+    @Test
+    public void invalidationTest() throws Exception {
+        TileDiskCache cache = new TileDiskCache(this.directory, 1024 * 1024);
+        cache.write("osm", 1, POSITION, completedFuture(this.testImage())).get();
+        cache.invalidateOtherVersions("osm", 2);
+        cache.write("osm", 2, POSITION, completedFuture(this.testImage())).get();
+        assertNull(cache.read("osm", 1, POSITION));
+        assertNotNull(cache.read("osm", 2, POSITION));
+        assertFalse(Files.exists(this.directory.resolve("osm").resolve("1")));
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        DecodedImage image = this.testImage();
+        long tileSize = 12 + image.getPixels().length * 4L;
+        TileDiskCache cache = new TileDiskCache(this.directory, tileSize * 2);
+        cache.write("osm", 1, new TilePosImmutable(3, 0, 0), completedFuture(image)).get();
+        cache.write("osm", 1, new TilePosImmutable(3, 0, 1), completedFuture(image)).get();
+        assertNotNull(cache.read("osm", 1, new TilePosImmutable(3, 0, 0))); // Marks it as recently used
+        cache.write("osm", 1, new TilePosImmutable(3, 0, 2), completedFuture(image)).get();
+        assertEquals(2, cache.getTileCount());
+        assertEquals(tileSize * 2, cache.getSize());
+        assertNotNull(cache.read("osm", 1, new TilePosImmutable(3, 0, 0)));
+        assertNull(cache.read("osm", 1, new TilePosImmutable(3, 0, 1)));
+        assertNotNull(cache.read("osm", 1, new TilePosImmutable(3, 0, 2)));
+    }
+
+    private DecodedImage testImage() {
+        int[] pixels = new int[16 * 8];
+        for(int i = 0; i < pixels.length; i++) pixels[i] = 0xFF000000 | i * 1021;
+        return new DecodedImage(16, 8, pixels);
+    }
+
+}
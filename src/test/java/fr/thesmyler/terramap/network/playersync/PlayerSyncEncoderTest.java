@@ -0,0 +1,133 @@
+package fr.thesmyler.terramap.network.playersync;
+
+import java.util.UUID;
+
+import fr.thesmyler.terramap.util.geo.GeoPointMutable;
+import fr.thesmyler.terramap.util.geo.GeoPointReadOnly;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.GameType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlayerSyncEncoderTest {
+
+    @Test
+    public void roundTripTest() throws OutOfProjectionBoundsException {
+        PlayerSyncEncoder encoder = new PlayerSyncEncoder();
+        PlayerSyncDecoder decoder = new PlayerSyncDecoder();
+        DummyPlayer alice = new DummyPlayer("Alice", 2.349014, 48.864716);
+        DummyPlayer bob = new DummyPlayer("Bob", -73.935242, 40.730610);
+
+        SP2CPlayerDeltaSyncPacket packet = transmit(encoder.encode(new TerramapPlayer[] { alice, bob }));
+        assertTrue(packet.isKeyframe());
+        decoder.apply(packet);
+        assertPlayers(decoder, alice, bob);
+
+        // Nothing changed, nothing should be sent
+        assertNull(encoder.encode(new TerramapPlayer[] { alice, bob }));
+
+        alice.location.set(2.349114, 48.864616);
+        alice.azimuth = 270f;
+        bob.gamemode = GameType.SPECTATOR;
+        packet = transmit(encoder.encode(new TerramapPlayer[] { alice, bob }));
+        assertFalse(packet.isKeyframe());
+        decoder.apply(packet);
+        assertPlayers(decoder, alice, bob);
+
+        alice.location = null;
+        packet = transmit(encoder.encode(new TerramapPlayer[] { alice }));
+        assertEquals(1, packet.getRemoved().length);
+        decoder.apply(packet);
+        assertPlayers(decoder, alice);
+        assertTrue(decoder.getPlayers()[0].isOutOfProjection());
+    }
+
+    @Test
+    public void keyframeTest() {
+        PlayerSyncEncoder encoder = new PlayerSyncEncoder();
+        TerramapPlayer[] players = { new DummyPlayer("Alice", 0d, 0d) };
+        assertTrue(encoder.encode(players).isKeyframe());
+        for(int i = 1; i < PlayerSyncEncoder.KEYFRAME_INTERVAL; i++) assertNull(encoder.encode(players));
+        assertTrue(encoder.encode(players).isKeyframe());
+        encoder.requestKeyframe();
+        assertTrue(encoder.encode(players).isKeyframe());
+    }
+
+    private static SP2CPlayerDeltaSyncPacket transmit(SP2CPlayerDeltaSyncPacket packet) {
+        ByteBuf buf = Unpooled.buffer();
+        packet.toBytes(buf);
+        SP2CPlayerDeltaSyncPacket received = new SP2CPlayerDeltaSyncPacket();
+        received.fromBytes(buf);
+        assertEquals(0, buf.readableBytes());
+        return received;
+    }
+
+    private static void assertPlayers(PlayerSyncDecoder decoder, DummyPlayer... expected) throws OutOfProjectionBoundsException {
+        TerramapRemotePlayer[] players = decoder.getPlayers();
+        assertEquals(expected.length, players.length);
+        for(DummyPlayer player: expected) {
+            TerramapRemotePlayer decoded = null;
+            for(TerramapRemotePlayer p: players) if(p.getUUID().equals(player.uuid)) decoded = p;
+            assertNotNull(decoded);
+            assertEquals(player.getDisplayName(), decoded.getDisplayName());
+            assertEquals(player.gamemode, decoded.getGamemode());
+            if(player.location == null) continue;
+            assertEquals(player.location.longitude(), decoded.getLocation().longitude(), 1e-6);
+            assertEquals(player.location.latitude(), decoded.getLocation().latitude(), 1e-6);
+            assertEquals(player.azimuth, decoded.getAzimuth(), SP2CPlayerDeltaSyncPacket.AZIMUTH_QUANTUM);
+        }
+    }
+
+    private static class DummyPlayer extends TerramapPlayer {
+
+        final UUID uuid = UUID.randomUUID();
+        final ITextComponent name;
+        GeoPointMutable location;
+        float azimuth = 90f;
+        GameType gamemode = GameType.CREATIVE;
+
+        DummyPlayer(String name, double longitude, double latitude) {
+            this.name = new TextComponentString(name);
+            this.location = new GeoPointMutable(longitude, latitude);
+        }
+
+        @Override
+        public UUID getUUID() {
+            return this.uuid;
+        }
+
+        @Override
+        public ITextComponent getDisplayName() {
+            return this.name;
+        }
+
+        @Override
+        public GeoPointReadOnly getLocation() throws OutOfProjectionBoundsException {
+            if(this.location == null) throw OutOfProjectionBoundsException.get();
+            return this.location.getReadOnly();
+        }
+
+        @Override
+        public float getAzimuth() {
+            return this.azimuth;
+        }
+
+        @Override
+        public GameType getGamemode() {
+            return this.gamemode;
+        }
+
+        @Override
+        public ResourceLocation getSkin() {
+            return null;
+        }
+
+    }
+
+}
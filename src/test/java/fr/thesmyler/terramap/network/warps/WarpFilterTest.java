@@ -0,0 +1,130 @@
+package fr.thesmyler.terramap.network.warps;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
+import fr.thesmyler.terramap.warp.Warp;
+import fr.thesmyler.terramap.warp.WarpStore;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WarpFilterTest {
+
+    private static final GeoBounds PARIS = new GeoBounds(new GeoPointImmutable(2.2, 48.8), new GeoPointImmutable(2.5, 48.95));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void boundsEncodingTest() {
+        ByteBuf buf = Unpooled.buffer();
+        new BoundsWarpFilter(PARIS).writeToByteBuf(buf);
+        assertEquals(AbstractWarpFilter.BOUNDS_FILTER, buf.getByte(0));
+        BoundsWarpFilter filter = (BoundsWarpFilter) AbstractWarpFilter.readFromByteBuf(buf);
+        assertEquals(0, buf.readableBytes());
+        assertEquals(PARIS.lowerCorner, filter.getBounds().lowerCorner);
+        assertEquals(PARIS.upperCorner, filter.getBounds().upperCorner);
+
+        // Corners out of range
+        buf.clear();
+        buf.writeByte(AbstractWarpFilter.BOUNDS_FILTER);
+        buf.writeDouble(2.2d).writeDouble(48.8d);
+        buf.writeDouble(2.5d).writeDouble(100d);
+        assertNull(AbstractWarpFilter.readFromByteBuf(buf));
+        buf.clear();
+        buf.writeByte(AbstractWarpFilter.BOUNDS_FILTER);
+        buf.writeDouble(Double.NaN).writeDouble(48.8d);
+        buf.writeDouble(2.5d).writeDouble(48.95d);
+        assertNull(AbstractWarpFilter.readFromByteBuf(buf));
+    }
+
+    @Test
+    public void propertyEncodingTest() {
+        ByteBuf buf = Unpooled.buffer();
+        new PropertyWarpFilter("type", "site").writeToByteBuf(buf);
+        assertEquals(AbstractWarpFilter.PROPERTY_FILTER, buf.getByte(0));
+        PropertyWarpFilter filter = (PropertyWarpFilter) AbstractWarpFilter.readFromByteBuf(buf);
+        assertEquals(0, buf.readableBytes());
+        assertEquals("type", filter.getKey());
+        assertEquals("site", filter.getValue());
+    }
+
+    @Test
+    public void propertyPrefixEncodingTest() {
+        ByteBuf buf = Unpooled.buffer();
+        new PropertyPrefixWarpFilter(Warp.NAME_KEY, "Notre").writeToByteBuf(buf);
+        assertEquals(AbstractWarpFilter.PROPERTY_PREFIX_FILTER, buf.getByte(0));
+        PropertyPrefixWarpFilter filter = (PropertyPrefixWarpFilter) AbstractWarpFilter.readFromByteBuf(buf);
+        assertEquals(0, buf.readableBytes());
+        assertEquals(Warp.NAME_KEY, filter.getKey());
+        assertEquals("Notre", filter.getPrefix());
+    }
+
+    @Test
+    public void zoomEncodingTest() {
+        ByteBuf buf = Unpooled.buffer();
+        new ZoomWarpFilter(12.5d).writeToByteBuf(buf);
+        assertEquals(AbstractWarpFilter.ZOOM_FILTER, buf.getByte(0));
+        ZoomWarpFilter filter = (ZoomWarpFilter) AbstractWarpFilter.readFromByteBuf(buf);
+        assertEquals(0, buf.readableBytes());
+        assertEquals(12.5d, filter.getZoom());
+        Warp warp = new Warp("eiffel");
+        assertTrue(filter.test(warp));
+        warp.setProperty(Warp.MIN_ZOOM_KEY, "12.5");
+        assertTrue(filter.test(warp));
+        warp.setProperty(Warp.MIN_ZOOM_KEY, "12.75");
+        assertFalse(filter.test(warp));
+
+        buf.clear();
+        buf.writeByte(AbstractWarpFilter.ZOOM_FILTER);
+        buf.writeDouble(Double.POSITIVE_INFINITY);
+        assertNull(AbstractWarpFilter.readFromByteBuf(buf));
+    }
+
+    @Test
+    public void unknownTypeTest() {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeByte(0x7F);
+        buf.writeDouble(0d);
+        assertNull(AbstractWarpFilter.readFromByteBuf(buf));
+    }
+
+    @Test
+    public void candidatesTest() throws IOException {
+        WarpStore store = new WarpStore(this.directory.resolve(WarpStore.FILENAME).toFile());
+        store.load();
+        Warp warp = new Warp("notre-dame");
+        warp.setProperty(Warp.LONGITUDE_KEY, "2.3499");
+        warp.setProperty(Warp.LATITUDE_KEY, "48.853");
+        warp.setProperty(Warp.NAME_KEY, "Notre-Dame");
+        store.put(warp);
+
+        // Ids are looked up directly
+        Collection<String> candidates = new PropertyWarpFilter(Warp.ID_KEY, "notre-dame").getCandidates(store);
+        assertEquals(1, candidates.size());
+        assertTrue(candidates.contains("notre-dame"));
+        assertTrue(new PropertyWarpFilter(Warp.ID_KEY, "eiffel").getCandidates(store).isEmpty());
+
+        // Ids and coordinates are not in the property index, so they cannot narrow the search
+        assertNull(new PropertyWarpFilter(Warp.LONGITUDE_KEY, "2.3499").getCandidates(store));
+        assertNull(new PropertyWarpFilter(Warp.LATITUDE_KEY, "48.853").getCandidates(store));
+        assertNull(new PropertyPrefixWarpFilter(Warp.ID_KEY, "notre").getCandidates(store));
+        assertNull(new PropertyPrefixWarpFilter(Warp.LONGITUDE_KEY, "2.").getCandidates(store));
+        assertNull(new PropertyPrefixWarpFilter(Warp.LATITUDE_KEY, "48.").getCandidates(store));
+        assertTrue(new PropertyWarpFilter(Warp.LONGITUDE_KEY, "2.3499").test(warp));
+        assertEquals(1, store.find(10, new PropertyPrefixWarpFilter(Warp.ID_KEY, "notre")).size());
+
+        assertTrue(new PropertyPrefixWarpFilter(Warp.NAME_KEY, "Notre").getCandidates(store).contains("notre-dame"));
+        assertTrue(new BoundsWarpFilter(PARIS).getCandidates(store).contains("notre-dame"));
+        store.close();
+    }
+
+}
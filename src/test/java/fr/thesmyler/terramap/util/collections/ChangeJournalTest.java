@@ -0,0 +1,84 @@
+package fr.thesmyler.terramap.util.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeJournalTest {
+
+    @Test
+    public void readTest() {
+        ChangeJournal<String> journal = new ChangeJournal<>(4);
+        ChangeJournal.Cursor<String> cursor = new ChangeJournal.Cursor<>();
+        List<String> changes = new ArrayList<>();
+        ChangeJournal.Listener<String> listener = (value, added) -> changes.add((added ? "+": "-") + value);
+
+        // A new cursor has to rebuild its state
+        journal.added("a");
+        assertFalse(journal.read(cursor, listener));
+        assertTrue(changes.isEmpty());
+
+        journal.added("b");
+        journal.removed("a");
+        assertTrue(journal.read(cursor, listener));
+        assertEquals(2, changes.size());
+        assertEquals("+b", changes.get(0));
+        assertEquals("-a", changes.get(1));
+
+        changes.clear();
+        assertTrue(journal.read(cursor, listener));
+        assertTrue(changes.isEmpty());
+
+        // Too many changes to remember
+        for(int i = 0; i < 5; i++) journal.added("c" + i);
+        assertFalse(journal.read(cursor, listener));
+        assertTrue(changes.isEmpty());
+
+        for(int i = 0; i < 4; i++) journal.added("d" + i);
+        assertTrue(journal.read(cursor, listener));
+        assertEquals(4, changes.size());
+
+        journal.clear();
+        assertFalse(journal.read(cursor, listener));
+        journal.added("e");
+        cursor.invalidate();
+        assertFalse(journal.read(cursor, listener));
+
+        // Another journal
+        assertFalse(new ChangeJournal<String>(4).read(cursor, listener));
+    }
+
+    @Test
+    public void readPositionTest() {
+        ChangeJournal<String> journal = new ChangeJournal<>(4);
+        List<String> changes = new ArrayList<>();
+        ChangeJournal.Listener<String> listener = (value, added) -> changes.add((added ? "+": "-") + value);
+
+        journal.added("a");
+        long position = journal.getPosition();
+        journal.added("b");
+        journal.removed("a");
+        assertTrue(journal.read(position, listener));
+        assertEquals(2, changes.size());
+        assertEquals("+b", changes.get(0));
+        assertEquals("-a", changes.get(1));
+
+        // Reading does not move anything
+        changes.clear();
+        assertTrue(journal.read(position, listener));
+        assertEquals(2, changes.size());
+
+        changes.clear();
+        assertTrue(journal.read(journal.getPosition(), listener));
+        assertTrue(changes.isEmpty());
+        assertFalse(journal.read(journal.getPosition() + 1, listener));
+
+        for(int i = 0; i < 4; i++) journal.added("c" + i);
+        assertFalse(journal.read(position, listener));
+        assertTrue(changes.isEmpty());
+    }
+
+}
@@ -0,0 +1,61 @@
+package fr.thesmyler.terramap.util.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MotionInterpolatorTest {
+
+    @Test
+    public void interpolationTest() {
+        MotionInterpolator motion = new MotionInterpolator(50, 2000);
+        assertFalse(motion.hasSamples());
+        motion.addSample(0, new GeoPointImmutable(0d, 0d), 0f);
+        motion.addSample(1000, new GeoPointImmutable(1d, 0d), 0f);
+        motion.addSample(2000, new GeoPointImmutable(2d, 0d), 0f);
+        assertEquals(1000, motion.getDelay());
+
+        motion.update(2500);
+        assertEquals(1.5d, motion.getLocation().longitude(), 1e-9);
+
+        // Next sample is late, wait for it at the last one
+        motion.update(3500);
+        assertEquals(2d, motion.getLocation().longitude(), 1e-9);
+        motion.addSample(3600, new GeoPointImmutable(3d, 0d), 0f);
+        motion.update(3700);
+        assertTrue(motion.getLocation().longitude() >= 2d && motion.getLocation().longitude() < 3d);
+
+        motion.reset();
+        assertFalse(motion.hasSamples());
+    }
+
+    @Test
+    public void stoppedTest() {
+        MotionInterpolator motion = new MotionInterpolator(50, 2000);
+        motion.addSample(0, new GeoPointImmutable(0d, 0d), 0f);
+        motion.addSample(1000, new GeoPointImmutable(1d, 0d), 0f);
+        motion.addSample(2000, new GeoPointImmutable(2d, 0d), 0f);
+
+        // No more samples are sent once a player stops
+        double longitude = 0d;
+        for(long time = 2000; time <= 10000; time += 10) {
+            motion.update(time);
+            assertTrue(motion.getLocation().longitude() <= 2d, "Went past the last sample at " + time);
+            assertTrue(motion.getLocation().longitude() >= longitude, "Went back at " + time);
+            longitude = motion.getLocation().longitude();
+        }
+        assertEquals(2d, longitude, 1e-9);
+    }
+
+    @Test
+    public void wrapAroundTest() {
+        MotionInterpolator motion = new MotionInterpolator(50, 2000);
+        motion.addSample(0, new GeoPointImmutable(179d, 10d), 340f);
+        motion.addSample(1000, new GeoPointImmutable(-179d, 20d), 20f);
+        motion.update(1500);
+        assertEquals(180d, Math.abs(motion.getLocation().longitude()), 1e-9);
+        assertEquals(15d, motion.getLocation().latitude(), 1e-9);
+        assertEquals(360f, motion.getAzimuth(), 1e-4f);
+    }
+
+}
@@ -0,0 +1,85 @@
+package fr.thesmyler.terramap.util.geo;
+
+import net.buildtheearth.terraplusplus.projection.EquirectangularProjection;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectionCacheTest {
+
+    @Test
+    public void cachingTest() throws OutOfProjectionBoundsException {
+        CountingProjection projection = new CountingProjection();
+        ProjectionCache cache = new ProjectionCache(projection, 4);
+        GeoPointMutable point = new GeoPointMutable();
+        cache.toGeo(point, 10, 20);
+        assertEquals(10d, point.longitude());
+        assertEquals(20d, point.latitude());
+        cache.toGeo(point, 10, 20);
+        assertEquals(1, projection.calls);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        cache.toGeo(point, -10, -20);
+        assertEquals(-10d, point.longitude());
+        assertEquals(-20d, point.latitude());
+        assertEquals(2, projection.calls);
+    }
+
+    @Test
+    public void evictionTest() throws OutOfProjectionBoundsException {
+        CountingProjection projection = new CountingProjection();
+        ProjectionCache cache = new ProjectionCache(projection, 3);
+        GeoPointMutable point = new GeoPointMutable();
+        cache.toGeo(point, 0, 0);
+        cache.toGeo(point, 1, 0);
+        cache.toGeo(point, 2, 0);
+        cache.toGeo(point, 0, 0); // Marks it as recently used
+        cache.toGeo(point, 3, 0); // Should evict 1, 0
+        assertEquals(3, cache.size());
+        assertEquals(4, projection.calls);
+        cache.toGeo(point, 0, 0);
+        cache.toGeo(point, 2, 0);
+        cache.toGeo(point, 3, 0);
+        assertEquals(4, projection.calls);
+        cache.toGeo(point, 1, 0);
+        assertEquals(5, projection.calls);
+        assertEquals(1d, point.longitude());
+    }
+
+    @Test
+    public void bulkTest() {
+        CountingProjection projection = new CountingProjection();
+        ProjectionCache cache = new ProjectionCache(projection, 64);
+        double[] row = cache.toGeo(new double[10], 176, 3, 2, 1, 5);
+        assertArrayEquals(new double[] { 176d, 3d, 178d, 4d, 180d, 5d, Double.NaN, Double.NaN, Double.NaN, Double.NaN }, row);
+        cache.toGeo(row, 176, 3, 2, 1, 5);
+        assertEquals(5, projection.calls);
+        assertThrows(OutOfProjectionBoundsException.class, () -> cache.toGeo(new GeoPointMutable(), 182, 6));
+        assertEquals(5, projection.calls);
+    }
+
+    @Test
+    public void projectionChangeTest() throws OutOfProjectionBoundsException {
+        CountingProjection projection = new CountingProjection();
+        ProjectionCache cache = new ProjectionCache(projection, 8);
+        cache.toGeo(new GeoPointMutable(), 0, 0);
+        cache.setProjection(projection);
+        assertEquals(1, cache.size());
+        cache.setProjection(new CountingProjection());
+        assertEquals(0, cache.size());
+    }
+
+    private static class CountingProjection extends EquirectangularProjection {
+
+        int calls = 0;
+
+        @Override
+        public double[] toGeo(double x, double y) throws OutOfProjectionBoundsException {
+            this.calls++;
+            return super.toGeo(x, y);
+        }
+
+    }
+
+}
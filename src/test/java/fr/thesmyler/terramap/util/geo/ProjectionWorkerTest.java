@@ -0,0 +1,44 @@
+package fr.thesmyler.terramap.util.geo;
+
+import java.util.concurrent.CountDownLatch;
+
+import net.buildtheearth.terraplusplus.projection.EquirectangularProjection;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectionWorkerTest {
+
+    @Test
+    public void reprioritizationTest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ProjectionWorker worker = new ProjectionWorker((projection, x, y) -> {
+            try {
+                release.await(); // Keeps the pool busy so requests stay queued
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new double[] { x, y };
+        });
+        worker.setProjection(new EquirectangularProjection());
+        try {
+            for(int i = 0; i < 256; i++) worker.request(i, i, 0);
+            long queued = ProjectionWorker.getQueuedTaskCount();
+            for(int i = 0; i < 100; i++) worker.setPriorityCenter(i, i);
+            assertTrue(ProjectionWorker.getQueuedTaskCount() <= queued);
+        } finally {
+            release.countDown();
+        }
+
+        // Every request is still computed once
+        int collected = 0;
+        long deadline = System.currentTimeMillis() + 10000;
+        while(collected < 256 && System.currentTimeMillis() < deadline) {
+            collected += worker.poll((key, result) -> assertEquals((double) key, result[0]));
+            Thread.sleep(10);
+        }
+        assertEquals(256, collected);
+        assertEquals(0, worker.getPendingCount());
+    }
+
+}
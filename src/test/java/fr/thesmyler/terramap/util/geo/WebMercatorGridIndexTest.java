@@ -0,0 +1,45 @@
+package fr.thesmyler.terramap.util.geo;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebMercatorGridIndexTest {
+
+    @Test
+    public void queryTest() {
+        WebMercatorGridIndex<String> index = new WebMercatorGridIndex<>(10);
+        index.put("paris", new GeoPointImmutable(2.349014, 48.864716));
+        index.put("new-york", new GeoPointImmutable(-73.935242, 40.730610));
+        index.put("fiji", new GeoPointImmutable(179.5, -17d));
+        index.put("nowhere", null);
+        assertEquals(4, index.size());
+
+        GeoBounds europe = new GeoBounds(new GeoPointImmutable(-10d, 35d), new GeoPointImmutable(30d, 60d));
+        assertEquals(singleton("paris"), index.query(europe, new HashSet<>()));
+
+        GeoBounds pacific = new GeoBounds(new GeoPointImmutable(170d, -30d), new GeoPointImmutable(-170d, 0d));
+        assertEquals(singleton("fiji"), index.query(pacific, new HashSet<>()));
+
+        assertEquals(3, index.query(GeoBounds.WORLD, new HashSet<>()).size());
+
+        // Move
+        index.put("paris", new GeoPointImmutable(-74d, 40.7d));
+        assertTrue(index.query(europe, new HashSet<>()).isEmpty());
+
+        assertTrue(index.remove("new-york"));
+        assertFalse(index.remove("new-york"));
+        assertEquals(3, index.size());
+        assertEquals(2, index.query(GeoBounds.WORLD, new HashSet<>()).size());
+    }
+
+    private static Set<String> singleton(String value) {
+        Set<String> set = new HashSet<>();
+        set.add(value);
+        return set;
+    }
+
+}
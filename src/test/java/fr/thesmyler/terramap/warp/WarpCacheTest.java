@@ -0,0 +1,128 @@
+package fr.thesmyler.terramap.warp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WarpCacheTest {
+
+    private static final UUID WORLD = new UUID(0, 1);
+    private static final Warp EIFFEL = warp("eiffel", 2.2945, 48.8584);
+    private static final Warp LYON = warp("lyon", 4.8357, 45.7640);
+    private static final Warp LIBERTY = warp("liberty", -74.0445, 40.6892);
+
+    @Test
+    public void tilesTest() {
+        int x = WarpCache.getTileX(2.2945);
+        int y = WarpCache.getTileY(48.8584);
+        GeoBounds bounds = WarpCache.getTileBounds(x, y);
+        assertTrue(bounds.contains(EIFFEL.getLocation()));
+        assertFalse(bounds.contains(LYON.getLocation()));
+        assertTrue(WarpCache.getTileBounds(0, 0).contains(new GeoPointImmutable(-180d, 90d)));
+        int last = (1 << WarpCache.TILE_ZOOM) - 1;
+        assertTrue(WarpCache.getTileBounds(last, last).contains(new GeoPointImmutable(180d, -90d)));
+        assertEquals(last, WarpCache.getTileY(-90d));
+    }
+
+    @Test
+    public void pagesTest() {
+        WarpCache cache = new WarpCache(16);
+        int x = tileX(EIFFEL), y = tileY(EIFFEL);
+        assertFalse(cache.isComplete(WORLD, x, y));
+        assertTrue(cache.addWarps(WORLD, x, y, Arrays.asList(EIFFEL, LIBERTY), 10, true, false));
+        assertNull(cache.getWarps(WORLD, x, y));
+        assertTrue(cache.addWarps(WORLD, x, y, Collections.emptyList(), 10, false, true));
+        assertEquals(1, cache.getWarps(WORLD, x, y).size()); // Liberty is not in that tile
+        assertEquals(10, cache.getRevision(WORLD));
+
+        // A page for a tile which was forgotten has to be requested again
+        cache.invalidate(WORLD, x, y);
+        assertFalse(cache.addWarps(WORLD, x, y, Collections.singleton(EIFFEL), 10, false, true));
+        assertFalse(cache.isComplete(WORLD, x, y));
+    }
+
+    @Test
+    public void changesTest() {
+        WarpCache cache = new WarpCache(16);
+        cache.addWarps(WORLD, tileX(EIFFEL), tileY(EIFFEL), Collections.singleton(EIFFEL), 10, true, true);
+        cache.addWarps(WORLD, tileX(LYON), tileY(LYON), Collections.singleton(LYON), 10, true, true);
+        cache.addWarps(WORLD, tileX(LIBERTY), tileY(LIBERTY), Collections.emptyList(), 10, true, true);
+        assertEquals(3, cache.getTileCount(WORLD));
+
+        // Eiffel moves to New York: both its old and new tiles are forgotten
+        cache.applyChanges(WORLD, 10, 12, Collections.singleton(warp("eiffel", -74.0445, 40.6892)), Collections.emptyList());
+        assertFalse(cache.isComplete(WORLD, tileX(EIFFEL), tileY(EIFFEL)));
+        assertFalse(cache.isComplete(WORLD, tileX(LIBERTY), tileY(LIBERTY)));
+        assertTrue(cache.isComplete(WORLD, tileX(LYON), tileY(LYON)));
+        assertEquals(12, cache.getRevision(WORLD));
+
+        // Changes which leave a gap do not move the revision
+        cache.applyChanges(WORLD, 15, 20, Collections.emptyList(), Collections.singleton("lyon"));
+        assertFalse(cache.isComplete(WORLD, tileX(LYON), tileY(LYON)));
+        assertEquals(12, cache.getRevision(WORLD));
+
+        // Warps older than the changes already applied cannot be trusted
+        assertFalse(cache.addWarps(WORLD, tileX(LYON), tileY(LYON), Collections.singleton(LYON), 11, true, true));
+        assertTrue(cache.addWarps(WORLD, tileX(LYON), tileY(LYON), Collections.singleton(LYON), 12, true, true));
+
+        cache.reset(WORLD);
+        assertEquals(WarpCache.NO_REVISION, cache.getRevision(WORLD));
+    }
+
+    @Test
+    public void evictionTest() {
+        WarpCache cache = new WarpCache(2);
+        cache.addWarps(WORLD, 0, 0, Collections.emptyList(), 1, true, true);
+        cache.addWarps(WORLD, tileX(EIFFEL), tileY(EIFFEL), Collections.singleton(EIFFEL), 1, true, true);
+        cache.isComplete(WORLD, 0, 0);
+        cache.getWarps(WORLD, 0, 0);
+        cache.addWarps(WORLD, 1, 1, Collections.emptyList(), 1, true, true); // Eiffel's tile is the least recently used
+        assertEquals(2, cache.getTileCount(WORLD));
+        assertTrue(cache.isComplete(WORLD, 0, 0));
+        assertFalse(cache.isComplete(WORLD, tileX(EIFFEL), tileY(EIFFEL)));
+    }
+
+    @Test
+    public void areaTest() {
+        WarpCache cache = new WarpCache(16);
+        GeoBounds france = new GeoBounds(new GeoPointImmutable(2d, 45d), new GeoPointImmutable(5d, 49d));
+        List<Warp> warps = new ArrayList<>();
+        cache.getWarps(WORLD, france, 256, warps);
+        assertTrue(warps.isEmpty());
+        long modifications = cache.getModificationCount();
+        cache.addWarps(WORLD, tileX(EIFFEL), tileY(EIFFEL), Collections.singleton(EIFFEL), 1, true, true);
+        cache.addWarps(WORLD, tileX(LYON), tileY(LYON), Collections.singleton(LYON), 1, true, false);
+        assertNotEquals(modifications, cache.getModificationCount());
+        cache.getWarps(WORLD, france, 256, warps);
+        assertEquals(Collections.singletonList(EIFFEL), warps); // Lyon's tile is not complete
+        warps.clear();
+        cache.getWarps(WORLD, GeoBounds.WORLD, 256, warps);
+        assertTrue(warps.isEmpty()); // Too many tiles
+        assertFalse(WarpCache.forEachTile(GeoBounds.WORLD, 256, (x, y) -> fail("Called with too many tiles")));
+    }
+
+    private static int tileX(Warp warp) {
+        return WarpCache.getTileX(warp.getLocation().longitude());
+    }
+
+    private static int tileY(Warp warp) {
+        return WarpCache.getTileY(warp.getLocation().latitude());
+    }
+
+    private static Warp warp(String id, double longitude, double latitude) {
+        Warp warp = new Warp(id);
+        warp.setProperty(Warp.LONGITUDE_KEY, Double.toString(longitude));
+        warp.setProperty(Warp.LATITUDE_KEY, Double.toString(latitude));
+        return warp;
+    }
+
+}
@@ -0,0 +1,197 @@
+package fr.thesmyler.terramap.warp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fr.thesmyler.terramap.network.warps.BoundsWarpFilter;
+import fr.thesmyler.terramap.network.warps.PropertyWarpFilter;
+import fr.thesmyler.terramap.util.geo.GeoBounds;
+import fr.thesmyler.terramap.util.geo.GeoPointImmutable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WarpStoreTest {
+
+    private static final GeoBounds PARIS = new GeoBounds(new GeoPointImmutable(2.2, 48.8), new GeoPointImmutable(2.5, 48.95));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void indexesTest() throws IOException {
+        WarpStore store = this.newStore();
+        store.put(warp("eiffel", 2.2945, 48.8584, "site"));
+        store.put(warp("notre-dame", 2.3499, 48.8530, "site"));
+        store.put(warp("versailles", 2.1204, 48.8049, "site"));
+        store.put(warp("spawn", Double.NaN, Double.NaN, "spawn"));
+
+        assertEquals(4, store.size());
+        assertEquals(2, store.find(10, new BoundsWarpFilter(PARIS)).size());
+        assertEquals(3, store.getIdsWithProperty("type", "site").size());
+        assertEquals(2, store.find(10, new BoundsWarpFilter(PARIS), new PropertyWarpFilter("type", "site")).size());
+        assertEquals(1, store.find(10, new PropertyWarpFilter("type", "spawn")).size());
+        assertEquals(4, store.find(10).size());
+        assertEquals(2, store.find(2).size());
+
+        // Moving and changing a warp updates the indexes
+        store.put(warp("eiffel", -74.0445, 40.6892, "spawn"));
+        assertEquals(1, store.find(10, new BoundsWarpFilter(PARIS)).size());
+        assertEquals(2, store.getIdsWithProperty("type", "spawn").size());
+        assertTrue(store.remove("notre-dame"));
+        assertFalse(store.remove("notre-dame"));
+        assertTrue(store.find(10, new BoundsWarpFilter(PARIS)).isEmpty());
+        assertTrue(store.getIdsWithProperty("type", "site").contains("versailles"));
+        assertEquals(1, store.getIdsWithProperty("type", "site").size());
+
+        // The store keeps its own copies
+        Warp warp = store.get("versailles");
+        warp.setProperty("type", "spawn");
+        assertEquals("site", store.get("versailles").getProperty("type"));
+        assertFalse(store.add(warp));
+        assertNull(store.get("notre-dame"));
+        store.close();
+    }
+
+    @Test
+    public void pagingTest() throws IOException {
+        WarpStore store = this.newStore();
+        for(int i = 0; i < 250; i++) {
+            store.put(warp(String.format("warp-%03d", i), 2.3, 48.9, i % 2 == 0 ? "site": "spawn"));
+        }
+        Set<String> seen = new HashSet<>();
+        String after = null;
+        int pages = 0;
+        List<Warp> page;
+        do {
+            page = store.find(30, after, new PropertyWarpFilter("type", "site"));
+            for(Warp warp: page) {
+                assertTrue(seen.add(warp.getId()));
+                assertTrue(after == null || warp.getId().compareTo(after) > 0);
+            }
+            if(!page.isEmpty()) after = page.get(page.size() - 1).getId();
+            pages++;
+        } while(page.size() == 30);
+        assertEquals(125, seen.size());
+        assertEquals(5, pages);
+        assertEquals("warp-000", store.find(1).get(0).getId());
+        assertTrue(store.find(0).isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void prefixTest() throws IOException {
+        WarpStore store = this.newStore();
+        store.put(warp("a", 2.3, 48.9, "site"));
+        store.put(warp("b", 2.3, 48.9, "sightseeing"));
+        store.put(warp("c", 2.3, 48.9, "spawn"));
+        store.put(warp("d", 2.3, 48.9, "si"));
+        assertEquals(3, store.getIdsWithPropertyPrefix("type", "si").size());
+        assertEquals(1, store.getIdsWithPropertyPrefix("type", "sit").size());
+        assertEquals(4, store.getIdsWithPropertyPrefix("type", "").size());
+        assertTrue(store.getIdsWithPropertyPrefix("type", "t").isEmpty());
+        assertTrue(store.getIdsWithPropertyPrefix("name", "").isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void replayTest() throws IOException {
+        WarpStore store = this.newStore();
+        store.put(warp("a", 2.3, 48.9, "site"));
+        store.put(warp("b", 2.4, 48.9, "site"));
+        store.put(warp("a", 2.35, 48.85, "spawn"));
+        store.remove("b");
+        store.close();
+
+        store = this.newStore();
+        assertEquals(1, store.size());
+        assertEquals("spawn", store.get("a").getProperty("type"));
+        assertEquals(1, store.find(10, new BoundsWarpFilter(PARIS)).size());
+        store.close();
+    }
+
+    @Test
+    public void incompleteRecordTest() throws IOException {
+        WarpStore store = this.newStore();
+        store.put(warp("a", 2.3, 48.9, "site"));
+        store.put(warp("b", 2.4, 48.9, "site"));
+        store.close();
+        File file = this.directory.resolve(WarpStore.FILENAME).toFile();
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        store = this.newStore();
+        assertEquals(1, store.size());
+        assertNotNull(store.get("a"));
+        store.put(warp("c", 2.4, 48.9, "site"));
+        store.close();
+        store = this.newStore();
+        assertEquals(2, store.size());
+        assertNotNull(store.get("c"));
+        store.close();
+    }
+
+    @Test
+    public void compactionTest() throws IOException {
+        WarpStore store = this.newStore();
+        File file = this.directory.resolve(WarpStore.FILENAME).toFile();
+        for(int i = 0; i < 5000; i++) {
+            store.put(warp("moving", 2.3 + i / 100000d, 48.9, "site"));
+        }
+        store.put(warp("still", 2.3, 48.9, "site"));
+        store.flush();
+        assertTrue(file.length() < 1024 * 100, "Log was not compacted");
+        store.close();
+        store = this.newStore();
+        assertEquals(2, store.size());
+        assertEquals("2.34999", store.get("moving").getProperty(Warp.LONGITUDE_KEY));
+        store.close();
+    }
+
+    @Test
+    public void revisionTest() throws IOException {
+        WarpStore store = this.newStore();
+        long start = store.getRevision();
+        store.put(warp("a", 2.3, 48.9, "site"));
+        store.put(warp("b", 2.4, 48.9, "site"));
+        store.remove("a");
+        Set<String> changed = new HashSet<>();
+        assertTrue(store.getChangesSince(start, changed));
+        assertEquals(2, changed.size());
+        long revision = store.getRevision();
+        changed.clear();
+        assertTrue(store.getChangesSince(revision, changed));
+        assertTrue(changed.isEmpty());
+        assertFalse(store.getChangesSince(revision + 1, changed));
+        store.close();
+
+        // Revisions from before a restart are unknown
+        store = this.newStore();
+        assertFalse(store.getChangesSince(revision, changed));
+        store.close();
+    }
+
+    private WarpStore newStore() throws IOException {
+        WarpStore store = new WarpStore(this.directory.resolve(WarpStore.FILENAME).toFile());
+        store.load();
+        return store;
+    }
+
+    private static Warp warp(String id, double longitude, double latitude, String type) {
+        Warp warp = new Warp(id);
+        if(Double.isFinite(longitude)) {
+            warp.setProperty(Warp.LONGITUDE_KEY, Double.toString(longitude));
+            warp.setProperty(Warp.LATITUDE_KEY, Double.toString(latitude));
+        }
+        warp.setProperty("type", type);
+        return warp;
+    }
+
+}
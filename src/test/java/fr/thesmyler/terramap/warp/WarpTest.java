@@ -0,0 +1,99 @@
+package fr.thesmyler.terramap.warp;
+
+import org.junit.jupiter.api.Test;
+
+import fr.thesmyler.terramap.network.warps.WarpKeyTable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WarpTest {
+
+    @Test
+    public void propertiesTest() {
+        Warp warp = new Warp("eiffel");
+        warp.setProperty(Warp.LONGITUDE_KEY, "2.2945");
+        warp.setProperty(Warp.LATITUDE_KEY, "48.8584");
+        warp.setProperty("name", "Tour Eiffel");
+        warp.setProperty("only in tests", "yes");
+        assertEquals(0, WarpSchema.indexOf(Warp.ID_KEY));
+        assertEquals(-1, WarpSchema.indexOf("only in tests")); // Only stored warps intern their keys
+        assertEquals(5, warp.getPropertyCount());
+        assertTrue(warp.getPropertyKeys().contains("name"));
+        assertNotNull(warp.getLocation());
+
+        warp.internKeys();
+        assertTrue(WarpSchema.indexOf("only in tests") > 0);
+        assertEquals("yes", warp.getProperty("only in tests"));
+        assertEquals(5, warp.getPropertyCount());
+        warp.setProperty("only in tests", "");
+
+        warp.setProperty("name", "");
+        assertFalse(warp.hasProperty("name"));
+        assertEquals("", warp.getProperty("name"));
+        assertEquals(3, warp.getPropertyCount());
+        assertFalse(warp.hasProperty("never set"));
+
+        Warp stripped = warp.getCopyWithStrippedProperties(Warp.LONGITUDE_KEY, "never set");
+        assertEquals("eiffel", stripped.getId());
+        assertEquals(2, stripped.getPropertyCount());
+    }
+
+    @Test
+    public void minZoomTest() {
+        Warp warp = new Warp("eiffel");
+        assertEquals(Double.NEGATIVE_INFINITY, warp.getMinZoom());
+        warp.setProperty(Warp.MIN_ZOOM_KEY, "12.5");
+        assertEquals(12.5d, warp.getMinZoom());
+        warp.setProperty(Warp.MIN_ZOOM_KEY, "not a zoom");
+        assertEquals(Double.NEGATIVE_INFINITY, warp.getMinZoom());
+    }
+
+    @Test
+    public void copyTest() {
+        Warp warp = new Warp("louvre");
+        warp.setProperty("name", "Louvre");
+        Warp copy = warp.copy();
+        copy.setProperty("name", "Le Louvre");
+        copy.setProperty("category", "museum");
+        assertEquals("Louvre", warp.getProperty("name"));
+        assertFalse(warp.hasProperty("category"));
+        warp.setProperty("name", "Musée du Louvre");
+        assertEquals("Le Louvre", copy.getProperty("name"));
+    }
+
+    @Test
+    public void encodingTest() {
+        Warp warp = new Warp("versailles");
+        warp.setProperty("name", "Château de Versailles");
+        warp.setProperty("category", "castle");
+
+        ByteBuf buf = Unpooled.buffer();
+        warp.encodeToByteBuf(buf);
+        warp.encodeToByteBuf(buf, "name", Warp.ID_KEY, "never set");
+        Warp decoded = Warp.readWarpFromByteBuf(buf);
+        assertEquals(warp.getPropertyKeys(), decoded.getPropertyKeys());
+        assertEquals("castle", decoded.getProperty("category"));
+        decoded = Warp.readWarpFromByteBuf(buf);
+        assertEquals(2, decoded.getPropertyCount());
+
+        // Keys the client was not sent yet are sent in full
+        WarpSchema.intern("name");
+        WarpSchema.intern("category");
+        warp.internKeys();
+        WarpKeyTable.add(0, WarpSchema.getKeys(0));
+        int knownKeys = WarpSchema.indexOf("category");
+        buf = Unpooled.buffer();
+        warp.encodeIndexedToByteBuf(buf, knownKeys);
+        warp.encodeIndexedToByteBuf(buf, knownKeys, "category");
+        decoded = Warp.readWarpFromByteBuf(buf);
+        assertEquals(warp.getPropertyKeys(), decoded.getPropertyKeys());
+        assertEquals("Château de Versailles", decoded.getProperty("name"));
+        decoded = Warp.readWarpFromByteBuf(buf);
+        assertEquals("castle", decoded.getProperty("category"));
+        assertEquals(2, decoded.getPropertyCount());
+        assertFalse(buf.isReadable());
+    }
+
+}